@@ -0,0 +1,125 @@
+package game;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares a tick of the World, which keeps its entities as Sprites, with a
+ * tick of the ColumnWorld, which keeps them in primitive columns. Both are
+ * seeded alike and given the same random keys, so they play the same game.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnWorldBenchmark {
+
+	/**
+	 * The representation: "sprites" for World, "columns" for ColumnWorld.
+	 */
+	@Param({ "sprites", "columns" })
+	public String world;
+
+	/**
+	 * Ticks between spawns in every road and water lane, 0 for the game's
+	 * own rates. A sprite lives for about 550 to 650 ticks, so 5 keeps
+	 * about 900 of them on screen.
+	 */
+	@Param({ "0", "50", "5" })
+	public int regeneration;
+
+	/**
+	 * The world under test, if sprites.
+	 */
+	private World sprites;
+
+	/**
+	 * The world under test, if columns.
+	 */
+	private ColumnWorld columns;
+
+	/**
+	 * Keys pressed each tick, a few hundred ticks' worth.
+	 */
+	private boolean[][] keys;
+
+	/**
+	 * The next row of keys.
+	 */
+	private int next;
+
+	/**
+	 * Input passed to step.
+	 */
+	private Input input = new Input();
+
+	/**
+	 * Creates the world and the keys, and runs the world until the number
+	 * of sprites is stable.
+	 */
+	@Setup(Level.Trial)
+	public void createWorld() {
+		int[] rates = World.defaultRegeneration();
+		if (regeneration > 0) {
+			for (int i = 0; i < rates.length; i++) {
+				if (rates[i] > 0) {
+					rates[i] = regeneration;
+				}
+			}
+		}
+		if (world.equals("columns")) {
+			columns = new ColumnWorld(1, rates);
+		} else {
+			sprites = new World(1, rates);
+		}
+		Random random = new Random(1);
+		keys = new boolean[512][input.buttons.length];
+		for (boolean[] row : keys) {
+			// Mostly forwards, so the frog reaches the traffic and the water.
+			row[Input.UP] = random.nextInt(8) == 0;
+			row[random.nextInt(row.length)] |= random.nextInt(16) == 0;
+		}
+		for (int i = 0; i < 2 * (World.GAME_WIDTH + 150); i++) {
+			step();
+		}
+	}
+
+	/**
+	 * One tick, restarting the game when it ends.
+	 */
+	@Benchmark
+	public void step() {
+		boolean[] row = keys[next];
+		next = (next + 1) % keys.length;
+		System.arraycopy(row, 0, input.buttons, 0, row.length);
+		if (columns != null) {
+			columns.step(input);
+			if (columns.isGameOver() || columns.isGameWon()) {
+				columns.restart();
+			}
+		} else {
+			sprites.step(input);
+			if (sprites.isGameOver() || sprites.isGameWon()) {
+				sprites.restart();
+			}
+		}
+	}
+}
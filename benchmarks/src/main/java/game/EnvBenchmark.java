@@ -0,0 +1,95 @@
+package game;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks stepping the reinforcement learning environments with random
+ * actions. One operation steps every environment once, so the environment
+ * steps per second are the score times <code>envs</code>.
+ * 
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvBenchmark {
+
+	/**
+	 * Number of environments stepped together.
+	 */
+	@Param({ "64", "1024" })
+	public int envs;
+
+	/**
+	 * Number of threads stepping them.
+	 */
+	@Param({ "1", "4", "16" })
+	public int threads;
+
+	/**
+	 * The environments under test.
+	 */
+	private VectorFroggrEnv env;
+
+	/**
+	 * Random actions, a few steps' worth for each environment.
+	 */
+	private int[][] actions;
+
+	/**
+	 * The next row of actions.
+	 */
+	private int next;
+
+	/**
+	 * Creates the environments and the actions.
+	 */
+	@Setup(Level.Trial)
+	public void createEnvironments() {
+		env = new VectorFroggrEnv(envs, threads);
+		env.reset(1);
+		Random random = new Random(1);
+		actions = new int[64][envs];
+		for (int i = 0; i < actions.length; i++) {
+			for (int j = 0; j < envs; j++) {
+				actions[i][j] = random.nextInt(FroggrEnv.ACTIONS);
+			}
+		}
+	}
+
+	/**
+	 * Stops the environment threads.
+	 */
+	@TearDown(Level.Trial)
+	public void close() {
+		env.close();
+	}
+
+	/**
+	 * Steps every environment once.
+	 */
+	@Benchmark
+	public void step() {
+		env.step(actions[next]);
+		next = (next + 1) & (actions.length - 1);
+	}
+}
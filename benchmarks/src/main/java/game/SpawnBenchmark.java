@@ -0,0 +1,161 @@
+package game;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sprites.Lane;
+import sprites.MovingObject;
+
+/**
+ * Benchmarks the spawn and cleanup cycle of the World: generating vehicles
+ * and platforms, moving them and removing the ones that left the screen.
+ * The lane regeneration rates are set from the lifetime of each lane's
+ * sprites so every spawning lane holds about the requested number of
+ * sprites in the steady state.
+ * 
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpawnBenchmark {
+
+	/**
+	 * Seed of the world, so every run spawns the same traffic.
+	 */
+	private static final long SEED = 1;
+
+	/**
+	 * Approximate number of live vehicles or platforms in each spawning
+	 * lane. A sprite lives for GAME_WIDTH plus its width in ticks, 550 to
+	 * 650, and a lane spawns at most once per tick, so no lane holds more
+	 * than that; more is rejected. Beyond about 4 the sprites of a lane
+	 * overlap, as the lane spawns faster than they clear each other.
+	 */
+	@Param({ "2", "16", "128" })
+	public int perLane;
+
+	/**
+	 * Number of lanes that spawn sprites (at most the 9 road and water
+	 * lanes).
+	 */
+	@Param({ "1", "9" })
+	public int lanes;
+
+	/**
+	 * The world under test.
+	 */
+	private World world;
+
+	/**
+	 * Input passed to tick, never pressed.
+	 */
+	private Input input = new Input();
+
+	/**
+	 * Creates the world, sets the regeneration rates and runs it until the
+	 * number of sprites is stable.
+	 */
+	@Setup(Level.Trial)
+	public void createWorld() {
+		world = new World(SEED);
+		List<Lane> all = world.getLanes();
+		int[] widths = spriteWidths();
+		int active = 0;
+		for (int i = World.LANE_WATER_FIFTH; i <= World.LANE_ROAD_FIRST; i++) {
+			if (widths[i] == 0) {
+				continue;
+			}
+			if (active < lanes) {
+				// One sprite spawns every regeneration + 1 ticks and lives
+				// for lifetime ticks.
+				int lifetime = World.GAME_WIDTH + widths[i];
+				if (perLane < 1 || perLane > lifetime) {
+					throw new IllegalArgumentException("Lane " + i
+							+ " holds 1 to " + lifetime + " sprites, not "
+							+ perLane);
+				}
+				all.get(i).setRegeneration(
+						Math.max(1, Math.round((float) lifetime / perLane)) - 1);
+			} else {
+				all.get(i).setRegeneration(Integer.MAX_VALUE);
+			}
+			active++;
+		}
+		world.reset(SEED);
+		for (int i = 0; i < 2 * (World.GAME_WIDTH + 150); i++) {
+			cycle();
+		}
+	}
+
+	/**
+	 * Spawns one sprite in every road and water lane to see how wide each
+	 * lane's sprites are.
+	 * 
+	 * @return The width in pixels, indexed by lane, 0 for lanes without
+	 *         traffic.
+	 */
+	private int[] spriteWidths() {
+		List<Lane> all = world.getLanes();
+		int[] regeneration = new int[all.size()];
+		for (int i = 0; i < all.size(); i++) {
+			regeneration[i] = all.get(i).getRegeneration();
+			all.get(i).setRegeneration(0);
+		}
+		world.addPlatformsToLanes();
+		world.addVehiclesToLanes();
+		int[] widths = new int[all.size()];
+		addWidths(world.getVehicles(), widths);
+		addWidths(world.getPlatforms(), widths);
+		for (int i = 0; i < all.size(); i++) {
+			all.get(i).setRegeneration(regeneration[i]);
+		}
+		return widths;
+	}
+
+	/**
+	 * Records the width of each sprite in its lane.
+	 * 
+	 * @param sprites
+	 *            The sprites.
+	 * @param widths
+	 *            The widths, indexed by lane.
+	 */
+	private static void addWidths(List<? extends MovingObject> sprites,
+			int[] widths) {
+		for (int i = 0; i < sprites.size(); i++) {
+			MovingObject sprite = sprites.get(i);
+			widths[sprite.getYPos() / World.LANE_HEIGHT] = sprite
+					.calculatePixelWidth();
+		}
+	}
+
+	/**
+	 * One tick worth of spawning, moving and cleaning up.
+	 */
+	@Benchmark
+	public void cycle() {
+		world.addPlatformsToLanes();
+		world.addVehiclesToLanes();
+		world.processPlatforms(input);
+		world.processVehicles(input);
+		world.removeUnusedSpritesFromLists();
+	}
+}
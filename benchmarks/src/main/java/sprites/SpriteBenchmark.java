@@ -0,0 +1,184 @@
+package sprites;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game.Input;
+import game.World;
+
+/**
+ * Benchmarks for the per-tick work done on every moving object: moving it
+ * and checking it against the player. The sprites are spread evenly over
+ * the lanes, and the player sits in the middle of one of them.
+ * 
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpriteBenchmark {
+
+	/**
+	 * Number of vehicles and of platforms.
+	 */
+	@Param({ "16", "256", "4096" })
+	public int entities;
+
+	/**
+	 * Number of lanes the sprites are spread over.
+	 */
+	@Param({ "4", "13" })
+	public int lanes;
+
+	/**
+	 * The vehicles.
+	 */
+	private Vehicle[] vehicles;
+
+	/**
+	 * The platforms.
+	 */
+	private Platform[] platforms;
+
+	/**
+	 * The flies in the win zone.
+	 */
+	private Fly[] flys;
+
+	/**
+	 * The player the sprites are checked against.
+	 */
+	private Player player;
+
+	/**
+	 * Input passed to tick, never pressed.
+	 */
+	private Input input = new Input();
+
+	/**
+	 * Creates the sprites.
+	 */
+	@Setup(Level.Trial)
+	public void createSprites() {
+		vehicles = new Vehicle[entities];
+		platforms = new Platform[entities];
+		for (int i = 0; i < entities; i++) {
+			int direction = i % 2;
+			vehicles[i] = new Vehicle(0, 0, 1 + i % 3, direction);
+			vehicles[i].setVehicleType(Vehicle.CAR);
+			platforms[i] = new Platform(0, 0, 3, direction);
+			platforms[i].setPlatformType(Platform.LOG);
+		}
+		flys = new Fly[4];
+		for (int i = 0; i < flys.length; i++) {
+			flys[i] = new Fly(i * 150, 0);
+		}
+		player = new Player(250, (lanes / 2) * World.LANE_HEIGHT, 3);
+	}
+
+	/**
+	 * Puts every sprite back at its starting position, since ticking moves
+	 * them off screen.
+	 */
+	@Setup(Level.Iteration)
+	public void placeSprites() {
+		int perLane = (entities + lanes - 1) / lanes;
+		int spacing = Math.max(1, (World.GAME_WIDTH + 150) / perLane);
+		for (int i = 0; i < entities; i++) {
+			int x = -150 + (i / lanes) * spacing;
+			int y = (i % lanes) * World.LANE_HEIGHT;
+			vehicles[i].setXPos(x);
+			vehicles[i].setYPos(y);
+			platforms[i].setXPos(x);
+			platforms[i].setYPos(y);
+		}
+	}
+
+	/**
+	 * MovingObject.tick on every vehicle and platform.
+	 */
+	@Benchmark
+	public void tick() {
+		for (int i = 0; i < entities; i++) {
+			vehicles[i].tick(input);
+			platforms[i].tick(input);
+		}
+	}
+
+	/**
+	 * Vehicle.hasCollidedWith against the player for every vehicle.
+	 * @return The number of collisions.
+	 */
+	@Benchmark
+	public int vehicleCollisions() {
+		int collisions = 0;
+		for (int i = 0; i < entities; i++) {
+			if (vehicles[i].hasCollidedWith(player)) {
+				collisions++;
+			}
+		}
+		return collisions;
+	}
+
+	/**
+	 * Platform.hasCollidedWith against the player for every platform.
+	 * @return The number of collisions.
+	 */
+	@Benchmark
+	public int platformCollisions() {
+		int collisions = 0;
+		for (int i = 0; i < entities; i++) {
+			if (platforms[i].hasCollidedWith(player)) {
+				collisions++;
+			}
+		}
+		return collisions;
+	}
+
+	/**
+	 * Player.isOnPlatform for every platform.
+	 * @return The number of platforms the player is on.
+	 */
+	@Benchmark
+	public int playerOnPlatform() {
+		int on = 0;
+		for (int i = 0; i < entities; i++) {
+			if (player.isOnPlatform(platforms[i])) {
+				on++;
+			}
+		}
+		return on;
+	}
+
+	/**
+	 * Fly.hasCollidedWith against the player for every fly.
+	 * @return The number of collisions.
+	 */
+	@Benchmark
+	public int flyCollisions() {
+		int collisions = 0;
+		for (int i = 0; i < flys.length; i++) {
+			if (flys[i].hasCollidedWith(player)) {
+				collisions++;
+			}
+		}
+		return collisions;
+	}
+}
@@ -0,0 +1,172 @@
+package game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives a GameLoop with a ManualClock to check the accumulator, the
+ * catch-up cap and the interpolation alpha passed to render.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class GameLoopTest {
+
+	/**
+	 * Ticks per second of the loop under test.
+	 */
+	private static final int TICKS_PER_SECOND = 60;
+
+	/**
+	 * Length of a tick in nanoseconds, as the loop computes it.
+	 */
+	private static final long TICK = 1000000000L / TICKS_PER_SECOND;
+
+	/**
+	 * Most ticks the loop runs in one frame.
+	 */
+	private static final int MAX_TICKS = 5;
+
+	/**
+	 * The time source of the loop.
+	 */
+	private ManualClock clock;
+
+	/**
+	 * Counts updates and keeps the last alpha.
+	 */
+	private Recorder recorder;
+
+	/**
+	 * The loop under test, without a frame rate limit.
+	 */
+	private GameLoop loop;
+
+	/**
+	 * A callback that records what the loop did.
+	 */
+	private static class Recorder implements GameLoop.Callback {
+
+		/**
+		 * Number of updates.
+		 */
+		private int updates;
+
+		/**
+		 * Number of renders.
+		 */
+		private int renders;
+
+		/**
+		 * The alpha of the last render.
+		 */
+		private double alpha = -1;
+
+		@Override
+		public void update() {
+			updates++;
+		}
+
+		@Override
+		public void render(double alpha) {
+			renders++;
+			this.alpha = alpha;
+		}
+	}
+
+	/**
+	 * Creates the clock and the loop.
+	 */
+	@Before
+	public void createLoop() {
+		clock = new ManualClock();
+		recorder = new Recorder();
+		loop = new GameLoop(clock, recorder, TICKS_PER_SECOND, MAX_TICKS, 0);
+	}
+
+	/**
+	 * The first frame starts the clock, so it runs no ticks but still
+	 * renders.
+	 */
+	@Test
+	public void firstFrameRunsNoTicks() {
+		clock.advance(10 * TICK);
+		assertEquals(0, loop.frame());
+		assertEquals(0, recorder.updates);
+		assertEquals(1, recorder.renders);
+		assertEquals(0.0, recorder.alpha, 0.0);
+	}
+
+	/**
+	 * Time left over after the ticks carries over to the next frame and is
+	 * passed to render as a fraction of a tick.
+	 */
+	@Test
+	public void accumulatesPartialTicks() {
+		loop.frame();
+		clock.advance(TICK * 5 / 2);
+		assertEquals(2, loop.frame());
+		assertEquals(0.5, recorder.alpha, 1e-6);
+		clock.advance(TICK / 2);
+		assertEquals(1, loop.frame());
+		assertEquals(0.0, recorder.alpha, 1e-6);
+		assertEquals(3, loop.getTicks());
+		assertEquals(3, loop.getFrames());
+	}
+
+	/**
+	 * A frame far behind runs at most the capped number of ticks and drops
+	 * the rest instead of catching up on later frames.
+	 */
+	@Test
+	public void capsCatchUp() {
+		loop.frame();
+		clock.advance(100 * TICK + TICK / 4);
+		assertEquals(MAX_TICKS, loop.frame());
+		assertEquals(100 - MAX_TICKS, loop.getDroppedTicks());
+		assertEquals(0.25, recorder.alpha, 1e-6);
+		clock.advance(TICK);
+		assertEquals(1, loop.frame());
+		assertEquals(MAX_TICKS + 1, recorder.updates);
+	}
+
+	/**
+	 * Whatever the frame times, alpha stays in [0, 1) and no time is lost
+	 * while the loop keeps up.
+	 */
+	@Test
+	public void alphaStaysBelowOne() {
+		loop.frame();
+		Random random = new Random(1);
+		long elapsed = 0;
+		for (int i = 0; i < 10000; i++) {
+			long step = (long) (random.nextDouble() * (MAX_TICKS - 1) * TICK);
+			clock.advance(step);
+			elapsed += step;
+			loop.frame();
+			assertTrue(recorder.alpha >= 0 && recorder.alpha < 1);
+		}
+		assertEquals(0, loop.getDroppedTicks());
+		assertEquals(elapsed / TICK, loop.getTicks());
+	}
+
+	/**
+	 * With a frame rate limit the loop sleeps out the rest of the frame, so
+	 * each frame takes the same time and runs the same ticks.
+	 */
+	@Test
+	public void sleepsToFrameRate() {
+		loop.setTargetFps(TICKS_PER_SECOND / 2);
+		long start = clock.nanoTime();
+		loop.frame();
+		assertEquals(1000000000L / (TICKS_PER_SECOND / 2),
+				clock.nanoTime() - start);
+		assertEquals(2, loop.frame());
+		assertEquals(2, loop.frame());
+	}
+}
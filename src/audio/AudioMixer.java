@@ -0,0 +1,424 @@
+package audio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * A software mixer. Sounds are decoded once into PCM buffers and mixed on a
+ * dedicated thread into a single AudioOutput. {@link #play(int)} only posts
+ * a request to a lock-free queue, so it never blocks and never allocates.
+ * <p>
+ * At most a fixed number of voices play at once. When all voices are busy
+ * the {@link VoiceStealing} policy decides whether a new sound replaces a
+ * playing one or is dropped.
+ *
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public class AudioMixer implements Runnable {
+
+	/**
+	 * What to do with a new sound when all voices are playing.
+	 */
+	public enum VoiceStealing {
+
+		/**
+		 * Drop the new sound.
+		 */
+		NONE,
+
+		/**
+		 * Replace the voice that has been playing the longest.
+		 */
+		OLDEST,
+
+		/**
+		 * Replace the lowest priority voice (the oldest one on ties), unless
+		 * the new sound has a lower priority than every playing voice.
+		 */
+		LOWEST_PRIORITY
+	}
+
+	/**
+	 * The format everything is mixed in: 44.1kHz, 16 bit, stereo.
+	 */
+	public static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 2,
+			true, false);
+
+	/**
+	 * Number of channels in the mix format.
+	 */
+	private static final int CHANNELS = 2;
+
+	/**
+	 * Number of frames mixed per block.
+	 */
+	private static final int BLOCK_FRAMES = 256;
+
+	/**
+	 * Number of blocks the output device buffers.
+	 */
+	private static final int DEVICE_BLOCKS = 4;
+
+	/**
+	 * Size of the play request queue. Must be a power of two.
+	 */
+	private static final int QUEUE_SIZE = 64;
+
+	/**
+	 * Interleaved stereo samples of each loaded sound, by sound id.
+	 */
+	private final short[][] samples;
+
+	/**
+	 * Priority of each loaded sound, by sound id.
+	 */
+	private final int[] priorities;
+
+	/**
+	 * Sound id playing on each voice, or -1 if the voice is free.
+	 */
+	private final int[] voiceSound;
+
+	/**
+	 * Read position (in samples) of each voice.
+	 */
+	private final int[] voicePosition;
+
+	/**
+	 * Start order of each voice, used to find the oldest voice.
+	 */
+	private final long[] voiceStarted;
+
+	/**
+	 * Counter used to order voice starts.
+	 */
+	private long starts;
+
+	/**
+	 * The voice stealing policy.
+	 */
+	private final VoiceStealing stealing;
+
+	/**
+	 * Pending play requests, stored as sound id + 1 (0 means empty).
+	 */
+	private final AtomicIntegerArray queue = new AtomicIntegerArray(QUEUE_SIZE);
+
+	/**
+	 * Next queue slot a producer will claim.
+	 */
+	private final AtomicLong queueTail = new AtomicLong();
+
+	/**
+	 * Next queue slot the mixer thread will read.
+	 */
+	private final AtomicLong queueHead = new AtomicLong();
+
+	/**
+	 * Accumulator for one block of mixed samples.
+	 */
+	private final int[] mix = new int[BLOCK_FRAMES * CHANNELS];
+
+	/**
+	 * One block of mixed output bytes.
+	 */
+	private final byte[] block = new byte[BLOCK_FRAMES * CHANNELS * 2];
+
+	/**
+	 * Where the mixed data goes.
+	 */
+	private final AudioOutput output;
+
+	/**
+	 * The mixer thread, null when stopped.
+	 */
+	private volatile Thread thread;
+
+	/**
+	 * Number of requests dropped because the queue was full or no voice was
+	 * available.
+	 */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Creates a mixer.
+	 * @param output Where to write the mix.
+	 * @param maxSounds The number of sound ids that can be loaded.
+	 * @param voices The maximum number of sounds playing at once.
+	 * @param stealing What to do when all voices are busy.
+	 */
+	public AudioMixer(AudioOutput output, int maxSounds, int voices,
+			VoiceStealing stealing) {
+		this.output = output;
+		this.stealing = stealing;
+		samples = new short[maxSounds][];
+		priorities = new int[maxSounds];
+		voiceSound = new int[voices];
+		voicePosition = new int[voices];
+		voiceStarted = new long[voices];
+		for (int i = 0; i < voices; i++) {
+			voiceSound[i] = -1;
+		}
+	}
+
+	/**
+	 * Decodes a sound into memory. Must be called before {@link #start()}.
+	 * @param id The sound id used with {@link #play(int)}.
+	 * @param url The location of the sound file.
+	 * @param priority The priority for voice stealing (higher wins).
+	 * @throws IOException If the sound cannot be decoded.
+	 */
+	public void load(int id, URL url, int priority) throws IOException {
+		try {
+			samples[id] = decode(url);
+			priorities[id] = priority;
+		} catch (UnsupportedAudioFileException e) {
+			throw new IOException("Unsupported audio file " + url, e);
+		}
+	}
+
+	/**
+	 * Decodes a sound file into interleaved stereo samples in the mix format.
+	 * @param url The location of the sound file.
+	 * @return The samples.
+	 * @throws IOException If the file cannot be read.
+	 * @throws UnsupportedAudioFileException If the file cannot be decoded.
+	 */
+	private static short[] decode(URL url) throws IOException,
+			UnsupportedAudioFileException {
+		AudioInputStream in = AudioSystem.getAudioInputStream(url);
+		try {
+			AudioFormat source = in.getFormat();
+			int channels = source.getChannels();
+			AudioFormat pcm = new AudioFormat(source.getSampleRate(), 16,
+					channels, true, false);
+			AudioInputStream converted = AudioSystem.getAudioInputStream(pcm, in);
+			byte[] bytes = readAll(converted);
+
+			int frames = bytes.length / (2 * channels);
+			double step = source.getSampleRate() / FORMAT.getSampleRate();
+			int outFrames = (int) (frames / step);
+			short[] out = new short[outFrames * CHANNELS];
+			for (int f = 0; f < outFrames; f++) {
+				int src = (int) (f * step) * channels * 2;
+				short left = (short) ((bytes[src] & 0xff) | (bytes[src + 1] << 8));
+				short right = left;
+				if (channels > 1) {
+					right = (short) ((bytes[src + 2] & 0xff) | (bytes[src + 3] << 8));
+				}
+				out[f * CHANNELS] = left;
+				out[f * CHANNELS + 1] = right;
+			}
+			return out;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a stream to the end.
+	 * @param in The stream.
+	 * @return All bytes of the stream.
+	 * @throws IOException If reading fails.
+	 */
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Opens the output and starts the mixer thread.
+	 * @throws LineUnavailableException If the output cannot be opened.
+	 */
+	public void start() throws LineUnavailableException {
+		output.open(FORMAT, block.length * DEVICE_BLOCKS);
+		Thread t = new Thread(this, "Froggr audio mixer");
+		t.setDaemon(true);
+		t.setPriority(Thread.MAX_PRIORITY);
+		thread = t;
+		t.start();
+	}
+
+	/**
+	 * Stops the mixer thread and closes the output.
+	 */
+	public void stop() {
+		Thread t = thread;
+		thread = null;
+		if (t != null) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		output.close();
+	}
+
+	/**
+	 * Requests that a sound is played. Never blocks and never allocates. The
+	 * request is dropped if the queue is full.
+	 * @param id The sound id.
+	 * @return True if the request was queued.
+	 */
+	public boolean play(int id) {
+		long tail;
+		do {
+			tail = queueTail.get();
+			if (tail - queueHead.get() >= QUEUE_SIZE) {
+				dropped.incrementAndGet();
+				return false;
+			}
+		} while (!queueTail.compareAndSet(tail, tail + 1));
+		queue.lazySet((int) (tail & (QUEUE_SIZE - 1)), id + 1);
+		return true;
+	}
+
+	@Override
+	public void run() {
+		while (thread == Thread.currentThread()) {
+			drainQueue();
+			mixBlock();
+			output.write(block, 0, block.length);
+		}
+	}
+
+	/**
+	 * Starts a voice for every pending play request.
+	 */
+	private void drainQueue() {
+		long head = queueHead.get();
+		while (true) {
+			int slot = (int) (head & (QUEUE_SIZE - 1));
+			int request = queue.get(slot);
+			if (request == 0) {
+				break;
+			}
+			queue.set(slot, 0);
+			head++;
+			queueHead.lazySet(head);
+			startVoice(request - 1);
+		}
+	}
+
+	/**
+	 * Assigns a sound to a voice according to the stealing policy.
+	 * @param id The sound id.
+	 */
+	private void startVoice(int id) {
+		if (id < 0 || id >= samples.length || samples[id] == null) {
+			return;
+		}
+		int voice = -1;
+		int oldest = -1;
+		int weakest = -1;
+		for (int i = 0; i < voiceSound.length; i++) {
+			if (voiceSound[i] < 0) {
+				voice = i;
+				break;
+			}
+			if (oldest < 0 || voiceStarted[i] < voiceStarted[oldest]) {
+				oldest = i;
+			}
+			if (weakest < 0
+					|| priorities[voiceSound[i]] < priorities[voiceSound[weakest]]
+					|| (priorities[voiceSound[i]] == priorities[voiceSound[weakest]]
+							&& voiceStarted[i] < voiceStarted[weakest])) {
+				weakest = i;
+			}
+		}
+		if (voice < 0) {
+			if (stealing == VoiceStealing.OLDEST) {
+				voice = oldest;
+			} else if (stealing == VoiceStealing.LOWEST_PRIORITY
+					&& priorities[voiceSound[weakest]] <= priorities[id]) {
+				voice = weakest;
+			}
+		}
+		if (voice < 0) {
+			dropped.incrementAndGet();
+			return;
+		}
+		voiceSound[voice] = id;
+		voicePosition[voice] = 0;
+		voiceStarted[voice] = starts++;
+	}
+
+	/**
+	 * Mixes one block of all playing voices into the output buffer.
+	 */
+	private void mixBlock() {
+		int[] mix = this.mix;
+		for (int i = 0; i < mix.length; i++) {
+			mix[i] = 0;
+		}
+		for (int v = 0; v < voiceSound.length; v++) {
+			int id = voiceSound[v];
+			if (id < 0) {
+				continue;
+			}
+			short[] sound = samples[id];
+			int position = voicePosition[v];
+			int count = Math.min(mix.length, sound.length - position);
+			for (int i = 0; i < count; i++) {
+				mix[i] += sound[position + i];
+			}
+			position += count;
+			if (position >= sound.length) {
+				voiceSound[v] = -1;
+			}
+			voicePosition[v] = position;
+		}
+		byte[] block = this.block;
+		for (int i = 0; i < mix.length; i++) {
+			int sample = mix[i];
+			if (sample > Short.MAX_VALUE) {
+				sample = Short.MAX_VALUE;
+			} else if (sample < Short.MIN_VALUE) {
+				sample = Short.MIN_VALUE;
+			}
+			block[i * 2] = (byte) sample;
+			block[i * 2 + 1] = (byte) (sample >> 8);
+		}
+	}
+
+	/**
+	 * Returns the number of play requests that were dropped.
+	 * @return The number of dropped requests.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the number of voices currently playing. Only accurate when
+	 * called from the mixer thread or after {@link #stop()}.
+	 * @return The number of active voices.
+	 */
+	public int getActiveVoices() {
+		int active = 0;
+		for (int i = 0; i < voiceSound.length; i++) {
+			if (voiceSound[i] >= 0) {
+				active++;
+			}
+		}
+		return active;
+	}
+}
@@ -0,0 +1,36 @@
+package audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * The device the AudioMixer writes its mixed PCM data to.
+ * 
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public interface AudioOutput {
+
+	/**
+	 * Opens the output for the specified format.
+	 * @param format The format of the data that will be written.
+	 * @param bufferBytes Suggested device buffer size in bytes.
+	 * @throws LineUnavailableException If the output cannot be opened.
+	 */
+	void open(AudioFormat format, int bufferBytes) throws LineUnavailableException;
+
+	/**
+	 * Writes mixed data. Blocks until the device can accept it, which is what
+	 * paces the mixer thread.
+	 * @param buffer The data.
+	 * @param offset The offset of the first byte.
+	 * @param length The number of bytes to write.
+	 */
+	void write(byte[] buffer, int offset, int length);
+
+	/**
+	 * Closes the output and releases the device.
+	 */
+	void close();
+}
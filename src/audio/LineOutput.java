@@ -0,0 +1,71 @@
+package audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays the mixed audio through a single SourceDataLine on the default
+ * sound device.
+ * 
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public class LineOutput implements AudioOutput {
+
+	/**
+	 * The line to write to.
+	 */
+	private SourceDataLine line;
+
+	/**
+	 * Opens a line on the default device. A machine without a device that
+	 * can play the format, or that may not use one, is reported the same way
+	 * as a device that is busy, so callers can fall back to another output.
+	 */
+	@Override
+	public void open(AudioFormat format, int bufferBytes)
+			throws LineUnavailableException {
+		try {
+			line = AudioSystem.getSourceDataLine(format);
+			line.open(format, bufferBytes);
+		} catch (IllegalArgumentException e) {
+			throw unavailable(e);
+		} catch (SecurityException e) {
+			throw unavailable(e);
+		}
+		line.start();
+	}
+
+	/**
+	 * Wraps the reason a line could not be opened, forgetting the line.
+	 * @param cause The reason.
+	 * @return The exception to throw.
+	 */
+	private LineUnavailableException unavailable(RuntimeException cause) {
+		if (line != null) {
+			line.close();
+			line = null;
+		}
+		LineUnavailableException e = new LineUnavailableException(
+				cause.getMessage());
+		e.initCause(cause);
+		return e;
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) {
+		line.write(buffer, offset, length);
+	}
+
+	@Override
+	public void close() {
+		if (line != null) {
+			line.stop();
+			line.close();
+			line = null;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package audio;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * An output that needs no sound card. The mixed data is discarded, but the
+ * number of frames and the peak level are recorded so the mixer can be
+ * checked on headless machines. Optionally the output sleeps to consume data
+ * at the real-time rate, like a device would.
+ * 
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public class LoopbackOutput implements AudioOutput {
+
+	/**
+	 * Whether writes are paced to real time.
+	 */
+	private final boolean realTime;
+
+	/**
+	 * Bytes per frame of the opened format.
+	 */
+	private int frameSize;
+
+	/**
+	 * Frames per second of the opened format.
+	 */
+	private float frameRate;
+
+	/**
+	 * Total number of frames written.
+	 */
+	private volatile long framesWritten;
+
+	/**
+	 * Largest absolute sample value written since the last reset.
+	 */
+	private volatile int peak;
+
+	/**
+	 * Time the next write is due when pacing, in nanoseconds.
+	 */
+	private long nextWriteTime;
+
+	/**
+	 * Creates a loopback output.
+	 * @param realTime True to pace writes to the real-time rate.
+	 */
+	public LoopbackOutput(boolean realTime) {
+		this.realTime = realTime;
+	}
+
+	@Override
+	public void open(AudioFormat format, int bufferBytes) {
+		frameSize = format.getFrameSize();
+		frameRate = format.getFrameRate();
+		framesWritten = 0;
+		peak = 0;
+		nextWriteTime = System.nanoTime();
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) {
+		int max = peak;
+		for (int i = offset; i + 1 < offset + length; i += 2) {
+			int sample = Math.abs((short) ((buffer[i] & 0xff) | (buffer[i + 1] << 8)));
+			if (sample > max) {
+				max = sample;
+			}
+		}
+		peak = max;
+		int frames = length / frameSize;
+		framesWritten += frames;
+
+		if (realTime) {
+			nextWriteTime += (long) (frames * 1000000000L / frameRate);
+			long wait = nextWriteTime - System.nanoTime();
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			} else {
+				nextWriteTime = System.nanoTime();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * Returns the number of frames written since the output was opened.
+	 * @return The number of frames.
+	 */
+	public long getFramesWritten() {
+		return framesWritten;
+	}
+
+	/**
+	 * Returns the largest absolute sample written since the last reset.
+	 * @return The peak sample value.
+	 */
+	public int getPeak() {
+		return peak;
+	}
+
+	/**
+	 * Resets the peak level.
+	 */
+	public void resetPeak() {
+		peak = 0;
+	}
+}
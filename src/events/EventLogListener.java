@@ -0,0 +1,101 @@
+package events;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes every game event to a log, one line each: the time in
+ * milliseconds, the event and its arguments, e.g.
+ * <code>1792280738997 PlayerKilled frog=0 lane=3 cause=1</code>. Lines are
+ * flushed as they are written, which is fine on the bus's own thread.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class EventLogListener implements GameEventListener {
+
+	/**
+	 * Where the lines go.
+	 */
+	private final Writer out;
+
+	/**
+	 * The line being written.
+	 */
+	private final StringBuilder line = new StringBuilder(80);
+
+	/**
+	 * Whether a write failed, after which nothing more is written.
+	 */
+	private boolean failed;
+
+	/**
+	 * Creates a listener that writes a log.
+	 * @param out Where to write it.
+	 */
+	public EventLogListener(Writer out) {
+		this.out = out;
+	}
+
+	@Override
+	public void playerMoved(int frog, int x, int lane) {
+		write(start("PlayerMoved").append(" frog=").append(frog)
+				.append(" x=").append(x).append(" lane=").append(lane));
+	}
+
+	@Override
+	public void playerKilled(int frog, int lane, int cause) {
+		write(start("PlayerKilled").append(" frog=").append(frog)
+				.append(" lane=").append(lane).append(" cause=").append(cause));
+	}
+
+	@Override
+	public void flyConsumed(int frog, int fly) {
+		write(start("FlyConsumed").append(" frog=").append(frog)
+				.append(" fly=").append(fly));
+	}
+
+	@Override
+	public void laneEntered(int frog, int lane) {
+		write(start("LaneEntered").append(" frog=").append(frog)
+				.append(" lane=").append(lane));
+	}
+
+	@Override
+	public void gameOver() {
+		write(start("GameOver"));
+	}
+
+	@Override
+	public void gameWon() {
+		write(start("GameWon"));
+	}
+
+	/**
+	 * Starts a line.
+	 * @param event The name of the event.
+	 * @return The line.
+	 */
+	private StringBuilder start(String event) {
+		line.setLength(0);
+		return line.append(System.currentTimeMillis()).append(' ')
+				.append(event);
+	}
+
+	/**
+	 * Writes a line and flushes it.
+	 * @param text The line, without the line break.
+	 */
+	private void write(StringBuilder text) {
+		if (failed) {
+			return;
+		}
+		try {
+			out.append(text).append('\n');
+			out.flush();
+		} catch (IOException e) {
+			System.err.println("Event log stopped: " + e);
+			failed = true;
+		}
+	}
+}
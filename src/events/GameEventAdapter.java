@@ -0,0 +1,40 @@
+package events;
+
+/**
+ * A listener that ignores every event, to extend by listeners that only
+ * want some of them.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class GameEventAdapter implements GameEventListener {
+
+	/**
+	 * A listener that ignores everything, for worlds nobody listens to.
+	 */
+	public static final GameEventListener NONE = new GameEventAdapter();
+
+	@Override
+	public void playerMoved(int frog, int x, int lane) {
+	}
+
+	@Override
+	public void playerKilled(int frog, int lane, int cause) {
+	}
+
+	@Override
+	public void flyConsumed(int frog, int fly) {
+	}
+
+	@Override
+	public void laneEntered(int frog, int lane) {
+	}
+
+	@Override
+	public void gameOver() {
+	}
+
+	@Override
+	public void gameWon() {
+	}
+}
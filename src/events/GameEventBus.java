@@ -0,0 +1,375 @@
+package events;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Passes game events from the simulation to listeners on threads of their
+ * own, so the tick never waits for the audio, the HUD, metrics or a log
+ * file.
+ * <p>
+ * The simulation publishes an event by calling the bus as its
+ * GameEventListener. The event is written into a ring of preallocated
+ * slots, so publishing takes a few stores and never allocates or locks.
+ * Only one thread may publish. Every subscriber reads the ring on its own
+ * thread at its own pace, from its own position; a slot is reused once
+ * every subscriber has read it. When the slowest subscriber is a whole ring
+ * behind, new events are dropped and counted rather than waiting for it.
+ * <p>
+ * Subscribers poll the ring, sleeping POLL_NANOS when it is empty, so an
+ * event reaches them within about a millisecond.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class GameEventBus implements GameEventListener {
+
+	/**
+	 * Default number of slots, a power of two. Room for seconds of events.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * How long a subscriber sleeps when it has read every event.
+	 */
+	private static final long POLL_NANOS = 1000000;
+
+	/**
+	 * Event type: PlayerMoved.
+	 */
+	private static final int PLAYER_MOVED = 0;
+
+	/**
+	 * Event type: PlayerKilled.
+	 */
+	private static final int PLAYER_KILLED = 1;
+
+	/**
+	 * Event type: FlyConsumed.
+	 */
+	private static final int FLY_CONSUMED = 2;
+
+	/**
+	 * Event type: LaneEntered.
+	 */
+	private static final int LANE_ENTERED = 3;
+
+	/**
+	 * Event type: GameOver.
+	 */
+	private static final int GAME_OVER = 4;
+
+	/**
+	 * Event type: GameWon.
+	 */
+	private static final int GAME_WON = 5;
+
+	/**
+	 * The type of the event in each slot.
+	 */
+	private final int[] types;
+
+	/**
+	 * The frog of the event in each slot.
+	 */
+	private final int[] frogs;
+
+	/**
+	 * The first argument after the frog of the event in each slot.
+	 */
+	private final int[] firsts;
+
+	/**
+	 * The second argument after the frog of the event in each slot.
+	 */
+	private final int[] seconds;
+
+	/**
+	 * Slots minus one, to wrap a sequence number to a slot.
+	 */
+	private final int mask;
+
+	/**
+	 * Number of events published. Written by the publisher only, after the
+	 * slot, so a subscriber that sees it sees the slot.
+	 */
+	private final AtomicLong published = new AtomicLong();
+
+	/**
+	 * The lowest position of a subscriber when the publisher last looked.
+	 * Only used by the publisher.
+	 */
+	private long slowest;
+
+	/**
+	 * Events dropped because the ring was full.
+	 */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * The subscribers. Replaced, not changed, so the publisher can read it
+	 * without a lock.
+	 */
+	private volatile Subscriber[] subscribers = new Subscriber[0];
+
+	/**
+	 * Whether the subscribers' threads have been started.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Creates a bus with the default capacity.
+	 */
+	public GameEventBus() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a bus.
+	 * @param capacity Number of slots, a power of two.
+	 */
+	public GameEventBus(int capacity) {
+		if (capacity < 1 || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException(
+					"Capacity must be a power of two: " + capacity);
+		}
+		types = new int[capacity];
+		frogs = new int[capacity];
+		firsts = new int[capacity];
+		seconds = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Adds a listener, to be called with every event published from now on,
+	 * in order, on a thread of its own. Subscribe before the simulation
+	 * publishes.
+	 * @param listener The listener.
+	 * @param name A short name for its thread.
+	 * @throws IllegalStateException If the bus was already started.
+	 */
+	public synchronized void subscribe(GameEventListener listener, String name) {
+		if (running) {
+			throw new IllegalStateException("Subscribe before starting the bus");
+		}
+		Subscriber[] more = Arrays.copyOf(subscribers, subscribers.length + 1);
+		more[subscribers.length] = new Subscriber(listener, name,
+				published.get());
+		subscribers = more;
+	}
+
+	/**
+	 * Starts the subscribers' threads. They are daemons, so they do not keep
+	 * the game from exiting.
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		for (int i = 0; i < subscribers.length; i++) {
+			Thread thread = new Thread(subscribers[i], "froggr-events-"
+					+ subscribers[i].name);
+			thread.setDaemon(true);
+			subscribers[i].thread = thread;
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops the subscribers' threads once they have read every event
+	 * published so far, and waits for them.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public synchronized void stop() throws InterruptedException {
+		running = false;
+		for (int i = 0; i < subscribers.length; i++) {
+			Thread thread = subscribers[i].thread;
+			if (thread != null) {
+				LockSupport.unpark(thread);
+				thread.join();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of events dropped because a subscriber fell a whole
+	 * ring behind.
+	 * @return The count.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the number of events published.
+	 * @return The count.
+	 */
+	public long getPublished() {
+		return published.get();
+	}
+
+	/**
+	 * Writes an event into the next slot, unless the ring is full.
+	 * @param type The event type.
+	 * @param frog The frog.
+	 * @param first The first argument after the frog.
+	 * @param second The second argument after the frog.
+	 */
+	private void publish(int type, int frog, int first, int second) {
+		long sequence = published.get();
+		if (sequence - slowest > mask) {
+			slowest = slowestPosition(sequence);
+			if (sequence - slowest > mask) {
+				dropped.incrementAndGet();
+				return;
+			}
+		}
+		int slot = (int) sequence & mask;
+		types[slot] = type;
+		frogs[slot] = frog;
+		firsts[slot] = first;
+		seconds[slot] = second;
+		published.lazySet(sequence + 1);
+	}
+
+	/**
+	 * Finds how far the slowest subscriber has read.
+	 * @param sequence The number of events published, if there are no
+	 *            subscribers.
+	 * @return The lowest position.
+	 */
+	private long slowestPosition(long sequence) {
+		long lowest = sequence;
+		Subscriber[] all = subscribers;
+		for (int i = 0; i < all.length; i++) {
+			lowest = Math.min(lowest, all[i].position.get());
+		}
+		return lowest;
+	}
+
+	@Override
+	public void playerMoved(int frog, int x, int lane) {
+		publish(PLAYER_MOVED, frog, x, lane);
+	}
+
+	@Override
+	public void playerKilled(int frog, int lane, int cause) {
+		publish(PLAYER_KILLED, frog, lane, cause);
+	}
+
+	@Override
+	public void flyConsumed(int frog, int fly) {
+		publish(FLY_CONSUMED, frog, fly, 0);
+	}
+
+	@Override
+	public void laneEntered(int frog, int lane) {
+		publish(LANE_ENTERED, frog, lane, 0);
+	}
+
+	@Override
+	public void gameOver() {
+		publish(GAME_OVER, 0, 0, 0);
+	}
+
+	@Override
+	public void gameWon() {
+		publish(GAME_WON, 0, 0, 0);
+	}
+
+	/**
+	 * A listener and how far it has read, with the loop of its thread.
+	 */
+	private final class Subscriber implements Runnable {
+
+		/**
+		 * The listener.
+		 */
+		final GameEventListener listener;
+
+		/**
+		 * Name of the thread.
+		 */
+		final String name;
+
+		/**
+		 * Sequence number of the next event to read. Written by the
+		 * subscriber's thread after it is done with the slot.
+		 */
+		final AtomicLong position;
+
+		/**
+		 * The thread, once started.
+		 */
+		Thread thread;
+
+		/**
+		 * Creates a subscriber.
+		 * @param listener The listener.
+		 * @param name Name of the thread.
+		 * @param position Sequence number of the first event to read.
+		 */
+		Subscriber(GameEventListener listener, String name, long position) {
+			this.listener = listener;
+			this.name = name;
+			this.position = new AtomicLong(position);
+		}
+
+		@Override
+		public void run() {
+			long next = position.get();
+			while (true) {
+				boolean stopping = !running;
+				long end = published.get();
+				while (next < end) {
+					dispatch((int) next & mask);
+					next++;
+					position.lazySet(next);
+				}
+				if (stopping) {
+					return;
+				}
+				LockSupport.parkNanos(POLL_NANOS);
+			}
+		}
+
+		/**
+		 * Calls the listener with the event in a slot.
+		 * @param slot The slot.
+		 */
+		private void dispatch(int slot) {
+			int frog = frogs[slot];
+			int first = firsts[slot];
+			int second = seconds[slot];
+			try {
+				switch (types[slot]) {
+				case PLAYER_MOVED:
+					listener.playerMoved(frog, first, second);
+					break;
+				case PLAYER_KILLED:
+					listener.playerKilled(frog, first, second);
+					break;
+				case FLY_CONSUMED:
+					listener.flyConsumed(frog, first);
+					break;
+				case LANE_ENTERED:
+					listener.laneEntered(frog, first);
+					break;
+				case GAME_OVER:
+					listener.gameOver();
+					break;
+				case GAME_WON:
+					listener.gameWon();
+					break;
+				default:
+					break;
+				}
+			} catch (RuntimeException e) {
+				// One bad listener must not stop the others' events.
+				System.err.println("Event listener " + name + " failed: " + e);
+			}
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package events;
+
+/**
+ * Receives what happens in a game, as it happens. The World tells its
+ * listener about every event during a tick, so a listener that the World
+ * calls directly must be quick; a {@link GameEventBus} passes the events on
+ * to slower listeners on threads of their own.
+ * <p>
+ * Frogs are given by their index in the World, lanes by their index (or row,
+ * in the endless mode) and causes of death by World.DEATH_VEHICLE and so on.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public interface GameEventListener {
+
+	/**
+	 * A frog hopped.
+	 * @param frog The frog.
+	 * @param x Its new x coordinate.
+	 * @param lane The lane it is in.
+	 */
+	void playerMoved(int frog, int x, int lane);
+
+	/**
+	 * A frog died.
+	 * @param frog The frog.
+	 * @param lane The lane it died in.
+	 * @param cause World.DEATH_VEHICLE, DEATH_WATER or DEATH_WIN_ZONE.
+	 */
+	void playerKilled(int frog, int lane, int cause);
+
+	/**
+	 * A frog reached a win zone and consumed its fly.
+	 * @param frog The frog.
+	 * @param fly The index of the fly.
+	 */
+	void flyConsumed(int frog, int fly);
+
+	/**
+	 * A frog entered a lane it had not reached before and scored for it.
+	 * @param frog The frog.
+	 * @param lane The lane.
+	 */
+	void laneEntered(int frog, int lane);
+
+	/**
+	 * Every frog is out of lives.
+	 */
+	void gameOver();
+
+	/**
+	 * Every fly was consumed.
+	 */
+	void gameWon();
+}
@@ -0,0 +1,36 @@
+package events;
+
+import metrics.FrameMetrics;
+
+/**
+ * Counts deaths and new lanes entered in the game metrics, so they are
+ * published over JMX and to Prometheus with the rest.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class MetricsListener extends GameEventAdapter {
+
+	/**
+	 * Where the events are counted.
+	 */
+	private final FrameMetrics metrics;
+
+	/**
+	 * Creates a listener that counts events.
+	 * @param metrics Where to count them.
+	 */
+	public MetricsListener(FrameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void playerKilled(int frog, int lane, int cause) {
+		metrics.count(FrameMetrics.DEATHS, 1);
+	}
+
+	@Override
+	public void laneEntered(int frog, int lane) {
+		metrics.count(FrameMetrics.LANES_ENTERED, 1);
+	}
+}
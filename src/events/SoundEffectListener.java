@@ -0,0 +1,54 @@
+package events;
+
+import game.World;
+import metrics.FrameMetrics;
+import util.SoundEffect;
+
+/**
+ * Plays the sound effect of each game event: a hop, a collision or splash
+ * when a frog dies, and the victory jingle when a fly is consumed.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class SoundEffectListener extends GameEventAdapter {
+
+	/**
+	 * Where the sound plays are counted.
+	 */
+	private final FrameMetrics metrics;
+
+	/**
+	 * Creates a listener that plays sounds.
+	 * @param metrics Where to count the sound plays, or
+	 *            FrameMetrics.DISABLED.
+	 */
+	public SoundEffectListener(FrameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void playerMoved(int frog, int x, int lane) {
+		play(SoundEffect.MOVE);
+	}
+
+	@Override
+	public void playerKilled(int frog, int lane, int cause) {
+		play(cause == World.DEATH_WATER ? SoundEffect.SPLASH
+				: SoundEffect.COLLISION);
+	}
+
+	@Override
+	public void flyConsumed(int frog, int fly) {
+		play(SoundEffect.VICTORY);
+	}
+
+	/**
+	 * Plays a sound and counts it.
+	 * @param sound The id of the sound.
+	 */
+	private void play(int sound) {
+		SoundEffect.play(sound);
+		metrics.count(FrameMetrics.SOUND_PLAYS, 1);
+	}
+}
@@ -0,0 +1,619 @@
+package game;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import scores.HighScores;
+
+/**
+ * Plays many seeded games headlessly with a scripted or random frog, spread
+ * over every core, and writes a CSV report of how the games went: win rate,
+ * time to win, and per lane how often the frog entered it and what killed it
+ * there. Used to balance the lane regeneration times, which can be swept over
+ * a grid of values in one run.
+ * <p>
+ * Every game runs in its own World on one fork-join worker and the workers
+ * share nothing but the image cache, so the run scales with the cores. The
+ * games are seeded from the base seed and their number, so every point of a
+ * grid plays the same traffic seeds and a run can be reproduced exactly.
+ * <p>
+ * Usage: <code>java game.BatchSimulation [options]</code>, with the options
+ * <ul>
+ * <li><code>--games N</code> games per grid point (default 10000)</li>
+ * <li><code>--policy forward|random</code> the frog (default forward)</li>
+ * <li><code>--seed S</code> the base seed (default 1)</li>
+ * <li><code>--max-ticks T</code> ticks before a game counts as timed out
+ * (default 18000, five minutes of play)</li>
+ * <li><code>--threads N</code> worker threads (default one per core)</li>
+ * <li><code>--set LANE=V1,V2,...</code> regeneration times to try for a lane,
+ * e.g. <code>--set FIRST_ROAD=150,175,200</code>; every combination of the
+ * values given is played. The lanes are FIRST_WATER to FIFTH_WATER and
+ * FIRST_ROAD to FOURTH_ROAD.</li>
+ * <li><code>--out FILE</code> where to write the CSV (default standard
+ * output)</li>
+ * <li><code>--scores FILE</code> a high-score table to add every game's
+ * final score to, under the policy's name</li>
+ * </ul>
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class BatchSimulation {
+
+	/**
+	 * Names of the lanes with a regeneration time, as used by --set.
+	 */
+	private static final String[] LANE_NAMES = { "FIRST_WATER",
+			"SECOND_WATER", "THIRD_WATER", "FOURTH_WATER", "FIFTH_WATER",
+			"FIRST_ROAD", "SECOND_ROAD", "THIRD_ROAD", "FOURTH_ROAD" };
+
+	/**
+	 * The lane index of each of LANE_NAMES.
+	 */
+	private static final int[] LANE_INDEXES = { World.LANE_WATER_FIRST,
+			World.LANE_WATER_SECOND, World.LANE_WATER_THIRD,
+			World.LANE_WATER_FOURTH, World.LANE_WATER_FIFTH,
+			World.LANE_ROAD_FIRST, World.LANE_ROAD_SECOND,
+			World.LANE_ROAD_THIRD, World.LANE_ROAD_FOURTH };
+
+	/**
+	 * Number of games a fork-join task plays itself instead of splitting.
+	 */
+	private static final int GAMES_PER_TASK = 16;
+
+	/**
+	 * Number of ticks per bucket of the time to win histogram (one second).
+	 */
+	private static final int WIN_BUCKET_TICKS = 60;
+
+	/**
+	 * The frog.
+	 */
+	private final Policy policy;
+
+	/**
+	 * The regeneration time of each lane.
+	 */
+	private final int[] regeneration;
+
+	/**
+	 * The base seed.
+	 */
+	private final long seed;
+
+	/**
+	 * Ticks before a game counts as timed out.
+	 */
+	private final int maxTicks;
+
+	/**
+	 * Where to put each game's final score, indexed by game, or null.
+	 */
+	private int[] finalScores;
+
+	/**
+	 * Creates a simulation of one set of regeneration times.
+	 * @param policy The frog. Shared by all the workers.
+	 * @param regeneration The regeneration time of each lane, indexed by lane.
+	 * @param seed The base seed.
+	 * @param maxTicks Ticks before a game counts as timed out.
+	 */
+	public BatchSimulation(Policy policy, int[] regeneration, long seed,
+			int maxTicks) {
+		this.policy = policy;
+		this.regeneration = regeneration.clone();
+		this.seed = seed;
+		this.maxTicks = maxTicks;
+	}
+
+	/**
+	 * Puts each game's final score in an array, at the game's number, so
+	 * they can be kept in a high-score table. Every task writes its own games.
+	 * @param finalScores The array, at least as long as the number of games,
+	 *            or null.
+	 */
+	public void setFinalScores(int[] finalScores) {
+		this.finalScores = finalScores;
+	}
+
+	/**
+	 * Plays games on a pool.
+	 * @param pool The pool.
+	 * @param games The number of games.
+	 * @return The totals of all the games.
+	 */
+	public Totals run(ForkJoinPool pool, int games) {
+		return pool.invoke(new GameTask(0, games));
+	}
+
+	/**
+	 * Plays one game to the end or until it times out and adds it to the
+	 * totals.
+	 * @param game The number of the game, which seeds it.
+	 * @param totals The totals.
+	 */
+	void play(long game, Totals totals) {
+		long gameSeed = mix(seed + game);
+		World world = new World(gameSeed, regeneration);
+		Random random = new Random(~gameSeed);
+		Input input = new Input();
+		int lastLane = -1;
+		int flies = 0;
+		int ticks = 0;
+		while (!world.isGameOver() && !world.isGameWon() && ticks < maxTicks) {
+			int action = policy.act(world, random);
+			for (int i = 0; i < input.buttons.length; i++) {
+				input.buttons[i] = i == action;
+			}
+			world.step(input);
+			ticks++;
+
+			int lane = world.getPlayer().getYPos() / World.LANE_HEIGHT;
+			if (lane != lastLane) {
+				totals.entries[lane]++;
+				lastLane = lane;
+			}
+			if (world.getFlysConsumed() != flies) {
+				// The frog is back at the start the tick it reaches a fly.
+				totals.entries[World.LANE_WIN]++;
+				flies = world.getFlysConsumed();
+			}
+		}
+
+		totals.games++;
+		totals.ticks += ticks;
+		int finalScore = world.calculateFinalScore();
+		totals.score += finalScore;
+		if (finalScores != null) {
+			finalScores[(int) game] = finalScore;
+		}
+		totals.flies += world.getFlysConsumed();
+		if (world.isGameWon()) {
+			totals.wins++;
+			totals.winTicks += ticks;
+			totals.winHistogram[Math.min(ticks / WIN_BUCKET_TICKS,
+					totals.winHistogram.length - 1)]++;
+		} else if (world.isGameOver()) {
+			totals.losses++;
+		}
+		for (int lane = 0; lane < World.NUMBER_OF_LANES; lane++) {
+			for (int cause = 0; cause < World.DEATH_CAUSES; cause++) {
+				totals.deaths[lane * World.DEATH_CAUSES + cause] += world
+						.getDeaths(lane, cause);
+			}
+		}
+	}
+
+	/**
+	 * Scrambles a number into a seed, so the seeds of neighbouring games
+	 * are unrelated (the SplitMix64 finalizer).
+	 * @param z The number.
+	 * @return The seed.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Plays a range of games, splitting it between workers while it is big.
+	 */
+	private class GameTask extends RecursiveTask<Totals> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The first game of the range.
+		 */
+		private final long from;
+
+		/**
+		 * One past the last game of the range.
+		 */
+		private final long to;
+
+		/**
+		 * Creates a task for a range of games.
+		 * @param from The first game.
+		 * @param to One past the last game.
+		 */
+		GameTask(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Plays the games, or splits them in half and plays both halves.
+		 * @return The totals of the games.
+		 */
+		@Override
+		protected Totals compute() {
+			if (to - from <= GAMES_PER_TASK) {
+				Totals totals = new Totals(maxTicks);
+				for (long game = from; game < to; game++) {
+					play(game, totals);
+				}
+				return totals;
+			}
+			long middle = (from + to) >>> 1;
+			GameTask left = new GameTask(from, middle);
+			left.fork();
+			Totals totals = new GameTask(middle, to).compute();
+			totals.add(left.join());
+			return totals;
+		}
+	}
+
+	/**
+	 * What happened in a number of games.
+	 */
+	public static class Totals {
+
+		/**
+		 * Number of games played.
+		 */
+		long games;
+
+		/**
+		 * Number of games won.
+		 */
+		long wins;
+
+		/**
+		 * Number of games lost.
+		 */
+		long losses;
+
+		/**
+		 * Ticks played in all games.
+		 */
+		long ticks;
+
+		/**
+		 * Ticks played in the games that were won.
+		 */
+		long winTicks;
+
+		/**
+		 * Sum of the final scores.
+		 */
+		long score;
+
+		/**
+		 * Flies consumed in all games.
+		 */
+		long flies;
+
+		/**
+		 * Games won, by how many seconds it took to win.
+		 */
+		final long[] winHistogram;
+
+		/**
+		 * How often the frog entered each lane.
+		 */
+		final long[] entries = new long[World.NUMBER_OF_LANES];
+
+		/**
+		 * Deaths, indexed by lane * World.DEATH_CAUSES + cause.
+		 */
+		final long[] deaths = new long[World.NUMBER_OF_LANES
+				* World.DEATH_CAUSES];
+
+		/**
+		 * Creates empty totals.
+		 * @param maxTicks The longest a game can last.
+		 */
+		Totals(int maxTicks) {
+			winHistogram = new long[maxTicks / WIN_BUCKET_TICKS + 1];
+		}
+
+		/**
+		 * Adds other totals to these.
+		 * @param other The other totals, of the same maximum game length.
+		 */
+		void add(Totals other) {
+			games += other.games;
+			wins += other.wins;
+			losses += other.losses;
+			ticks += other.ticks;
+			winTicks += other.winTicks;
+			score += other.score;
+			flies += other.flies;
+			for (int i = 0; i < winHistogram.length; i++) {
+				winHistogram[i] += other.winHistogram[i];
+			}
+			for (int i = 0; i < entries.length; i++) {
+				entries[i] += other.entries[i];
+			}
+			for (int i = 0; i < deaths.length; i++) {
+				deaths[i] += other.deaths[i];
+			}
+		}
+
+		/**
+		 * Returns the median time to win, to the second.
+		 * @return The median in ticks, or -1 if no game was won.
+		 */
+		long medianWinTicks() {
+			long seen = 0;
+			for (int i = 0; i < winHistogram.length; i++) {
+				seen += winHistogram[i];
+				if (seen * 2 >= wins && wins > 0) {
+					return (long) i * WIN_BUCKET_TICKS;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Returns the number of deaths in a lane of a cause.
+		 * @param lane The lane.
+		 * @param cause The cause, e.g. World.DEATH_VEHICLE.
+		 * @return The number of deaths.
+		 */
+		long deaths(int lane, int cause) {
+			return deaths[lane * World.DEATH_CAUSES + cause];
+		}
+
+		/**
+		 * Returns the number of games played.
+		 * @return The number of games.
+		 */
+		public long getGames() {
+			return games;
+		}
+
+		/**
+		 * Returns the number of games won.
+		 * @return The number of wins.
+		 */
+		public long getWins() {
+			return wins;
+		}
+
+		/**
+		 * Returns the number of ticks played.
+		 * @return The number of ticks.
+		 */
+		public long getTicks() {
+			return ticks;
+		}
+	}
+
+	/**
+	 * Writes the CSV header.
+	 * @param out Where to write it.
+	 */
+	static void writeHeader(PrintWriter out) {
+		out.print("policy,games");
+		for (int i = 0; i < LANE_NAMES.length; i++) {
+			out.print(',');
+			out.print(LANE_NAMES[i].toLowerCase(Locale.ROOT));
+		}
+		out.println(",win_rate,loss_rate,timeout_rate,mean_ticks_to_win,"
+				+ "median_ticks_to_win,mean_score,mean_flies,"
+				+ "lane,entries,deaths_vehicle,deaths_water,deaths_win_zone,"
+				+ "survival_rate");
+	}
+
+	/**
+	 * Writes one row per lane for the totals of a grid point. The columns
+	 * about the whole games are repeated on every row so the file can be
+	 * filtered and pivoted as it is.
+	 * @param out Where to write them.
+	 * @param policy The frog.
+	 * @param regeneration The regeneration time of each lane.
+	 * @param totals The totals.
+	 */
+	static void writeRows(PrintWriter out, Policy policy, int[] regeneration,
+			Totals totals) {
+		StringBuilder prefix = new StringBuilder();
+		prefix.append(policy).append(',').append(totals.games);
+		for (int i = 0; i < LANE_INDEXES.length; i++) {
+			prefix.append(',').append(regeneration[LANE_INDEXES[i]]);
+		}
+		double games = Math.max(totals.games, 1);
+		long timeouts = totals.games - totals.wins - totals.losses;
+		prefix.append(format(",%.4f,%.4f,%.4f,%s,%d,%.1f,%.3f", totals.wins
+				/ games, totals.losses / games, timeouts / games,
+				totals.wins == 0 ? "" : format("%.1f", (double) totals.winTicks
+						/ totals.wins), totals.medianWinTicks(),
+				totals.score / games, totals.flies / games));
+
+		for (int lane = 0; lane < World.NUMBER_OF_LANES; lane++) {
+			long died = 0;
+			for (int cause = 0; cause < World.DEATH_CAUSES; cause++) {
+				died += totals.deaths(lane, cause);
+			}
+			out.print(prefix);
+			out.println(format(",%d,%d,%d,%d,%d,%s", lane,
+					totals.entries[lane],
+					totals.deaths(lane, World.DEATH_VEHICLE),
+					totals.deaths(lane, World.DEATH_WATER),
+					totals.deaths(lane, World.DEATH_WIN_ZONE),
+					totals.entries[lane] == 0 ? "" : format("%.4f",
+							1 - (double) died / totals.entries[lane])));
+		}
+	}
+
+	/**
+	 * Formats numbers the same way in every locale.
+	 * @param format The format.
+	 * @param args The numbers.
+	 * @return The text.
+	 */
+	private static String format(String format, Object... args) {
+		return String.format(Locale.ROOT, format, args);
+	}
+
+	/**
+	 * Runs the simulation from the command line.
+	 * @param args The options, see the class comment.
+	 * @throws IOException If the report cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		System.setProperty("java.awt.headless", "true");
+		int games = 10000;
+		Policy policy = new ForwardPolicy();
+		long seed = 1;
+		int maxTicks = 18000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String outFile = null;
+		String scoresFile = null;
+		int[] defaults = World.defaultRegeneration();
+		int[][] values = new int[LANE_NAMES.length][];
+		for (int i = 0; i < LANE_NAMES.length; i++) {
+			values[i] = new int[] { defaults[LANE_INDEXES[i]] };
+		}
+
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i + 1 == args.length) {
+					usage("Missing value for " + args[i]);
+				}
+				String value = args[i + 1];
+				if (args[i].equals("--games")) {
+					games = Integer.parseInt(value);
+				} else if (args[i].equals("--policy")) {
+					if (value.equals("forward")) {
+						policy = new ForwardPolicy();
+					} else if (value.equals("random")) {
+						policy = new RandomPolicy();
+					} else {
+						usage("Unknown policy " + value);
+					}
+				} else if (args[i].equals("--seed")) {
+					seed = Long.parseLong(value);
+				} else if (args[i].equals("--max-ticks")) {
+					maxTicks = Integer.parseInt(value);
+				} else if (args[i].equals("--threads")) {
+					threads = Integer.parseInt(value);
+				} else if (args[i].equals("--out")) {
+					outFile = value;
+				} else if (args[i].equals("--scores")) {
+					scoresFile = value;
+				} else if (args[i].equals("--set")) {
+					int equals = value.indexOf('=');
+					int lane = equals < 0 ? -1 : laneNamed(value.substring(0,
+							equals));
+					if (lane < 0) {
+						usage("Expected LANE=V1,V2,... but got " + value);
+					}
+					String[] list = value.substring(equals + 1).split(",");
+					values[lane] = new int[list.length];
+					for (int j = 0; j < list.length; j++) {
+						values[lane][j] = Integer.parseInt(list[j].trim());
+					}
+				} else {
+					usage("Unknown option " + args[i]);
+				}
+			}
+		} catch (NumberFormatException e) {
+			usage("Not a number: " + e.getMessage());
+		}
+		if (games < 1 || maxTicks < 1 || threads < 1) {
+			usage("--games, --max-ticks and --threads must be positive");
+		}
+
+		List<int[]> grid = new ArrayList<int[]>();
+		addGridPoints(grid, values, defaults, 0);
+
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(
+				outFile == null ? System.out : new FileOutputStream(outFile),
+				Charset.forName("UTF-8")));
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		HighScores highScores = null;
+		int[] finalScores = null;
+		try {
+			if (scoresFile != null) {
+				highScores = new HighScores(Paths.get(scoresFile));
+				finalScores = new int[games];
+			}
+			writeHeader(out);
+			for (int i = 0; i < grid.size(); i++) {
+				int[] regeneration = grid.get(i);
+				long start = System.nanoTime();
+				BatchSimulation simulation = new BatchSimulation(policy,
+						regeneration, seed, maxTicks);
+				simulation.setFinalScores(finalScores);
+				Totals totals = simulation.run(pool, games);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				if (highScores != null) {
+					highScores.addAll(policy.toString(), finalScores);
+				}
+				writeRows(out, policy, regeneration, totals);
+				out.flush();
+				System.err.println(format(
+						"point %d of %d: %d games in %.1f s (%.0f games/s, "
+								+ "%.0f ticks/s), win rate %.3f", i + 1,
+						grid.size(), totals.games, seconds, totals.games
+								/ seconds, totals.ticks / seconds,
+						(double) totals.wins / totals.games));
+			}
+		} finally {
+			pool.shutdown();
+			out.close();
+			if (highScores != null) {
+				highScores.close();
+			}
+		}
+	}
+
+	/**
+	 * Adds every combination of lane values to the grid.
+	 * @param grid The grid.
+	 * @param values The values to try for each of LANE_NAMES.
+	 * @param point The regeneration times chosen so far.
+	 * @param name The index in LANE_NAMES to choose a value for next.
+	 */
+	private static void addGridPoints(List<int[]> grid, int[][] values,
+			int[] point, int name) {
+		if (name == LANE_NAMES.length) {
+			grid.add(point.clone());
+			return;
+		}
+		for (int i = 0; i < values[name].length; i++) {
+			point[LANE_INDEXES[name]] = values[name][i];
+			addGridPoints(grid, values, point, name + 1);
+		}
+	}
+
+	/**
+	 * Finds a lane by name.
+	 * @param name The name, e.g. FIRST_ROAD.
+	 * @return The index in LANE_NAMES, or -1.
+	 */
+	private static int laneNamed(String name) {
+		for (int i = 0; i < LANE_NAMES.length; i++) {
+			if (LANE_NAMES[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Prints the usage and exits.
+	 * @param problem What was wrong with the arguments.
+	 */
+	private static void usage(String problem) {
+		System.err.println(problem);
+		System.err.println("Usage: java game.BatchSimulation [--games N] "
+				+ "[--policy forward|random] [--seed S] [--max-ticks T] "
+				+ "[--threads N] [--set LANE=V1,V2,...]... [--out FILE] "
+				+ "[--scores FILE]");
+		System.exit(2);
+	}
+}
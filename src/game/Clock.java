@@ -0,0 +1,41 @@
+package game;
+
+/**
+ * A source of time for the GameLoop. The loop never reads the system time
+ * directly, so tests can drive it with a {@link ManualClock}.
+ * 
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public interface Clock {
+
+	/**
+	 * The clock backed by System.nanoTime() and Thread.sleep().
+	 */
+	Clock SYSTEM = new Clock() {
+
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		@Override
+		public void sleep(long nanos) throws InterruptedException {
+			Thread.sleep(nanos / 1000000L, (int) (nanos % 1000000L));
+		}
+	};
+
+	/**
+	 * Returns the current time. Only differences between values are
+	 * meaningful.
+	 * @return The time in nanoseconds.
+	 */
+	long nanoTime();
+
+	/**
+	 * Waits for the specified amount of time.
+	 * @param nanos The time to wait in nanoseconds.
+	 * @throws InterruptedException If the thread is interrupted.
+	 */
+	void sleep(long nanos) throws InterruptedException;
+}
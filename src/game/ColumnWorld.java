@@ -0,0 +1,778 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import events.GameEventAdapter;
+import events.GameEventListener;
+import metrics.FrameMetrics;
+import sprites.MovingObject;
+import sprites.Platform;
+import sprites.Player;
+import sprites.Vehicle;
+import util.StatefulRandom;
+
+/**
+ * An alternative to World that keeps vehicles, platforms and flies in
+ * EntityTables (primitive columns) instead of Sprite objects. It plays by
+ * exactly the same rules as a single player World: seeded alike, it spawns
+ * the same traffic, kills and scores the frog in the same places, tells its
+ * listener the same events and has the same checksum after every tick.
+ * Moving, collision checks and cleanup are plain loops over int and byte
+ * arrays, and an entity costs a few dozen bytes instead of a whole Sprite,
+ * which pays off once the entity counts get large.
+ * <p>
+ * Code that expects Sprites can use {@link #getVehicles()},
+ * {@link #getPlatforms()} and {@link #getFlys()}, which return EntityViews
+ * of the rows.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class ColumnWorld {
+
+	/**
+	 * Lanes that spawn platforms, in the order World spawns them.
+	 */
+	private static final int[] WATER_LANES = { World.LANE_WATER_FIFTH,
+			World.LANE_WATER_FOURTH, World.LANE_WATER_THIRD,
+			World.LANE_WATER_SECOND, World.LANE_WATER_FIRST };
+
+	/**
+	 * Length, direction and type of the platforms in each water lane.
+	 */
+	private static final int[][] WATER_LANE_PLATFORMS = {
+			{ 3, MovingObject.DIRECTION_LEFT, Platform.LOG },
+			{ 2, MovingObject.DIRECTION_RIGHT, Platform.TURTLE },
+			{ 3, MovingObject.DIRECTION_LEFT, Platform.LOG },
+			{ 3, MovingObject.DIRECTION_RIGHT, Platform.TURTLE },
+			{ 3, MovingObject.DIRECTION_LEFT, Platform.LILY } };
+
+	/**
+	 * Lanes that spawn vehicles, in the order World spawns them.
+	 */
+	private static final int[] ROAD_LANES = { World.LANE_ROAD_FIRST,
+			World.LANE_ROAD_SECOND, World.LANE_ROAD_THIRD,
+			World.LANE_ROAD_FOURTH };
+
+	/**
+	 * Length, direction and type of the vehicles in each road lane.
+	 */
+	private static final int[][] ROAD_LANE_VEHICLES = {
+			{ 1, MovingObject.DIRECTION_RIGHT, Vehicle.CAR },
+			{ 2, MovingObject.DIRECTION_LEFT, Vehicle.CAR },
+			{ 3, MovingObject.DIRECTION_RIGHT, Vehicle.CAR },
+			{ 2, MovingObject.DIRECTION_LEFT, Vehicle.TRUCK } };
+
+	/**
+	 * The y position of the frog when it spawns.
+	 */
+	private static final int START_Y = World.GAME_HEIGHT
+			- (2 * World.LANE_HEIGHT);
+
+	/**
+	 * Initial value of the state checksum.
+	 */
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	/**
+	 * Multiplier of the state checksum.
+	 */
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * Points that are earned when a fly is consumed.
+	 */
+	private static final int CONSUME_FLY_BONUS = 100;
+
+	/**
+	 * Points that are earned when entering a lane for the first time.
+	 */
+	private static final int NEW_LANE_POINTS = 25;
+
+	/**
+	 * The vehicles, in the order of World's list of vehicles.
+	 */
+	private final EntityTable vehicles = new EntityTable(EntityTable.VEHICLES, 32);
+
+	/**
+	 * The platforms, in the order of World's list of platforms.
+	 */
+	private final EntityTable platforms = new EntityTable(EntityTable.PLATFORMS, 32);
+
+	/**
+	 * The flies, type 1 when consumed.
+	 */
+	private final EntityTable flys = new EntityTable(EntityTable.FLIES, 4);
+
+	/**
+	 * Time counted up towards the next spawn, per lane.
+	 */
+	private final int[] laneTime = new int[World.NUMBER_OF_LANES];
+
+	/**
+	 * Regeneration time of each lane, 0 for lanes without traffic.
+	 */
+	private final int[] regeneration;
+
+	/**
+	 * Widest platform ever spawned per lane, so the platforms that can reach
+	 * the frog are the ones World's LaneIndex would check.
+	 */
+	private final int[] maxPlatformWidth = new int[World.NUMBER_OF_LANES];
+
+	/**
+	 * Rows of the platforms that may carry the frog, sorted by x. Reused
+	 * every tick.
+	 */
+	private int[] candidates = new int[8];
+
+	/**
+	 * Views of the vehicle rows.
+	 */
+	private final ArrayList<EntityView> vehicleViews = new ArrayList<EntityView>();
+
+	/**
+	 * Views of the platform rows.
+	 */
+	private final ArrayList<EntityView> platformViews = new ArrayList<EntityView>();
+
+	/**
+	 * Views of the fly rows.
+	 */
+	private final ArrayList<EntityView> flyViews = new ArrayList<EntityView>();
+
+	/**
+	 * The player Sprite.
+	 */
+	private final Player player;
+
+	/**
+	 * The number of lives the player starts with.
+	 */
+	private int startingLives = 3;
+
+	/**
+	 * Tracks how many fly's Froggr has consumed.
+	 */
+	private int flysConsumed;
+
+	/**
+	 * The player's score.
+	 */
+	private int score;
+
+	/**
+	 * The next YPos the player must reach to gain NEW_LANE_POINTS.
+	 */
+	private int nextPointsPosition = 600;
+
+	/**
+	 * Whether the player has lost the game.
+	 */
+	private boolean gameOver;
+
+	/**
+	 * Whether the player has won the game.
+	 */
+	private boolean gameWon;
+
+	/**
+	 * Deaths since the last restart, indexed by lane * DEATH_CAUSES + cause.
+	 */
+	private final int[] deaths = new int[World.NUMBER_OF_LANES
+			* World.DEATH_CAUSES];
+
+	/**
+	 * Where the world tells what happens in the game. Nobody by default.
+	 */
+	private GameEventListener events = GameEventAdapter.NONE;
+
+	/**
+	 * Where the world records its timings and counts.
+	 */
+	private FrameMetrics metrics = FrameMetrics.DISABLED;
+
+	/**
+	 * The seed the world was created or last reset with.
+	 */
+	private long seed;
+
+	/**
+	 * Source of all randomness in the world, drawn from exactly as World
+	 * draws from its own.
+	 */
+	private final StatefulRandom random;
+
+	/**
+	 * Sets up the lanes and win zones and spawns a new Player, with a random
+	 * seed.
+	 */
+	public ColumnWorld() {
+		this(new Random().nextLong());
+	}
+
+	/**
+	 * Sets up the lanes and win zones and spawns a new Player. It plays the
+	 * same game as a new World(seed) given the same input every tick.
+	 *
+	 * @param seed
+	 *            The seed of the world's Random.
+	 */
+	public ColumnWorld(long seed) {
+		this(seed, World.defaultRegeneration());
+	}
+
+	/**
+	 * Creates a world whose lanes spawn traffic at the given rates, like
+	 * World(seed, regeneration).
+	 *
+	 * @param seed
+	 *            The seed of the world's Random.
+	 * @param regeneration
+	 *            The regeneration time of each lane in ticks, indexed by lane.
+	 *            Only the water and road lanes are used.
+	 */
+	public ColumnWorld(long seed, int[] regeneration) {
+		if (regeneration.length != World.NUMBER_OF_LANES) {
+			throw new IllegalArgumentException("Expected "
+					+ World.NUMBER_OF_LANES + " regeneration times, got "
+					+ regeneration.length);
+		}
+		this.seed = seed;
+		this.regeneration = regeneration.clone();
+		random = new StatefulRandom(seed);
+		for (int i = 0; i < 4; i++) {
+			flys.add(i * 150, 0, 1, MovingObject.DIRECTION_LEFT, 0, 0);
+		}
+		player = new Player(250, START_Y, startingLives);
+		restart();
+	}
+
+	/**
+	 * Advances the world by one tick, like World.step.
+	 *
+	 * @param input
+	 *            The keys the player is pressing.
+	 */
+	public void step(Input input) {
+		long tickStart = metrics.begin();
+		long t = tickStart;
+		for (int i = 0; i < WATER_LANES.length; i++) {
+			spawn(platforms, WATER_LANES[i], WATER_LANE_PLATFORMS[i]);
+		}
+		t = metrics.end(FrameMetrics.ADD_PLATFORMS_TO_LANES, t);
+		for (int i = 0; i < ROAD_LANES.length; i++) {
+			spawn(vehicles, ROAD_LANES[i], ROAD_LANE_VEHICLES[i]);
+		}
+		t = metrics.end(FrameMetrics.ADD_VEHICLES_TO_LANES, t);
+		platforms.tick(World.GAME_WIDTH);
+		t = metrics.end(FrameMetrics.PROCESS_PLATFORMS, t);
+		processPlayer(input);
+		t = metrics.end(FrameMetrics.PROCESS_PLAYER, t);
+		vehicles.tick(World.GAME_WIDTH);
+		t = metrics.end(FrameMetrics.PROCESS_VEHICLES, t);
+		processGameplay();
+		t = metrics.end(FrameMetrics.PROCESS_GAMEPLAY, t);
+		int removed = vehicles.compact();
+		removed += platforms.compact();
+		metrics.count(FrameMetrics.REMOVALS, removed);
+		metrics.end(FrameMetrics.REMOVE_UNUSED_SPRITES_FROM_LISTS, t);
+		metrics.end(FrameMetrics.TICK, tickStart);
+
+		metrics.setGauge(FrameMetrics.VEHICLES, vehicles.size());
+		metrics.setGauge(FrameMetrics.PLATFORMS, platforms.size());
+		metrics.setGauge(FrameMetrics.FLIES, flys.size());
+	}
+
+	/**
+	 * Counts a lane's spawn timer up and adds an entity when it expires.
+	 * Every vehicle draws its color from the Random, as in World.
+	 *
+	 * @param table
+	 *            The table to add to.
+	 * @param lane
+	 *            The lane index.
+	 * @param spec
+	 *            Length, direction and type of the entity.
+	 */
+	private void spawn(EntityTable table, int lane, int[] spec) {
+		laneTime[lane]++;
+		if (laneTime[lane] > regeneration[lane]) {
+			laneTime[lane] = 0;
+			int length = spec[0];
+			int direction = spec[1];
+			int startPosition = (direction == MovingObject.DIRECTION_LEFT) ? World.GAME_WIDTH
+					: 0 - (length * EntityTable.PIXEL_UNIT_SIZE);
+			int variant = table == vehicles ? random.nextInt(2) : 0;
+			table.add(startPosition, lane * World.LANE_HEIGHT, length,
+					direction, spec[2], variant);
+			if (table == platforms) {
+				maxPlatformWidth[lane] = Math.max(maxPlatformWidth[lane],
+						length * EntityTable.PIXEL_UNIT_SIZE);
+			}
+			metrics.count(FrameMetrics.SPAWNS, 1);
+		}
+	}
+
+	/**
+	 * Process all of the player's activity in the game, with the same rules
+	 * as World.
+	 *
+	 * @param input
+	 *            The keys the player is pressing.
+	 */
+	private void processPlayer(Input input) {
+		if (!gameOver && !gameWon) {
+			int xPos = player.getXPos();
+			int yPos = player.getYPos();
+			player.tick(input);
+			if (player.getXPos() != xPos || player.getYPos() != yPos) {
+				events.playerMoved(0, player.getXPos(), player.getYPos()
+						/ World.LANE_HEIGHT);
+			}
+		}
+
+		if (player.getYPos() < nextPointsPosition) {
+			score = score + NEW_LANE_POINTS;
+			nextPointsPosition = nextPointsPosition - World.LANE_HEIGHT;
+			events.laneEntered(0, player.getYPos() / World.LANE_HEIGHT);
+		}
+
+		int px = player.getXPos();
+		int py = player.getYPos();
+		int pw = player.calculatePixelWidth();
+		int lane = py / World.LANE_HEIGHT;
+		if (py < 0 || lane >= World.NUMBER_OF_LANES) {
+			return;
+		}
+
+		// Vehicles, see Vehicle.hasCollidedWith
+		int buffer = 10;
+		int[] x = vehicles.x;
+		int[] y = vehicles.y;
+		int[] length = vehicles.length;
+		for (int i = 0, n = vehicles.size(); i < n; i++) {
+			if (y[i] != py) {
+				continue;
+			}
+			int xMin = x[i];
+			int xMax = xMin + length[i] * EntityTable.PIXEL_UNIT_SIZE;
+			if ((xMax > px + buffer && xMin < px)
+					|| (xMax > px + pw && xMin < px + pw - buffer)) {
+				killPlayer(lane, World.DEATH_VEHICLE);
+			}
+		}
+
+		if (py >= (World.LANE_WATER_FIRST + 1) * World.LANE_HEIGHT) {
+			return;
+		}
+
+		// Platforms, see Platform.hasCollidedWith and Player.sail. Sailing
+		// moves the frog, so they are checked from left to right like
+		// World's LaneIndex does.
+		int count = findPlatforms(py, px - 1 - maxPlatformWidth[lane], px + pw
+				+ 1);
+		int current = -1;
+		x = platforms.x;
+		length = platforms.length;
+		byte[] direction = platforms.direction;
+		for (int c = 0; c < count; c++) {
+			int i = candidates[c];
+			int xMin = x[i];
+			int width = length[i] * EntityTable.PIXEL_UNIT_SIZE;
+			px = player.getXPos();
+			if (xMin + width > px && xMin < px + pw) {
+				boolean alive = player.isAlive();
+				int offScreen;
+				if (direction[i] == MovingObject.DIRECTION_LEFT) {
+					player.setXPos(px - 1);
+					offScreen = -width;
+				} else {
+					player.setXPos(px + 1);
+					offScreen = World.GAME_WIDTH;
+				}
+				if (player.getXPos() == offScreen) {
+					player.kill();
+				}
+				if (alive && !player.isAlive()) {
+					// Carried off the screen.
+					deaths[lane * World.DEATH_CAUSES + World.DEATH_WATER]++;
+					events.playerKilled(0, lane, World.DEATH_WATER);
+				}
+				current = i;
+			}
+		}
+
+		if (current != -1) {
+			// See Player.isOnPlatform
+			int half = 25;
+			px = player.getXPos();
+			if (px < x[current] - half
+					|| px + pw > x[current] + platforms.pixelWidth(current)
+							+ half) {
+				killPlayer(lane, World.DEATH_WATER);
+			}
+		} else if (lane == World.LANE_WIN) {
+			// Flies, see Fly.hasCollidedWith
+			int fly = -1;
+			for (int i = 0, n = flys.size(); i < n && fly < 0; i++) {
+				if (Math.abs(flys.x[i] - player.getXPos()) <= 15
+						&& flys.type[i] == 0) {
+					fly = i;
+				}
+			}
+			if (fly >= 0) {
+				flys.type[fly] = 1;
+				score = score + CONSUME_FLY_BONUS;
+				nextPointsPosition = 600;
+				flysConsumed++;
+				events.flyConsumed(0, fly);
+				player.reset(250, START_Y, player.getLives());
+			} else {
+				killPlayer(lane, World.DEATH_WIN_ZONE);
+			}
+		} else {
+			killPlayer(lane, World.DEATH_WATER);
+		}
+	}
+
+	/**
+	 * Collects the rows of the platforms in a lane whose x lies strictly
+	 * between two bounds into candidates, sorted by x.
+	 *
+	 * @param y
+	 *            The y coordinate of the lane.
+	 * @param after
+	 *            The lower bound, exclusive.
+	 * @param before
+	 *            The upper bound, exclusive.
+	 * @return The number of rows collected.
+	 */
+	private int findPlatforms(int y, int after, int before) {
+		int[] x = platforms.x;
+		int[] ys = platforms.y;
+		int count = 0;
+		for (int i = 0, n = platforms.size(); i < n; i++) {
+			if (ys[i] != y || x[i] <= after || x[i] >= before) {
+				continue;
+			}
+			if (count == candidates.length) {
+				candidates = Arrays.copyOf(candidates, count * 2);
+			}
+			int j = count++;
+			while (j > 0 && x[candidates[j - 1]] > x[i]) {
+				candidates[j] = candidates[j - 1];
+				j--;
+			}
+			candidates[j] = i;
+		}
+		return count;
+	}
+
+	/**
+	 * Kills the player, if alive, and records where and how he died.
+	 *
+	 * @param lane
+	 *            The lane the player died in.
+	 * @param cause
+	 *            The cause of death, World.DEATH_VEHICLE and so on.
+	 */
+	private void killPlayer(int lane, int cause) {
+		if (player.isAlive()) {
+			player.kill();
+			deaths[lane * World.DEATH_CAUSES + cause]++;
+			events.playerKilled(0, lane, cause);
+		}
+	}
+
+	/**
+	 * Respawns the player and checks whether the game is won or lost.
+	 */
+	private void processGameplay() {
+		if (!player.isAlive() && player.getLives() > 0) {
+			player.reset(250, START_Y, player.getLives());
+		}
+		if (player.getLives() == 0 && !gameOver) {
+			gameOver = true;
+			events.gameOver();
+		}
+		if (flysConsumed == 4 && !gameWon) {
+			gameWon = true;
+			events.gameWon();
+		}
+	}
+
+	/**
+	 * Resets the score and game state, clears all entities and spawns a new
+	 * Player.
+	 */
+	public void restart() {
+		gameOver = false;
+		gameWon = false;
+		score = 0;
+		flysConsumed = 0;
+		nextPointsPosition = 600;
+		Arrays.fill(deaths, 0);
+		vehicles.clear();
+		platforms.clear();
+		Arrays.fill(laneTime, 0);
+		for (int i = 0; i < flys.size(); i++) {
+			flys.type[i] = 0;
+		}
+		player.reset(250, START_Y, startingLives);
+	}
+
+	/**
+	 * Restarts the world with a new seed. It then plays the same game as a
+	 * new ColumnWorld(seed) with the same regeneration times.
+	 *
+	 * @param seed
+	 *            The new seed of the world's Random.
+	 */
+	public void reset(long seed) {
+		this.seed = seed;
+		random.setSeed(seed);
+		restart();
+	}
+
+	/**
+	 * Computes the same hash of the game state as World.checksum, so the
+	 * two can be compared tick by tick.
+	 *
+	 * @return The checksum.
+	 */
+	public long checksum() {
+		long h = FNV_OFFSET;
+		h = mix(h, player.getXPos());
+		h = mix(h, player.getYPos());
+		h = mix(h, player.getLives());
+		h = mix(h, player.isAlive() ? 1 : 0);
+		h = mix(h, score);
+		h = mix(h, flysConsumed);
+		h = mix(h, nextPointsPosition);
+		h = mix(h, (gameOver ? 2 : 0) | (gameWon ? 1 : 0));
+		for (int i = 0; i < laneTime.length; i++) {
+			h = mix(h, laneTime[i]);
+		}
+		for (int i = 0; i < vehicles.size(); i++) {
+			h = mix(h, vehicles.x[i]);
+			h = mix(h, vehicles.y[i]);
+			h = mix(h, vehicles.length[i]);
+			h = mix(h, vehicles.direction[i]);
+			h = mix(h, vehicles.type[i]);
+			h = mix(h, vehicles.variant[i]);
+			h = mix(h, vehicles.removed[i]);
+		}
+		for (int i = 0; i < platforms.size(); i++) {
+			h = mix(h, platforms.x[i]);
+			h = mix(h, platforms.y[i]);
+			h = mix(h, platforms.length[i]);
+			h = mix(h, platforms.direction[i]);
+			h = mix(h, platforms.type[i]);
+			h = mix(h, platforms.removed[i]);
+		}
+		for (int i = 0; i < flys.size(); i++) {
+			h = mix(h, flys.type[i]);
+		}
+		return h;
+	}
+
+	/**
+	 * Adds a value to an FNV-1a style hash, like World does.
+	 *
+	 * @param h
+	 *            The hash so far.
+	 * @param value
+	 *            The value.
+	 * @return The new hash.
+	 */
+	private static long mix(long h, int value) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			h ^= (value >>> shift) & 0xff;
+			h *= FNV_PRIME;
+		}
+		return h;
+	}
+
+	/**
+	 * Makes the view list hold exactly one view per row of the table.
+	 *
+	 * @param table
+	 *            The table.
+	 * @param views
+	 *            The views of its rows.
+	 * @return The views.
+	 */
+	private static List<EntityView> syncViews(EntityTable table,
+			ArrayList<EntityView> views) {
+		while (views.size() > table.size()) {
+			views.remove(views.size() - 1);
+		}
+		while (views.size() < table.size()) {
+			views.add(new EntityView(table, views.size()));
+		}
+		return views;
+	}
+
+	/**
+	 * Calculates the final score when the game is over (win or lose).
+	 *
+	 * @return The player's final score.
+	 */
+	public int calculateFinalScore() {
+		if (player.getLives() > 0) {
+			return score * player.getLives();
+		} else {
+			return score;
+		}
+	}
+
+	/**
+	 * Sets where the world tells what happens in the game, like
+	 * World.setEventListener.
+	 *
+	 * @param events
+	 *            The listener, GameEventAdapter.NONE for nobody.
+	 */
+	public void setEventListener(GameEventListener events) {
+		this.events = events;
+	}
+
+	/**
+	 * Sets the registry the world records its phase timings, entity counts,
+	 * spawns and removals in.
+	 *
+	 * @param metrics
+	 *            The metrics, FrameMetrics.DISABLED to record nothing.
+	 */
+	public void setMetrics(FrameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Returns the seed the world was created or last reset with.
+	 *
+	 * @return The seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the vehicle columns.
+	 *
+	 * @return The vehicle table.
+	 */
+	public EntityTable getVehicleTable() {
+		return vehicles;
+	}
+
+	/**
+	 * Returns the platform columns.
+	 *
+	 * @return The platform table.
+	 */
+	public EntityTable getPlatformTable() {
+		return platforms;
+	}
+
+	/**
+	 * Returns the fly columns.
+	 *
+	 * @return The fly table.
+	 */
+	public EntityTable getFlyTable() {
+		return flys;
+	}
+
+	/**
+	 * Returns Sprite views of the vehicles. The list is brought up to date
+	 * by every call, not by step.
+	 *
+	 * @return The vehicle views.
+	 */
+	public List<EntityView> getVehicles() {
+		return syncViews(vehicles, vehicleViews);
+	}
+
+	/**
+	 * Returns Sprite views of the platforms. The list is brought up to date
+	 * by every call, not by step.
+	 *
+	 * @return The platform views.
+	 */
+	public List<EntityView> getPlatforms() {
+		return syncViews(platforms, platformViews);
+	}
+
+	/**
+	 * Returns Sprite views of the flies.
+	 *
+	 * @return The fly views.
+	 */
+	public List<EntityView> getFlys() {
+		return syncViews(flys, flyViews);
+	}
+
+	/**
+	 * Returns the player Sprite.
+	 *
+	 * @return The player.
+	 */
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Returns the current score.
+	 *
+	 * @return The score.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Returns how many flies have been consumed.
+	 *
+	 * @return The number of flies consumed.
+	 */
+	public int getFlysConsumed() {
+		return flysConsumed;
+	}
+
+	/**
+	 * Returns how many times the player died in a lane of a cause since the
+	 * last restart.
+	 *
+	 * @param lane
+	 *            The lane.
+	 * @param cause
+	 *            The cause of death, World.DEATH_VEHICLE and so on.
+	 * @return The number of deaths.
+	 */
+	public int getDeaths(int lane, int cause) {
+		return deaths[lane * World.DEATH_CAUSES + cause];
+	}
+
+	/**
+	 * Returns if the game is over and the player has lost the game.
+	 *
+	 * @return true if player has lost the game.
+	 */
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	/**
+	 * Returns whether the player has won the game.
+	 *
+	 * @return true if the player has won the game.
+	 */
+	public boolean isGameWon() {
+		return gameWon;
+	}
+}
@@ -0,0 +1,802 @@
+package game;
+
+import java.util.Random;
+
+import events.GameEventAdapter;
+import events.GameEventListener;
+import sprites.Lane;
+import sprites.MovingObject;
+import sprites.Platform;
+import sprites.Player;
+import sprites.Vehicle;
+import util.ImageCache;
+import util.StatefulRandom;
+
+/**
+ * The world of the endless mode: there is no win lane, and the lanes go on
+ * for as long as the frog keeps hopping forward. The camera scrolls up as
+ * the frog advances, new lanes are generated from the seed just above the
+ * screen, and lanes that fall below it are recycled. The game ends when the
+ * frog is out of lives; the score is for the lanes reached.
+ * <p>
+ * The lanes are kept in a ring of RING_LANES slots, each with room for
+ * MAX_LANE_OBJECTS vehicles or platforms, so the memory and the work per
+ * tick are the same however far the frog gets. Lanes are numbered by rows,
+ * from 0 where the frog starts, upwards. The vehicles, platforms and the
+ * frog keep a y coordinate of 0, relative to their lane, and only the row
+ * of the lane says where on the screen they are, see getScreenY. Scrolling
+ * changes the camera and nothing else.
+ * <p>
+ * Lanes come in bands of road or water, one to five lanes deep, with a
+ * grass lane between bands. The frog comes back to life on the last grass
+ * lane it stood on, which the camera keeps on the screen. Traffic gets
+ * denser and the platforms sparser as the rows go up.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class EndlessWorld {
+
+	/**
+	 * Kind of a lane with nothing in it.
+	 */
+	public static final int KIND_GRASS = 0;
+
+	/**
+	 * Kind of a lane with vehicles.
+	 */
+	public static final int KIND_ROAD = 1;
+
+	/**
+	 * Kind of a lane with platforms.
+	 */
+	public static final int KIND_WATER = 2;
+
+	/**
+	 * Number of lane slots in the ring, a power of two. More than the lanes
+	 * on the screen, generated above it and kept below it.
+	 */
+	public static final int RING_LANES = 32;
+
+	/**
+	 * Most vehicles or platforms in one lane. The shortest regeneration time
+	 * is chosen so a lane never needs more.
+	 */
+	public static final int MAX_LANE_OBJECTS = 8;
+
+	/**
+	 * Number of lanes on the screen, above the lives.
+	 */
+	public static final int VISIBLE_LANES = World.NUMBER_OF_LANES;
+
+	/**
+	 * Lanes generated above the screen, so they are full of traffic by the
+	 * time they scroll into view.
+	 */
+	private static final int LANES_AHEAD = 2;
+
+	/**
+	 * The highest lane on the screen the frog can be on before the camera
+	 * scrolls, counted from the bottom.
+	 */
+	private static final int FROG_SCREEN_LANE = 4;
+
+	/**
+	 * Pixels the camera scrolls per tick.
+	 */
+	private static final int SCROLL_SPEED = 5;
+
+	/**
+	 * Most pixels the camera lags behind where it should be; further behind
+	 * it jumps.
+	 */
+	private static final int MAX_SCROLL_LAG = 2 * World.LANE_HEIGHT;
+
+	/**
+	 * Deepest band of road or water lanes.
+	 */
+	private static final int MAX_BAND = 5;
+
+	/**
+	 * Rows over which the lanes get from easiest to hardest.
+	 */
+	private static final int DIFFICULTY_ROWS = 300;
+
+	/**
+	 * Narrowest gap between two vehicles, in pixels, at the hardest. Room
+	 * for the frog and a little to spare.
+	 */
+	private static final int MIN_ROAD_GAP = 90;
+
+	/**
+	 * Points that are earned when entering a lane for the first time.
+	 */
+	private static final int NEW_LANE_POINTS = 25;
+
+	/**
+	 * Where the frog starts and comes back to life.
+	 */
+	private static final int START_X = 250;
+
+	/**
+	 * Image of a grass lane.
+	 */
+	private static final ImageCache.Key GRASS_IMAGE = ImageCache
+			.key("res/sprites/lane/grass.png");
+
+	/**
+	 * Image of a water lane.
+	 */
+	private static final ImageCache.Key WATER_IMAGE = ImageCache
+			.key("res/sprites/lane/water.gif");
+
+	/**
+	 * Image of the bottom lane of a road.
+	 */
+	private static final ImageCache.Key ROAD_BOTTOM_IMAGE = ImageCache
+			.key("res/sprites/lane/road-bottom.png");
+
+	/**
+	 * Image of a road lane between two others.
+	 */
+	private static final ImageCache.Key ROAD_MIDDLE_IMAGE = ImageCache
+			.key("res/sprites/lane/road-middle.png");
+
+	/**
+	 * Image of the top lane of a road.
+	 */
+	private static final ImageCache.Key ROAD_TOP_IMAGE = ImageCache
+			.key("res/sprites/lane/road-top.png");
+
+	/**
+	 * The lane slots, indexed by row modulo RING_LANES.
+	 */
+	private final Slot[] ring = new Slot[RING_LANES];
+
+	/**
+	 * The player Sprite, with a y coordinate of 0 in its lane.
+	 */
+	private final Player player = new Player(START_X, 0, 3);
+
+	/**
+	 * The number of lives the player starts with.
+	 */
+	private int startingLives = 3;
+
+	/**
+	 * The row the player is on.
+	 */
+	private int playerRow;
+
+	/**
+	 * The highest row the player has reached.
+	 */
+	private int furthestRow;
+
+	/**
+	 * The last grass row the player stood on, where he comes back to life.
+	 */
+	private int checkpointRow;
+
+	/**
+	 * The lowest row the camera shows once it has caught up, which the
+	 * player cannot hop below.
+	 */
+	private int bottomRow;
+
+	/**
+	 * How far the camera has scrolled, in pixels.
+	 */
+	private int cameraY;
+
+	/**
+	 * How far the camera had scrolled before the last tick.
+	 */
+	private int previousCameraY;
+
+	/**
+	 * The next row to generate.
+	 */
+	private int nextRow;
+
+	/**
+	 * Kind of the band being generated.
+	 */
+	private int bandKind;
+
+	/**
+	 * Lanes of the band generated so far.
+	 */
+	private int bandLane;
+
+	/**
+	 * Depth of the band being generated.
+	 */
+	private int bandDepth;
+
+	/**
+	 * The player's score.
+	 */
+	private int score;
+
+	/**
+	 * Boolean for whether the player has lost the game or not.
+	 */
+	private boolean gameOver;
+
+	/**
+	 * Where the world tells what happens in the game. Lanes are given by
+	 * row.
+	 */
+	private GameEventListener events = GameEventAdapter.NONE;
+
+	/**
+	 * The seed the world was created or last reset with.
+	 */
+	private long seed;
+
+	/**
+	 * Source of all randomness in the world, so a seed reproduces a game.
+	 */
+	private final StatefulRandom random;
+
+	/**
+	 * Creates an endless world with a random seed.
+	 */
+	public EndlessWorld() {
+		this(new Random().nextLong());
+	}
+
+	/**
+	 * Creates an endless world. Two worlds with the same seed given the same
+	 * input every tick play exactly the same game.
+	 *
+	 * @param seed
+	 *            The seed of the world's Random.
+	 */
+	public EndlessWorld(long seed) {
+		this.seed = seed;
+		random = new StatefulRandom(seed);
+		for (int i = 0; i < RING_LANES; i++) {
+			ring[i] = new Slot();
+		}
+		restart();
+	}
+
+	/**
+	 * Starts a new game. The lanes go on from the world's Random, so the
+	 * new game has new lanes; reset starts from a seed again.
+	 */
+	public void restart() {
+		gameOver = false;
+		score = 0;
+		playerRow = 0;
+		furthestRow = 0;
+		checkpointRow = 0;
+		bottomRow = 0;
+		cameraY = 0;
+		previousCameraY = 0;
+		nextRow = 0;
+		bandKind = KIND_GRASS;
+		bandLane = 0;
+		bandDepth = 2;
+		for (int i = 0; i < RING_LANES; i++) {
+			ring[i].row = -1;
+			ring[i].count = 0;
+		}
+		generateLanes();
+		player.reset(START_X, 0, startingLives);
+	}
+
+	/**
+	 * Restarts the world with a new seed.
+	 *
+	 * @param seed
+	 *            The new seed of the world's Random.
+	 */
+	public void reset(long seed) {
+		this.seed = seed;
+		random.setSeed(seed);
+		restart();
+	}
+
+	/**
+	 * Advances the world by one tick.
+	 *
+	 * @param input
+	 *            The keys the player is pressing.
+	 */
+	public void step(Input input) {
+		int first = getFirstRow();
+		for (int row = first; row < nextRow; row++) {
+			spawn(slot(row));
+		}
+		for (int row = first; row < nextRow; row++) {
+			if (slot(row).kind == KIND_WATER) {
+				move(slot(row), input);
+			}
+		}
+		processPlayer(input);
+		for (int row = first; row < nextRow; row++) {
+			if (slot(row).kind == KIND_ROAD) {
+				move(slot(row), input);
+			}
+		}
+		if (!player.isAlive() && player.getLives() > 0) {
+			playerRow = checkpointRow;
+			player.reset(START_X, 0, player.getLives());
+		}
+		if (player.getLives() == 0 && !gameOver) {
+			gameOver = true;
+			events.gameOver();
+		}
+		scroll();
+	}
+
+	/**
+	 * Moves the player and checks him against the traffic of his lane.
+	 *
+	 * @param input
+	 *            The keys the player is pressing.
+	 */
+	private void processPlayer(Input input) {
+		if (!gameOver) {
+			int xPos = player.getXPos();
+			int lanes = player.hop(input, playerRow > bottomRow);
+			playerRow += lanes;
+			if (lanes != 0 || player.getXPos() != xPos) {
+				events.playerMoved(0, player.getXPos(), playerRow);
+			}
+		}
+		if (playerRow > furthestRow) {
+			score += (playerRow - furthestRow) * NEW_LANE_POINTS;
+			furthestRow = playerRow;
+			events.laneEntered(0, playerRow);
+		}
+
+		Slot lane = slot(playerRow);
+		if (lane.kind == KIND_GRASS) {
+			checkpointRow = playerRow;
+		} else if (lane.kind == KIND_ROAD) {
+			for (int i = 0; i < lane.count; i++) {
+				if (lane.vehicles[i].hasCollidedWith(player)) {
+					killPlayer(World.DEATH_VEHICLE);
+				}
+			}
+		} else {
+			Platform currentPlatform = null;
+			for (int i = 0; i < lane.count; i++) {
+				Platform platform = lane.platforms[i];
+				if (platform.hasCollidedWith(player)) {
+					boolean alive = player.isAlive();
+					player.sail(input, platform);
+					if (alive && !player.isAlive()) {
+						// Carried off the screen.
+						events.playerKilled(0, playerRow, World.DEATH_WATER);
+					}
+					currentPlatform = platform;
+				}
+			}
+			if (currentPlatform == null
+					|| !player.isOnPlatform(currentPlatform)) {
+				killPlayer(World.DEATH_WATER);
+			}
+		}
+	}
+
+	/**
+	 * Kills the player, if alive.
+	 *
+	 * @param cause
+	 *            The cause of death, World.DEATH_VEHICLE or DEATH_WATER.
+	 */
+	private void killPlayer(int cause) {
+		if (player.isAlive()) {
+			player.kill();
+			events.playerKilled(0, playerRow, cause);
+		}
+	}
+
+	/**
+	 * Scrolls the camera towards the lowest row it should show, and
+	 * generates the lanes that come into reach. The camera follows the
+	 * player up, but keeps his checkpoint on the screen.
+	 */
+	private void scroll() {
+		int lowest = Math.min(playerRow - FROG_SCREEN_LANE, checkpointRow);
+		if (lowest > bottomRow) {
+			bottomRow = lowest;
+			generateLanes();
+		}
+		previousCameraY = cameraY;
+		int target = bottomRow * World.LANE_HEIGHT;
+		if (target - cameraY > MAX_SCROLL_LAG) {
+			cameraY = target - MAX_SCROLL_LAG;
+		}
+		cameraY = Math.min(target, cameraY + SCROLL_SPEED);
+	}
+
+	/**
+	 * Generates lanes up to LANES_AHEAD above the top of the screen,
+	 * recycling the slots of the lanes that have fallen out of reach.
+	 */
+	private void generateLanes() {
+		int last = bottomRow + VISIBLE_LANES + LANES_AHEAD;
+		while (nextRow < last) {
+			generateLane(nextRow++);
+		}
+	}
+
+	/**
+	 * Generates a lane in the slot of its row.
+	 *
+	 * @param row
+	 *            The row.
+	 */
+	private void generateLane(int row) {
+		if (bandLane == bandDepth) {
+			if (bandKind == KIND_GRASS) {
+				bandKind = random.nextBoolean() ? KIND_ROAD : KIND_WATER;
+				bandDepth = 1 + random.nextInt(Math.min(MAX_BAND,
+						2 + row * MAX_BAND / DIFFICULTY_ROWS));
+			} else {
+				bandKind = KIND_GRASS;
+				bandDepth = 1;
+			}
+			bandLane = 0;
+		}
+		Slot lane = slot(row);
+		lane.row = row;
+		lane.kind = bandKind;
+		lane.count = 0;
+		lane.lane.setTime(0);
+		// Harder as the rows go up, from 0 to 1.
+		float difficulty = Math.min(1f, (float) row / DIFFICULTY_ROWS);
+		if (bandKind == KIND_GRASS) {
+			lane.lane.setImage(GRASS_IMAGE);
+			lane.lane.setRegeneration(0);
+		} else if (bandKind == KIND_ROAD) {
+			lane.lane.setImage(bandDepth == 1 ? ROAD_MIDDLE_IMAGE
+					: bandLane == 0 ? ROAD_BOTTOM_IMAGE
+							: bandLane == bandDepth - 1 ? ROAD_TOP_IMAGE
+									: ROAD_MIDDLE_IMAGE);
+			if (random.nextInt(4) == 0) {
+				lane.type = Vehicle.TRUCK;
+				lane.length = 2;
+			} else {
+				lane.type = Vehicle.CAR;
+				lane.length = 1 + random.nextInt(3);
+			}
+			// Vehicles move a pixel a tick, so the time is the gap plus a
+			// vehicle.
+			int widest = 200 - (int) (60 * difficulty);
+			int narrowest = Math.max(MIN_ROAD_GAP,
+					125 - (int) (35 * difficulty));
+			lane.lane.setRegeneration(lane.length * World.LANE_HEIGHT
+					+ narrowest + random.nextInt(widest - narrowest + 1));
+		} else {
+			lane.lane.setImage(WATER_IMAGE);
+			int fastest = 200 + (int) (50 * difficulty);
+			lane.lane.setRegeneration(fastest + random.nextInt(101));
+			int type = random.nextInt(3);
+			lane.type = type == 0 ? Platform.LOG : type == 1 ? Platform.LILY
+					: Platform.TURTLE;
+			lane.length = lane.type == Platform.TURTLE && random.nextBoolean() ? 2
+					: 3;
+		}
+		lane.direction = (bandLane + row / 7) % 2 == 0 ? MovingObject.DIRECTION_LEFT
+				: MovingObject.DIRECTION_RIGHT;
+		bandLane++;
+		if (lane.kind != KIND_GRASS) {
+			fill(lane);
+		}
+	}
+
+	/**
+	 * Puts traffic in a new lane, spaced as if it had been spawning for a
+	 * while, so it does not start empty.
+	 *
+	 * @param lane
+	 *            The lane.
+	 */
+	private void fill(Slot lane) {
+		int spacing = lane.lane.getRegeneration() + 1;
+		int since = random.nextInt(spacing);
+		lane.lane.setTime(since);
+		int width = lane.length * World.LANE_HEIGHT;
+		for (int ago = since; ago < World.GAME_WIDTH + width
+				&& lane.count < MAX_LANE_OBJECTS; ago += spacing) {
+			add(lane, lane.direction == MovingObject.DIRECTION_LEFT ? World.GAME_WIDTH
+					- ago
+					: ago - width);
+		}
+	}
+
+	/**
+	 * Counts down a lane's regeneration time and spawns a vehicle or
+	 * platform when it is up.
+	 *
+	 * @param lane
+	 *            The lane.
+	 */
+	private void spawn(Slot lane) {
+		if (lane.kind == KIND_GRASS) {
+			return;
+		}
+		lane.lane.setTime(lane.lane.getTime() + 1);
+		if (lane.lane.getTime() > lane.lane.getRegeneration()) {
+			lane.lane.setTime(0);
+			if (lane.count < MAX_LANE_OBJECTS) {
+				add(lane, lane.direction == MovingObject.DIRECTION_LEFT ? World.GAME_WIDTH
+						: 0 - (lane.length * 50));
+			}
+		}
+	}
+
+	/**
+	 * Adds a vehicle or platform to a lane, reusing the slot's sprite.
+	 *
+	 * @param lane
+	 *            The lane, with room for it.
+	 * @param x
+	 *            The x coordinate.
+	 */
+	private void add(Slot lane, int x) {
+		int i = lane.count++;
+		if (lane.kind == KIND_ROAD) {
+			int color = random.nextInt(2);
+			if (lane.vehicles[i] == null) {
+				lane.vehicles[i] = new Vehicle(x, 0, lane.length,
+						lane.direction);
+				lane.vehicles[i].setVehicleType(lane.type, color);
+			} else {
+				lane.vehicles[i].reset(x, 0, lane.length, lane.direction,
+						lane.type, color);
+			}
+		} else {
+			if (lane.platforms[i] == null) {
+				lane.platforms[i] = new Platform(x, 0, lane.length,
+						lane.direction);
+				lane.platforms[i].setPlatformType(lane.type);
+			} else {
+				lane.platforms[i].reset(x, 0, lane.length, lane.direction,
+						lane.type);
+			}
+		}
+	}
+
+	/**
+	 * Moves a lane's vehicles or platforms one step and drops the ones that
+	 * left the screen, keeping their sprites for reuse.
+	 *
+	 * @param lane
+	 *            The lane.
+	 * @param input
+	 *            The keys the player is pressing.
+	 */
+	private void move(Slot lane, Input input) {
+		MovingObject[] objects = lane.kind == KIND_ROAD ? lane.vehicles
+				: lane.platforms;
+		int i = 0;
+		while (i < lane.count) {
+			objects[i].tick(input);
+			if (objects[i].isRemoved()) {
+				int last = --lane.count;
+				MovingObject removed = objects[i];
+				objects[i] = objects[last];
+				objects[last] = removed;
+			} else {
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot of a row.
+	 *
+	 * @param row
+	 *            The row.
+	 * @return The slot.
+	 */
+	private Slot slot(int row) {
+		return ring[row & (RING_LANES - 1)];
+	}
+
+	/**
+	 * Sets where the world tells what happens in the game, during the tick.
+	 *
+	 * @param events
+	 *            The listener, GameEventAdapter.NONE for nobody.
+	 */
+	public void setEventListener(GameEventListener events) {
+		this.events = events;
+	}
+
+	/**
+	 * Returns the lowest row still in play, the one just below the camera.
+	 *
+	 * @return The row.
+	 */
+	public int getFirstRow() {
+		return Math.max(0, cameraY / World.LANE_HEIGHT - 1);
+	}
+
+	/**
+	 * Returns the row after the highest one generated.
+	 *
+	 * @return The row.
+	 */
+	public int getEndRow() {
+		return nextRow;
+	}
+
+	/**
+	 * Returns where a lane is drawn, between two ticks.
+	 *
+	 * @param row
+	 *            The row of the lane.
+	 * @param alpha
+	 *            How far between the last and the next tick.
+	 * @return The y coordinate of the top of the lane on the screen.
+	 */
+	public int getScreenY(int row, double alpha) {
+		int camera = previousCameraY
+				+ (int) Math.round((cameraY - previousCameraY) * alpha);
+		return (VISIBLE_LANES - 1 - row) * World.LANE_HEIGHT + camera;
+	}
+
+	/**
+	 * Returns the Lane Sprite of a row, with its image and regeneration
+	 * time.
+	 *
+	 * @param row
+	 *            A row from getFirstRow to getEndRow.
+	 * @return The lane.
+	 */
+	public Lane getLane(int row) {
+		return slot(row).lane;
+	}
+
+	/**
+	 * Returns the kind of a lane.
+	 *
+	 * @param row
+	 *            A row from getFirstRow to getEndRow.
+	 * @return KIND_GRASS, KIND_ROAD or KIND_WATER.
+	 */
+	public int getKind(int row) {
+		return slot(row).kind;
+	}
+
+	/**
+	 * Returns the number of vehicles or platforms in a lane.
+	 *
+	 * @param row
+	 *            A row from getFirstRow to getEndRow.
+	 * @return The number.
+	 */
+	public int getObjectCount(int row) {
+		return slot(row).kind == KIND_GRASS ? 0 : slot(row).count;
+	}
+
+	/**
+	 * Returns a vehicle or platform of a lane. Its y coordinate is 0, in the
+	 * lane.
+	 *
+	 * @param row
+	 *            A row from getFirstRow to getEndRow.
+	 * @param i
+	 *            The index, below getObjectCount.
+	 * @return The vehicle or platform.
+	 */
+	public MovingObject getObject(int row, int i) {
+		Slot lane = slot(row);
+		return lane.kind == KIND_ROAD ? lane.vehicles[i] : lane.platforms[i];
+	}
+
+	/**
+	 * Returns the player Sprite. Its y coordinate is 0, in its lane.
+	 *
+	 * @return The player.
+	 */
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Returns the row the player is on.
+	 *
+	 * @return The row.
+	 */
+	public int getPlayerRow() {
+		return playerRow;
+	}
+
+	/**
+	 * Returns the highest row the player has reached.
+	 *
+	 * @return The row, the number of lanes crossed.
+	 */
+	public int getDistance() {
+		return furthestRow;
+	}
+
+	/**
+	 * Returns the player's score.
+	 *
+	 * @return The score.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Returns the seed the world was created or last reset with.
+	 *
+	 * @return The seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns whether the player is out of lives.
+	 *
+	 * @return True if the game is over.
+	 */
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	/**
+	 * A slot of the ring: one lane and the sprites of its traffic. The
+	 * sprites stay with the slot when it is recycled for a new row.
+	 */
+	private static final class Slot {
+
+		/**
+		 * The row in the slot, -1 for none.
+		 */
+		int row = -1;
+
+		/**
+		 * KIND_GRASS, KIND_ROAD or KIND_WATER.
+		 */
+		int kind;
+
+		/**
+		 * Direction of the traffic.
+		 */
+		int direction;
+
+		/**
+		 * Length of the traffic.
+		 */
+		int length;
+
+		/**
+		 * Vehicle or platform type of the traffic.
+		 */
+		int type;
+
+		/**
+		 * The lane's image, regeneration time and timer.
+		 */
+		final Lane lane = new Lane(0, 0);
+
+		/**
+		 * The vehicles of a road lane, the first count in use.
+		 */
+		final Vehicle[] vehicles = new Vehicle[MAX_LANE_OBJECTS];
+
+		/**
+		 * The platforms of a water lane, the first count in use.
+		 */
+		final Platform[] platforms = new Platform[MAX_LANE_OBJECTS];
+
+		/**
+		 * Number of vehicles or platforms in use.
+		 */
+		int count;
+	}
+}
@@ -0,0 +1,263 @@
+package game;
+
+import sprites.MovingObject;
+
+/**
+ * Stores one kind of entity (vehicles, platforms or flies) as columns of
+ * primitives instead of as Sprite objects: entity <code>i</code> is
+ * <code>x[i]</code>, <code>y[i]</code>, <code>length[i]</code> and so on.
+ * Moving and collision checking are tight loops over these arrays, which
+ * keeps the data the loops touch small and contiguous.
+ * <p>
+ * The columns are public so the loops in ColumnWorld can read them
+ * directly. Only the first {@link #size()} entries are in use.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class EntityTable {
+
+	/**
+	 * Archetype value for vehicles.
+	 */
+	public static final int VEHICLES = 0;
+
+	/**
+	 * Archetype value for platforms.
+	 */
+	public static final int PLATFORMS = 1;
+
+	/**
+	 * Archetype value for flies.
+	 */
+	public static final int FLIES = 2;
+
+	/**
+	 * Pixel size of one length unit.
+	 */
+	public static final int PIXEL_UNIT_SIZE = 50;
+
+	/**
+	 * The kind of entity stored.
+	 */
+	private final int archetype;
+
+	/**
+	 * The x coordinates.
+	 */
+	public int[] x;
+
+	/**
+	 * The x coordinates before the last tick.
+	 */
+	public int[] previousX;
+
+	/**
+	 * The y coordinates.
+	 */
+	public int[] y;
+
+	/**
+	 * The unit lengths.
+	 */
+	public int[] length;
+
+	/**
+	 * The directions, MovingObject.DIRECTION_LEFT or DIRECTION_RIGHT.
+	 */
+	public byte[] direction;
+
+	/**
+	 * The vehicle or platform type. For flies, 1 if consumed.
+	 */
+	public byte[] type;
+
+	/**
+	 * Cosmetic variant, the car color for vehicles.
+	 */
+	public byte[] variant;
+
+	/**
+	 * 1 if the entity is removed.
+	 */
+	public byte[] removed;
+
+	/**
+	 * Number of entities in use.
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty table.
+	 * @param archetype The kind of entity stored.
+	 * @param capacity The initial capacity.
+	 */
+	public EntityTable(int archetype, int capacity) {
+		this.archetype = archetype;
+		x = new int[capacity];
+		previousX = new int[capacity];
+		y = new int[capacity];
+		length = new int[capacity];
+		direction = new byte[capacity];
+		type = new byte[capacity];
+		variant = new byte[capacity];
+		removed = new byte[capacity];
+	}
+
+	/**
+	 * Adds an entity.
+	 * @param xPos The x coordinate.
+	 * @param yPos The y coordinate.
+	 * @param unitLength The unit length.
+	 * @param dir The direction.
+	 * @param entityType The type.
+	 * @param entityVariant The cosmetic variant.
+	 * @return The index of the new entity.
+	 */
+	public int add(int xPos, int yPos, int unitLength, int dir, int entityType,
+			int entityVariant) {
+		if (size == x.length) {
+			grow();
+		}
+		int i = size++;
+		x[i] = xPos;
+		previousX[i] = xPos;
+		y[i] = yPos;
+		length[i] = unitLength;
+		direction[i] = (byte) dir;
+		type[i] = (byte) entityType;
+		variant[i] = (byte) entityVariant;
+		removed[i] = 0;
+		return i;
+	}
+
+	/**
+	 * Doubles the capacity of every column.
+	 */
+	private void grow() {
+		int capacity = Math.max(8, x.length * 2);
+		x = copy(x, capacity);
+		previousX = copy(previousX, capacity);
+		y = copy(y, capacity);
+		length = copy(length, capacity);
+		direction = copy(direction, capacity);
+		type = copy(type, capacity);
+		variant = copy(variant, capacity);
+		removed = copy(removed, capacity);
+	}
+
+	/**
+	 * Copies a column into a larger array.
+	 * @param column The column.
+	 * @param capacity The new capacity.
+	 * @return The copy.
+	 */
+	private int[] copy(int[] column, int capacity) {
+		int[] grown = new int[capacity];
+		System.arraycopy(column, 0, grown, 0, size);
+		return grown;
+	}
+
+	/**
+	 * Copies a column into a larger array.
+	 * @param column The column.
+	 * @param capacity The new capacity.
+	 * @return The copy.
+	 */
+	private byte[] copy(byte[] column, int capacity) {
+		byte[] grown = new byte[capacity];
+		System.arraycopy(column, 0, grown, 0, size);
+		return grown;
+	}
+
+	/**
+	 * Moves every entity one pixel in its direction, the same way
+	 * MovingObject.tick does, and removes the ones that went off screen.
+	 * @param screenWidth The width of the screen in pixels.
+	 */
+	public void tick(int screenWidth) {
+		int[] x = this.x;
+		int[] previousX = this.previousX;
+		int[] length = this.length;
+		byte[] direction = this.direction;
+		byte[] removed = this.removed;
+		for (int i = 0; i < size; i++) {
+			if (removed[i] != 0) {
+				continue;
+			}
+			int position = x[i];
+			previousX[i] = position;
+			int offScreen;
+			if (direction[i] == MovingObject.DIRECTION_LEFT) {
+				position--;
+				offScreen = -length[i] * PIXEL_UNIT_SIZE;
+			} else {
+				position++;
+				offScreen = screenWidth;
+			}
+			x[i] = position;
+			if (position == offScreen) {
+				removed[i] = 1;
+			}
+		}
+	}
+
+	/**
+	 * Drops the removed entities by moving the last entity into their
+	 * place. The order of the entities is not kept.
+	 * @return The number of entities dropped.
+	 */
+	public int compact() {
+		int dropped = 0;
+		int i = 0;
+		while (i < size) {
+			if (removed[i] != 0) {
+				int last = --size;
+				x[i] = x[last];
+				previousX[i] = previousX[last];
+				y[i] = y[last];
+				length[i] = length[last];
+				direction[i] = direction[last];
+				type[i] = type[last];
+				variant[i] = variant[last];
+				removed[i] = removed[last];
+				dropped++;
+			} else {
+				i++;
+			}
+		}
+		return dropped;
+	}
+
+	/**
+	 * Removes every entity.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of entities in use.
+	 * @return The number of entities.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the kind of entity stored.
+	 * @return VEHICLES, PLATFORMS or FLIES.
+	 */
+	public int getArchetype() {
+		return archetype;
+	}
+
+	/**
+	 * Returns the pixel width of an entity.
+	 * @param i The index of the entity.
+	 * @return The width in pixels.
+	 */
+	public int pixelWidth(int i) {
+		return length[i] * PIXEL_UNIT_SIZE;
+	}
+}
@@ -0,0 +1,149 @@
+package game;
+
+import java.awt.Image;
+
+import sprites.Fly;
+import sprites.MovingObject;
+import sprites.Platform;
+import sprites.Vehicle;
+import util.ImageCache;
+
+/**
+ * Presents one row of an EntityTable as a MovingObject, so code written
+ * against Sprites (drawing, collision helpers) works unchanged with the
+ * column storage. Every getter and setter reads or writes the table; the
+ * view itself holds no state apart from the row it is bound to.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class EntityView extends MovingObject {
+
+	/**
+	 * The table the row is in.
+	 */
+	private final EntityTable table;
+
+	/**
+	 * The row this view shows.
+	 */
+	private int index;
+
+	/**
+	 * Creates a view of a row.
+	 * @param table The table.
+	 * @param index The row.
+	 */
+	public EntityView(EntityTable table, int index) {
+		super(0, 0, 1, DIRECTION_LEFT);
+		this.table = table;
+		this.index = index;
+	}
+
+	/**
+	 * Returns the row this view shows.
+	 * @return The row index.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Binds the view to another row.
+	 * @param index The row index.
+	 */
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+	@Override
+	public int getXPos() {
+		return table.x[index];
+	}
+
+	@Override
+	public void setXPos(int x) {
+		table.x[index] = x;
+	}
+
+	@Override
+	public int getYPos() {
+		return table.y[index];
+	}
+
+	@Override
+	public void setYPos(int y) {
+		table.y[index] = y;
+	}
+
+	@Override
+	public boolean isRemoved() {
+		return table.removed[index] != 0;
+	}
+
+	@Override
+	public void remove() {
+		table.removed[index] = 1;
+	}
+
+	@Override
+	public int getLength() {
+		return table.length[index];
+	}
+
+	@Override
+	public void setLength(int length) {
+		// Called by the MovingObject constructor before the table is set.
+		if (table != null) {
+			table.length[index] = length;
+		}
+	}
+
+	@Override
+	public int calculatePixelWidth() {
+		return table.pixelWidth(index);
+	}
+
+	@Override
+	public int getDirection() {
+		return table.direction[index];
+	}
+
+	@Override
+	public void setDirection(int direction) {
+		table.direction[index] = (byte) direction;
+	}
+
+	@Override
+	public void tick(Input input) {
+		table.previousX[index] = getXPos();
+		super.tick(input);
+	}
+
+	@Override
+	public int getInterpolatedXPos(double alpha) {
+		int previous = table.previousX[index];
+		return previous + (int) Math.round((getXPos() - previous) * alpha);
+	}
+
+	@Override
+	public ImageCache.Key getImageKey() {
+		ImageCache.Key key;
+		if (table.getArchetype() == EntityTable.VEHICLES) {
+			key = Vehicle.getImageKey(table.type[index], table.variant[index],
+					getDirection(), getLength());
+		} else if (table.getArchetype() == EntityTable.PLATFORMS) {
+			key = Platform.getImageKey(table.type[index], getDirection(),
+					getLength());
+		} else {
+			key = Fly.getImageKey(table.type[index] != 0);
+		}
+		return key;
+	}
+
+	@Override
+	public Image getImage() {
+		ImageCache.Key key = getImageKey();
+		return key == null ? null : ImageCache.get(key);
+	}
+}
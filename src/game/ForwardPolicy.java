@@ -0,0 +1,256 @@
+package game;
+
+import java.util.List;
+import java.util.Random;
+
+import sprites.Fly;
+import sprites.MovingObject;
+import sprites.Platform;
+import sprites.Player;
+import sprites.Vehicle;
+
+/**
+ * A scripted frog that plays like a careful player: it hops up whenever the
+ * lane ahead looks safe, backs off when a vehicle is coming at it, and lines
+ * up with a free fly before jumping into the win lane. Where it still dies
+ * shows which lanes are too hard.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class ForwardPolicy implements Policy {
+
+	/**
+	 * How far in front of a vehicle, in pixels, the frog will not stay.
+	 */
+	private static final int VEHICLE_AHEAD = 40;
+
+	/**
+	 * How far in front of a vehicle, in pixels, the frog will not hop to,
+	 * more than it will stay so it has time to hop on or away.
+	 */
+	private static final int VEHICLE_AHEAD_HOP = 60;
+
+	/**
+	 * How far behind a vehicle, in pixels, the frog will not go.
+	 */
+	private static final int VEHICLE_BEHIND = 10;
+
+	/**
+	 * How far from the ends of a platform, in pixels, the frog wants to land.
+	 */
+	private static final int PLATFORM_EDGE = 10;
+
+	/**
+	 * How far the frog hops sideways, in pixels.
+	 */
+	private static final int HOP_WIDTH = 25;
+
+	/**
+	 * How far from a fly, in pixels, the frog can be and still reach it.
+	 */
+	private static final int FLY_BUFFER = 15;
+
+	/**
+	 * The chance that the frog waits a tick instead of hopping up, like a
+	 * player reacting a little late. Without it every seed would play the
+	 * same game, as the traffic does not depend on the seed.
+	 */
+	private static final double HESITATION = 0.25;
+
+	/**
+	 * Hops up if the lane ahead is safe, out of the way if the current lane is
+	 * not, and otherwise waits.
+	 * @param world The world.
+	 * @param random The game's source of randomness, for hesitating.
+	 * @return The button to press, or NONE.
+	 */
+	@Override
+	public int act(World world, Random random) {
+		Player player = world.getPlayer();
+		if (!player.isAlive()) {
+			return NONE;
+		}
+		int x = player.getXPos();
+		int width = player.calculatePixelWidth();
+		int lane = player.getYPos() / World.LANE_HEIGHT;
+
+		boolean safe = isSafe(world, lane, x, width, VEHICLE_AHEAD);
+		if (safe && random.nextDouble() < HESITATION) {
+			return NONE;
+		}
+		if (lane - 1 == World.LANE_WIN) {
+			return towardFly(world, lane, x, width);
+		}
+		if (isSafe(world, lane - 1, x, width, VEHICLE_AHEAD_HOP)) {
+			return Input.UP;
+		}
+		if (safe) {
+			return NONE;
+		}
+		if (lane < World.LANE_START
+				&& isSafe(world, lane + 1, x, width, VEHICLE_AHEAD_HOP)) {
+			return Input.DOWN;
+		}
+		if (x - HOP_WIDTH >= 0
+				&& isSafe(world, lane, x - HOP_WIDTH, width, VEHICLE_AHEAD)) {
+			return Input.LEFT;
+		}
+		if (x + HOP_WIDTH + width <= World.GAME_WIDTH
+				&& isSafe(world, lane, x + HOP_WIDTH, width, VEHICLE_AHEAD)) {
+			return Input.RIGHT;
+		}
+		return NONE;
+	}
+
+	/**
+	 * Moves along the last water lane to the nearest free fly, and jumps to
+	 * it when lined up. If the fly is out of reach on the platform the frog
+	 * is on, it goes back a lane to be carried the other way.
+	 * @param world The world.
+	 * @param lane The frog's lane.
+	 * @param x The frog's x position.
+	 * @param width The frog's width.
+	 * @return The button to press, or NONE.
+	 */
+	private int towardFly(World world, int lane, int x, int width) {
+		List<Fly> flys = world.getFlys();
+		int distance = Integer.MAX_VALUE;
+		for (int i = 0; i < flys.size(); i++) {
+			Fly fly = flys.get(i);
+			int d = fly.getXPos() - x;
+			if (!fly.isConsumed() && Math.abs(d) < Math.abs(distance)) {
+				distance = d;
+			}
+		}
+		if (Math.abs(distance) <= FLY_BUFFER) {
+			return Input.UP;
+		}
+		if (distance == Integer.MAX_VALUE) {
+			return NONE;
+		}
+		if (distance < 0
+				&& isSafe(world, lane, x - HOP_WIDTH, width, VEHICLE_AHEAD)) {
+			return Input.LEFT;
+		}
+		if (distance > 0
+				&& isSafe(world, lane, x + HOP_WIDTH, width, VEHICLE_AHEAD)) {
+			return Input.RIGHT;
+		}
+		int drift = driftOf(world, lane, x, width);
+		if ((distance < 0 ? MovingObject.DIRECTION_RIGHT
+				: MovingObject.DIRECTION_LEFT) == drift
+				&& isSafe(world, lane + 1, x, width, VEHICLE_AHEAD_HOP)) {
+			return Input.DOWN;
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns which way the platform under a position moves.
+	 * @param world The world.
+	 * @param lane The water lane.
+	 * @param x The x position.
+	 * @param width The frog's width.
+	 * @return The direction, or -1 if there is no platform there.
+	 */
+	private int driftOf(World world, int lane, int x, int width) {
+		int y = lane * World.LANE_HEIGHT;
+		List<Platform> platforms = world.getPlatforms();
+		for (int i = 0; i < platforms.size(); i++) {
+			Platform p = platforms.get(i);
+			if (p.getYPos() == y && !p.isRemoved() && p.getXPos() < x + width
+					&& p.getXPos() + p.calculatePixelWidth() > x) {
+				return p.getDirection();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns whether the frog would be safe in a lane at a position.
+	 * @param world The world.
+	 * @param lane The lane.
+	 * @param x The x position.
+	 * @param width The frog's width.
+	 * @param ahead How far in front of a vehicle is too near.
+	 * @return True if no vehicle is near, or a platform would carry the frog.
+	 */
+	private boolean isSafe(World world, int lane, int x, int width, int ahead) {
+		if (lane >= World.LANE_WATER_FIFTH && lane <= World.LANE_WATER_FIRST) {
+			return isOnPlatform(world, lane, x, width);
+		}
+		if (lane >= World.LANE_ROAD_FOURTH && lane <= World.LANE_ROAD_FIRST) {
+			return isRoadClear(world, lane, x, width, ahead);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether no vehicle in a lane is at or coming up to a position.
+	 * @param world The world.
+	 * @param lane The road lane.
+	 * @param x The x position.
+	 * @param width The frog's width.
+	 * @param ahead How far in front of a vehicle is too near.
+	 * @return True if the position is clear.
+	 */
+	private boolean isRoadClear(World world, int lane, int x, int width,
+			int ahead) {
+		int y = lane * World.LANE_HEIGHT;
+		List<Vehicle> vehicles = world.getVehicles();
+		for (int i = 0; i < vehicles.size(); i++) {
+			Vehicle v = vehicles.get(i);
+			if (v.getYPos() != y || v.isRemoved()) {
+				continue;
+			}
+			int left = v.getXPos();
+			int right = left + v.calculatePixelWidth();
+			if (v.getDirection() == MovingObject.DIRECTION_RIGHT) {
+				left -= VEHICLE_BEHIND;
+				right += ahead;
+			} else {
+				left -= ahead;
+				right += VEHICLE_BEHIND;
+			}
+			if (left < x + width && right > x) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether a platform in a lane is well under a position.
+	 * @param world The world.
+	 * @param lane The water lane.
+	 * @param x The x position.
+	 * @param width The frog's width.
+	 * @return True if the frog would land on a platform there.
+	 */
+	private boolean isOnPlatform(World world, int lane, int x, int width) {
+		int y = lane * World.LANE_HEIGHT;
+		List<Platform> platforms = world.getPlatforms();
+		for (int i = 0; i < platforms.size(); i++) {
+			Platform p = platforms.get(i);
+			if (p.getYPos() != y || p.isRemoved()) {
+				continue;
+			}
+			if (x >= p.getXPos() + PLATFORM_EDGE
+					&& x + width <= p.getXPos() + p.calculatePixelWidth()
+							- PLATFORM_EDGE) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the name of the policy, for reports.
+	 * @return The name.
+	 */
+	@Override
+	public String toString() {
+		return "forward";
+	}
+}
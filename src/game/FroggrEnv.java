@@ -0,0 +1,337 @@
+package game;
+
+import java.util.Arrays;
+import java.util.List;
+
+import sprites.Fly;
+import sprites.Platform;
+import sprites.Player;
+import sprites.Sprite;
+import sprites.Vehicle;
+
+/**
+ * A reinforcement learning environment in the style of OpenAI Gym: an agent
+ * calls {@link #reset(long)} to start an episode and {@link #step(int)} with
+ * one of the ACTION_ values every tick, and gets back the reward. The
+ * observation is a grid of the lanes, one byte per {@link #CELL_WIDTH}
+ * pixels, written into the same array every step.
+ * <p>
+ * Nothing is allocated per step once the world has spawned its first few
+ * sprites, so many environments can be stepped in parallel without the
+ * garbage collector getting in the way; see {@link VectorFroggrEnv}.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class FroggrEnv {
+
+	/**
+	 * Action: press nothing.
+	 */
+	public static final int ACTION_NONE = 0;
+
+	/**
+	 * Action: hop left.
+	 */
+	public static final int ACTION_LEFT = 1;
+
+	/**
+	 * Action: hop right.
+	 */
+	public static final int ACTION_RIGHT = 2;
+
+	/**
+	 * Action: hop up.
+	 */
+	public static final int ACTION_UP = 3;
+
+	/**
+	 * Action: hop down.
+	 */
+	public static final int ACTION_DOWN = 4;
+
+	/**
+	 * Number of actions.
+	 */
+	public static final int ACTIONS = 5;
+
+	/**
+	 * Width of an observation cell in pixels, how far the frog hops sideways.
+	 */
+	public static final int CELL_WIDTH = 25;
+
+	/**
+	 * Number of observation cells per lane.
+	 */
+	public static final int COLUMNS = World.GAME_WIDTH / CELL_WIDTH;
+
+	/**
+	 * Size of an observation: NUMBER_OF_LANES rows of COLUMNS cells, from the
+	 * top lane down.
+	 */
+	public static final int OBSERVATION_SIZE = World.NUMBER_OF_LANES * COLUMNS;
+
+	/**
+	 * Observation cell: nothing.
+	 */
+	public static final byte EMPTY = 0;
+
+	/**
+	 * Observation cell: a vehicle.
+	 */
+	public static final byte VEHICLE = 1;
+
+	/**
+	 * Observation cell: a platform.
+	 */
+	public static final byte PLATFORM = 2;
+
+	/**
+	 * Observation cell: a fly that has not been consumed.
+	 */
+	public static final byte FLY = 3;
+
+	/**
+	 * Observation cell: the frog, drawn over anything else.
+	 */
+	public static final byte PLAYER = 4;
+
+	/**
+	 * Reward for losing a life, on top of the points scored.
+	 */
+	public static final float DEATH_REWARD = -100;
+
+	/**
+	 * Default number of ticks before an episode is cut off (five minutes).
+	 */
+	public static final int DEFAULT_MAX_TICKS = 18000;
+
+	/**
+	 * The world, created on the first reset.
+	 */
+	private World world;
+
+	/**
+	 * The input the world is stepped with.
+	 */
+	private final Input input = new Input();
+
+	/**
+	 * The array the observation is written into.
+	 */
+	private final byte[] observation;
+
+	/**
+	 * Where in the array the observation starts.
+	 */
+	private final int offset;
+
+	/**
+	 * Ticks before an episode is cut off.
+	 */
+	private final int maxTicks;
+
+	/**
+	 * Ticks of the current episode.
+	 */
+	private int ticks;
+
+	/**
+	 * The score after the previous step.
+	 */
+	private int lastScore;
+
+	/**
+	 * The lives after the previous step.
+	 */
+	private int lastLives;
+
+	/**
+	 * Whether the episode is over.
+	 */
+	private boolean done;
+
+	/**
+	 * Creates an environment whose episodes are cut off after
+	 * DEFAULT_MAX_TICKS.
+	 */
+	public FroggrEnv() {
+		this(DEFAULT_MAX_TICKS);
+	}
+
+	/**
+	 * Creates an environment.
+	 * @param maxTicks Ticks before an episode is cut off.
+	 */
+	public FroggrEnv(int maxTicks) {
+		this(new byte[OBSERVATION_SIZE], 0, maxTicks);
+	}
+
+	/**
+	 * Creates an environment that writes its observation into part of a
+	 * shared array.
+	 * @param observation The array.
+	 * @param offset Where in the array the OBSERVATION_SIZE bytes start.
+	 * @param maxTicks Ticks before an episode is cut off.
+	 */
+	FroggrEnv(byte[] observation, int offset, int maxTicks) {
+		this.observation = observation;
+		this.offset = offset;
+		this.maxTicks = maxTicks;
+	}
+
+	/**
+	 * Starts an episode.
+	 * @param seed The seed of the game.
+	 * @return The first observation, the array returned by getObservation().
+	 */
+	public byte[] reset(long seed) {
+		if (world == null) {
+			world = new World(seed);
+		} else {
+			world.reset(seed);
+		}
+		ticks = 0;
+		lastScore = world.getScore();
+		lastLives = world.getPlayer().getLives();
+		done = false;
+		observe();
+		return observation;
+	}
+
+	/**
+	 * Advances the game one tick.
+	 * @param action One of the ACTION_ values.
+	 * @return The reward: the points scored in the tick, plus DEATH_REWARD
+	 *         if the frog lost a life.
+	 * @throws IllegalStateException If the episode is over or was never
+	 *             started.
+	 */
+	public float step(int action) {
+		if (world == null || done) {
+			throw new IllegalStateException("Call reset() to start an episode");
+		}
+		for (int i = 0; i < input.buttons.length; i++) {
+			input.buttons[i] = i == action - 1;
+		}
+		world.step(input);
+		ticks++;
+
+		int score = world.getScore();
+		int lives = world.getPlayer().getLives();
+		float reward = score - lastScore;
+		if (lives < lastLives) {
+			reward += DEATH_REWARD * (lastLives - lives);
+		}
+		lastScore = score;
+		lastLives = lives;
+		done = world.isGameOver() || world.isGameWon() || ticks >= maxTicks;
+		observe();
+		return reward;
+	}
+
+	/**
+	 * Writes the observation of the world.
+	 */
+	private void observe() {
+		Arrays.fill(observation, offset, offset + OBSERVATION_SIZE, EMPTY);
+		List<Platform> platforms = world.getPlatforms();
+		for (int i = 0; i < platforms.size(); i++) {
+			Platform p = platforms.get(i);
+			if (!p.isRemoved()) {
+				mark(p, p.calculatePixelWidth(), PLATFORM);
+			}
+		}
+		List<Vehicle> vehicles = world.getVehicles();
+		for (int i = 0; i < vehicles.size(); i++) {
+			Vehicle v = vehicles.get(i);
+			if (!v.isRemoved()) {
+				mark(v, v.calculatePixelWidth(), VEHICLE);
+			}
+		}
+		List<Fly> flys = world.getFlys();
+		for (int i = 0; i < flys.size(); i++) {
+			Fly f = flys.get(i);
+			if (!f.isConsumed()) {
+				mark(f, World.LANE_HEIGHT, FLY);
+			}
+		}
+		Player player = world.getPlayer();
+		if (player.isAlive()) {
+			mark(player, player.calculatePixelWidth(), PLAYER);
+		}
+	}
+
+	/**
+	 * Marks the cells a sprite covers.
+	 * @param sprite The sprite.
+	 * @param width Its width in pixels.
+	 * @param value The cell value.
+	 */
+	private void mark(Sprite sprite, int width, byte value) {
+		int lane = sprite.getYPos() / World.LANE_HEIGHT;
+		if (lane < 0 || lane >= World.NUMBER_OF_LANES) {
+			return;
+		}
+		int first = Math.max(Math.floorDiv(sprite.getXPos(), CELL_WIDTH), 0);
+		int last = Math.min(
+				Math.floorDiv(sprite.getXPos() + width - 1, CELL_WIDTH),
+				COLUMNS - 1);
+		int row = offset + lane * COLUMNS;
+		for (int column = first; column <= last; column++) {
+			observation[row + column] = value;
+		}
+	}
+
+	/**
+	 * Returns the array the observation is written into. Its contents change
+	 * with every step and reset.
+	 * @return The array.
+	 */
+	public byte[] getObservation() {
+		return observation;
+	}
+
+	/**
+	 * Returns where in the observation array this environment's
+	 * OBSERVATION_SIZE bytes start, 0 unless it is part of a VectorFroggrEnv.
+	 * @return The offset.
+	 */
+	public int getObservationOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns whether the episode is over: the game was won or lost, or it was
+	 * cut off.
+	 * @return True if reset() must be called before stepping again.
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Returns whether the episode was cut off before the game was won or
+	 * lost.
+	 * @return True if the episode ran out of ticks.
+	 */
+	public boolean isTruncated() {
+		return done && !world.isGameOver() && !world.isGameWon();
+	}
+
+	/**
+	 * Returns the number of ticks of the current episode.
+	 * @return The tick count.
+	 */
+	public int getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Returns the world, e.g. to render it or read the score.
+	 * @return The world, or null before the first reset.
+	 */
+	public World getWorld() {
+		return world;
+	}
+}
@@ -2,588 +2,766 @@ package game;
 
 import java.awt.Canvas;
 import java.awt.Color;
+import java.awt.DisplayMode;
+import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.image.BufferStrategy;
-import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.swing.SwingUtilities;
+
+import events.EventLogListener;
+import events.GameEventAdapter;
+import events.GameEventBus;
+import events.GameEventListener;
+import events.MetricsListener;
+import events.SoundEffectListener;
+import metrics.FrameMetrics;
+import metrics.PrometheusEndpoint;
+import render.BackgroundLayer;
+import render.DirtyRegions;
+import render.ImagePreparer;
+import render.SpriteAtlas;
+import scores.HighScoreEndpoint;
+import scores.HighScores;
 
-import javax.imageio.ImageIO;
-import javax.swing.JOptionPane;
-
-import sprites.Fly;
-import sprites.Lane;
 import sprites.MovingObject;
 import sprites.Platform;
 import sprites.Player;
-import sprites.Sprite;
 import sprites.Vehicle;
-import util.SoundEffect;
+import util.ImageCache;
 
 /**
  * This is a demo for a clone of the classic game "Frogger".
- * This is the main game class that processes the graphics, sound
- * and logic.
+ * This is the main game class that draws the World and handles the
+ * player's keyboard input and the in game menus.
  * 
  * @author Raj Ramsaroop, Greg Westerfield, Jr.
  * @version 0.1
  * 
  */
-public class FroggrGame extends Canvas implements Runnable, KeyListener {
+public class FroggrGame extends Canvas implements Runnable, KeyListener,
+		GameLoop.Callback {
+
+	/**
+	 * What the game is doing, which decides what a tick does and which menu
+	 * is drawn over the game. Only the game thread changes it.
+	 */
+	public enum State {
+
+		/**
+		 * The world is stepped every tick.
+		 */
+		PLAYING,
+
+		/**
+		 * The player pressed escape; the pause menu is shown.
+		 */
+		PAUSED,
+
+		/**
+		 * Every fly was consumed; the win menu is shown.
+		 */
+		WON,
+
+		/**
+		 * Every frog is out of lives; the lose menu is shown.
+		 */
+		LOST,
+
+		/**
+		 * The title screen is shown instead of the game.
+		 */
+		MENU
+	}
 
 	/**
-	 * The player Sprite.
+	 * Frame rate limit while a menu is shown. Nothing moves, so a frame is
+	 * only drawn when the menu changes, but the loop must not spin.
 	 */
-	private Player player;
+	private static final int IDLE_FPS = 30;
 
 	/**
-	 * The number of lives the player starts with.
+	 * Font of a menu's title.
 	 */
-	private int startingLives = 3;
+	private static final Font MENU_TITLE_FONT = new Font("Arial", Font.BOLD, 24);
+
+	/**
+	 * Font of a menu's text and options.
+	 */
+	private static final Font MENU_FONT = new Font("Arial", Font.BOLD, 14);
+
+	/**
+	 * Color behind a menu, letting the game show through.
+	 */
+	private static final Color MENU_BACKGROUND = new Color(0, 0, 0, 200);
+
+	/**
+	 * Width of a menu in pixels.
+	 */
+	private static final int MENU_WIDTH = 400;
+
+	/**
+	 * Height of a line of a menu in pixels.
+	 */
+	private static final int MENU_LINE_HEIGHT = 18;
+
+	/**
+	 * The game world with all the sprites and rules.
+	 */
+	private World world = new World();
+
+	/**
+	 * The world of the endless mode, played instead of world when
+	 * <code>-Dfroggr.endless=true</code> is set, or null.
+	 */
+	private EndlessWorld endless;
 
 	/**
 	 * The input class checks which keys the user is pressing on the keyboard.
+	 * Only the game thread writes it, from the input queue.
 	 */
 	private Input input = new Input();
 
 	/**
-	 * Tracks how many fly's Froggr has consumed.
+	 * Records the game, if recording was asked for.
+	 */
+	private volatile InputRecorder recorder;
+
+	/**
+	 * The recording being played instead of the keyboard, if any.
+	 */
+	private InputReplay replay;
+
+	/**
+	 * The file the game is saved to, if saving was asked for.
+	 */
+	private SaveStateFile saveFile;
+
+	/**
+	 * Ticks between saves.
+	 */
+	private int saveInterval;
+
+	/**
+	 * Ticks since the last save.
 	 */
-	public static int flysConsumed = 0;
+	private int ticksSinceSave;
 
 	/**
-	 * Variable to keep track of the player's score.
+	 * The high-score table, if one was asked for.
 	 */
-	private int score = 0;
+	private HighScores highScores;
 
 	/**
-	 * If the game is in a paused state.
+	 * The name scores are kept under.
 	 */
-	private boolean paused;
+	private String playerName;
 
 	/**
-	 * The nextPointsPosition keeps track of the next YPos the user must reach
-	 * to gain NEW_LANE_POINTS.
+	 * Entries of the high-score table shown when a game ends.
 	 */
-	private int nextPointsPosition = 600;
+	private static final int SHOWN_HIGH_SCORES = 5;
 
 	/**
-	 * Points that are earned when a fly is consumed.
+	 * Final scores passed from the game thread to the scores listener,
+	 * which adds them to the high-score table.
 	 */
-	private final int CONSUME_FLY_BONUS = 100;
+	private final ConcurrentLinkedQueue<Integer> finalScores = new ConcurrentLinkedQueue<Integer>();
 
 	/**
-	 * Points that are earned when entering a lane for the first time.
+	 * The rank and best scores after each final score was added, passed
+	 * from the scores listener back to the game thread.
 	 */
-	private final int NEW_LANE_POINTS = 25;
+	private final ConcurrentLinkedQueue<String> highScoreTexts = new ConcurrentLinkedQueue<String>();
 
 	/**
-	 * ArrayList of Lane Sprites.
+	 * Final scores handed to the scores listener and not saved yet. Game
+	 * thread only.
 	 */
-	private ArrayList<Lane> lanes = new ArrayList<Lane>();
+	private int scoresSaving;
 
 	/**
-	 * ArrayList of Vehicle Sprites.
+	 * Text of the end-of-game menu without the high scores while the final
+	 * score is being saved, otherwise null. Game thread only.
 	 */
-	private ArrayList<Vehicle> vehicles = new ArrayList<Vehicle>();
+	private String endGameText;
 
 	/**
-	 * ArrayList of Platform Sprites.
+	 * The loop that drives the simulation and rendering.
 	 */
-	private ArrayList<Platform> platforms = new ArrayList<Platform>();
+	private GameLoop loop;
 
 	/**
-	 * ArrayList of Fly Sprites.
+	 * Timings of the tick and frame phases and world counts, published over
+	 * JMX and optionally to Prometheus.
 	 */
-	private ArrayList<Fly> flys = new ArrayList<Fly>();
+	private FrameMetrics metrics = new FrameMetrics(true);
 
 	/**
-	 * Boolean for whether the player has lost the game or not.
+	 * Passes key presses from the event thread to the game thread.
 	 */
-	private static boolean gameOver;
+	private InputQueue inputQueue;
 
 	/**
-	 * Boolean for whether the player has won the game or not.
+	 * Passes the world's events to the sound, HUD, metrics and log
+	 * listeners on threads of their own.
 	 */
-	private static boolean gameWon;
+	private final GameEventBus events = new GameEventBus();
 
 	/**
-	 * Regeneration rate for platforms in first water lane.
+	 * The listener of the worlds. Passes their events on to the event bus,
+	 * and hands the final score of a game to the scores listener before the
+	 * event that makes it save the score.
 	 */
-	private final static int FIRST_WATER_LANE_REGENERATION = 325;
+	private final GameEventListener worldEvents = new GameEventListener() {
+		@Override
+		public void playerMoved(int frog, int x, int lane) {
+			events.playerMoved(frog, x, lane);
+		}
+
+		@Override
+		public void playerKilled(int frog, int lane, int cause) {
+			events.playerKilled(frog, lane, cause);
+		}
+
+		@Override
+		public void flyConsumed(int frog, int fly) {
+			events.flyConsumed(frog, fly);
+		}
+
+		@Override
+		public void laneEntered(int frog, int lane) {
+			events.laneEntered(frog, lane);
+		}
+
+		@Override
+		public void gameOver() {
+			offerFinalScore();
+			events.gameOver();
+		}
+
+		@Override
+		public void gameWon() {
+			// A game lost on the same tick already handed its score over.
+			if (!world.isGameOver()) {
+				offerFinalScore();
+			}
+			events.gameWon();
+		}
+	};
 
 	/**
-	 * Regeneration rate for platforms in second water lane.
+	 * The last event worth telling in the HUD, set by the HUD listener.
 	 */
-	private final static int SECOND_WATER_LANE_REGENERATION = 225;
+	private volatile String hudMessage = "";
 
 	/**
-	 * Regeneration rate for platforms in third water lane.
+	 * The HUD message when the HUD was last drawn.
 	 */
-	private final static int THIRD_WATER_LANE_REGENERATION = 225;
+	private String lastHudMessage = "";
 
 	/**
-	 * Regeneration rate for platforms in fourth water lane.
+	 * The pre-rendered lanes and win zone.
 	 */
-	private final static int FOURTH_WATER_LANE_REGENERATION = 325;
+	private BackgroundLayer background = new BackgroundLayer(GAME_WIDTH,
+			GAME_HEIGHT, FOREGROUND_COLOR);
 
 	/**
-	 * Regeneration rate for platforms in fifth water lane.
+	 * Whether only the changed parts of the canvas are repainted, set with
+	 * <code>-Dfroggr.render.dirty=true</code>. Helps on slow machines where
+	 * filling the whole canvas every frame dominates the frame time.
 	 */
-	private final static int FIFTH_WATER_LANE_REGENERATION = 225;
+	private boolean dirtyRendering = Boolean.getBoolean("froggr.render.dirty");
 
 	/**
-	 * Regeneration rate for vehicles in the first road lane.
+	 * Tracks the changed parts of the canvas for dirty rendering.
 	 */
-	private final static int FIRST_ROAD_LANE_REGENERATION = 175;
+	private DirtyRegions dirtyRegions = new DirtyRegions(GAME_WIDTH,
+			GAME_HEIGHT, World.LANE_HEIGHT, 1,
+			DirtyRegions.DEFAULT_FULL_REPAINT_COVERAGE);
 
 	/**
-	 * Regeneration rate for the vehicles in the second road lane.
+	 * The player image drawn last frame.
 	 */
-	private final static int SECOND_ROAD_LANE_REGENERATION = 225;
+	private Image lastPlayerImage;
 
 	/**
-	 * Regeneration rate for the vehicles in the third road lane.
+	 * The lives shown last frame.
 	 */
-	private final static int THIRD_ROAD_LANE_REGENERATION = 350;
+	private int lastLives;
 
 	/**
-	 * Regeneration rate for the vehicles in the fourth road lane.
+	 * The score shown last frame.
 	 */
-	private final static int FOURTH_ROAD_LANE_REGENERATION = 250;
+	private int lastScore;
 
 	/**
-	 * Width of the game canvas in pixels.
+	 * Whether "GAME OVER" was shown last frame.
 	 */
-	public static final int GAME_WIDTH = 500;
+	private boolean lastGameOver;
 
 	/**
-	 * Height of the game canvas in pixels.
+	 * Whether "YOU WIN!" was shown last frame.
 	 */
-	public static final int GAME_HEIGHT = 700;
+	private boolean lastGameWon;
 
 	/**
-	 * Height of the lane in pixels.
+	 * What the game is doing.
 	 */
-	public static final int LANE_HEIGHT = 50;
+	private volatile State state = State.MENU;
 
 	/**
-	 * Number of lanes in the game.
+	 * Title of the menu shown.
 	 */
-	public static final int NUMBER_OF_LANES = 13;
+	private String menuTitle;
 
 	/**
-	 * Background color of the game canvas.
+	 * Lines of text of the menu shown.
 	 */
-	public static final Color FOREGROUND_COLOR = Color.BLACK;
+	private String[] menuLines;
 
 	/**
-	 * Win lane index.
+	 * Options of the menu shown.
 	 */
-	public static final int LANE_WIN = 0;
+	private String[] menuOptions;
 
 	/**
-	 * Fifth water lane index.
+	 * The selected option of the menu shown.
 	 */
-	public static final int LANE_WATER_FIFTH = 1;
+	private int menuSelection;
 
 	/**
-	 * Fourth water lane index.
+	 * Whether the menu shown is on the screen as it is now, so no frame
+	 * needs to be drawn.
 	 */
-	public static final int LANE_WATER_FOURTH = 2;
+	private boolean menuDrawn;
 
 	/**
-	 * Third water lane index.
+	 * Keys that work the menus, passed from the event thread to the game
+	 * thread.
 	 */
-	public static final int LANE_WATER_THIRD = 3;
+	private final ConcurrentLinkedQueue<Integer> menuKeys = new ConcurrentLinkedQueue<Integer>();
 
 	/**
-	 * Second water lane index.
+	 * Whether the title screen asked for a new game, for the game thread to
+	 * start.
 	 */
-	public static final int LANE_WATER_SECOND = 4;
+	private volatile boolean startRequested;
 
 	/**
-	 * First water lane index.
+	 * Whether the replay has run out and said how it went.
 	 */
-	public static final int LANE_WATER_FIRST = 5;
+	private boolean replayFinished;
 
 	/**
-	 * First safe grass lane index.
+	 * The thread running the game loop, once started.
 	 */
-	public static final int LANE_GRASS_FIRST = 6;
+	private Thread loopThread;
 
 	/**
-	 * Second safe grass lane index.
+	 * Frame rate limit while playing.
 	 */
-	public static final int LANE_GRASS_SECOND = 7;
+	private int targetFps;
 
 	/**
-	 * Fourth road lane index.
+	 * Width of the game canvas in pixels.
 	 */
-	public static final int LANE_ROAD_FOURTH = 8;
+	public static final int GAME_WIDTH = World.GAME_WIDTH;
 
 	/**
-	 * Third road lane index.
+	 * Height of the game canvas in pixels.
 	 */
-	public static final int LANE_ROAD_THIRD = 9;
+	public static final int GAME_HEIGHT = World.GAME_HEIGHT;
 
 	/**
-	 * Second road lane index.
+	 * Top of the area with the lives and the score.
 	 */
-	public static final int LANE_ROAD_SECOND = 10;
+	private static final int HUD_Y = GAME_HEIGHT - 50;
 
 	/**
-	 * First road lane index.
+	 * Dirty region tracker slot of the player.
 	 */
-	public static final int LANE_ROAD_FIRST = 11;
+	private static final int PLAYER_SLOT = 0;
 
 	/**
-	 * Starting lane index.
+	 * Number of draws timed per image for the blit report.
 	 */
-	public static final int LANE_START = 12;
+	private static final int BLIT_REPORT_ITERATIONS = 2000;
 
 	/**
-	 * Default constructor for FroggrGame. Sets up the game state, the Canvas
+	 * Background color of the game canvas.
+	 */
+	public static final Color FOREGROUND_COLOR = Color.BLACK;
+
+	/**
+	 * Default constructor for FroggrGame. Sets up the Canvas
 	 * size and background color.
 	 */
 	public FroggrGame() {
 		addKeyListener(this);
 		setForeground(FOREGROUND_COLOR);
 		setSize(GAME_WIDTH, GAME_HEIGHT);
-		gameOver = false;
-		gameWon = false;
+		if (Boolean.getBoolean("froggr.endless")) {
+			// Neither recordings nor saves know the endless lanes.
+			endless = new EndlessWorld();
+		} else {
+			configureRecording();
+			configureSaving();
+		}
+		configureHighScores();
+		configureEvents();
+		configureInput();
+		world.setMetrics(metrics);
+		metrics.register();
+		startMetricsEndpoint();
+		SpriteAtlas.packSprites();
 	}
 
 	/**
-	 * Returns if the game is over and the player has lost the game.
-	 * 
-	 * @return true if player has lost the game.
+	 * Replays the recording named by <code>-Dfroggr.replay</code> instead of
+	 * reading the keyboard, or records the game to the file named by
+	 * <code>-Dfroggr.record</code>, with a checksum every
+	 * <code>-Dfroggr.record.checksumInterval</code> ticks.
 	 */
-	public static boolean isGameOver() {
-		return gameOver;
+	private void configureRecording() {
+		String replayFile = System.getProperty("froggr.replay");
+		String recordFile = System.getProperty("froggr.record");
+		try {
+			if (replayFile != null) {
+				replay = new InputReplay(replayFile);
+				world = replay.getWorld();
+			} else if (recordFile != null) {
+				recorder = new InputRecorder(new BufferedOutputStream(
+						new FileOutputStream(recordFile)), world.getSeed(),
+						Integer.getInteger("froggr.record.checksumInterval",
+								InputRecorder.DEFAULT_CHECKSUM_INTERVAL));
+				// The game usually ends with System.exit.
+				Runtime.getRuntime().addShutdownHook(new Thread() {
+					@Override
+					public void run() {
+						stopRecording();
+					}
+				});
+			}
+		} catch (IOException e) {
+			System.err.println("Could not open recording: " + e);
+		}
 	}
 
 	/**
-	 * Returns whether the player has won the game.
-	 * 
-	 * @return true if the player has won the game.
+	 * Saves the game to the file named by <code>-Dfroggr.save</code> every
+	 * <code>-Dfroggr.save.interval</code> seconds (5 by default), and resumes
+	 * from it when the game starts. Not while recording or replaying, whose
+	 * games must start from their seed.
 	 */
-	public static boolean isGameWon() {
-		return gameWon;
+	private void configureSaving() {
+		String file = System.getProperty("froggr.save");
+		if (file == null || replay != null || recorder != null) {
+			return;
+		}
+		try {
+			saveFile = new SaveStateFile(Paths.get(file));
+			saveInterval = Integer.getInteger("froggr.save.interval", 5)
+					* GameLoop.DEFAULT_TICKS_PER_SECOND;
+		} catch (IOException e) {
+			System.err.println("Could not open save file: " + e);
+		}
 	}
 
 	/**
-	 * Creates and initializes the win zones (flies).
-	 */
-	private void createWinZones() {
-		for (int i = 0; i < 4; i++) {
-			flys.add(new Fly(i * 150, 0));
+	 * Creates the input queue, with <code>-Dfroggr.input.buffer</code> taps
+	 * waiting per key at most and held keys repeated as
+	 * <code>-Dfroggr.input.repeat</code> says: <code>os</code> (the default)
+	 * by the operating system, <code>none</code> not at all, or a number of
+	 * milliseconds between repeats.
+	 */
+	private void configureInput() {
+		int buffer = Integer.getInteger("froggr.input.buffer",
+				InputQueue.DEFAULT_BUFFER);
+		String repeatProperty = System.getProperty("froggr.input.repeat", "os");
+		int repeat = InputQueue.REPEAT_OS;
+		if (repeatProperty.equals("none")) {
+			repeat = InputQueue.REPEAT_NONE;
+		} else if (!repeatProperty.equals("os")) {
+			try {
+				repeat = Integer.parseInt(repeatProperty);
+			} catch (NumberFormatException e) {
+				System.err.println("Bad froggr.input.repeat: " + repeatProperty);
+			}
 		}
+		inputQueue = new InputQueue(InputQueue.DEFAULT_CAPACITY,
+				buffer, repeat, metrics);
 	}
 
 	/**
-	 * Initializes the ArrayList of lanes and sets the image for each one.
+	 * Sends the world's events through the event bus to the sound effects,
+	 * the HUD, the metrics and, with <code>-Dfroggr.events.log</code>, a log
+	 * file, each on a thread of its own.
 	 */
-	private void createLanes() {
-		// Create our 13 game lanes
-		for (int i = 0; i < NUMBER_OF_LANES; i++) {
-			lanes.add(new Lane(0, i * 50));
-		}
-
-		// Add the image for each lane
-		lanes.get(LANE_WIN).setImage("res/sprites/lane/win.png");
-
-		// Use alternating images randomly for water lanes
-		for (int i = LANE_WATER_FIFTH; i <= LANE_WATER_FIRST; i++) {
-			lanes.get(i).setImage("res/sprites/lane/water.gif");
-		}
+	private void configureEvents() {
+		events.subscribe(new SoundEffectListener(metrics), "sound");
+		events.subscribe(new GameEventAdapter() {
+			@Override
+			public void playerKilled(int frog, int lane, int cause) {
+				hudMessage = cause == World.DEATH_WATER ? "SPLASH!"
+						: cause == World.DEATH_VEHICLE ? "SQUASHED!" : "TAKEN!";
+			}
 
-		// set water lane regeneration times
-		lanes.get(LANE_WATER_FIRST).setRegeneration(
-				FIRST_WATER_LANE_REGENERATION);
-		lanes.get(LANE_WATER_SECOND).setRegeneration(
-				SECOND_WATER_LANE_REGENERATION);
-		lanes.get(LANE_WATER_THIRD).setRegeneration(
-				THIRD_WATER_LANE_REGENERATION);
-		lanes.get(LANE_WATER_FOURTH).setRegeneration(
-				FOURTH_WATER_LANE_REGENERATION);
-		lanes.get(LANE_WATER_FIFTH).setRegeneration(
-				FIFTH_WATER_LANE_REGENERATION);
+			@Override
+			public void flyConsumed(int frog, int fly) {
+				hudMessage = "FLY +100";
+			}
 
-		// Safe area before water
-		lanes.get(LANE_GRASS_FIRST).setImage("res/sprites/lane/grass.png");
-		lanes.get(LANE_GRASS_SECOND).setImage("res/sprites/lane/grass.png");
+			@Override
+			public void laneEntered(int frog, int lane) {
+				hudMessage = "+25";
+			}
 
-		// Road lanes
-		lanes.get(LANE_ROAD_FOURTH).setImage("res/sprites/lane/road-top.png");
-		lanes.get(LANE_ROAD_THIRD).setImage("res/sprites/lane/road-middle.png");
-		lanes.get(LANE_ROAD_SECOND)
-				.setImage("res/sprites/lane/road-middle.png");
-		lanes.get(LANE_ROAD_FIRST).setImage("res/sprites/lane/road-bottom.png");
+			@Override
+			public void gameOver() {
+				hudMessage = "";
+			}
 
-		// Set regeneration time for road lanes
-		lanes.get(LANE_ROAD_FIRST)
-				.setRegeneration(FIRST_ROAD_LANE_REGENERATION);
-		lanes.get(LANE_ROAD_SECOND).setRegeneration(
-				SECOND_ROAD_LANE_REGENERATION);
-		lanes.get(LANE_ROAD_THIRD)
-				.setRegeneration(THIRD_ROAD_LANE_REGENERATION);
-		lanes.get(LANE_ROAD_FOURTH).setRegeneration(
-				FOURTH_ROAD_LANE_REGENERATION);
+			@Override
+			public void gameWon() {
+				hudMessage = "";
+			}
+		}, "hud");
+		events.subscribe(new MetricsListener(metrics), "metrics");
+		if (highScores != null) {
+			// Saving syncs the table to disk, too slow for the game thread.
+			events.subscribe(new GameEventAdapter() {
+				@Override
+				public void gameOver() {
+					recordHighScores();
+				}
 
-		// Start lane
-		lanes.get(LANE_START).setImage("res/sprites/lane/grass.png");
+				@Override
+				public void gameWon() {
+					recordHighScores();
+				}
+			}, "scores");
+		}
+		String log = System.getProperty("froggr.events.log");
+		if (log != null) {
+			try {
+				events.subscribe(new EventLogListener(new FileWriter(log)),
+						"log");
+			} catch (IOException e) {
+				System.err.println("Could not open event log: " + e);
+			}
+		}
+		events.start();
+		// Let the subscribers finish, e.g. the log, when the game exits.
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				try {
+					events.stop();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		world.setEventListener(worldEvents);
+		if (endless != null) {
+			endless.setEventListener(worldEvents);
+		}
 	}
 
 	/**
-	 * Determines what platforms, length, direction, and regeneration rate to
-	 * add to each water lane.
+	 * Keeps the final scores in the high-score table named by
+	 * <code>-Dfroggr.scores</code>, under the name set with
+	 * <code>-Dfroggr.player</code> or else the user's, and serves the table
+	 * on the loopback port set with <code>-Dfroggr.scores.port</code>, if
+	 * any. Not while replaying, whose games were already scored.
 	 */
-	private void addPlatformsToLanes() {
-		generatePlatform(lanes.get(LANE_WATER_FIFTH), 3,
-				MovingObject.DIRECTION_LEFT, Platform.LOG);
-		generatePlatform(lanes.get(LANE_WATER_FOURTH), 2,
-				MovingObject.DIRECTION_RIGHT, Platform.TURTLE);
-		generatePlatform(lanes.get(LANE_WATER_THIRD), 3,
-				MovingObject.DIRECTION_LEFT, Platform.LOG);
-		generatePlatform(lanes.get(LANE_WATER_SECOND), 3,
-				MovingObject.DIRECTION_RIGHT, Platform.TURTLE);
-		generatePlatform(lanes.get(LANE_WATER_FIRST), 3,
-				MovingObject.DIRECTION_LEFT, Platform.LILY);
+	private void configureHighScores() {
+		String file = System.getProperty("froggr.scores");
+		if (file == null || replay != null) {
+			return;
+		}
+		playerName = System.getProperty("froggr.player",
+				System.getProperty("user.name", "player"));
+		try {
+			highScores = new HighScores(Paths.get(file));
+		} catch (IOException e) {
+			System.err.println("Could not open high scores: " + e);
+			return;
+		}
+		Integer port = Integer.getInteger("froggr.scores.port");
+		if (port != null) {
+			try {
+				new HighScoreEndpoint(highScores, port);
+			} catch (IOException e) {
+				System.err.println("Could not serve high scores on port "
+						+ port + ": " + e);
+			}
+		}
 	}
 
 	/**
-	 * Determines what vehicles, length, direction and regeneration rate to add
-	 * to the lanes. Trucks are always length 2. Other vehicles can be of length
-	 * 1, 2 or 3.
+	 * Hands the final score of the game that just ended to the scores
+	 * listener, if a high-score table is kept. Called on the game thread,
+	 * while the world publishes the end of the game.
 	 */
-	private void addVehiclesToLanes() {
-		generateVehicle(lanes.get(LANE_ROAD_FIRST), 1,
-				MovingObject.DIRECTION_RIGHT, Vehicle.CAR);
-		generateVehicle(lanes.get(LANE_ROAD_SECOND), 2,
-				MovingObject.DIRECTION_LEFT, Vehicle.CAR);
-		generateVehicle(lanes.get(LANE_ROAD_THIRD), 3,
-				MovingObject.DIRECTION_RIGHT, Vehicle.CAR);
-		generateVehicle(lanes.get(LANE_ROAD_FOURTH), 2,
-				MovingObject.DIRECTION_LEFT, Vehicle.TRUCK);
+	private void offerFinalScore() {
+		if (highScores != null) {
+			scoresSaving++;
+			finalScores.offer(Integer.valueOf(calculateFinalScore()));
+		}
 	}
 
 	/**
-	 * Generates vehicles for the road lanes.
-	 * 
-	 * @param lane
-	 *            Lane sprite object to generate the vehicle for.
-	 * @param length
-	 *            Length of the vehicle (1, 2 or 3 for cars, 3 for trucks).
-	 * @param direction
-	 *            The direction that the vehicle moves.
-	 * @param vehicleType
-	 *            The type of vehicle to generate.
-	 */
-	private void generateVehicle(Lane lane, int length, int direction,
-			int vehicleType) {
-		lane.setTime(lane.getTime() + 1);
-		if (lane.getTime() > lane.getRegeneration()) {
-			lane.setTime(0);
-			int startPosition = (direction == MovingObject.DIRECTION_LEFT) ? GAME_WIDTH
-					: 0 - (length * 50);
-			Vehicle v = new Vehicle(startPosition, lane.getYPos(), length,
-					direction);
-			v.setVehicleType(vehicleType);
-			vehicles.add(v);
-		}
-	}
-
-	/**
-	 * Generates the platforms for the water lanes.
-	 * 
-	 * @param lane
-	 *            The Lane sprite object to generate the platform for.
-	 * @param length
-	 *            The length of the platform.
-	 * @param direction
-	 *            The direction the platform moves in.
-	 * @param platformType
-	 *            The type of platform to generate.
+	 * Adds the final scores the game thread handed over to the high-score
+	 * table. Called on the scores listener's thread when a game ends.
 	 */
-	private void generatePlatform(Lane lane, int length, int direction,
-			int platformType) {
-		lane.setTime(lane.getTime() + 1);
-		if (lane.getTime() > lane.getRegeneration()) {
-			lane.setTime(0);
-			int startPosition = (direction == MovingObject.DIRECTION_LEFT) ? GAME_WIDTH
-					: 0 - (length * 50);
-			Platform p = new Platform(startPosition, lane.getYPos(), length,
-					direction);
-			p.setPlatformType(platformType);
-			platforms.add(p);
+	private void recordHighScores() {
+		Integer score;
+		while ((score = finalScores.poll()) != null) {
+			highScoreTexts.offer(recordHighScore(score.intValue()));
 		}
 	}
 
 	/**
-	 * Removes all Platform and Vehicle Sprites from their 
-	 * corresponding lists that aren't beings used.
+	 * Adds a final score to the high-score table.
+	 * @param score The score.
+	 * @return The rank of the score and the best scores, to show.
 	 */
-	private void removeUnusedSpritesFromLists() {
-		Iterator<Vehicle> vehicleIterator = vehicles.iterator();
-		while (vehicleIterator.hasNext()) {
-			Vehicle v = vehicleIterator.next();
-			if (v.isRemoved()) {
-				vehicleIterator.remove();
-			}
+	private String recordHighScore(int score) {
+		try {
+			highScores.add(playerName, score);
+		} catch (IOException e) {
+			System.err.println("Could not save high score: " + e);
 		}
-	
-		Iterator<Platform> platformIterator = platforms.iterator();
-		while (platformIterator.hasNext()) {
-			Platform p = platformIterator.next();
-			if (p.isRemoved()) {
-				platformIterator.remove();
-			}
+		StringBuilder text = new StringBuilder();
+		text.append("\nRank: ").append(highScores.rank(score)).append(" of ")
+				.append(highScores.size()).append("\n\nHigh Scores:");
+		List<HighScores.Entry> top = highScores.top(SHOWN_HIGH_SCORES);
+		for (int i = 0; i < top.size(); i++) {
+			text.append("\n").append(i + 1).append(". ")
+					.append(top.get(i).getName()).append("  ")
+					.append(top.get(i).getScore());
 		}
+		return text.toString();
 	}
 
 	/**
-	 * Creates a new Player sprite at the starting location with a set number of
-	 * lives.
-	 * 
-	 * @param lives
-	 *            The number of lives the player starts with
+	 * Shows the rank and best scores in the end-of-game menu once the
+	 * scores listener has saved the final score. Called on the game thread.
 	 */
-	private void spawnPlayer(int lives) {
-		this.player = new Player(250, GAME_HEIGHT - (2 * LANE_HEIGHT), lives);
+	private void showHighScores() {
+		String scores;
+		while ((scores = highScoreTexts.poll()) != null) {
+			// Only the last score handed over is the one of this game.
+			if (--scoresSaving == 0 && endGameText != null) {
+				if (state == State.WON || state == State.LOST) {
+					menuLines = (endGameText + scores).split("\n");
+					menuDrawn = false;
+				}
+				endGameText = null;
+			}
+		}
 	}
 
 	/**
-	 * Calculates the final score when the game is over (win or lose).
-	 * 
-	 * @return The player's final score.
+	 * Calculates the final score of the world being played.
+	 * @return The final score.
 	 */
 	private int calculateFinalScore() {
-		if (player.getLives() > 0) {
-			return score * player.getLives();
-		} else {
-			return score;
+		return endless != null ? endless.getScore() : world
+				.calculateFinalScore();
+	}
+
+	/**
+	 * Puts the world back in the state of the last save, unless that game
+	 * was already over.
+	 */
+	private void resumeSavedGame() {
+		if (saveFile == null) {
+			return;
 		}
+		try {
+			if (saveFile.load(world)
+					&& (world.isGameOver() || world.isGameWon())) {
+				world.restart();
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("Could not resume saved game: " + e.getMessage());
+			world.restart();
+		}
+		ticksSinceSave = 0;
 	}
 
 	/**
-	 * Draws the images on the canvas for the lanes. Used in the game render
-	 * loop.
-	 * 
-	 * @param g
-	 *            The Graphics object used by the Canvas.
+	 * Saves the game if it is time to.
 	 */
-	private void processLanes(Graphics g) {
-		for (Lane l : lanes) {
-			g.drawImage(l.getImage(), l.getXPos(), l.getYPos(), this);
+	private void autosave() {
+		if (saveFile != null && ++ticksSinceSave >= saveInterval) {
+			saveFile.save(world);
+			ticksSinceSave = 0;
 		}
 	}
 
 	/**
-	 * Draws the win zone images on the canvas.
-	 * 
-	 * @param g
-	 *            The Graphics object used by the Canvas.
+	 * Finishes the recording, if one is being made.
 	 */
-	private void processWinZones(Graphics g) {
-		for (int i = 0; i < flys.size(); i++) {
-			g.drawImage(flys.get(i).getImage(), flys.get(i).getXPos(), flys
-					.get(i).getYPos(), this);
+	private void stopRecording() {
+		InputRecorder r = recorder;
+		recorder = null;
+		if (r != null) {
+			try {
+				r.close();
+			} catch (IOException e) {
+				System.err.println("Could not finish recording: " + e);
+			}
 		}
 	}
 
 	/**
-	 * Draws the image for the player in the main game render loop. Also,
-	 * process all of the players activity in the game.
-	 * 
-	 * @param g
-	 *            The Graphics object used in the Canvas.
+	 * Serves the metrics to Prometheus on the loopback port set with
+	 * <code>-Dfroggr.metrics.port</code>, if any.
 	 */
-	private void processPlayer(Graphics g) {
-		player.tick(input);
-		g.drawImage(player.getImage(), player.getXPos(), player.getYPos(), this);
-	
-		/*
-		 * Keeps track of the next position the player must reach to gain
-		 * points. If player dies he must reach the last nextPointsPosition to
-		 * gain NEW_LANE_POINTS
-		 */
-		if (player.getYPos() < nextPointsPosition) {
-			score = score + NEW_LANE_POINTS;
-			nextPointsPosition = nextPointsPosition - LANE_HEIGHT;
+	private void startMetricsEndpoint() {
+		Integer port = Integer.getInteger("froggr.metrics.port");
+		if (port == null) {
+			return;
 		}
-	
-		/*
-		 * Check if player has collided with a vehicle
-		 */
-		for (int i = 0; i < vehicles.size(); i++) {
-			if (vehicles.get(i).hasCollidedWith(player)) {
-				if (player.isAlive()) {
-					SoundEffect.play(SoundEffect.COLLISION);
-					player.kill();
-					g.drawImage(player.getImage(), player.getXPos(),
-							player.getYPos(), this);
-				}
-			}
+		try {
+			new PrometheusEndpoint(metrics, port);
+		} catch (IOException e) {
+			System.err.println("Could not serve metrics on port " + port
+					+ ": " + e);
 		}
-	
-		/*
-		 * Only runs if the player has entered into the water lanes. This is set
-		 * up so if the player is not on a platform he is going to die.
-		 */
-		if (player.getYPos() < lanes.get(LANE_WATER_FIRST + 1).getYPos()) {
-			int currentPlatform = -1;
-			for (int i = 0; i < platforms.size(); i++) {
-				// Checks if player lands on platform, if so he will sail on it.
-				if (platforms.get(i).hasCollidedWith(player)) {
-					player.sail(input, platforms.get(i));
-					currentPlatform = i;
-				}
-			}
-	
-			if (currentPlatform != -1) {
-				// While sailing on the platform this checks if the player jumps
-				// off a platform into water
-				if (!player.isOnPlatform(platforms.get(currentPlatform))
-						&& player.isAlive()) {
-					SoundEffect.play(SoundEffect.SPLASH);
-					player.kill();
-				}
-			} else {
-				int check = 0;
-				for (int i = 0; i < flys.size(); i++) {
-					check++;
-					// Checks if the player has reached an accessible win zone.
-					// If not, he dies.
-					if (flys.get(i).hasCollidedWith(player)
-							&& flys.get(i).isConsumed() == false) {
-						flys.get(i).setConsumed(true);
-						// add bonus points to player score for consuming a fly.
-						score = score + CONSUME_FLY_BONUS;
-						// reset the position at which the frog can gain more
-						// points
-						nextPointsPosition = 600;
-						flysConsumed++;
-						SoundEffect.play(SoundEffect.VICTORY);
-						spawnPlayer(player.getLives());
-						check = 0;
-					} else {
-						if (check == 4) {
-							if (player.isAlive()) {
-								if (player.getYPos() == 0) {
-									SoundEffect.play(SoundEffect.COLLISION);
-								} else {
-									SoundEffect.play(SoundEffect.SPLASH);
-								}
-							}
-							player.kill();
-						}
-					}
-				}
-			}
+	}
+
+	/**
+	 * Draws the image for the player in the main game render loop.
+	 * 
+	 * @param g
+	 *            The Graphics object used in the Canvas.
+	 * @param area
+	 *            The dirty rectangle being redrawn, or -1 for the whole
+	 *            canvas.
+	 */
+	private void drawPlayer(Graphics g, int area) {
+		Player player = world.getPlayer();
+		Image image = player.getImage();
+		if (image != null
+				&& isInArea(area, player.getXPos(), player.getYPos(),
+						image.getWidth(null), image.getHeight(null))) {
+			player.draw(g, player.getXPos(), player.getYPos(), this);
 		}
 	}
 
@@ -593,18 +771,23 @@ public class FroggrGame extends Canvas implements Runnable, KeyListener {
 	 * she has remaining.
 	 * 
 	 * @param g
+	 * @param area
+	 *            The dirty rectangle being redrawn, or -1 for the whole
+	 *            canvas.
 	 */
-	private void processPlayerLives(Graphics g) {
-		BufferedImage playerImage = null;
-		try {
-			playerImage = ImageIO.read(Sprite.class.getClassLoader()
-					.getResource("res/sprites/player/player-idle.gif"));
-		} catch (IOException e) {
-			e.printStackTrace();
+	private void processPlayerLives(Graphics g, int area) {
+		if (!isInArea(area, 0, HUD_Y, GAME_WIDTH, GAME_HEIGHT - HUD_Y)) {
+			return;
 		}
+		SpriteAtlas.Region region = SpriteAtlas.region(Player.IMAGE_IDLE);
+		Image playerImage = ImageCache.get(Player.IMAGE_IDLE);
 	
-		for (int i = 0; i < player.getLives(); i++) {
-			g.drawImage(playerImage, 50 * i, GAME_HEIGHT - 50, this);
+		for (int i = 0; i < world.getPlayer().getLives(); i++) {
+			if (region != null) {
+				region.draw(g, 50 * i, GAME_HEIGHT - 50, this);
+			} else {
+				g.drawImage(playerImage, 50 * i, GAME_HEIGHT - 50, this);
+			}
 		}
 	}
 
@@ -613,12 +796,21 @@ public class FroggrGame extends Canvas implements Runnable, KeyListener {
 	 * 
 	 * @param g
 	 *            The Graphics object used by the Canvas.
-	 */
-	private void processVehicles(Graphics g) {
-		for (Vehicle v : vehicles) {
-			if (!v.isRemoved()) {
-				v.tick(input);
-				g.drawImage(v.getImage(), v.getXPos(), v.getYPos(), this);
+	 * @param alpha
+	 *            How far between the last and the next tick to draw them.
+	 * @param area
+	 *            The dirty rectangle being redrawn, or -1 for the whole
+	 *            canvas.
+	 */
+	private void drawVehicles(Graphics g, double alpha, int area) {
+		List<Vehicle> vehicles = world.getVehicles();
+		for (int i = 0; i < vehicles.size(); i++) {
+			Vehicle v = vehicles.get(i);
+			int x = v.getInterpolatedXPos(alpha);
+			if (!v.isRemoved()
+					&& isInArea(area, x, v.getYPos(), v.calculatePixelWidth(),
+							World.LANE_HEIGHT)) {
+				v.draw(g, x, v.getYPos(), this);
 			}
 		}
 	}
@@ -628,43 +820,151 @@ public class FroggrGame extends Canvas implements Runnable, KeyListener {
 	 * 
 	 * @param g
 	 *            The Graphics object used by the Canvas.
-	 */
-	private void processPlatforms(Graphics g) {
-		for (Platform p : platforms) {
-			if (!p.isRemoved()) {
-				p.tick(input);
-				g.drawImage(p.getImage(), p.getXPos(), p.getYPos(), this);
+	 * @param alpha
+	 *            How far between the last and the next tick to draw them.
+	 * @param area
+	 *            The dirty rectangle being redrawn, or -1 for the whole
+	 *            canvas.
+	 */
+	private void drawPlatforms(Graphics g, double alpha, int area) {
+		List<Platform> platforms = world.getPlatforms();
+		for (int i = 0; i < platforms.size(); i++) {
+			Platform p = platforms.get(i);
+			int x = p.getInterpolatedXPos(alpha);
+			if (!p.isRemoved()
+					&& isInArea(area, x, p.getYPos(), p.calculatePixelWidth(),
+							World.LANE_HEIGHT)) {
+				p.draw(g, x, p.getYPos(), this);
 			}
 		}
 	}
 
 	/**
-	 * This method draws the graphics on the screen and processes a lot of the
-	 * game logic
+	 * Draws the game state and the score.
 	 * 
 	 * @param g
 	 *            The Graphics object used in the Canvas.
+	 * @param area
+	 *            The dirty rectangle being redrawn, or -1 for the whole
+	 *            canvas.
 	 */
-	private void processGameplay(Graphics g) {
-		if (!player.isAlive() && player.getLives() > 0) {
-			spawnPlayer(player.getLives());
+	private void drawGameplay(Graphics g, int area) {
+		if (!isInArea(area, 0, HUD_Y, GAME_WIDTH, GAME_HEIGHT - HUD_Y)) {
+			return;
 		}
-	
-		// Checks if the game is over
-		if (player.getLives() == 0) {
+		g.setColor(Color.GREEN);
+		if (world.isGameOver()) {
 			g.drawString("GAME OVER", 225, GAME_HEIGHT - 25);
-			gameOver = true;
 		}
 	
-		// Checks if the player wins the game.
-		if (flysConsumed == 4) {
+		if (world.isGameWon()) {
 			g.drawString("YOU WIN!", 225, GAME_HEIGHT - 25);
-			gameWon = true;
+		}
+
+		if (!world.isGameOver() && !world.isGameWon()) {
+			g.drawString(lastHudMessage, 225, GAME_HEIGHT - 25);
 		}
 	
 		// Keeps track of the score
-		g.drawString("SCORE: " + score, 400, GAME_HEIGHT - 25);
-	
+		g.drawString("SCORE: " + world.getScore(), 400, GAME_HEIGHT - 25);
+	}
+
+	/**
+	 * Checks whether something drawn at the specified bounds is in the area
+	 * being redrawn.
+	 * 
+	 * @param area
+	 *            The dirty rectangle being redrawn, or -1 for the whole
+	 *            canvas.
+	 * @param x The left edge.
+	 * @param y The top edge.
+	 * @param w The width.
+	 * @param h The height.
+	 * @return True if it must be drawn.
+	 */
+	private boolean isInArea(int area, int x, int y, int w, int h) {
+		return area < 0 || dirtyRegions.intersects(area, x, y, w, h);
+	}
+
+	/**
+	 * Reports to the dirty region tracker where everything will be drawn this
+	 * frame and what changed in place.
+	 * 
+	 * @param alpha
+	 *            How far between the last and the next tick moving objects
+	 *            are drawn.
+	 */
+	private void trackDirtyRegions(double alpha) {
+		List<Vehicle> vehicles = world.getVehicles();
+		for (int i = 0; i < vehicles.size(); i++) {
+			Vehicle v = vehicles.get(i);
+			if (!v.isRemoved()) {
+				dirtyRegions.addSpan(v.getInterpolatedXPos(alpha), v.getYPos(),
+						v.calculatePixelWidth());
+			}
+		}
+		List<Platform> platforms = world.getPlatforms();
+		for (int i = 0; i < platforms.size(); i++) {
+			Platform p = platforms.get(i);
+			if (!p.isRemoved()) {
+				dirtyRegions.addSpan(p.getInterpolatedXPos(alpha), p.getYPos(),
+						p.calculatePixelWidth());
+			}
+		}
+
+		Player player = world.getPlayer();
+		Image playerImage = player.getImage();
+		int playerWidth = playerImage == null ? 0 : playerImage.getWidth(null);
+		int playerHeight = playerImage == null ? 0 : playerImage.getHeight(null);
+		dirtyRegions.track(PLAYER_SLOT, player.getXPos(), player.getYPos(),
+				playerWidth, playerHeight);
+		if (playerImage != lastPlayerImage) {
+			dirtyRegions.add(player.getXPos(), player.getYPos(), playerWidth,
+					playerHeight);
+			lastPlayerImage = playerImage;
+		}
+
+		String message = hudMessage;
+		if (player.getLives() != lastLives || world.getScore() != lastScore
+				|| !message.equals(lastHudMessage)
+				|| world.isGameOver() != lastGameOver
+				|| world.isGameWon() != lastGameWon) {
+			dirtyRegions.add(0, HUD_Y, GAME_WIDTH, GAME_HEIGHT - HUD_Y);
+			lastLives = player.getLives();
+			lastScore = world.getScore();
+			lastGameOver = world.isGameOver();
+			lastGameWon = world.isGameWon();
+			lastHudMessage = message;
+		}
+	}
+
+	/**
+	 * Draws every layer of one area of the canvas. They must be placed in the
+	 * order that they are displayed in terms of layers. For example, the
+	 * player will be before the vehicles, so that it gives the appearance
+	 * that vehicles run over Froggr.
+	 * 
+	 * @param g
+	 *            The Graphics object used by the Canvas.
+	 * @param alpha
+	 *            How far between the last and the next tick to draw moving
+	 *            objects.
+	 * @param area
+	 *            The dirty rectangle being redrawn, or -1 for the whole
+	 *            canvas.
+	 */
+	private void drawLayers(Graphics g, double alpha, int area) {
+		long t = metrics.begin();
+		drawPlatforms(g, alpha, area);
+		t = metrics.end(FrameMetrics.DRAW_PLATFORMS, t);
+		drawPlayer(g, area);
+		t = metrics.end(FrameMetrics.DRAW_PLAYER, t);
+		drawVehicles(g, alpha, area);
+		t = metrics.end(FrameMetrics.DRAW_VEHICLES, t);
+		processPlayerLives(g, area);
+		t = metrics.end(FrameMetrics.PROCESS_PLAYER_LIVES, t);
+		drawGameplay(g, area);
+		metrics.end(FrameMetrics.DRAW_GAMEPLAY, t);
 	}
 
 	/**
@@ -684,6 +984,7 @@ public class FroggrGame extends Canvas implements Runnable, KeyListener {
 	private void runEndGameChoice(int choice) {
 		if (choice == 0 || choice == -1) {
 			restartGame();
+			setState(State.PLAYING);
 		} else if (choice == 1) {
 			restartGame();
 			showMainMenu();
@@ -695,59 +996,208 @@ public class FroggrGame extends Canvas implements Runnable, KeyListener {
 	/**
 	 * This is to be displayed if the player wins the game.
 	 */
-	private void showWinDialog() {
-		// Custom button text
-		String[] options = createEndGameOptions();
-		int choice = JOptionPane
-				.showOptionDialog(
-						this,
-						"You won the game! You get an imaginary achievment that you can brag about to your friends!"
-								+ "\nFinal Score: " + calculateFinalScore(),
-						"You Win!", JOptionPane.YES_NO_CANCEL_OPTION,
-						JOptionPane.INFORMATION_MESSAGE, null, options,
-						options[0]);
-		runEndGameChoice(choice);
+	private void showWinMenu() {
+		showEndGameMenu(State.WON, "You Win!",
+				"You won the game! You get an imaginary"
+						+ "\nachievement that you can brag about to your"
+						+ "\nfriends!"
+						+ "\nFinal Score: " + calculateFinalScore());
 	}
 
 	/**
 	 * This method is called when the player loses the game.
 	 */
-	private void showLoseDialog() {
-		// Custom button text
-		String[] options = createEndGameOptions();
-		int choice = JOptionPane.showOptionDialog(this,
-				"You just lost the game!" + "\nFinal Score: "
-						+ calculateFinalScore(), "Game Over",
-				JOptionPane.YES_NO_CANCEL_OPTION,
-				JOptionPane.INFORMATION_MESSAGE, null, options, options[0]);
-		runEndGameChoice(choice);
+	private void showLoseMenu() {
+		showEndGameMenu(State.LOST, "Game Over", "You just lost the game!"
+				+ "\nFinal Score: " + calculateFinalScore());
+	}
 
+	/**
+	 * Shows the menu of a game that ended. If a high-score table is kept,
+	 * the rank is filled in once the scores listener has saved the score.
+	 * @param menuState WON or LOST.
+	 * @param title The title.
+	 * @param text The text, lines separated by newlines.
+	 */
+	private void showEndGameMenu(State menuState, String title, String text) {
+		if (highScores != null) {
+			endGameText = text;
+			text += "\nRank: saving...";
+		}
+		showMenu(menuState, title, text, createEndGameOptions());
 	}
 
 	/**
 	 * Pauses the game and displays a pause menu.
 	 */
 	private void showPauseMenu() {
-		setPaused(true);
-		// Custom button text
 		String[] options = { "Resume Game", "Quit Game" };
-		int choice = JOptionPane.showOptionDialog(this,
-				"You just paused the game. What now?", "Paused",
-				JOptionPane.YES_NO_CANCEL_OPTION,
-				JOptionPane.INFORMATION_MESSAGE, null, options, options[0]);
-		if (choice == 0 || choice == -1) {
-			setPaused(false);
+		showMenu(State.PAUSED, "Paused", "You just paused the game. What now?",
+				options);
+	}
+
+	/**
+	 * Shows a menu over the game, which stops being stepped until an option
+	 * is chosen.
+	 * @param menuState PAUSED, WON or LOST.
+	 * @param title The title.
+	 * @param text The text, lines separated by newlines.
+	 * @param options The options.
+	 */
+	private void showMenu(State menuState, String title, String text,
+			String[] options) {
+		menuTitle = title;
+		menuLines = text.split("\n");
+		menuOptions = options;
+		menuSelection = 0;
+		setState(menuState);
+	}
+
+	/**
+	 * Displays the main menu.
+	 */
+	private void showMainMenu() {
+		setState(State.MENU);
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				FroggrGameApplication.showTitleScreen();
+			}
+		});
+	}
+
+	/**
+	 * Changes what the game is doing. Called on the game thread.
+	 * @param newState The new state.
+	 */
+	private void setState(State newState) {
+		state = newState;
+		menuDrawn = false;
+		dirtyRegions.invalidate();
+		if (loop != null) {
+			loop.setTargetFps(newState == State.PLAYING ? targetFps : IDLE_FPS);
+		}
+	}
+
+	/**
+	 * Acts on the keys that work the menus: escape pauses and resumes, the
+	 * arrows select an option of a menu and enter or space chooses it.
+	 * Called on the game thread.
+	 */
+	private void processMenuKeys() {
+		Integer key;
+		while ((key = menuKeys.poll()) != null) {
+			int code = key.intValue();
+			if (state == State.PLAYING) {
+				if (code == KeyEvent.VK_ESCAPE) {
+					showPauseMenu();
+				}
+			} else if (state != State.MENU) {
+				if (code == KeyEvent.VK_UP || code == KeyEvent.VK_DOWN) {
+					int step = code == KeyEvent.VK_UP ? -1 : 1;
+					menuSelection = (menuSelection + step + menuOptions.length)
+							% menuOptions.length;
+					menuDrawn = false;
+				} else if (code == KeyEvent.VK_ENTER
+						|| code == KeyEvent.VK_SPACE) {
+					chooseMenuOption(menuSelection);
+				} else if (code == KeyEvent.VK_ESCAPE) {
+					// Like closing the dialogs: resume, or play again.
+					chooseMenuOption(-1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs an option of the menu shown.
+	 * @param choice The option, or -1 when the menu is closed.
+	 */
+	private void chooseMenuOption(int choice) {
+		if (state == State.PAUSED && replayFinished) {
+			runReplayEndChoice(choice);
+		} else if (state == State.PAUSED) {
+			if (choice == 0 || choice == -1) {
+				setState(State.PLAYING);
+			} else {
+				quit();
+			}
 		} else {
+			runEndGameChoice(choice);
+		}
+	}
+
+	/**
+	 * Runs a choice of the menu shown when the replay has run out.
+	 * @param choice The choice, or -1 when the menu is closed.
+	 */
+	private void runReplayEndChoice(int choice) {
+		if (choice == 0 || choice == -1) {
+			if (restartReplay()) {
+				setState(State.PLAYING);
+			}
+		} else if (choice == 1) {
+			showMainMenu();
+		} else if (choice == 2) {
 			quit();
 		}
 	}
 
 	/**
-	 * Displays the main menu.
+	 * Starts the replay over from its first tick by reading the recording
+	 * again, into a new world that records to the same metrics and events.
+	 * @return False if the recording could not be read again.
 	 */
-	private void showMainMenu() {
-		setPaused(true);
-		FroggrGameApplication.showTitleScreen();
+	private boolean restartReplay() {
+		try {
+			replay = new InputReplay(System.getProperty("froggr.replay"));
+		} catch (IOException e) {
+			System.err.println("Could not reopen recording: " + e);
+			return false;
+		}
+		world = replay.getWorld();
+		world.setMetrics(metrics);
+		world.setEventListener(worldEvents);
+		replayFinished = false;
+		background.invalidate();
+		dirtyRegions.invalidate();
+		return true;
+	}
+
+	/**
+	 * Draws the menu shown over the game, centered above the HUD.
+	 * @param g The graphics to draw with.
+	 */
+	private void drawMenu(Graphics g) {
+		int height = 60 + MENU_LINE_HEIGHT
+				* (menuLines.length + menuOptions.length + 1);
+		int x = (GAME_WIDTH - MENU_WIDTH) / 2;
+		int y = Math.max(0, (HUD_Y - height) / 2);
+		Font font = g.getFont();
+		g.setColor(MENU_BACKGROUND);
+		g.fillRect(x, y, MENU_WIDTH, height);
+		g.setColor(Color.GREEN);
+		g.drawRect(x, y, MENU_WIDTH - 1, height - 1);
+		g.setFont(MENU_TITLE_FONT);
+		g.drawString(menuTitle, x + 20, y + 35);
+		g.setFont(MENU_FONT);
+		int line = y + 35 + MENU_LINE_HEIGHT + 5;
+		for (int i = 0; i < menuLines.length; i++) {
+			g.drawString(menuLines[i], x + 20, line);
+			line += MENU_LINE_HEIGHT;
+		}
+		line += MENU_LINE_HEIGHT;
+		for (int i = 0; i < menuOptions.length; i++) {
+			if (i == menuSelection) {
+				g.setColor(Color.WHITE);
+				g.drawString("> " + menuOptions[i], x + 20, line);
+			} else {
+				g.setColor(Color.GREEN);
+				g.drawString("  " + menuOptions[i], x + 20, line);
+			}
+			line += MENU_LINE_HEIGHT;
+		}
+		g.setFont(font);
 	}
 
 	/**
@@ -755,30 +1205,20 @@ public class FroggrGame extends Canvas implements Runnable, KeyListener {
 	 * a new Player.
 	 */
 	private void restartGame() {
-		// reset game over
-		gameOver = false;
-		gameWon = false;
-	
-		// reset score
-		score = 0;
-		flysConsumed = 0;
-		nextPointsPosition = 600;
-	
-		// reset vehicles and platforms
-		vehicles.clear();
-		platforms.clear();
-	
-		// set flys to unconsumed
-		for (Fly f : flys) {
-			f.setConsumed(false);
-			f.setImage("res/sprites/lane/fly.png");
+		if (endless != null) {
+			endless.restart();
 		}
-	
-		// unpause game
-		setPaused(false);
-	
-		// spawn player
-		spawnPlayer(startingLives);
+		world.restart();
+		if (recorder != null) {
+			try {
+				recorder.restarted();
+			} catch (IOException e) {
+				System.err.println("Recording stopped: " + e);
+				stopRecording();
+			}
+		}
+		background.invalidate();
+		dirtyRegions.invalidate();
 	}
 
 	/**
@@ -790,84 +1230,300 @@ public class FroggrGame extends Canvas implements Runnable, KeyListener {
 	}
 
 	/**
-	 * The main game loop. All the graphics processing is done here.
+	 * Advances the game logic by one tick. Called by the GameLoop at a fixed
+	 * rate, independent of how fast frames are drawn.
 	 */
-	private void render() {
+	@Override
+	public void update() {
+		if (startRequested) {
+			startRequested = false;
+			if (replay != null) {
+				// A finished replay would show nothing; watch it again.
+				restartReplay();
+			} else {
+				restartGame();
+				resumeSavedGame();
+			}
+			setState(State.PLAYING);
+		}
+		processMenuKeys();
+		showHighScores();
+		if (replay == null) {
+			inputQueue.apply(input, System.nanoTime());
+		}
+		if (state != State.PLAYING) {
+			// Idle: nothing moves while a menu is shown.
+			return;
+		}
+		if (endless != null) {
+			endless.step(input);
+		} else if (replay != null) {
+			if (!replay.step() && !replayFinished) {
+				replayFinished = true;
+				String result = "Replay finished after " + replay.getTicks()
+						+ " ticks:\n"
+						+ (replay.isDiverged() ? "diverged at tick "
+								+ replay.getDivergedTick() : "every checksum matched");
+				System.out.println(result.replace('\n', ' '));
+				String[] options = { "Watch Again", "Back to Main Menu",
+						"Quit Game" };
+				showMenu(State.PAUSED, "Replay", result, options);
+			}
+		} else if (recorder != null) {
+			try {
+				recorder.step(world, input);
+			} catch (IOException e) {
+				System.err.println("Recording stopped: " + e);
+				stopRecording();
+			}
+		} else {
+			world.step(input);
+			autosave();
+		}
+
+		if (replay != null) {
+			// The recording restarts the game where the player did.
+			return;
+		}
+		if (endless != null ? endless.isGameOver() : world.isGameOver()) {
+			showLoseMenu();
+		} else if (endless == null && world.isGameWon()) {
+			showWinMenu();
+		}
+	}
+
+	/**
+	 * The main render loop. All the graphics processing is done here.
+	 * 
+	 * @param alpha
+	 *            How far between the last and the next tick to draw moving
+	 *            objects.
+	 */
+	@Override
+	public void render(double alpha) {
 
 		BufferStrategy bs = getBufferStrategy();
 		if (bs == null) {
-			createBufferStrategy(2);
+			// Two buffers unless -Dfroggr.render.buffers says otherwise.
+			createBufferStrategy(Integer.getInteger("froggr.render.buffers",
+					2));
+			prepareImages();
 			requestFocus();
 			return;
 		}
+		if (state == State.MENU
+				|| state != State.PLAYING && menuDrawn && !bs.contentsLost()) {
+			// Hidden, or showing a menu that is already on the screen.
+			return;
+		}
 
-		Graphics g = bs.getDrawGraphics();
-		g.fillRect(0, 0, getWidth(), getHeight());
-		g.setColor(Color.GREEN);
+		if (endless != null) {
+			renderEndless(bs, alpha);
+			return;
+		}
 
-		/*
-		 * Show the sprite's here. Make sure the method to add vehicles and
-		 * platforms are displayed here otherwise it won't display. They must
-		 * also be placed in the order that they are displayed in terms of
-		 * layers. For example, the player will be before the vehicles, so that
-		 * it gives the appearance that vehicles run over Froggr.
-		 */
-		addPlatformsToLanes();
-		addVehiclesToLanes();
-		processLanes(g);
-		processWinZones(g);
-		processPlatforms(g);
-		processPlayer(g);
-		processVehicles(g);
-		processPlayerLives(g);
-		processGameplay(g);
-
-		// This must be called after all graphics processing
-		g.dispose();
-		bs.show();
+		long renderStart = metrics.begin();
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		long t = renderStart;
+		if (background.update(gc, world.getLanes(), world.getFlys())) {
+			dirtyRegions.invalidate();
+		}
+		boolean full = true;
+		if (dirtyRendering) {
+			trackDirtyRegions(alpha);
+			// A flipped back buffer does not hold the last frame.
+			full = dirtyRegions.finish()
+					|| bs.getCapabilities().isPageFlipping()
+					|| state != State.PLAYING;
+		}
 
-		if (gameOver) {
-			showLoseDialog();
-		} else if (gameWon) {
-			showWinDialog();
+		do {
+			Graphics g = bs.getDrawGraphics();
+			if (full) {
+				background.draw(g, this);
+				t = metrics.end(FrameMetrics.PROCESS_LANES, t);
+				drawLayers(g, alpha, -1);
+				if (state != State.PLAYING) {
+					drawMenu(g);
+				}
+			} else {
+				for (int i = 0; i < dirtyRegions.size(); i++) {
+					int x = dirtyRegions.getX(i);
+					int y = dirtyRegions.getY(i);
+					int w = dirtyRegions.getWidth(i);
+					int h = dirtyRegions.getHeight(i);
+					g.setClip(x, y, w, h);
+					t = metrics.begin();
+					background.draw(g, x, y, w, h, this);
+					metrics.end(FrameMetrics.PROCESS_LANES, t);
+					drawLayers(g, alpha, i);
+				}
+			}
+
+			// This must be called after all graphics processing
+			g.dispose();
+			full = true;
+		} while (bs.contentsRestored());
+		t = metrics.begin();
+		bs.show();
+		metrics.end(FrameMetrics.SHOW, t);
+		metrics.end(FrameMetrics.RENDER, renderStart);
+		dirtyRegions.clear();
+		if (bs.contentsLost() || background.contentsLost()) {
+			dirtyRegions.invalidate();
 		}
+		menuDrawn = state != State.PLAYING;
+	}
 
-		removeUnusedSpritesFromLists();
+	/**
+	 * Draws a frame of the endless mode. The lanes scroll, so the whole
+	 * canvas is drawn every frame, lane by lane from the bottom of the
+	 * screen up to the top; each lane's traffic is drawn at the lane's
+	 * place on the screen.
+	 * 
+	 * @param bs
+	 *            The buffer strategy of the canvas.
+	 * @param alpha
+	 *            How far between the last and the next tick to draw moving
+	 *            objects and the camera.
+	 */
+	private void renderEndless(BufferStrategy bs, double alpha) {
+		long renderStart = metrics.begin();
+		do {
+			Graphics g = bs.getDrawGraphics();
+			long t = metrics.begin();
+			for (int row = endless.getFirstRow(); row < endless.getEndRow(); row++) {
+				int y = endless.getScreenY(row, alpha);
+				if (y > -World.LANE_HEIGHT && y < HUD_Y) {
+					endless.getLane(row).draw(g, 0, y, this);
+				}
+			}
+			t = metrics.end(FrameMetrics.PROCESS_LANES, t);
+			for (int row = endless.getFirstRow(); row < endless.getEndRow(); row++) {
+				int y = endless.getScreenY(row, alpha);
+				if (y > -World.LANE_HEIGHT && y < HUD_Y) {
+					for (int i = 0; i < endless.getObjectCount(row); i++) {
+						MovingObject o = endless.getObject(row, i);
+						o.draw(g, o.getInterpolatedXPos(alpha), y, this);
+					}
+				}
+			}
+			Player player = endless.getPlayer();
+			player.draw(g, player.getXPos(),
+					endless.getScreenY(endless.getPlayerRow(), alpha), this);
+			t = metrics.end(FrameMetrics.DRAW_PLATFORMS, t);
+
+			g.setColor(FOREGROUND_COLOR);
+			g.fillRect(0, HUD_Y, GAME_WIDTH, GAME_HEIGHT - HUD_Y);
+			SpriteAtlas.Region region = SpriteAtlas.region(Player.IMAGE_IDLE);
+			for (int i = 0; i < player.getLives(); i++) {
+				if (region != null) {
+					region.draw(g, 50 * i, HUD_Y, this);
+				} else {
+					g.drawImage(ImageCache.get(Player.IMAGE_IDLE), 50 * i,
+							HUD_Y, this);
+				}
+			}
+			g.setColor(Color.GREEN);
+			if (endless.isGameOver()) {
+				g.drawString("GAME OVER", 225, GAME_HEIGHT - 25);
+			} else {
+				g.drawString(hudMessage, 175, GAME_HEIGHT - 25);
+			}
+			g.drawString("LANES: " + endless.getDistance(), 300,
+					GAME_HEIGHT - 25);
+			g.drawString("SCORE: " + endless.getScore(), 400,
+					GAME_HEIGHT - 25);
+			metrics.end(FrameMetrics.DRAW_GAMEPLAY, t);
+			if (state != State.PLAYING) {
+				drawMenu(g);
+			}
+			g.dispose();
+		} while (bs.contentsRestored());
+		long t = metrics.begin();
+		bs.show();
+		metrics.end(FrameMetrics.SHOW, t);
+		metrics.end(FrameMetrics.RENDER, renderStart);
+		menuDrawn = state != State.PLAYING;
+	}
 
-		// game is too fast without this delay
-		try {
-			Thread.sleep(15);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+	/**
+	 * Converts the images to the format of the screen the game is shown on,
+	 * unless <code>-Dfroggr.images.prepare=false</code> is set. With
+	 * <code>-Dfroggr.images.blitReport=true</code> the time to draw each
+	 * image before and after conversion is printed.
+	 */
+	private void prepareImages() {
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		if (gc == null
+				|| "false".equals(System.getProperty("froggr.images.prepare"))) {
+			return;
 		}
+		ImagePreparer.prepareAll(gc);
+		background.invalidate();
+		if (Boolean.getBoolean("froggr.images.blitReport")) {
+			System.out.print(ImagePreparer.blitReport(gc, BLIT_REPORT_ITERATIONS));
+		}
+	}
 
+	/**
+	 * Returns the refresh rate of the screen the game is shown on.
+	 * 
+	 * @return The refresh rate in Hz, or the simulation rate if unknown.
+	 */
+	private int getRefreshRate() {
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		if (gc != null) {
+			int rate = gc.getDevice().getDisplayMode().getRefreshRate();
+			if (rate != DisplayMode.REFRESH_RATE_UNKNOWN) {
+				return rate;
+			}
+		}
+		return GameLoop.DEFAULT_TICKS_PER_SECOND;
 	}
 
+	/**
+	 * Runs the game loop, at <code>-Dfroggr.loop.ticksPerSecond</code> ticks
+	 * and at most <code>-Dfroggr.loop.fps</code> frames per second (0 for no
+	 * limit, the refresh rate by default), for as long as the game runs. The
+	 * loop keeps going while a menu is shown; the ticks only do nothing.
+	 */
 	@Override
 	public void run() {
-		while (!isPaused()) {
-			render();
+		targetFps = Integer.getInteger("froggr.loop.fps", getRefreshRate());
+		loop = new GameLoop(Clock.SYSTEM, this, Integer.getInteger(
+				"froggr.loop.ticksPerSecond", GameLoop.DEFAULT_TICKS_PER_SECOND),
+				GameLoop.DEFAULT_MAX_TICKS_PER_FRAME,
+				state == State.PLAYING ? targetFps : IDLE_FPS);
+		while (true) {
+			loop.frame();
 		}
 	}
 
 	/**
-	 * This method starts the game by initializing the lanes 
-	 * and then starting a new Thread.
+	 * This method starts the game by resetting the world and, the first
+	 * time, starting the game thread. Called on the event thread.
 	 */
 	public void start() {
-		setPaused(false);
-		createLanes();
-		createWinZones();
-		
+		requestFocus();
+		if (loopThread != null) {
+			// The game thread resets the world it is running.
+			startRequested = true;
+			return;
+		}
+
 		// Needed to reset elements (sprites etc) and spawns new Player
 		restartGame();
-		
-		new Thread(this).start();
+		resumeSavedGame();
+		state = State.PLAYING;
+
+		loopThread = new Thread(this, "froggr-loop");
+		loopThread.start();
 	}
 
 	@Override
 	public void keyReleased(KeyEvent e) {
-		input.set(e.getKeyCode(), false);
+		inputQueue.offer(e.getKeyCode(), false);
 	}
 
 	@Override
@@ -876,9 +1532,12 @@ public class FroggrGame extends Canvas implements Runnable, KeyListener {
 
 	@Override
 	public void keyPressed(KeyEvent e) {
-		input.set(e.getKeyCode(), true);
-		if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
-			showPauseMenu();
+		int code = e.getKeyCode();
+		inputQueue.offer(code, true);
+		if (code == KeyEvent.VK_ESCAPE || code == KeyEvent.VK_ENTER
+				|| code == KeyEvent.VK_SPACE || code == KeyEvent.VK_UP
+				|| code == KeyEvent.VK_DOWN) {
+			menuKeys.offer(Integer.valueOf(code));
 		}
 	}
 
@@ -887,16 +1546,15 @@ public class FroggrGame extends Canvas implements Runnable, KeyListener {
 	 * @return True if paused.
 	 */
 	public boolean isPaused() {
-		return paused;
+		return state == State.PAUSED;
 	}
 
 	/**
-	 * Set the game to a paused state.
-	 * @param paused
-	 *            Set to true to pause the game.
+	 * Returns what the game is doing.
+	 * @return The state.
 	 */
-	public void setPaused(boolean paused) {
-		this.paused = paused;
+	public State getState() {
+		return state;
 	}
 
 }
@@ -378,11 +378,19 @@ public class FroggrGameApplication implements ActionListener {
 	/**
 	 * Starts the game on the Game screen panel.
 	 */
-	private void startGame() {
+	void startGame() {
 		showGameScreen();
 		game.start();
 	}
 
+	/**
+	 * Returns the game Canvas.
+	 * @return The game.
+	 */
+	FroggrGame getGame() {
+		return game;
+	}
+
 	/**
 	 * Closes the game Frame.
 	 */
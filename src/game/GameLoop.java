@@ -0,0 +1,185 @@
+package game;
+
+/**
+ * A fixed timestep game loop. The simulation always advances in steps of
+ * the same length, no matter how long a frame takes to draw. Each call to
+ * {@link #frame()} runs as many simulation ticks as the elapsed time calls
+ * for (up to a cap, so a slow machine drops frames instead of spiraling),
+ * then renders once with the fraction of a tick that is left over so moving
+ * objects can be interpolated between ticks.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class GameLoop {
+
+	/**
+	 * What the loop drives.
+	 */
+	public interface Callback {
+
+		/**
+		 * Advances the simulation by one tick.
+		 */
+		void update();
+
+		/**
+		 * Draws a frame.
+		 * @param alpha How far the current time is between the last tick and
+		 *            the next one, from 0 to 1.
+		 */
+		void render(double alpha);
+	}
+
+	/**
+	 * Default simulation rate, matching the speed the game was tuned at.
+	 */
+	public static final int DEFAULT_TICKS_PER_SECOND = 60;
+
+	/**
+	 * Default maximum number of ticks run to catch up in a single frame.
+	 */
+	public static final int DEFAULT_MAX_TICKS_PER_FRAME = 5;
+
+	/**
+	 * The time source.
+	 */
+	private final Clock clock;
+
+	/**
+	 * What gets updated and rendered.
+	 */
+	private final Callback callback;
+
+	/**
+	 * Length of a simulation tick in nanoseconds.
+	 */
+	private final long tickNanos;
+
+	/**
+	 * Maximum number of ticks per frame.
+	 */
+	private final int maxTicksPerFrame;
+
+	/**
+	 * Minimum length of a frame in nanoseconds, 0 for no frame rate limit.
+	 */
+	private long frameNanos;
+
+	/**
+	 * Simulation time not yet consumed by ticks.
+	 */
+	private long accumulator;
+
+	/**
+	 * Time of the previous frame, or -1 before the first frame.
+	 */
+	private long lastTime = -1;
+
+	/**
+	 * Total number of ticks run.
+	 */
+	private long ticks;
+
+	/**
+	 * Total number of frames rendered.
+	 */
+	private long frames;
+
+	/**
+	 * Number of ticks skipped because the catch-up cap was reached.
+	 */
+	private long droppedTicks;
+
+	/**
+	 * Creates a loop.
+	 * @param clock The time source.
+	 * @param callback What gets updated and rendered.
+	 * @param ticksPerSecond The simulation rate.
+	 * @param maxTicksPerFrame The most ticks run to catch up in one frame.
+	 * @param targetFps Frame rate limit, 0 to render as fast as possible.
+	 */
+	public GameLoop(Clock clock, Callback callback, int ticksPerSecond,
+			int maxTicksPerFrame, int targetFps) {
+		this.clock = clock;
+		this.callback = callback;
+		this.tickNanos = 1000000000L / ticksPerSecond;
+		this.maxTicksPerFrame = maxTicksPerFrame;
+		setTargetFps(targetFps);
+	}
+
+	/**
+	 * Sets the frame rate limit.
+	 * @param targetFps Frames per second, 0 to render as fast as possible.
+	 */
+	public void setTargetFps(int targetFps) {
+		frameNanos = targetFps > 0 ? 1000000000L / targetFps : 0;
+	}
+
+	/**
+	 * Runs the ticks that are due, renders one frame and then waits for the
+	 * frame rate limit.
+	 * @return The number of ticks run.
+	 */
+	public int frame() {
+		long start = clock.nanoTime();
+		if (lastTime < 0) {
+			lastTime = start;
+		}
+		accumulator += start - lastTime;
+		lastTime = start;
+
+		int ran = 0;
+		while (accumulator >= tickNanos && ran < maxTicksPerFrame) {
+			callback.update();
+			accumulator -= tickNanos;
+			ran++;
+		}
+		if (accumulator >= tickNanos) {
+			// Too far behind, let the game slow down rather than stall.
+			droppedTicks += accumulator / tickNanos;
+			accumulator %= tickNanos;
+		}
+		ticks += ran;
+
+		callback.render((double) accumulator / tickNanos);
+		frames++;
+
+		if (frameNanos > 0) {
+			long wait = start + frameNanos - clock.nanoTime();
+			if (wait > 0) {
+				try {
+					clock.sleep(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		return ran;
+	}
+
+	/**
+	 * Returns the total number of ticks run.
+	 * @return The tick count.
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Returns the total number of frames rendered.
+	 * @return The frame count.
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Returns the number of ticks skipped because the machine could not
+	 * keep up.
+	 * @return The dropped tick count.
+	 */
+	public long getDroppedTicks() {
+		return droppedTicks;
+	}
+}
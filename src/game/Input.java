@@ -46,18 +46,27 @@ public class Input {
 	 * @param down Whether the key is down or not.
 	 */
 	public void set(int key, boolean down) {
+		int button = button(key);
+		if (button >= 0)
+			buttons[button] = down;
+	}
+
+	/**
+	 * Returns the button a key moves the frog with.
+	 * @param key The key on the keyboard.
+	 * @return LEFT, RIGHT, UP or DOWN, or -1 for other keys.
+	 */
+	public static int button(int key) {
 		int button = -1;
 		if (key == KeyEvent.VK_LEFT)
-			button = 0;
+			button = LEFT;
 		if (key == KeyEvent.VK_RIGHT)
-			button = 1;
+			button = RIGHT;
 		if (key == KeyEvent.VK_UP)
-			button = 2;
+			button = UP;
 		if (key == KeyEvent.VK_DOWN)
-			button = 3;
-
-		if (button >= 0)
-			buttons[button] = down;
+			button = DOWN;
+		return button;
 	}
 
 	/**
@@ -0,0 +1,309 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import metrics.FrameMetrics;
+
+/**
+ * Passes key presses and releases from the AWT event thread to the game
+ * thread, with the time each happened, so the game thread alone writes the
+ * Input the World reads.
+ * <p>
+ * The event thread offers events into a ring of preallocated slots; it never
+ * locks or waits. Once per tick the game thread calls {@link #apply}, which
+ * reads every event offered since the last tick and sets the Input's buttons
+ * for that tick. Every press is a tap, kept until the World uses it, so a
+ * tap released before the next tick still moves the frog, and several taps
+ * between two ticks move it on several ticks, one per tick. Up to
+ * {@link #getBuffer()} taps per key wait; more are dropped and counted. A
+ * tap the World cannot use, e.g. towards the edge of the screen or while the
+ * frog is dead, is forgotten once its key is released, as before.
+ * <p>
+ * Holding a key repeats it in one of three ways: by the operating system's
+ * key repeat (REPEAT_OS, every press it sends is a tap), not at all
+ * (REPEAT_NONE, presses while the key is held are ignored), or every given
+ * number of milliseconds, timed by the game.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class InputQueue {
+
+	/**
+	 * Default number of slots, a power of two. Far more key events than
+	 * anyone types between two ticks.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * Default number of taps that may wait per key.
+	 */
+	public static final int DEFAULT_BUFFER = 4;
+
+	/**
+	 * Repeat held keys as the operating system repeats them.
+	 */
+	public static final int REPEAT_OS = -1;
+
+	/**
+	 * Do not repeat held keys.
+	 */
+	public static final int REPEAT_NONE = 0;
+
+	/**
+	 * How soon after a release a press of the same key is taken as the
+	 * operating system repeating it, for systems that repeat a key as a
+	 * release and a press.
+	 */
+	private static final long REPEAT_GAP_NANOS = 2000000;
+
+	/**
+	 * The button of the event in each slot.
+	 */
+	private final int[] buttons;
+
+	/**
+	 * Whether the event in each slot is a press.
+	 */
+	private final boolean[] presses;
+
+	/**
+	 * The time of the event in each slot, from System.nanoTime.
+	 */
+	private final long[] times;
+
+	/**
+	 * Slots minus one, to wrap a sequence number to a slot.
+	 */
+	private final int mask;
+
+	/**
+	 * Number of events offered. Written by the event thread only, after the
+	 * slot.
+	 */
+	private final AtomicLong offered = new AtomicLong();
+
+	/**
+	 * Number of events read. Written by the game thread only.
+	 */
+	private final AtomicLong read = new AtomicLong();
+
+	/**
+	 * Events the event thread dropped because the ring was full.
+	 */
+	private final AtomicLong overflows = new AtomicLong();
+
+	/**
+	 * Taps dropped because too many were waiting for their key.
+	 */
+	private final AtomicLong droppedTaps = new AtomicLong();
+
+	/**
+	 * How many taps may wait per key.
+	 */
+	private final int buffer;
+
+	/**
+	 * REPEAT_OS, REPEAT_NONE or milliseconds between repeats.
+	 */
+	private final int repeat;
+
+	/**
+	 * Where the time events waited in the ring is recorded.
+	 */
+	private final FrameMetrics metrics;
+
+	/**
+	 * Taps waiting per button. Game thread only.
+	 */
+	private final int[] pending = new int[4];
+
+	/**
+	 * Whether each button's key is held. Game thread only.
+	 */
+	private final boolean[] held = new boolean[4];
+
+	/**
+	 * Time each button was last pressed or repeated. Game thread only.
+	 */
+	private final long[] tapped = new long[4];
+
+	/**
+	 * Time each button was last released. Game thread only.
+	 */
+	private final long[] released = new long[4];
+
+	/**
+	 * Whether each button was set in the Input by the last apply. Game
+	 * thread only.
+	 */
+	private final boolean[] offeredTap = new boolean[4];
+
+	/**
+	 * Creates a queue with the default capacity, buffer and repeat.
+	 * @param metrics Where to record how long events waited.
+	 */
+	public InputQueue(FrameMetrics metrics) {
+		this(DEFAULT_CAPACITY, DEFAULT_BUFFER, REPEAT_OS, metrics);
+	}
+
+	/**
+	 * Creates a queue.
+	 * @param capacity Number of slots, a power of two.
+	 * @param buffer How many taps may wait per key, at least 1.
+	 * @param repeat REPEAT_OS, REPEAT_NONE or milliseconds between repeats
+	 *            of a held key.
+	 * @param metrics Where to record how long events waited.
+	 */
+	public InputQueue(int capacity, int buffer, int repeat,
+			FrameMetrics metrics) {
+		if (capacity < 1 || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException(
+					"Capacity must be a power of two: " + capacity);
+		}
+		if (buffer < 1) {
+			throw new IllegalArgumentException("Buffer must be positive: "
+					+ buffer);
+		}
+		if (repeat < REPEAT_OS) {
+			throw new IllegalArgumentException("Bad repeat: " + repeat);
+		}
+		buttons = new int[capacity];
+		presses = new boolean[capacity];
+		times = new long[capacity];
+		mask = capacity - 1;
+		this.buffer = buffer;
+		this.repeat = repeat;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Offers a key event. Called by the event thread only.
+	 * @param key The key code, e.g. KeyEvent.VK_LEFT. Keys that do not move
+	 *            the frog are ignored.
+	 * @param down Whether the key was pressed or released.
+	 * @return False if the ring was full and the event dropped.
+	 */
+	public boolean offer(int key, boolean down) {
+		int button = Input.button(key);
+		if (button < 0) {
+			return true;
+		}
+		long sequence = offered.get();
+		if (sequence - read.get() > mask) {
+			overflows.incrementAndGet();
+			return false;
+		}
+		int slot = (int) sequence & mask;
+		buttons[slot] = button;
+		presses[slot] = down;
+		times[slot] = System.nanoTime();
+		offered.lazySet(sequence + 1);
+		return true;
+	}
+
+	/**
+	 * Reads the events offered since the last call and sets the buttons of
+	 * the Input for the next tick: a button is set when a tap is waiting for
+	 * it. Called by the game thread only, once before each tick, with the
+	 * Input the last tick was stepped with, to see which taps it used.
+	 * @param input The Input the World is stepped with.
+	 * @param now The current time, from System.nanoTime.
+	 */
+	public void apply(Input input, long now) {
+		for (int b = 0; b < pending.length; b++) {
+			if (offeredTap[b]) {
+				if (!input.buttons[b]) {
+					// Used.
+					pending[b]--;
+				} else if (!held[b]) {
+					// Could not be used, and the key is up.
+					pending[b]--;
+				}
+			}
+		}
+
+		long end = offered.get();
+		long next = read.get();
+		for (; next < end; next++) {
+			int slot = (int) next & mask;
+			int button = buttons[slot];
+			long time = times[slot];
+			metrics.record(FrameMetrics.INPUT_QUEUE, now - time);
+			if (presses[slot]) {
+				boolean repeated = held[button] || released[button] != 0
+						&& time - released[button] < REPEAT_GAP_NANOS;
+				held[button] = true;
+				if (repeat == REPEAT_OS || !repeated) {
+					tap(button, time);
+				}
+			} else {
+				held[button] = false;
+				released[button] = time;
+			}
+		}
+		read.lazySet(next);
+
+		if (repeat > 0) {
+			long interval = repeat * 1000000L;
+			for (int b = 0; b < pending.length; b++) {
+				if (held[b] && pending[b] == 0 && now - tapped[b] >= interval) {
+					tap(b, now);
+				}
+			}
+		}
+
+		for (int b = 0; b < pending.length; b++) {
+			offeredTap[b] = pending[b] > 0;
+			input.buttons[b] = offeredTap[b];
+		}
+	}
+
+	/**
+	 * Adds a tap for a button, unless too many are waiting.
+	 * @param button The button.
+	 * @param time When it was pressed or repeated.
+	 */
+	private void tap(int button, long time) {
+		tapped[button] = time;
+		if (pending[button] < buffer) {
+			pending[button]++;
+		} else {
+			droppedTaps.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns how many taps may wait per key.
+	 * @return The buffer.
+	 */
+	public int getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Returns how held keys repeat.
+	 * @return REPEAT_OS, REPEAT_NONE or milliseconds between repeats.
+	 */
+	public int getRepeat() {
+		return repeat;
+	}
+
+	/**
+	 * Returns the number of events dropped because the ring was full, i.e.
+	 * the game thread did not tick for a whole ring of events.
+	 * @return The count.
+	 */
+	public long getOverflows() {
+		return overflows.get();
+	}
+
+	/**
+	 * Returns the number of taps dropped because too many were waiting for
+	 * their key.
+	 * @return The count.
+	 */
+	public long getDroppedTaps() {
+		return droppedTaps.get();
+	}
+}
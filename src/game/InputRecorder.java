@@ -0,0 +1,238 @@
+package game;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Records a game so it can be played again exactly by {@link InputReplay}.
+ * A World is deterministic given its seed and the buttons held at the start
+ * of every tick, so that is all that is stored, plus a checksum of the world
+ * state every few ticks to detect when a replay goes a different way.
+ * <p>
+ * File format: the magic number, a version byte, the seed and the checksum
+ * interval, followed by a deflated body. The body is a list of runs, each a
+ * button byte (one bit per Input button) and the number of ticks it was held
+ * as a varint, with {@link #RESTART} marking a World.restart(). It ends with
+ * {@link #END}, the number of ticks, the number of checksums and the
+ * checksums.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class InputRecorder {
+
+	/**
+	 * First bytes of a recording ("FRGR").
+	 */
+	static final int MAGIC = 0x46524752;
+
+	/**
+	 * Version of the file format.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Body byte marking a restart of the World.
+	 */
+	static final int RESTART = 0x80;
+
+	/**
+	 * Body byte marking the end of the runs.
+	 */
+	static final int END = 0xff;
+
+	/**
+	 * Default number of ticks between checksums.
+	 */
+	public static final int DEFAULT_CHECKSUM_INTERVAL = 60;
+
+	/**
+	 * The deflated body.
+	 */
+	private final DataOutputStream body;
+
+	/**
+	 * The compressor, released on close.
+	 */
+	private final Deflater deflater;
+
+	/**
+	 * Number of ticks between checksums.
+	 */
+	private final int checksumInterval;
+
+	/**
+	 * The input the world is stepped with: a copy of the live input taken at
+	 * the start of the tick, so keys pressed during the tick can not reach
+	 * the world without being recorded.
+	 */
+	private final Input stepInput = new Input();
+
+	/**
+	 * Buttons of the current run, -1 before the first.
+	 */
+	private int runButtons = -1;
+
+	/**
+	 * Length of the current run.
+	 */
+	private int runLength;
+
+	/**
+	 * Number of ticks recorded.
+	 */
+	private long ticks;
+
+	/**
+	 * The checksums recorded so far.
+	 */
+	private long[] checksums = new long[64];
+
+	/**
+	 * Number of checksums recorded.
+	 */
+	private int checksumCount;
+
+	/**
+	 * Whether the recording is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Starts a recording.
+	 * @param out Where to write it. Closed when the recording is.
+	 * @param seed The seed of the World being recorded.
+	 * @param checksumInterval The number of ticks between checksums.
+	 * @throws IOException If the header cannot be written.
+	 */
+	public InputRecorder(OutputStream out, long seed, int checksumInterval)
+			throws IOException {
+		this.checksumInterval = checksumInterval;
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeInt(MAGIC);
+		header.writeByte(VERSION);
+		header.writeLong(seed);
+		header.writeInt(checksumInterval);
+		header.flush();
+		deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		body = new DataOutputStream(new DeflaterOutputStream(out, deflater));
+	}
+
+	/**
+	 * Steps a world one tick with the live input and records the tick.
+	 * @param world The world, the one whose seed the recording started with.
+	 * @param input The live input, read from the keyboard. Presses the world
+	 *            consumes are cleared from it, as if it had been stepped with
+	 *            it directly.
+	 * @throws IOException If the recording cannot be written.
+	 */
+	public synchronized void step(World world, Input input) throws IOException {
+		int buttons = 0;
+		for (int i = 0; i < stepInput.buttons.length; i++) {
+			stepInput.buttons[i] = input.buttons[i];
+			if (input.buttons[i]) {
+				buttons |= 1 << i;
+			}
+		}
+		world.step(stepInput);
+		for (int i = 0; i < stepInput.buttons.length; i++) {
+			if (!stepInput.buttons[i] && (buttons & (1 << i)) != 0) {
+				input.buttons[i] = false;
+			}
+		}
+		if (closed) {
+			return;
+		}
+
+		if (buttons == runButtons) {
+			runLength++;
+		} else {
+			flushRun();
+			runButtons = buttons;
+			runLength = 1;
+		}
+		ticks++;
+		if (ticks % checksumInterval == 0) {
+			if (checksumCount == checksums.length) {
+				long[] grown = new long[checksums.length * 2];
+				System.arraycopy(checksums, 0, grown, 0, checksumCount);
+				checksums = grown;
+			}
+			checksums[checksumCount++] = world.checksum();
+		}
+	}
+
+	/**
+	 * Records a restart of the world. Call right after World.restart().
+	 * @throws IOException If the recording cannot be written.
+	 */
+	public synchronized void restarted() throws IOException {
+		if (closed) {
+			return;
+		}
+		flushRun();
+		body.writeByte(RESTART);
+	}
+
+	/**
+	 * Writes the current run, if any.
+	 * @throws IOException If the recording cannot be written.
+	 */
+	private void flushRun() throws IOException {
+		if (runLength > 0) {
+			body.writeByte(runButtons);
+			writeVarint(body, runLength);
+			runLength = 0;
+		}
+		runButtons = -1;
+	}
+
+	/**
+	 * Returns the number of ticks recorded.
+	 * @return The tick count.
+	 */
+	public synchronized long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Finishes the recording and closes the stream. Does nothing if already
+	 * closed.
+	 * @throws IOException If the recording cannot be written.
+	 */
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			flushRun();
+			body.writeByte(END);
+			writeVarint(body, ticks);
+			writeVarint(body, checksumCount);
+			for (int i = 0; i < checksumCount; i++) {
+				body.writeLong(checksums[i]);
+			}
+			body.close();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Writes an unsigned variable length integer, 7 bits per byte.
+	 * @param out The stream.
+	 * @param value The value, not negative.
+	 * @throws IOException If it cannot be written.
+	 */
+	static void writeVarint(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.writeByte((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+}
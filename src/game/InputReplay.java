@@ -0,0 +1,268 @@
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Plays back a game recorded by {@link InputRecorder}: creates a World with
+ * the recorded seed and steps it with the recorded buttons, comparing the
+ * world's checksum with the recorded one wherever there is one. The first
+ * tick where they differ is remembered, which shows that the game logic
+ * changed since the recording was made (or was not deterministic).
+ * <p>
+ * The whole recording is decoded when it is opened; recordings are small
+ * since held buttons are stored as runs.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class InputReplay {
+
+	/**
+	 * The seed of the recorded World.
+	 */
+	private final long seed;
+
+	/**
+	 * Number of ticks between checksums.
+	 */
+	private final int checksumInterval;
+
+	/**
+	 * Button byte (or RESTART) of each run.
+	 */
+	private byte[] runButtons = new byte[256];
+
+	/**
+	 * Number of ticks of each run.
+	 */
+	private int[] runLengths = new int[256];
+
+	/**
+	 * Number of runs.
+	 */
+	private int runCount;
+
+	/**
+	 * Number of recorded ticks.
+	 */
+	private final long totalTicks;
+
+	/**
+	 * The recorded checksums.
+	 */
+	private final long[] checksums;
+
+	/**
+	 * The world being replayed.
+	 */
+	private final World world;
+
+	/**
+	 * The input the world is stepped with.
+	 */
+	private final Input input = new Input();
+
+	/**
+	 * The current run.
+	 */
+	private int run;
+
+	/**
+	 * Ticks left of the current run.
+	 */
+	private int runRemaining;
+
+	/**
+	 * Number of ticks replayed.
+	 */
+	private long ticks;
+
+	/**
+	 * First tick whose checksum did not match, -1 if none.
+	 */
+	private long divergedTick = -1;
+
+	/**
+	 * Reads a recording from a file.
+	 * @param fileName The file.
+	 * @throws IOException If it cannot be read or is not a recording.
+	 */
+	public InputReplay(String fileName) throws IOException {
+		this(new BufferedInputStream(new FileInputStream(fileName)));
+	}
+
+	/**
+	 * Reads a recording.
+	 * @param in The recording. Closed when read.
+	 * @throws IOException If it cannot be read or is not a recording.
+	 */
+	public InputReplay(InputStream in) throws IOException {
+		try {
+			DataInputStream header = new DataInputStream(in);
+			if (header.readInt() != InputRecorder.MAGIC) {
+				throw new IOException("Not a Froggr recording");
+			}
+			int version = header.readUnsignedByte();
+			if (version != InputRecorder.VERSION) {
+				throw new IOException("Unsupported recording version " + version);
+			}
+			seed = header.readLong();
+			checksumInterval = header.readInt();
+
+			DataInputStream body = new DataInputStream(new InflaterInputStream(in));
+			int b;
+			while ((b = body.readUnsignedByte()) != InputRecorder.END) {
+				int length = b == InputRecorder.RESTART ? 0 : (int) readVarint(body);
+				addRun(b, length);
+			}
+			totalTicks = readVarint(body);
+			checksums = new long[(int) readVarint(body)];
+			for (int i = 0; i < checksums.length; i++) {
+				checksums[i] = body.readLong();
+			}
+		} catch (EOFException e) {
+			throw new IOException("Recording is truncated", e);
+		} finally {
+			in.close();
+		}
+		world = new World(seed);
+	}
+
+	/**
+	 * Appends a run.
+	 * @param buttons The button byte, or RESTART.
+	 * @param length The number of ticks.
+	 */
+	private void addRun(int buttons, int length) {
+		if (runCount == runButtons.length) {
+			byte[] grownButtons = new byte[runCount * 2];
+			int[] grownLengths = new int[runCount * 2];
+			System.arraycopy(runButtons, 0, grownButtons, 0, runCount);
+			System.arraycopy(runLengths, 0, grownLengths, 0, runCount);
+			runButtons = grownButtons;
+			runLengths = grownLengths;
+		}
+		runButtons[runCount] = (byte) buttons;
+		runLengths[runCount] = length;
+		runCount++;
+	}
+
+	/**
+	 * Replays one tick, and any restarts recorded before it.
+	 * @return False if the recording is over and nothing was replayed.
+	 */
+	public boolean step() {
+		while (runRemaining == 0) {
+			if (run == runCount) {
+				return false;
+			}
+			if ((runButtons[run] & 0xff) == InputRecorder.RESTART) {
+				world.restart();
+				run++;
+			} else {
+				runRemaining = runLengths[run];
+			}
+		}
+		int buttons = runButtons[run];
+		for (int i = 0; i < input.buttons.length; i++) {
+			input.buttons[i] = (buttons & (1 << i)) != 0;
+		}
+		world.step(input);
+		if (--runRemaining == 0) {
+			run++;
+		}
+
+		ticks++;
+		if (ticks % checksumInterval == 0 && divergedTick < 0) {
+			int index = (int) (ticks / checksumInterval) - 1;
+			if (index < checksums.length && checksums[index] != world.checksum()) {
+				divergedTick = ticks;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Replays every remaining tick as fast as possible.
+	 * @return The number of ticks replayed.
+	 */
+	public long replayAll() {
+		long start = ticks;
+		while (step()) {
+		}
+		return ticks - start;
+	}
+
+	/**
+	 * Returns the world being replayed.
+	 * @return The world.
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * Returns the recorded seed.
+	 * @return The seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the number of ticks replayed so far.
+	 * @return The tick count.
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Returns the number of recorded ticks.
+	 * @return The tick count.
+	 */
+	public long getTotalTicks() {
+		return totalTicks;
+	}
+
+	/**
+	 * Returns whether a checksum did not match.
+	 * @return True if the replay went a different way than the recording.
+	 */
+	public boolean isDiverged() {
+		return divergedTick >= 0;
+	}
+
+	/**
+	 * Returns the tick at which a checksum first did not match. The
+	 * difference happened at most one checksum interval before.
+	 * @return The tick, or -1 if every checksum matched.
+	 */
+	public long getDivergedTick() {
+		return divergedTick;
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 * @param in The stream.
+	 * @return The value.
+	 * @throws IOException If it cannot be read.
+	 */
+	static long readVarint(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+}
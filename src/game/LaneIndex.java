@@ -0,0 +1,230 @@
+package game;
+
+import sprites.MovingObject;
+
+/**
+ * Keeps moving objects in one bucket per lane, each bucket sorted by x
+ * coordinate, so collision checks only look at the objects in the player's
+ * lane that can actually overlap the player. Finding them takes two binary
+ * searches instead of a scan over every object in the world.
+ * <p>
+ * Objects never change lane. Call {@link #update()} after moving them to
+ * restore the order (a single insertion sort pass, which does nothing when
+ * everything in a lane moves at the same speed) and {@link #removeRemoved()}
+ * to drop the removed ones.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ * @param <T> The type of moving object indexed.
+ */
+public class LaneIndex<T extends MovingObject> {
+
+	/**
+	 * Initial capacity of each lane bucket.
+	 */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/**
+	 * The objects in each lane, sorted by x coordinate.
+	 */
+	private MovingObject[][] buckets;
+
+	/**
+	 * Number of objects in each lane.
+	 */
+	private int[] sizes;
+
+	/**
+	 * Widest object ever added to each lane, in pixels.
+	 */
+	private int[] maxWidths;
+
+	/**
+	 * Height of a lane in pixels.
+	 */
+	private final int laneHeight;
+
+	/**
+	 * Creates an empty index.
+	 * @param numberOfLanes The number of lanes.
+	 * @param laneHeight The height of a lane in pixels.
+	 */
+	public LaneIndex(int numberOfLanes, int laneHeight) {
+		this.laneHeight = laneHeight;
+		buckets = new MovingObject[numberOfLanes][INITIAL_CAPACITY];
+		sizes = new int[numberOfLanes];
+		maxWidths = new int[numberOfLanes];
+	}
+
+	/**
+	 * Returns the lane a y coordinate is in.
+	 * @param yPos The y coordinate.
+	 * @return The lane index, or -1 if outside the lanes.
+	 */
+	public int laneOf(int yPos) {
+		int lane = yPos / laneHeight;
+		return (yPos < 0 || lane >= sizes.length) ? -1 : lane;
+	}
+
+	/**
+	 * Adds an object to the bucket of the lane it is in.
+	 * @param object The object to add.
+	 */
+	public void add(T object) {
+		int lane = laneOf(object.getYPos());
+		if (lane < 0) {
+			return;
+		}
+		MovingObject[] bucket = buckets[lane];
+		int size = sizes[lane];
+		if (size == bucket.length) {
+			MovingObject[] grown = new MovingObject[size * 2];
+			System.arraycopy(bucket, 0, grown, 0, size);
+			buckets[lane] = bucket = grown;
+		}
+		int position = lowerBound(bucket, size, object.getXPos());
+		System.arraycopy(bucket, position, bucket, position + 1, size - position);
+		bucket[position] = object;
+		sizes[lane] = size + 1;
+		maxWidths[lane] = Math.max(maxWidths[lane], object.calculatePixelWidth());
+	}
+
+	/**
+	 * Restores the x order of every lane after the objects have moved.
+	 */
+	public void update() {
+		for (int lane = 0; lane < sizes.length; lane++) {
+			MovingObject[] bucket = buckets[lane];
+			int size = sizes[lane];
+			for (int i = 1; i < size; i++) {
+				MovingObject object = bucket[i];
+				int x = object.getXPos();
+				int j = i - 1;
+				while (j >= 0 && bucket[j].getXPos() > x) {
+					bucket[j + 1] = bucket[j];
+					j--;
+				}
+				bucket[j + 1] = object;
+			}
+		}
+	}
+
+	/**
+	 * Drops every removed object, keeping the order of the others.
+	 */
+	public void removeRemoved() {
+		for (int lane = 0; lane < sizes.length; lane++) {
+			MovingObject[] bucket = buckets[lane];
+			int size = sizes[lane];
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (!bucket[i].isRemoved()) {
+					bucket[kept++] = bucket[i];
+				}
+			}
+			for (int i = kept; i < size; i++) {
+				bucket[i] = null;
+			}
+			sizes[lane] = kept;
+		}
+	}
+
+	/**
+	 * Removes every object.
+	 */
+	public void clear() {
+		for (int lane = 0; lane < sizes.length; lane++) {
+			for (int i = 0; i < sizes[lane]; i++) {
+				buckets[lane][i] = null;
+			}
+			sizes[lane] = 0;
+		}
+	}
+
+	/**
+	 * Returns the position of the first object in a lane that may overlap
+	 * the horizontal range starting at xMin.
+	 * @param lane The lane.
+	 * @param xMin The left edge of the range.
+	 * @return The position of the first candidate.
+	 */
+	public int first(int lane, int xMin) {
+		// Objects starting further left than this are too short to reach xMin.
+		return upperBound(buckets[lane], sizes[lane], xMin - maxWidths[lane]);
+	}
+
+	/**
+	 * Returns the position after the last object in a lane that may overlap
+	 * the horizontal range ending at xMax.
+	 * @param lane The lane.
+	 * @param xMax The right edge of the range (exclusive).
+	 * @return The position after the last candidate.
+	 */
+	public int end(int lane, int xMax) {
+		return lowerBound(buckets[lane], sizes[lane], xMax);
+	}
+
+	/**
+	 * Returns an object in a lane.
+	 * @param lane The lane.
+	 * @param position The position in the lane, in x order.
+	 * @return The object.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int lane, int position) {
+		return (T) buckets[lane][position];
+	}
+
+	/**
+	 * Returns the number of objects in a lane.
+	 * @param lane The lane.
+	 * @return The number of objects.
+	 */
+	public int size(int lane) {
+		return sizes[lane];
+	}
+
+	/**
+	 * Finds the first position whose object has an x coordinate of at least
+	 * the specified value.
+	 * @param bucket The lane bucket.
+	 * @param size The number of objects in the bucket.
+	 * @param x The x coordinate.
+	 * @return The position.
+	 */
+	private static int lowerBound(MovingObject[] bucket, int size, int x) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (bucket[mid].getXPos() < x) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Finds the first position whose object has an x coordinate greater than
+	 * the specified value.
+	 * @param bucket The lane bucket.
+	 * @param size The number of objects in the bucket.
+	 * @param x The x coordinate.
+	 * @return The position.
+	 */
+	private static int upperBound(MovingObject[] bucket, int size, int x) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (bucket[mid].getXPos() <= x) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,476 @@
+package game;
+
+import java.awt.AWTException;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Robot;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Measures how long it takes from a key press until the frog changes on the
+ * screen, the latency a player feels, with the real game in a real window.
+ * Used to tell whether a change to the game loop, the rendering or the input
+ * handling makes the game more or less responsive.
+ * <p>
+ * Every configuration runs in a JVM of its own, because the Java2D pipeline
+ * is chosen once per JVM. There the game is started, the window is clicked
+ * to get the keyboard focus, and java.awt.Robot presses left and right in
+ * turn, so the frog shuffles along its safe starting lane and never dies.
+ * After each press the lane is captured from the screen until it differs
+ * from before the press; the time between is one sample. Presses are a
+ * random 50 to 150 ms apart, so they fall anywhere in a frame. A sample
+ * includes the time of one screen capture, reported as the resolution.
+ * <p>
+ * A configuration is a comma separated list of settings, e.g.
+ * <code>buffers=3,fps=0</code>:
+ * <ul>
+ * <li><code>ticks=N</code> simulation ticks per second (default 60; the game
+ * runs faster or slower with it)</li>
+ * <li><code>fps=N</code> frame rate limit, 0 for none (default the refresh
+ * rate)</li>
+ * <li><code>buffers=N</code> buffers of the BufferStrategy (default 2)</li>
+ * <li><code>dirty=true|false</code> whether only changed regions are drawn
+ * (default false)</li>
+ * <li><code>pipeline=default|xrender|opengl|software</code> the Java2D
+ * pipeline</li>
+ * <li><code>repeat=os|none|N</code> the key repeat of the input queue</li>
+ * </ul>
+ * <p>
+ * Usage: <code>java game.LatencyHarness [options] [configuration]...</code>,
+ * with the options
+ * <ul>
+ * <li><code>--presses N</code> samples per configuration (default 200)</li>
+ * <li><code>--xvfb :N</code> run the games on a virtual X server started on
+ * that display, for machines without a screen</li>
+ * <li><code>--out FILE</code> where to write every sample as CSV</li>
+ * </ul>
+ * Without configurations a default set comparing buffering, frame limits,
+ * dirty regions and pipelines is measured. A table of latency percentiles
+ * per configuration is printed at the end.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class LatencyHarness {
+
+	/**
+	 * Configurations measured when none are given.
+	 */
+	private static final String[] DEFAULT_CONFIGURATIONS = { "buffers=2",
+			"buffers=3", "buffers=2,fps=0", "buffers=2,dirty=true",
+			"buffers=2,ticks=120", "pipeline=xrender", "pipeline=opengl",
+			"pipeline=software" };
+
+	/**
+	 * Percentiles reported.
+	 */
+	private static final double[] PERCENTILES = { 50, 90, 99 };
+
+	/**
+	 * Start of a sample line printed by a measuring JVM.
+	 */
+	private static final String SAMPLE = "latency ";
+
+	/**
+	 * Start of the line with the capture time printed by a measuring JVM.
+	 */
+	private static final String RESOLUTION = "resolution ";
+
+	/**
+	 * Line printed by a measuring JVM for a press nothing changed after.
+	 */
+	private static final String MISS = "miss";
+
+	/**
+	 * How long to wait for the screen to change after a press.
+	 */
+	private static final long TIMEOUT_NANOS = 1000000000L;
+
+	/**
+	 * How long to let the game start and draw before measuring.
+	 */
+	private static final int WARM_UP_MILLIS = 2000;
+
+	/**
+	 * Top of the frog's starting lane on the canvas.
+	 */
+	private static final int LANE_Y = World.GAME_HEIGHT - 2 * World.LANE_HEIGHT;
+
+	/**
+	 * Results of one configuration.
+	 */
+	private static class Result {
+
+		/**
+		 * The configuration.
+		 */
+		final String configuration;
+
+		/**
+		 * Latencies in nanoseconds.
+		 */
+		final List<Long> samples = new ArrayList<Long>();
+
+		/**
+		 * Presses nothing changed after.
+		 */
+		int misses;
+
+		/**
+		 * Mean time of a screen capture in nanoseconds.
+		 */
+		long resolution;
+
+		/**
+		 * Exit status of the measuring JVM.
+		 */
+		int status;
+
+		/**
+		 * Creates an empty result.
+		 * @param configuration The configuration.
+		 */
+		Result(String configuration) {
+			this.configuration = configuration;
+		}
+	}
+
+	/**
+	 * Runs the game in this JVM and measures it, printing one line per press
+	 * for the JVM that started this one.
+	 * @param presses The number of presses.
+	 * @throws AWTException If there is no screen to use.
+	 * @throws InterruptedException If interrupted.
+	 * @throws InvocationTargetException If the game cannot be started.
+	 */
+	private static void measure(int presses) throws AWTException,
+			InterruptedException, InvocationTargetException {
+		final FroggrGameApplication[] application = new FroggrGameApplication[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				application[0] = new FroggrGameApplication();
+				application[0].startGame();
+			}
+		});
+		FroggrGame game = application[0].getGame();
+		Robot robot = new Robot();
+		robot.setAutoDelay(0);
+		Thread.sleep(WARM_UP_MILLIS);
+
+		Point origin = game.getLocationOnScreen();
+		robot.mouseMove(origin.x + World.GAME_WIDTH / 2, origin.y + LANE_Y / 2);
+		robot.mousePress(InputEvent.BUTTON1_DOWN_MASK);
+		robot.mouseRelease(InputEvent.BUTTON1_DOWN_MASK);
+		robot.waitForIdle();
+		Thread.sleep(WARM_UP_MILLIS / 4);
+
+		Rectangle lane = new Rectangle(origin.x, origin.y + LANE_Y,
+				World.GAME_WIDTH, World.LANE_HEIGHT);
+		Random random = new Random(1);
+		long captures = 0;
+		long captureNanos = 0;
+		for (int i = 0; i < presses; i++) {
+			Thread.sleep(50 + random.nextInt(101));
+			int[] before = pixels(robot.createScreenCapture(lane));
+			int key = i % 2 == 0 ? KeyEvent.VK_RIGHT : KeyEvent.VK_LEFT;
+			long pressed = System.nanoTime();
+			robot.keyPress(key);
+			robot.keyRelease(key);
+			long latency = -1;
+			long now = pressed;
+			while (now - pressed < TIMEOUT_NANOS) {
+				long start = System.nanoTime();
+				int[] after = pixels(robot.createScreenCapture(lane));
+				now = System.nanoTime();
+				captures++;
+				captureNanos += now - start;
+				if (!Arrays.equals(before, after)) {
+					latency = now - pressed;
+					break;
+				}
+			}
+			System.out.println(latency < 0 ? MISS : SAMPLE + latency);
+		}
+		System.out.println(RESOLUTION + captureNanos / Math.max(1, captures));
+		System.out.flush();
+		System.exit(0);
+	}
+
+	/**
+	 * Returns the pixels of a captured image.
+	 * @param image The image.
+	 * @return Its RGB values, row by row.
+	 */
+	private static int[] pixels(BufferedImage image) {
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null,
+				0, image.getWidth());
+	}
+
+	/**
+	 * Measures a configuration in a JVM of its own.
+	 * @param configuration The configuration.
+	 * @param presses The number of presses.
+	 * @param display The X display to use, or null for the current one.
+	 * @return The results.
+	 * @throws IOException If the JVM cannot be started.
+	 * @throws InterruptedException If interrupted.
+	 */
+	private static Result run(String configuration, int presses,
+			String display) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		for (String setting : configuration.split(",")) {
+			int equals = setting.indexOf('=');
+			if (equals < 0) {
+				usage("Expected NAME=VALUE but got " + setting);
+			}
+			String name = setting.substring(0, equals).trim();
+			String value = setting.substring(equals + 1).trim();
+			if (name.equals("ticks")) {
+				command.add("-Dfroggr.loop.ticksPerSecond=" + value);
+			} else if (name.equals("fps")) {
+				command.add("-Dfroggr.loop.fps=" + value);
+			} else if (name.equals("buffers")) {
+				command.add("-Dfroggr.render.buffers=" + value);
+			} else if (name.equals("dirty")) {
+				command.add("-Dfroggr.render.dirty=" + value);
+			} else if (name.equals("repeat")) {
+				command.add("-Dfroggr.input.repeat=" + value);
+			} else if (name.equals("pipeline")) {
+				if (value.equals("xrender")) {
+					command.add("-Dsun.java2d.xrender=true");
+				} else if (value.equals("opengl")) {
+					command.add("-Dsun.java2d.opengl=true");
+				} else if (value.equals("software")) {
+					command.add("-Dsun.java2d.xrender=false");
+					command.add("-Dsun.java2d.opengl=false");
+					command.add("-Dsun.java2d.pmoffscreen=false");
+				} else if (!value.equals("default")) {
+					usage("Unknown pipeline " + value);
+				}
+			} else {
+				usage("Unknown setting " + name);
+			}
+		}
+		command.add(LatencyHarness.class.getName());
+		command.add("--measure");
+		command.add(Integer.toString(presses));
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		if (display != null) {
+			builder.environment().put("DISPLAY", display);
+		}
+		Process process = builder.start();
+		Result result = new Result(configuration);
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				process.getInputStream(), Charset.defaultCharset()));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith(SAMPLE)) {
+					result.samples.add(Long.valueOf(line.substring(SAMPLE
+							.length())));
+				} else if (line.equals(MISS)) {
+					result.misses++;
+				} else if (line.startsWith(RESOLUTION)) {
+					result.resolution = Long.parseLong(line
+							.substring(RESOLUTION.length()));
+				} else {
+					System.out.println(line);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		result.status = process.waitFor();
+		return result;
+	}
+
+	/**
+	 * Returns a percentile of sorted samples, by the nearest rank.
+	 * @param sorted The samples, sorted.
+	 * @param percentile The percentile, 0 to 100.
+	 * @return The sample at the percentile.
+	 */
+	private static long percentile(long[] sorted, double percentile) {
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+	}
+
+	/**
+	 * Converts nanoseconds to milliseconds.
+	 * @param nanos The nanoseconds.
+	 * @return The milliseconds.
+	 */
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * Prints the table of percentiles.
+	 * @param results The results of every configuration.
+	 */
+	private static void report(List<Result> results) {
+		StringBuilder header = new StringBuilder(String.format(Locale.ROOT,
+				"%-28s %7s %6s %8s", "configuration", "samples", "misses",
+				"mean ms"));
+		for (double p : PERCENTILES) {
+			header.append(String.format(Locale.ROOT, " %8s", "p"
+					+ (int) p + " ms"));
+		}
+		header.append(String.format(Locale.ROOT, " %8s %8s", "max ms",
+				"res ms"));
+		System.out.println(header);
+		for (Result result : results) {
+			long[] sorted = new long[result.samples.size()];
+			long total = 0;
+			for (int i = 0; i < sorted.length; i++) {
+				sorted[i] = result.samples.get(i);
+				total += sorted[i];
+			}
+			Arrays.sort(sorted);
+			StringBuilder row = new StringBuilder(String.format(Locale.ROOT,
+					"%-28s %7d %6d", result.configuration, sorted.length,
+					result.misses));
+			if (sorted.length == 0) {
+				row.append(result.status == 0 ? "  no samples"
+						: "  failed with status " + result.status);
+			} else {
+				row.append(String.format(Locale.ROOT, " %8.2f",
+						millis(total / sorted.length)));
+				for (double p : PERCENTILES) {
+					row.append(String.format(Locale.ROOT, " %8.2f",
+							millis(percentile(sorted, p))));
+				}
+				row.append(String.format(Locale.ROOT, " %8.2f %8.2f",
+						millis(sorted[sorted.length - 1]),
+						millis(result.resolution)));
+			}
+			System.out.println(row);
+		}
+	}
+
+	/**
+	 * Writes every sample as CSV.
+	 * @param results The results of every configuration.
+	 * @param file Where to write them.
+	 * @throws IOException If the file cannot be written.
+	 */
+	private static void write(List<Result> results, String file)
+			throws IOException {
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(
+				new FileOutputStream(file), Charset.forName("UTF-8")));
+		try {
+			out.println("configuration,latency_ms");
+			for (Result result : results) {
+				for (Long sample : result.samples) {
+					out.println("\"" + result.configuration + "\","
+							+ String.format(Locale.ROOT, "%.3f",
+									millis(sample.longValue())));
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Measures the configurations given, or the default ones.
+	 * @param args The options and configurations.
+	 * @throws Exception If the measurement fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		int presses = 200;
+		String display = null;
+		String outFile = null;
+		List<String> configurations = new ArrayList<String>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].startsWith("--") && i + 1 == args.length) {
+					usage("Missing value for " + args[i]);
+				}
+				if (args[i].equals("--measure")) {
+					measure(Integer.parseInt(args[i + 1]));
+					return;
+				} else if (args[i].equals("--presses")) {
+					presses = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--xvfb")) {
+					display = args[++i];
+				} else if (args[i].equals("--out")) {
+					outFile = args[++i];
+				} else if (args[i].startsWith("--")) {
+					usage("Unknown option " + args[i]);
+				} else {
+					configurations.add(args[i]);
+				}
+			}
+		} catch (NumberFormatException e) {
+			usage("Not a number: " + e.getMessage());
+		}
+		if (presses < 1) {
+			usage("Presses must be positive");
+		}
+		if (configurations.isEmpty()) {
+			configurations.addAll(Arrays.asList(DEFAULT_CONFIGURATIONS));
+		}
+
+		Process xvfb = null;
+		if (display != null) {
+			xvfb = new ProcessBuilder("Xvfb", display, "-screen", "0",
+					"1024x768x24").redirectErrorStream(true)
+					.redirectOutput(ProcessBuilder.Redirect.INHERIT).start();
+			// Give it time to accept connections.
+			Thread.sleep(1000);
+		}
+		try {
+			List<Result> results = new ArrayList<Result>();
+			for (String configuration : configurations) {
+				System.err.println("Measuring " + configuration);
+				results.add(run(configuration, presses, display));
+			}
+			report(results);
+			if (outFile != null) {
+				write(results, outFile);
+			}
+		} finally {
+			if (xvfb != null) {
+				xvfb.destroy();
+			}
+		}
+	}
+
+	/**
+	 * Prints a problem with the arguments and how to use the harness, and
+	 * exits.
+	 * @param problem The problem.
+	 */
+	private static void usage(String problem) {
+		System.err.println(problem);
+		System.err.println("Usage: java game.LatencyHarness [--presses N] "
+				+ "[--xvfb :N] [--out FILE] [configuration]...");
+		System.exit(2);
+	}
+}
@@ -0,0 +1,34 @@
+package game;
+
+/**
+ * A Clock that only moves when told to. Sleeping advances the clock
+ * instantly.
+ * 
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class ManualClock implements Clock {
+
+	/**
+	 * The current time in nanoseconds.
+	 */
+	private long now;
+
+	@Override
+	public long nanoTime() {
+		return now;
+	}
+
+	@Override
+	public void sleep(long nanos) {
+		advance(nanos);
+	}
+
+	/**
+	 * Moves the clock forward.
+	 * @param nanos The time to advance by in nanoseconds.
+	 */
+	public void advance(long nanos) {
+		now += nanos;
+	}
+}
@@ -0,0 +1,29 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * Decides which button a simulated frog presses each tick, for playing games
+ * without a player, e.g. in {@link BatchSimulation}. A policy must not keep
+ * state between calls: one instance plays many games at once on different
+ * threads.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public interface Policy {
+
+	/**
+	 * Action for pressing no button.
+	 */
+	int NONE = -1;
+
+	/**
+	 * Chooses the button to press this tick.
+	 * @param world The world, before the tick.
+	 * @param random The game's source of randomness, so a seed reproduces
+	 *            a game.
+	 * @return Input.LEFT, RIGHT, UP or DOWN, or NONE.
+	 */
+	int act(World world, Random random);
+}
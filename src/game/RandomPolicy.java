@@ -0,0 +1,67 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * A frog that hops at random moments in random directions, favoring up so it
+ * gets somewhere. A baseline the other policies and the lane balance can be
+ * compared with.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class RandomPolicy implements Policy {
+
+	/**
+	 * The chance of hopping in a tick.
+	 */
+	private final double hopChance;
+
+	/**
+	 * Creates a random policy that hops about twice a second.
+	 */
+	public RandomPolicy() {
+		this(1.0 / 30);
+	}
+
+	/**
+	 * Creates a random policy.
+	 * @param hopChance The chance of hopping in a tick, from 0 to 1.
+	 */
+	public RandomPolicy(double hopChance) {
+		this.hopChance = hopChance;
+	}
+
+	/**
+	 * Hops with a chance of hopChance: up half of the time, left or right a
+	 * fifth of the time each and down otherwise.
+	 * @param world The world.
+	 * @param random The game's source of randomness.
+	 * @return The button to press, or NONE.
+	 */
+	@Override
+	public int act(World world, Random random) {
+		if (random.nextDouble() >= hopChance) {
+			return NONE;
+		}
+		int roll = random.nextInt(10);
+		if (roll < 5) {
+			return Input.UP;
+		} else if (roll < 7) {
+			return Input.LEFT;
+		} else if (roll < 9) {
+			return Input.RIGHT;
+		} else {
+			return Input.DOWN;
+		}
+	}
+
+	/**
+	 * Returns the name of the policy, for reports.
+	 * @return The name.
+	 */
+	@Override
+	public String toString() {
+		return "random";
+	}
+}
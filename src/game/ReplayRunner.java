@@ -0,0 +1,44 @@
+package game;
+
+import java.io.IOException;
+
+/**
+ * Replays a recording headlessly, as fast as possible, and reports whether
+ * the game went the same way as when it was recorded. Exits with status 1 if
+ * a checksum did not match, so it can be used in scripts to check that a
+ * change to the game logic did not change how recorded games play.
+ * <p>
+ * Usage: <code>java game.ReplayRunner recording.frgr</code>. To watch a
+ * recording at normal speed instead, start the game with
+ * <code>-Dfroggr.replay=recording.frgr</code>.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class ReplayRunner {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: java game.ReplayRunner <recording>");
+			System.exit(2);
+		}
+		InputReplay replay = new InputReplay(args[0]);
+		long start = System.nanoTime();
+		long ticks = replay.replayAll();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		World world = replay.getWorld();
+		System.out.println("seed " + replay.getSeed());
+		System.out.println("ticks " + ticks + " of " + replay.getTotalTicks()
+				+ String.format(" in %.3f s (%.0f ticks/s)", seconds, ticks
+						/ Math.max(seconds, 1e-9)));
+		System.out.println("score " + world.getScore() + ", lives "
+				+ world.getPlayer().getLives() + ", flies "
+				+ world.getFlysConsumed());
+		if (replay.isDiverged()) {
+			System.out.println("DIVERGED at tick " + replay.getDivergedTick());
+			System.exit(1);
+		}
+		System.out.println("OK: every checksum matched");
+	}
+}
@@ -0,0 +1,273 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A save-state file: World snapshots written through a memory-mapped file,
+ * so saving is a copy into memory the operating system writes back on its
+ * own, and the game thread never waits for the disk.
+ * <p>
+ * The file holds two slots, written in turn. Each slot has a header of a
+ * sequence number, the snapshot's length and a CRC32 of the three, written
+ * after the snapshot. Loading takes the valid slot with the highest
+ * sequence, so a save cut short by a crash leaves the previous one in the
+ * other slot intact.
+ * <p>
+ * Layout: int magic, int version, int slot size, int reserved, then two
+ * slots of long sequence, int length, int CRC and the slot size of data.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class SaveStateFile implements Closeable {
+
+	/**
+	 * Default room for a snapshot, far more than a game needs.
+	 */
+	public static final int DEFAULT_SLOT_SIZE = 64 * 1024;
+
+	/**
+	 * "FRSV", the first bytes of a save-state file.
+	 */
+	private static final int MAGIC = 0x46525356;
+
+	/**
+	 * Version of the file layout.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Size of the file header.
+	 */
+	private static final int FILE_HEADER_SIZE = 16;
+
+	/**
+	 * Size of a slot header.
+	 */
+	private static final int SLOT_HEADER_SIZE = 16;
+
+	/**
+	 * The file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The whole file, mapped.
+	 */
+	private final MappedByteBuffer map;
+
+	/**
+	 * Room for a snapshot in each slot.
+	 */
+	private final int slotSize;
+
+	/**
+	 * Sums the slots' contents.
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * Sequence number of the newest valid slot, 0 if there is none.
+	 */
+	private long sequence;
+
+	/**
+	 * The slot the next save goes to.
+	 */
+	private int nextSlot;
+
+	/**
+	 * Opens a save-state file, creating it with the default slot size if it
+	 * does not exist.
+	 * @param path The file.
+	 * @throws IOException If it cannot be opened or is not a save-state
+	 *             file.
+	 */
+	public SaveStateFile(Path path) throws IOException {
+		this(path, DEFAULT_SLOT_SIZE);
+	}
+
+	/**
+	 * Opens a save-state file, creating it if it does not exist.
+	 * @param path The file.
+	 * @param slotSize Room for a snapshot in each slot of a new file. An
+	 *            existing file keeps its own.
+	 * @throws IOException If it cannot be opened or is not a save-state
+	 *             file.
+	 */
+	public SaveStateFile(Path path, int slotSize) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			boolean created = channel.size() == 0;
+			if (!created) {
+				ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+				channel.read(header, 0);
+				header.flip();
+				if (header.remaining() < FILE_HEADER_SIZE
+						|| header.getInt() != MAGIC || header.getInt() != VERSION) {
+					throw new IOException(path + " is not a save-state file");
+				}
+				slotSize = header.getInt();
+			}
+			this.slotSize = slotSize;
+			map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					FILE_HEADER_SIZE + 2L * (SLOT_HEADER_SIZE + slotSize));
+			if (created) {
+				map.putInt(0, MAGIC);
+				map.putInt(4, VERSION);
+				map.putInt(8, slotSize);
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		int newest = newestSlot();
+		if (newest >= 0) {
+			sequence = map.getLong(slotOffset(newest));
+			nextSlot = 1 - newest;
+		}
+	}
+
+	/**
+	 * Saves a snapshot of a world in the older slot. Costs a copy of a few
+	 * hundred bytes and a checksum; the operating system writes the pages to
+	 * the disk later, see force.
+	 * @param world The world.
+	 * @throws IllegalStateException If the snapshot does not fit in a slot.
+	 */
+	public void save(World world) {
+		int offset = slotOffset(nextSlot);
+		ByteBuffer data = slotData(offset, slotSize);
+		try {
+			world.writeSnapshot(data);
+		} catch (BufferOverflowException e) {
+			throw new IllegalStateException("Snapshot larger than the slot size "
+					+ slotSize);
+		}
+		long next = sequence + 1;
+		int length = data.position();
+		map.putLong(offset, next);
+		map.putInt(offset + 8, length);
+		map.putInt(offset + 12, checksum(offset, length));
+		sequence = next;
+		nextSlot = 1 - nextSlot;
+	}
+
+	/**
+	 * Puts a world in the state of the newest valid save.
+	 * @param world The world, with the regeneration times of the saved one.
+	 * @return False if there is no valid save.
+	 * @throws IllegalArgumentException If the save does not fit the world.
+	 */
+	public boolean load(World world) {
+		int newest = newestSlot();
+		if (newest < 0) {
+			return false;
+		}
+		int offset = slotOffset(newest);
+		world.readSnapshot(slotData(offset, map.getInt(offset + 8)));
+		return true;
+	}
+
+	/**
+	 * Returns whether the file holds a valid save.
+	 * @return True if load would succeed.
+	 */
+	public boolean hasSave() {
+		return newestSlot() >= 0;
+	}
+
+	/**
+	 * Returns the sequence number of the newest save.
+	 * @return The number of saves ever made to the file, 0 if none.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Waits until the saves are on the disk, so they survive a power loss as
+	 * well as a crash of the game. Not needed for a crash of the game alone.
+	 */
+	public void force() {
+		map.force();
+	}
+
+	/**
+	 * Closes the file. The mapping stays valid until it is garbage collected,
+	 * but must not be used.
+	 * @throws IOException If the file cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Finds the valid slot with the highest sequence number.
+	 * @return The slot, or -1 if neither is valid.
+	 */
+	private int newestSlot() {
+		int newest = -1;
+		long newestSequence = 0;
+		for (int slot = 0; slot < 2; slot++) {
+			int offset = slotOffset(slot);
+			long slotSequence = map.getLong(offset);
+			int length = map.getInt(offset + 8);
+			if (slotSequence > newestSequence && length >= 0
+					&& length <= slotSize
+					&& map.getInt(offset + 12) == checksum(offset, length)) {
+				newest = slot;
+				newestSequence = slotSequence;
+			}
+		}
+		return newest;
+	}
+
+	/**
+	 * Sums a slot's sequence number, length and data.
+	 * @param offset Where the slot starts.
+	 * @param length The length of its data.
+	 * @return The CRC32.
+	 */
+	private int checksum(int offset, int length) {
+		crc.reset();
+		ByteBuffer covered = map.duplicate();
+		covered.limit(offset + 12);
+		covered.position(offset);
+		crc.update(covered);
+		crc.update(slotData(offset, length));
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Returns where a slot starts.
+	 * @param slot 0 or 1.
+	 * @return The offset in the file.
+	 */
+	private int slotOffset(int slot) {
+		return FILE_HEADER_SIZE + slot * (SLOT_HEADER_SIZE + slotSize);
+	}
+
+	/**
+	 * Returns a view of a slot's data.
+	 * @param offset Where the slot starts.
+	 * @param length How much of the data to view.
+	 * @return The view, from position 0.
+	 */
+	private ByteBuffer slotData(int offset, int length) {
+		ByteBuffer data = map.duplicate();
+		data.limit(offset + SLOT_HEADER_SIZE + length);
+		data.position(offset + SLOT_HEADER_SIZE);
+		return data.slice();
+	}
+}
@@ -0,0 +1,308 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A number of independent {@link FroggrEnv}s stepped in lockstep, split
+ * between a fixed set of threads, for training agents on batches of games.
+ * The observations of all environments are written into one array, and the
+ * rewards and whether each episode ended into two more, all reused every
+ * step.
+ * <p>
+ * An environment whose episode ends is reset at once with its next seed, as
+ * in Gym's vector environments, so its slice of the observations already
+ * shows the next episode; its reward and done flag are those of the step
+ * that ended the episode.
+ * <p>
+ * The threads are woken for every step by parking and unparking them rather
+ * than through an executor, which would allocate a task and a future per
+ * thread per step. The thread calling step() takes the first slice itself.
+ * Call {@link #close()} to stop the threads.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class VectorFroggrEnv {
+
+	/**
+	 * How many times a thread checks for work before parking.
+	 */
+	private static final int SPINS = 1000;
+
+	/**
+	 * The environments.
+	 */
+	private final FroggrEnv[] envs;
+
+	/**
+	 * The observations of all environments, OBSERVATION_SIZE bytes each.
+	 */
+	private final byte[] observations;
+
+	/**
+	 * The reward of each environment in the last step.
+	 */
+	private final float[] rewards;
+
+	/**
+	 * Whether the episode of each environment ended in the last step.
+	 */
+	private final boolean[] dones;
+
+	/**
+	 * How many episodes each environment has started, for its next seed.
+	 */
+	private final long[] episodes;
+
+	/**
+	 * The seed the environments were last reset with.
+	 */
+	private long seed;
+
+	/**
+	 * The actions of the current step.
+	 */
+	private int[] actions;
+
+	/**
+	 * The first environment of each slice, plus one past the last.
+	 */
+	private final int[] sliceStarts;
+
+	/**
+	 * The threads stepping the slices after the first.
+	 */
+	private final Thread[] workers;
+
+	/**
+	 * Incremented to start a step on the workers.
+	 */
+	private volatile int generation;
+
+	/**
+	 * Number of workers still stepping their slice.
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * The thread waiting for the workers.
+	 */
+	private volatile Thread caller;
+
+	/**
+	 * The first failure of a worker in the current step.
+	 */
+	private volatile Throwable failure;
+
+	/**
+	 * Whether the workers should stop.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Creates environments whose episodes are cut off after
+	 * FroggrEnv.DEFAULT_MAX_TICKS.
+	 * @param count The number of environments.
+	 * @param threads The number of threads stepping them, including the
+	 *            caller of step().
+	 */
+	public VectorFroggrEnv(int count, int threads) {
+		this(count, threads, FroggrEnv.DEFAULT_MAX_TICKS);
+	}
+
+	/**
+	 * Creates environments.
+	 * @param count The number of environments.
+	 * @param threads The number of threads stepping them, including the
+	 *            caller of step(). At most count are used.
+	 * @param maxTicks Ticks before an episode is cut off.
+	 */
+	public VectorFroggrEnv(int count, int threads, int maxTicks) {
+		if (count < 1 || threads < 1) {
+			throw new IllegalArgumentException(
+					"Need at least one environment and one thread");
+		}
+		envs = new FroggrEnv[count];
+		observations = new byte[count * FroggrEnv.OBSERVATION_SIZE];
+		rewards = new float[count];
+		dones = new boolean[count];
+		episodes = new long[count];
+		for (int i = 0; i < count; i++) {
+			envs[i] = new FroggrEnv(observations, i * FroggrEnv.OBSERVATION_SIZE,
+					maxTicks);
+		}
+
+		int slices = Math.min(threads, count);
+		sliceStarts = new int[slices + 1];
+		for (int i = 0; i <= slices; i++) {
+			sliceStarts[i] = (int) ((long) count * i / slices);
+		}
+		workers = new Thread[slices - 1];
+		for (int i = 0; i < workers.length; i++) {
+			final int slice = i + 1;
+			workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work(slice);
+				}
+			}, "froggr-env-" + slice);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Starts an episode in every environment. Environment i gets seed + i,
+	 * and its later episodes seed + i + n * count for the n-th.
+	 * @param seed The base seed.
+	 * @return The observations, the array returned by getObservations().
+	 */
+	public byte[] reset(long seed) {
+		this.seed = seed;
+		for (int i = 0; i < envs.length; i++) {
+			episodes[i] = 0;
+			envs[i].reset(seed + i);
+			rewards[i] = 0;
+			dones[i] = false;
+		}
+		return observations;
+	}
+
+	/**
+	 * Steps every environment once.
+	 * @param actions The action of each environment, one of the FroggrEnv
+	 *            ACTION_ values.
+	 * @throws IllegalStateException If closed.
+	 */
+	public void step(int[] actions) {
+		if (closed) {
+			throw new IllegalStateException("Closed");
+		}
+		if (actions.length != envs.length) {
+			throw new IllegalArgumentException("Expected " + envs.length
+					+ " actions, got " + actions.length);
+		}
+		this.actions = actions;
+		caller = Thread.currentThread();
+		pending.set(workers.length);
+		generation++;
+		for (int i = 0; i < workers.length; i++) {
+			LockSupport.unpark(workers[i]);
+		}
+
+		stepSlice(0);
+
+		int spins = 0;
+		while (pending.get() != 0) {
+			if (++spins > SPINS) {
+				LockSupport.park(this);
+			}
+		}
+		Throwable t = failure;
+		if (t != null) {
+			failure = null;
+			throw new RuntimeException("An environment failed to step", t);
+		}
+	}
+
+	/**
+	 * Steps the environments of a slice, resetting those whose episode
+	 * ended.
+	 * @param slice The slice.
+	 */
+	private void stepSlice(int slice) {
+		int[] actions = this.actions;
+		for (int i = sliceStarts[slice]; i < sliceStarts[slice + 1]; i++) {
+			FroggrEnv env = envs[i];
+			rewards[i] = env.step(actions[i]);
+			dones[i] = env.isDone();
+			if (dones[i]) {
+				episodes[i]++;
+				env.reset(seed + i + episodes[i] * envs.length);
+			}
+		}
+	}
+
+	/**
+	 * The loop of a worker thread: waits for a step, steps its slice and
+	 * reports back.
+	 * @param slice The worker's slice.
+	 */
+	private void work(int slice) {
+		int seen = 0;
+		int spins = 0;
+		while (!closed) {
+			int current = generation;
+			if (current == seen) {
+				if (++spins > SPINS) {
+					LockSupport.park(this);
+				}
+				continue;
+			}
+			seen = current;
+			spins = 0;
+			try {
+				stepSlice(slice);
+			} catch (Throwable t) {
+				failure = t;
+			}
+			if (pending.decrementAndGet() == 0) {
+				LockSupport.unpark(caller);
+			}
+		}
+	}
+
+	/**
+	 * Stops the worker threads. The environments can not be stepped after.
+	 */
+	public void close() {
+		closed = true;
+		for (int i = 0; i < workers.length; i++) {
+			LockSupport.unpark(workers[i]);
+		}
+	}
+
+	/**
+	 * Returns the number of environments.
+	 * @return The count.
+	 */
+	public int size() {
+		return envs.length;
+	}
+
+	/**
+	 * Returns an environment, e.g. to read its world.
+	 * @param index The index.
+	 * @return The environment.
+	 */
+	public FroggrEnv get(int index) {
+		return envs[index];
+	}
+
+	/**
+	 * Returns the observations of all environments: OBSERVATION_SIZE bytes
+	 * each, in order. The contents change with every step.
+	 * @return The array.
+	 */
+	public byte[] getObservations() {
+		return observations;
+	}
+
+	/**
+	 * Returns the reward of each environment in the last step.
+	 * @return The array, reused every step.
+	 */
+	public float[] getRewards() {
+		return rewards;
+	}
+
+	/**
+	 * Returns whether the episode of each environment ended in the last
+	 * step.
+	 * @return The array, reused every step.
+	 */
+	public boolean[] getDones() {
+		return dones;
+	}
+}
@@ -0,0 +1,1486 @@
+package game;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import events.GameEventAdapter;
+import events.GameEventListener;
+import metrics.FrameMetrics;
+import sprites.Fly;
+import sprites.Lane;
+import sprites.MovingObject;
+import sprites.Platform;
+import sprites.Player;
+import sprites.Vehicle;
+import util.ObjectPool;
+import util.StatefulRandom;
+
+/**
+ * The game world: lanes, vehicles, platforms, flies, the player and the
+ * score, together with all the rules of the game. The World does not draw
+ * anything, so it can be stepped without a display, e.g. on a server or in
+ * tests. FroggrGame renders it.
+ * 
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ * 
+ */
+public class World {
+
+	/**
+	 * Win lane index.
+	 */
+	public static final int LANE_WIN = 0;
+
+	/**
+	 * Fifth water lane index.
+	 */
+	public static final int LANE_WATER_FIFTH = 1;
+
+	/**
+	 * Fourth water lane index.
+	 */
+	public static final int LANE_WATER_FOURTH = 2;
+
+	/**
+	 * Third water lane index.
+	 */
+	public static final int LANE_WATER_THIRD = 3;
+
+	/**
+	 * Second water lane index.
+	 */
+	public static final int LANE_WATER_SECOND = 4;
+
+	/**
+	 * First water lane index.
+	 */
+	public static final int LANE_WATER_FIRST = 5;
+
+	/**
+	 * First safe grass lane index.
+	 */
+	public static final int LANE_GRASS_FIRST = 6;
+
+	/**
+	 * Second safe grass lane index.
+	 */
+	public static final int LANE_GRASS_SECOND = 7;
+
+	/**
+	 * Fourth road lane index.
+	 */
+	public static final int LANE_ROAD_FOURTH = 8;
+
+	/**
+	 * Third road lane index.
+	 */
+	public static final int LANE_ROAD_THIRD = 9;
+
+	/**
+	 * Second road lane index.
+	 */
+	public static final int LANE_ROAD_SECOND = 10;
+
+	/**
+	 * First road lane index.
+	 */
+	public static final int LANE_ROAD_FIRST = 11;
+
+	/**
+	 * Starting lane index.
+	 */
+	public static final int LANE_START = 12;
+
+	/**
+	 * Regeneration rate for platforms in first water lane.
+	 */
+	private final static int FIRST_WATER_LANE_REGENERATION = 325;
+
+	/**
+	 * Regeneration rate for platforms in second water lane.
+	 */
+	private final static int SECOND_WATER_LANE_REGENERATION = 225;
+
+	/**
+	 * Regeneration rate for platforms in third water lane.
+	 */
+	private final static int THIRD_WATER_LANE_REGENERATION = 225;
+
+	/**
+	 * Regeneration rate for platforms in fourth water lane.
+	 */
+	private final static int FOURTH_WATER_LANE_REGENERATION = 325;
+
+	/**
+	 * Regeneration rate for platforms in fifth water lane.
+	 */
+	private final static int FIFTH_WATER_LANE_REGENERATION = 225;
+
+	/**
+	 * Regeneration rate for vehicles in the first road lane.
+	 */
+	private final static int FIRST_ROAD_LANE_REGENERATION = 175;
+
+	/**
+	 * Regeneration rate for the vehicles in the second road lane.
+	 */
+	private final static int SECOND_ROAD_LANE_REGENERATION = 225;
+
+	/**
+	 * Regeneration rate for the vehicles in the third road lane.
+	 */
+	private final static int THIRD_ROAD_LANE_REGENERATION = 350;
+
+	/**
+	 * Regeneration rate for the vehicles in the fourth road lane.
+	 */
+	private final static int FOURTH_ROAD_LANE_REGENERATION = 250;
+
+	/**
+	 * Cause of death: hit by a vehicle.
+	 */
+	public static final int DEATH_VEHICLE = 0;
+
+	/**
+	 * Cause of death: fell into the water or jumped off a platform.
+	 */
+	public static final int DEATH_WATER = 1;
+
+	/**
+	 * Cause of death: jumped into the win lane where there is no fly left.
+	 */
+	public static final int DEATH_WIN_ZONE = 2;
+
+	/**
+	 * Number of causes of death.
+	 */
+	public static final int DEATH_CAUSES = 3;
+
+	/**
+	 * Width of the world in pixels.
+	 */
+	public static final int GAME_WIDTH = 500;
+
+	/**
+	 * Height of the world in pixels.
+	 */
+	public static final int GAME_HEIGHT = 700;
+
+	/**
+	 * Height of the lane in pixels.
+	 */
+	public static final int LANE_HEIGHT = 50;
+
+	/**
+	 * Number of lanes in the game.
+	 */
+	public static final int NUMBER_OF_LANES = 13;
+
+	/**
+	 * The frogs in the world. The first is the player of a single player
+	 * game; more can join with addPlayer. Slots of frogs that left are
+	 * reused, so a frog keeps its index.
+	 */
+	private ArrayList<Frog> frogs = new ArrayList<Frog>();
+
+	/**
+	 * The number of lives the player starts with.
+	 */
+	private int startingLives = 3;
+
+	/**
+	 * Tracks how many fly's Froggr has consumed, by all frogs together.
+	 */
+	private int flysConsumed = 0;
+
+	/**
+	 * Initial value of the state checksum.
+	 */
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	/**
+	 * Multiplier of the state checksum.
+	 */
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * Version of the format of writeSnapshot.
+	 */
+	private static final int SNAPSHOT_VERSION = 1;
+
+	/**
+	 * Points that are earned when a fly is consumed.
+	 */
+	private final int CONSUME_FLY_BONUS = 100;
+
+	/**
+	 * Points that are earned when entering a lane for the first time.
+	 */
+	private final int NEW_LANE_POINTS = 25;
+
+	/**
+	 * ArrayList of Lane Sprites.
+	 */
+	private ArrayList<Lane> lanes = new ArrayList<Lane>();
+
+	/**
+	 * ArrayList of Vehicle Sprites.
+	 */
+	private ArrayList<Vehicle> vehicles = new ArrayList<Vehicle>();
+
+	/**
+	 * ArrayList of Platform Sprites.
+	 */
+	private ArrayList<Platform> platforms = new ArrayList<Platform>();
+
+	/**
+	 * ArrayList of Fly Sprites.
+	 */
+	private ArrayList<Fly> flys = new ArrayList<Fly>();
+
+	/**
+	 * Vehicles that left the screen, ready to be reused.
+	 */
+	private ObjectPool<Vehicle> vehiclePool = new ObjectPool<Vehicle>();
+
+	/**
+	 * Platforms that left the screen, ready to be reused.
+	 */
+	private ObjectPool<Platform> platformPool = new ObjectPool<Platform>();
+
+	/**
+	 * The vehicles bucketed by lane, for collision checks.
+	 */
+	private LaneIndex<Vehicle> vehicleIndex = new LaneIndex<Vehicle>(
+			NUMBER_OF_LANES, LANE_HEIGHT);
+
+	/**
+	 * The platforms bucketed by lane, for collision checks.
+	 */
+	private LaneIndex<Platform> platformIndex = new LaneIndex<Platform>(
+			NUMBER_OF_LANES, LANE_HEIGHT);
+
+	/**
+	 * Boolean for whether the player has lost the game or not.
+	 */
+	private boolean gameOver;
+
+	/**
+	 * Boolean for whether the player has won the game or not.
+	 */
+	private boolean gameWon;
+
+	/**
+	 * Where the world tells what happens in the game, e.g. a GameEventBus
+	 * feeding the sound effects. Nobody by default, so headless worlds
+	 * never touch the audio device.
+	 */
+	private GameEventListener events = GameEventAdapter.NONE;
+
+	/**
+	 * The seed the world was created or last reset with.
+	 */
+	private long seed;
+
+	/**
+	 * Source of all randomness in the world, so a seed reproduces a game.
+	 * Its state is part of a snapshot.
+	 */
+	private final StatefulRandom random;
+
+	/**
+	 * Where the world records its timings and counts.
+	 */
+	private FrameMetrics metrics = FrameMetrics.DISABLED;
+
+	/**
+	 * Regeneration time of each lane, 0 for lanes without traffic.
+	 */
+	private final int[] regeneration;
+
+	/**
+	 * Deaths since the last restart, indexed by lane * DEATH_CAUSES + cause.
+	 */
+	private final int[] deaths = new int[NUMBER_OF_LANES * DEATH_CAUSES];
+
+	/**
+	 * Creates the lanes and win zones and spawns a new Player, with a random
+	 * seed.
+	 */
+	public World() {
+		this(new Random().nextLong());
+	}
+
+	/**
+	 * Creates the lanes and win zones and spawns a new Player. Two worlds
+	 * with the same seed given the same input every tick play exactly the
+	 * same game.
+	 * 
+	 * @param seed
+	 *            The seed of the world's Random.
+	 */
+	public World(long seed) {
+		this(seed, defaultRegeneration());
+	}
+
+	/**
+	 * Creates a world whose lanes spawn traffic at the given rates instead
+	 * of the default ones, for balancing the game.
+	 * 
+	 * @param seed
+	 *            The seed of the world's Random.
+	 * @param regeneration
+	 *            The regeneration time of each lane in ticks, indexed by lane
+	 *            (LANE_WATER_FIRST and so on). Only the water and road lanes
+	 *            are used.
+	 */
+	public World(long seed, int[] regeneration) {
+		if (regeneration.length != NUMBER_OF_LANES) {
+			throw new IllegalArgumentException("Expected " + NUMBER_OF_LANES
+					+ " regeneration times, got " + regeneration.length);
+		}
+		this.seed = seed;
+		this.regeneration = regeneration.clone();
+		random = new StatefulRandom(seed);
+		createLanes();
+		createWinZones();
+		frogs.add(new Frog(new Player(250, GAME_HEIGHT - (2 * LANE_HEIGHT),
+				startingLives)));
+		restart();
+	}
+
+	/**
+	 * Returns the default regeneration time of each lane, indexed by lane,
+	 * 0 for lanes without traffic.
+	 * 
+	 * @return A new array of NUMBER_OF_LANES times.
+	 */
+	public static int[] defaultRegeneration() {
+		int[] regeneration = new int[NUMBER_OF_LANES];
+		regeneration[LANE_WATER_FIRST] = FIRST_WATER_LANE_REGENERATION;
+		regeneration[LANE_WATER_SECOND] = SECOND_WATER_LANE_REGENERATION;
+		regeneration[LANE_WATER_THIRD] = THIRD_WATER_LANE_REGENERATION;
+		regeneration[LANE_WATER_FOURTH] = FOURTH_WATER_LANE_REGENERATION;
+		regeneration[LANE_WATER_FIFTH] = FIFTH_WATER_LANE_REGENERATION;
+		regeneration[LANE_ROAD_FIRST] = FIRST_ROAD_LANE_REGENERATION;
+		regeneration[LANE_ROAD_SECOND] = SECOND_ROAD_LANE_REGENERATION;
+		regeneration[LANE_ROAD_THIRD] = THIRD_ROAD_LANE_REGENERATION;
+		regeneration[LANE_ROAD_FOURTH] = FOURTH_ROAD_LANE_REGENERATION;
+		return regeneration;
+	}
+
+	/**
+	 * Creates and initializes the win zones (flies).
+	 */
+	private void createWinZones() {
+		for (int i = 0; i < 4; i++) {
+			flys.add(new Fly(i * 150, 0));
+		}
+	}
+
+	/**
+	 * Initializes the ArrayList of lanes and sets the image for each one.
+	 */
+	private void createLanes() {
+		// Create our 13 game lanes
+		for (int i = 0; i < NUMBER_OF_LANES; i++) {
+			lanes.add(new Lane(0, i * 50));
+		}
+
+		// Add the image for each lane
+		lanes.get(LANE_WIN).setImage("res/sprites/lane/win.png");
+
+		// Use alternating images randomly for water lanes
+		for (int i = LANE_WATER_FIFTH; i <= LANE_WATER_FIRST; i++) {
+			lanes.get(i).setImage("res/sprites/lane/water.gif");
+		}
+
+		// set water lane regeneration times
+		for (int i = LANE_WATER_FIFTH; i <= LANE_WATER_FIRST; i++) {
+			lanes.get(i).setRegeneration(regeneration[i]);
+		}
+
+		// Safe area before water
+		lanes.get(LANE_GRASS_FIRST).setImage("res/sprites/lane/grass.png");
+		lanes.get(LANE_GRASS_SECOND).setImage("res/sprites/lane/grass.png");
+
+		// Road lanes
+		lanes.get(LANE_ROAD_FOURTH).setImage("res/sprites/lane/road-top.png");
+		lanes.get(LANE_ROAD_THIRD).setImage("res/sprites/lane/road-middle.png");
+		lanes.get(LANE_ROAD_SECOND)
+				.setImage("res/sprites/lane/road-middle.png");
+		lanes.get(LANE_ROAD_FIRST).setImage("res/sprites/lane/road-bottom.png");
+
+		// Set regeneration time for road lanes
+		for (int i = LANE_ROAD_FOURTH; i <= LANE_ROAD_FIRST; i++) {
+			lanes.get(i).setRegeneration(regeneration[i]);
+		}
+
+		// Start lane
+		lanes.get(LANE_START).setImage("res/sprites/lane/grass.png");
+	}
+
+	/**
+	 * Determines what platforms, length, direction, and regeneration rate to
+	 * add to each water lane.
+	 */
+	void addPlatformsToLanes() {
+		generatePlatform(lanes.get(LANE_WATER_FIFTH), 3,
+				MovingObject.DIRECTION_LEFT, Platform.LOG);
+		generatePlatform(lanes.get(LANE_WATER_FOURTH), 2,
+				MovingObject.DIRECTION_RIGHT, Platform.TURTLE);
+		generatePlatform(lanes.get(LANE_WATER_THIRD), 3,
+				MovingObject.DIRECTION_LEFT, Platform.LOG);
+		generatePlatform(lanes.get(LANE_WATER_SECOND), 3,
+				MovingObject.DIRECTION_RIGHT, Platform.TURTLE);
+		generatePlatform(lanes.get(LANE_WATER_FIRST), 3,
+				MovingObject.DIRECTION_LEFT, Platform.LILY);
+	}
+
+	/**
+	 * Determines what vehicles, length, direction and regeneration rate to add
+	 * to the lanes. Trucks are always length 2. Other vehicles can be of length
+	 * 1, 2 or 3.
+	 */
+	void addVehiclesToLanes() {
+		generateVehicle(lanes.get(LANE_ROAD_FIRST), 1,
+				MovingObject.DIRECTION_RIGHT, Vehicle.CAR);
+		generateVehicle(lanes.get(LANE_ROAD_SECOND), 2,
+				MovingObject.DIRECTION_LEFT, Vehicle.CAR);
+		generateVehicle(lanes.get(LANE_ROAD_THIRD), 3,
+				MovingObject.DIRECTION_RIGHT, Vehicle.CAR);
+		generateVehicle(lanes.get(LANE_ROAD_FOURTH), 2,
+				MovingObject.DIRECTION_LEFT, Vehicle.TRUCK);
+	}
+
+	/**
+	 * Generates vehicles for the road lanes.
+	 * 
+	 * @param lane
+	 *            Lane sprite object to generate the vehicle for.
+	 * @param length
+	 *            Length of the vehicle (1, 2 or 3 for cars, 3 for trucks).
+	 * @param direction
+	 *            The direction that the vehicle moves.
+	 * @param vehicleType
+	 *            The type of vehicle to generate.
+	 */
+	private void generateVehicle(Lane lane, int length, int direction,
+			int vehicleType) {
+		lane.setTime(lane.getTime() + 1);
+		if (lane.getTime() > lane.getRegeneration()) {
+			lane.setTime(0);
+			int startPosition = (direction == MovingObject.DIRECTION_LEFT) ? GAME_WIDTH
+					: 0 - (length * 50);
+			int color = random.nextInt(2);
+			spawnVehicle(startPosition, lane.getYPos(), length, direction,
+					vehicleType, color);
+			metrics.count(FrameMetrics.SPAWNS, 1);
+		}
+	}
+
+	/**
+	 * Puts a vehicle in the world, reusing a pooled one if there is one.
+	 * 
+	 * @param x
+	 *            The x coordinate.
+	 * @param y
+	 *            The y coordinate of its lane.
+	 * @param length
+	 *            The length of the vehicle.
+	 * @param direction
+	 *            The direction that the vehicle moves.
+	 * @param vehicleType
+	 *            The type of vehicle.
+	 * @param color
+	 *            The car color.
+	 */
+	private void spawnVehicle(int x, int y, int length, int direction,
+			int vehicleType, int color) {
+		Vehicle v = vehiclePool.acquire();
+		if (v == null) {
+			v = new Vehicle(x, y, length, direction);
+			v.setVehicleType(vehicleType, color);
+		} else {
+			v.reset(x, y, length, direction, vehicleType, color);
+		}
+		vehicles.add(v);
+		vehicleIndex.add(v);
+	}
+
+	/**
+	 * Generates the platforms for the water lanes.
+	 * 
+	 * @param lane
+	 *            The Lane sprite object to generate the platform for.
+	 * @param length
+	 *            The length of the platform.
+	 * @param direction
+	 *            The direction the platform moves in.
+	 * @param platformType
+	 *            The type of platform to generate.
+	 */
+	private void generatePlatform(Lane lane, int length, int direction,
+			int platformType) {
+		lane.setTime(lane.getTime() + 1);
+		if (lane.getTime() > lane.getRegeneration()) {
+			lane.setTime(0);
+			int startPosition = (direction == MovingObject.DIRECTION_LEFT) ? GAME_WIDTH
+					: 0 - (length * 50);
+			spawnPlatform(startPosition, lane.getYPos(), length, direction,
+					platformType);
+			metrics.count(FrameMetrics.SPAWNS, 1);
+		}
+	}
+
+	/**
+	 * Puts a platform in the world, reusing a pooled one if there is one.
+	 * 
+	 * @param x
+	 *            The x coordinate.
+	 * @param y
+	 *            The y coordinate of its lane.
+	 * @param length
+	 *            The length of the platform.
+	 * @param direction
+	 *            The direction the platform moves in.
+	 * @param platformType
+	 *            The type of platform.
+	 */
+	private void spawnPlatform(int x, int y, int length, int direction,
+			int platformType) {
+		Platform p = platformPool.acquire();
+		if (p == null) {
+			p = new Platform(x, y, length, direction);
+			p.setPlatformType(platformType);
+		} else {
+			p.reset(x, y, length, direction, platformType);
+		}
+		platforms.add(p);
+		platformIndex.add(p);
+	}
+
+	/**
+	 * Removes all Platform and Vehicle Sprites from their 
+	 * corresponding lists that aren't beings used and returns them to
+	 * their pools.
+	 */
+	void removeUnusedSpritesFromLists() {
+		vehicleIndex.removeRemoved();
+		platformIndex.removeRemoved();
+		int removed = removeUnused(vehicles, vehiclePool);
+		removed += removeUnused(platforms, platformPool);
+		metrics.count(FrameMetrics.REMOVALS, removed);
+	}
+
+	/**
+	 * Removes the removed sprites from a list by moving the last sprite into
+	 * their place, which does not shift the rest of the list, and releases
+	 * them to a pool. The order of the list is not kept.
+	 * 
+	 * @param list
+	 *            The list of sprites.
+	 * @param pool
+	 *            The pool to release the removed sprites to.
+	 * @return The number of sprites removed.
+	 */
+	private static <T extends MovingObject> int removeUnused(
+			ArrayList<T> list, ObjectPool<T> pool) {
+		int removed = 0;
+		int i = 0;
+		while (i < list.size()) {
+			T sprite = list.get(i);
+			if (sprite.isRemoved()) {
+				int last = list.size() - 1;
+				list.set(i, list.get(last));
+				list.remove(last);
+				pool.release(sprite);
+				removed++;
+			} else {
+				i++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Puts a frog back at the starting location with a set number of lives.
+	 * 
+	 * @param frog
+	 *            The frog.
+	 * @param lives
+	 *            The number of lives the player starts with
+	 */
+	private void spawnPlayer(Frog frog, int lives) {
+		frog.player.reset(250, GAME_HEIGHT - (2 * LANE_HEIGHT), lives);
+	}
+
+	/**
+	 * Calculates the final score when the game is over (win or lose).
+	 * 
+	 * @return The player's final score.
+	 */
+	public int calculateFinalScore() {
+		return calculateFinalScore(0);
+	}
+
+	/**
+	 * Calculates the final score of a frog when the game is over.
+	 * 
+	 * @param frog
+	 *            The index of the frog.
+	 * @return The frog's final score.
+	 */
+	public int calculateFinalScore(int frog) {
+		Frog f = frogs.get(frog);
+		if (f.player.getLives() > 0) {
+			return f.score * f.player.getLives();
+		} else {
+			return f.score;
+		}
+	}
+
+	/**
+	 * Adds a frog to the world, for multiplayer games. It starts at the
+	 * starting location with a full set of lives and no score, and is stepped
+	 * with its own input, see getInput.
+	 * 
+	 * @return The index of the frog, the lowest one not in use.
+	 */
+	public int addPlayer() {
+		int index = 0;
+		while (index < frogs.size() && frogs.get(index).active) {
+			index++;
+		}
+		Frog frog;
+		if (index == frogs.size()) {
+			frog = new Frog(new Player(250, GAME_HEIGHT - (2 * LANE_HEIGHT),
+					startingLives));
+			frogs.add(frog);
+		} else {
+			frog = frogs.get(index);
+			frog.active = true;
+		}
+		frog.reset();
+		spawnPlayer(frog, startingLives);
+		return index;
+	}
+
+	/**
+	 * Takes a frog out of the world. Its index is reused by the next frog
+	 * added. The first frog can be removed too, e.g. by a server that has no
+	 * player of its own.
+	 * 
+	 * @param frog
+	 *            The index of the frog.
+	 */
+	public void removePlayer(int frog) {
+		Frog f = frogs.get(frog);
+		f.active = false;
+		f.player.setAlive(false);
+		f.player.remove();
+		for (int i = 0; i < f.input.buttons.length; i++) {
+			f.input.buttons[i] = false;
+		}
+	}
+
+	/**
+	 * Advances the world by one tick.
+	 * 
+	 * @param input
+	 *            The keys the player is pressing.
+	 */
+	public void step(Input input) {
+		/*
+		 * The order matters: the player is checked against the vehicles before
+		 * they move, the same way the sprites are layered when drawn.
+		 */
+		long tickStart = metrics.begin();
+		long t = tickStart;
+		addPlatformsToLanes();
+		t = metrics.end(FrameMetrics.ADD_PLATFORMS_TO_LANES, t);
+		addVehiclesToLanes();
+		t = metrics.end(FrameMetrics.ADD_VEHICLES_TO_LANES, t);
+		processPlatforms(input);
+		t = metrics.end(FrameMetrics.PROCESS_PLATFORMS, t);
+		processPlayer(0, frogs.get(0), input);
+		for (int i = 1; i < frogs.size(); i++) {
+			processPlayer(i, frogs.get(i), frogs.get(i).input);
+		}
+		t = metrics.end(FrameMetrics.PROCESS_PLAYER, t);
+		processVehicles(input);
+		t = metrics.end(FrameMetrics.PROCESS_VEHICLES, t);
+		processGameplay();
+		t = metrics.end(FrameMetrics.PROCESS_GAMEPLAY, t);
+		removeUnusedSpritesFromLists();
+		metrics.end(FrameMetrics.REMOVE_UNUSED_SPRITES_FROM_LISTS, t);
+		metrics.end(FrameMetrics.TICK, tickStart);
+
+		metrics.setGauge(FrameMetrics.VEHICLES, vehicles.size());
+		metrics.setGauge(FrameMetrics.PLATFORMS, platforms.size());
+		metrics.setGauge(FrameMetrics.FLIES, flys.size());
+	}
+
+	/**
+	 * Process all of a frog's activity in the game.
+	 * 
+	 * @param index
+	 *            The index of the frog.
+	 * @param frog
+	 *            The frog.
+	 * @param input
+	 *            The keys the frog's player is pressing.
+	 */
+	private void processPlayer(int index, Frog frog, Input input) {
+		if (!frog.active) {
+			return;
+		}
+		Player player = frog.player;
+		if (!gameOver && !gameWon) {
+			int xPos = player.getXPos();
+			int yPos = player.getYPos();
+			player.tick(input);
+			if (player.getXPos() != xPos || player.getYPos() != yPos) {
+				events.playerMoved(index, player.getXPos(), player.getYPos()
+						/ LANE_HEIGHT);
+			}
+		}
+	
+		/*
+		 * Keeps track of the next position the player must reach to gain
+		 * points. If player dies he must reach the last nextPointsPosition to
+		 * gain NEW_LANE_POINTS
+		 */
+		if (player.getYPos() < frog.nextPointsPosition) {
+			frog.score = frog.score + NEW_LANE_POINTS;
+			frog.nextPointsPosition = frog.nextPointsPosition - LANE_HEIGHT;
+			events.laneEntered(index, player.getYPos() / LANE_HEIGHT);
+		}
+	
+		/*
+		 * Only the objects in the player's lane that overlap him can collide
+		 * with him. Sailing moves him by a pixel, so look one pixel further.
+		 */
+		int lane = vehicleIndex.laneOf(player.getYPos());
+		int xMin = player.getXPos() - 1;
+		int xMax = player.getXPos() + player.calculatePixelWidth() + 1;
+		if (lane < 0) {
+			return;
+		}
+
+		/*
+		 * Check if player has collided with a vehicle
+		 */
+		int end = vehicleIndex.end(lane, xMax);
+		for (int i = vehicleIndex.first(lane, xMin); i < end; i++) {
+			if (vehicleIndex.get(lane, i).hasCollidedWith(player)) {
+				killPlayer(index, player, lane, DEATH_VEHICLE);
+			}
+		}
+	
+		/*
+		 * Only runs if the player has entered into the water lanes. This is set
+		 * up so if the player is not on a platform he is going to die.
+		 */
+		if (player.getYPos() < lanes.get(LANE_WATER_FIRST + 1).getYPos()) {
+			Platform currentPlatform = null;
+			end = platformIndex.end(lane, xMax);
+			for (int i = platformIndex.first(lane, xMin); i < end; i++) {
+				// Checks if player lands on platform, if so he will sail on it.
+				Platform platform = platformIndex.get(lane, i);
+				if (platform.hasCollidedWith(player)) {
+					boolean alive = player.isAlive();
+					player.sail(input, platform);
+					if (alive && !player.isAlive()) {
+						// Carried off the screen.
+						deaths[lane * DEATH_CAUSES + DEATH_WATER]++;
+						events.playerKilled(index, lane, DEATH_WATER);
+					}
+					currentPlatform = platform;
+				}
+			}
+	
+			if (currentPlatform != null) {
+				// While sailing on the platform this checks if the player jumps
+				// off a platform into water
+				if (!player.isOnPlatform(currentPlatform)) {
+					killPlayer(index, player, lane, DEATH_WATER);
+				}
+			} else if (lane == LANE_WIN) {
+				// Checks if the player has reached an accessible win zone.
+				// If not, he dies.
+				Fly fly = null;
+				int flyIndex = -1;
+				for (int i = 0; i < flys.size() && fly == null; i++) {
+					if (flys.get(i).hasCollidedWith(player)
+							&& flys.get(i).isConsumed() == false) {
+						fly = flys.get(i);
+						flyIndex = i;
+					}
+				}
+				if (fly != null) {
+					fly.setConsumed(true);
+					// add bonus points to player score for consuming a fly.
+					frog.score = frog.score + CONSUME_FLY_BONUS;
+					// reset the position at which the frog can gain more
+					// points
+					frog.nextPointsPosition = 600;
+					frog.flysConsumed++;
+					flysConsumed++;
+					events.flyConsumed(index, flyIndex);
+					spawnPlayer(frog, player.getLives());
+				} else {
+					killPlayer(index, player, lane, DEATH_WIN_ZONE);
+				}
+			} else {
+				// Fell into the water.
+				killPlayer(index, player, lane, DEATH_WATER);
+			}
+		}
+	}
+
+	/**
+	 * Kills a player, if alive, and records where and how he died.
+	 * 
+	 * @param index
+	 *            The index of the frog.
+	 * @param player
+	 *            The player.
+	 * @param lane
+	 *            The lane the player died in.
+	 * @param cause
+	 *            The cause of death, DEATH_VEHICLE, DEATH_WATER or
+	 *            DEATH_WIN_ZONE.
+	 */
+	private void killPlayer(int index, Player player, int lane, int cause) {
+		if (player.isAlive()) {
+			player.kill();
+			deaths[lane * DEATH_CAUSES + cause]++;
+			events.playerKilled(index, lane, cause);
+		}
+	}
+
+	/**
+	 * Moves the vehicles one step.
+	 * 
+	 * @param input
+	 *            The keys the player is pressing.
+	 */
+	void processVehicles(Input input) {
+		for (int i = 0; i < vehicles.size(); i++) {
+			Vehicle v = vehicles.get(i);
+			if (!v.isRemoved()) {
+				v.tick(input);
+			}
+		}
+		vehicleIndex.update();
+	}
+
+	/**
+	 * Moves the platforms one step.
+	 * 
+	 * @param input
+	 *            The keys the player is pressing.
+	 */
+	void processPlatforms(Input input) {
+		for (int i = 0; i < platforms.size(); i++) {
+			Platform p = platforms.get(i);
+			if (!p.isRemoved()) {
+				p.tick(input);
+			}
+		}
+		platformIndex.update();
+	}
+
+	/**
+	 * This method processes a lot of the game logic: respawning the player
+	 * and checking whether the game is won or lost.
+	 */
+	private void processGameplay() {
+		boolean anyActive = false;
+		boolean anyLives = false;
+		for (int i = 0; i < frogs.size(); i++) {
+			Frog frog = frogs.get(i);
+			if (frog.active) {
+				Player player = frog.player;
+				if (!player.isAlive() && player.getLives() > 0) {
+					spawnPlayer(frog, player.getLives());
+				}
+				anyActive = true;
+				anyLives |= player.getLives() > 0;
+			}
+		}
+	
+		// Checks if the game is over: every frog is out of lives
+		if (anyActive && !anyLives && !gameOver) {
+			gameOver = true;
+			events.gameOver();
+		}
+	
+		// Checks if the player wins the game.
+		if (flysConsumed == 4 && !gameWon) {
+			gameWon = true;
+			events.gameWon();
+		}
+	}
+
+	/**
+	 * Resets the score and game state and clears all sprites. Then spawns
+	 * a new Player.
+	 */
+	public void restart() {
+		// reset game over
+		gameOver = false;
+		gameWon = false;
+	
+		// reset score
+		flysConsumed = 0;
+		Arrays.fill(deaths, 0);
+	
+		// reset vehicles, platforms and lane timers
+		clearSprites();
+		for (int i = 0; i < lanes.size(); i++) {
+			lanes.get(i).setTime(0);
+		}
+	
+		// set flys to unconsumed
+		for (int i = 0; i < flys.size(); i++) {
+			flys.get(i).setConsumed(false);
+		}
+	
+		// spawn players
+		for (int i = 0; i < frogs.size(); i++) {
+			Frog frog = frogs.get(i);
+			if (frog.active) {
+				frog.reset();
+				spawnPlayer(frog, startingLives);
+			}
+		}
+	}
+
+	/**
+	 * Returns every vehicle and platform to the pools.
+	 */
+	private void clearSprites() {
+		for (int i = 0; i < vehicles.size(); i++) {
+			vehiclePool.release(vehicles.get(i));
+		}
+		for (int i = 0; i < platforms.size(); i++) {
+			platformPool.release(platforms.get(i));
+		}
+		vehicles.clear();
+		platforms.clear();
+		vehicleIndex.clear();
+		platformIndex.clear();
+	}
+
+	/**
+	 * Restarts the world with a new seed. The world then plays the same game
+	 * as a new World(seed) with the same regeneration times, but reuses its
+	 * sprites.
+	 * 
+	 * @param seed
+	 *            The new seed of the world's Random.
+	 */
+	public void reset(long seed) {
+		this.seed = seed;
+		random.setSeed(seed);
+		restart();
+	}
+
+	/**
+	 * Sets where the world tells what happens in the game. Called on the
+	 * thread that steps the world, during the tick, so it must be quick;
+	 * a GameEventBus passes the events on to other threads.
+	 * 
+	 * @param events
+	 *            The listener, GameEventAdapter.NONE for nobody.
+	 */
+	public void setEventListener(GameEventListener events) {
+		this.events = events;
+	}
+
+	/**
+	 * Returns the seed the world was created or last reset with.
+	 * 
+	 * @return The seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Computes a hash of the whole game state: the player, score, game state
+	 * and every vehicle, platform and fly. Two worlds playing the same game
+	 * have the same checksum after every tick.
+	 * 
+	 * @return The checksum.
+	 */
+	public long checksum() {
+		long h = FNV_OFFSET;
+		Frog first = frogs.get(0);
+		h = mix(h, first.player.getXPos());
+		h = mix(h, first.player.getYPos());
+		h = mix(h, first.player.getLives());
+		h = mix(h, first.player.isAlive() ? 1 : 0);
+		h = mix(h, first.score);
+		h = mix(h, flysConsumed);
+		h = mix(h, first.nextPointsPosition);
+		h = mix(h, (gameOver ? 2 : 0) | (gameWon ? 1 : 0));
+		for (int i = 1; i < frogs.size(); i++) {
+			Frog frog = frogs.get(i);
+			if (frog.active) {
+				h = mix(h, i);
+				h = mix(h, frog.player.getXPos());
+				h = mix(h, frog.player.getYPos());
+				h = mix(h, frog.player.getLives());
+				h = mix(h, frog.player.isAlive() ? 1 : 0);
+				h = mix(h, frog.score);
+				h = mix(h, frog.nextPointsPosition);
+			}
+		}
+		for (int i = 0; i < lanes.size(); i++) {
+			h = mix(h, lanes.get(i).getTime());
+		}
+		for (int i = 0; i < vehicles.size(); i++) {
+			Vehicle v = vehicles.get(i);
+			h = mix(h, v.getXPos());
+			h = mix(h, v.getYPos());
+			h = mix(h, v.getLength());
+			h = mix(h, v.getDirection());
+			h = mix(h, v.vehicleType());
+			h = mix(h, v.getColor());
+			h = mix(h, v.isRemoved() ? 1 : 0);
+		}
+		for (int i = 0; i < platforms.size(); i++) {
+			Platform p = platforms.get(i);
+			h = mix(h, p.getXPos());
+			h = mix(h, p.getYPos());
+			h = mix(h, p.getLength());
+			h = mix(h, p.getDirection());
+			h = mix(h, p.getPlatformType());
+			h = mix(h, p.isRemoved() ? 1 : 0);
+		}
+		for (int i = 0; i < flys.size(); i++) {
+			h = mix(h, flys.get(i).isConsumed() ? 1 : 0);
+		}
+		return h;
+	}
+
+	/**
+	 * Writes the whole game state, so that readSnapshot can put a world back
+	 * in it: the seed and the state of the Random, every lane's timer, the
+	 * game flags, flies and deaths, every frog with its score and pending
+	 * buttons, and every vehicle and platform in list order. A world resumed
+	 * from a snapshot plays on exactly like the one that wrote it.
+	 * 
+	 * @param out
+	 *            The buffer, with room for the snapshot.
+	 * @throws java.nio.BufferOverflowException
+	 *             If there is not enough room.
+	 */
+	public void writeSnapshot(ByteBuffer out) {
+		out.putInt(SNAPSHOT_VERSION);
+		out.putLong(seed);
+		out.putLong(random.getState());
+		for (int i = 0; i < NUMBER_OF_LANES; i++) {
+			out.putInt(regeneration[i]);
+			out.putInt(lanes.get(i).getTime());
+		}
+		out.put((byte) ((gameOver ? 2 : 0) | (gameWon ? 1 : 0)));
+		out.put((byte) flysConsumed);
+		int consumed = 0;
+		for (int i = 0; i < flys.size(); i++) {
+			if (flys.get(i).isConsumed()) {
+				consumed |= 1 << i;
+			}
+		}
+		out.put((byte) consumed);
+		for (int i = 0; i < deaths.length; i++) {
+			out.putInt(deaths[i]);
+		}
+
+		out.putShort((short) frogs.size());
+		for (int i = 0; i < frogs.size(); i++) {
+			Frog frog = frogs.get(i);
+			Player player = frog.player;
+			int buttons = 0;
+			for (int b = 0; b < frog.input.buttons.length; b++) {
+				if (frog.input.buttons[b]) {
+					buttons |= 1 << b;
+				}
+			}
+			out.put((byte) ((frog.active ? 1 : 0) | (player.isAlive() ? 2 : 0)));
+			out.putShort((short) player.getXPos());
+			out.putShort((short) player.getYPos());
+			out.put((byte) player.getLives());
+			out.putInt(frog.score);
+			out.putShort((short) frog.nextPointsPosition);
+			out.put((byte) frog.flysConsumed);
+			out.put((byte) buttons);
+		}
+
+		out.putShort((short) vehicles.size());
+		for (int i = 0; i < vehicles.size(); i++) {
+			Vehicle v = vehicles.get(i);
+			out.putShort((short) v.getXPos());
+			out.put((byte) (v.getYPos() / LANE_HEIGHT));
+			out.put((byte) (v.getLength() | v.getDirection() << 2
+					| v.vehicleType() << 3 | v.getColor() << 4
+					| (v.isRemoved() ? 1 << 5 : 0)));
+		}
+		out.putShort((short) platforms.size());
+		for (int i = 0; i < platforms.size(); i++) {
+			Platform p = platforms.get(i);
+			out.putShort((short) p.getXPos());
+			out.put((byte) (p.getYPos() / LANE_HEIGHT));
+			out.put((byte) (p.getLength() | p.getDirection() << 2
+					| p.getPlatformType() << 3 | (p.isRemoved() ? 1 << 5 : 0)));
+		}
+	}
+
+	/**
+	 * Puts the world in the state of a snapshot from writeSnapshot. The
+	 * sprites are taken from the pools, so their images are not loaded
+	 * again. The world must have the regeneration times of the one that
+	 * wrote the snapshot.
+	 * 
+	 * @param in
+	 *            The buffer, positioned at the snapshot.
+	 * @throws IllegalArgumentException
+	 *             If the snapshot is of another version or another set of
+	 *             regeneration times; the world is then unchanged.
+	 */
+	public void readSnapshot(ByteBuffer in) {
+		int version = in.getInt();
+		if (version != SNAPSHOT_VERSION) {
+			throw new IllegalArgumentException("Unsupported snapshot version "
+					+ version);
+		}
+		long savedSeed = in.getLong();
+		long randomState = in.getLong();
+		int lanesAt = in.position();
+		for (int i = 0; i < NUMBER_OF_LANES; i++) {
+			if (in.getInt(lanesAt + i * 8) != regeneration[i]) {
+				throw new IllegalArgumentException(
+						"Snapshot of a world with other regeneration times");
+			}
+		}
+		seed = savedSeed;
+		random.setState(randomState);
+		for (int i = 0; i < NUMBER_OF_LANES; i++) {
+			in.getInt();
+			lanes.get(i).setTime(in.getInt());
+		}
+		int flags = in.get();
+		gameOver = (flags & 2) != 0;
+		gameWon = (flags & 1) != 0;
+		flysConsumed = in.get();
+		int consumed = in.get();
+		for (int i = 0; i < flys.size(); i++) {
+			flys.get(i).setConsumed((consumed & (1 << i)) != 0);
+		}
+		for (int i = 0; i < deaths.length; i++) {
+			deaths[i] = in.getInt();
+		}
+
+		int frogCount = in.getShort();
+		for (int i = 0; i < frogCount; i++) {
+			if (i == frogs.size()) {
+				frogs.add(new Frog(new Player(250, GAME_HEIGHT
+						- (2 * LANE_HEIGHT), startingLives)));
+			}
+			Frog frog = frogs.get(i);
+			int state = in.get();
+			int x = in.getShort();
+			int y = in.getShort();
+			int lives = in.get();
+			frog.active = (state & 1) != 0;
+			frog.player.restore(x, y, lives, (state & 2) != 0);
+			frog.score = in.getInt();
+			frog.nextPointsPosition = in.getShort();
+			frog.flysConsumed = in.get();
+			int buttons = in.get();
+			for (int b = 0; b < frog.input.buttons.length; b++) {
+				frog.input.buttons[b] = (buttons & (1 << b)) != 0;
+			}
+		}
+		for (int i = frogCount; i < frogs.size(); i++) {
+			if (frogs.get(i).active) {
+				removePlayer(i);
+			}
+		}
+
+		clearSprites();
+		int count = in.getShort() & 0xffff;
+		for (int i = 0; i < count; i++) {
+			int x = in.getShort();
+			int y = in.get() * LANE_HEIGHT;
+			int attributes = in.get();
+			spawnVehicle(x, y, attributes & 3, attributes >> 2 & 1,
+					attributes >> 3 & 1, attributes >> 4 & 1);
+			if ((attributes & 1 << 5) != 0) {
+				vehicles.get(i).remove();
+			}
+		}
+		count = in.getShort() & 0xffff;
+		for (int i = 0; i < count; i++) {
+			int x = in.getShort();
+			int y = in.get() * LANE_HEIGHT;
+			int attributes = in.get();
+			spawnPlatform(x, y, attributes & 3, attributes >> 2 & 1,
+					attributes >> 3 & 3);
+			if ((attributes & 1 << 5) != 0) {
+				platforms.get(i).remove();
+			}
+		}
+	}
+
+	/**
+	 * Adds a value to an FNV-1a style hash.
+	 * 
+	 * @param h
+	 *            The hash so far.
+	 * @param value
+	 *            The value.
+	 * @return The new hash.
+	 */
+	private static long mix(long h, int value) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			h ^= (value >>> shift) & 0xff;
+			h *= FNV_PRIME;
+		}
+		return h;
+	}
+
+	/**
+	 * Sets the registry the world records its phase timings, entity counts,
+	 * spawns and removals in.
+	 * 
+	 * @param metrics
+	 *            The metrics, FrameMetrics.DISABLED to record nothing.
+	 */
+	public void setMetrics(FrameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Returns the player Sprite.
+	 * 
+	 * @return The player.
+	 */
+	public Player getPlayer() {
+		return frogs.get(0).player;
+	}
+
+	/**
+	 * Returns the Sprite of a frog.
+	 * 
+	 * @param frog
+	 *            The index of the frog.
+	 * @return The player.
+	 */
+	public Player getPlayer(int frog) {
+		return frogs.get(frog).player;
+	}
+
+	/**
+	 * Returns the keys a frog's player is pressing. Every frog but the first
+	 * is stepped with its own input; the first with the input given to step.
+	 * 
+	 * @param frog
+	 *            The index of the frog.
+	 * @return The input.
+	 */
+	public Input getInput(int frog) {
+		return frogs.get(frog).input;
+	}
+
+	/**
+	 * Returns the number of frog indexes in use or free for reuse.
+	 * 
+	 * @return One more than the highest frog index.
+	 */
+	public int getPlayerCount() {
+		return frogs.size();
+	}
+
+	/**
+	 * Returns whether a frog is in the world.
+	 * 
+	 * @param frog
+	 *            The index of the frog.
+	 * @return False if the frog was removed.
+	 */
+	public boolean isPlayerActive(int frog) {
+		return frogs.get(frog).active;
+	}
+
+	/**
+	 * Returns the lanes, from the top of the screen to the bottom.
+	 * 
+	 * @return The lanes.
+	 */
+	public List<Lane> getLanes() {
+		return lanes;
+	}
+
+	/**
+	 * Returns the vehicles currently on the road.
+	 * 
+	 * @return The vehicles.
+	 */
+	public List<Vehicle> getVehicles() {
+		return vehicles;
+	}
+
+	/**
+	 * Returns the platforms currently in the water.
+	 * 
+	 * @return The platforms.
+	 */
+	public List<Platform> getPlatforms() {
+		return platforms;
+	}
+
+	/**
+	 * Returns the flies in the win zones.
+	 * 
+	 * @return The flies.
+	 */
+	public List<Fly> getFlys() {
+		return flys;
+	}
+
+	/**
+	 * Returns the current score.
+	 * 
+	 * @return The score.
+	 */
+	public int getScore() {
+		return frogs.get(0).score;
+	}
+
+	/**
+	 * Returns the current score of a frog.
+	 * 
+	 * @param frog
+	 *            The index of the frog.
+	 * @return The score.
+	 */
+	public int getScore(int frog) {
+		return frogs.get(frog).score;
+	}
+
+	/**
+	 * Returns how many flies a frog has consumed.
+	 * 
+	 * @param frog
+	 *            The index of the frog.
+	 * @return The number of flies.
+	 */
+	public int getFlysConsumed(int frog) {
+		return frogs.get(frog).flysConsumed;
+	}
+
+	/**
+	 * Returns how many flies have been consumed.
+	 * 
+	 * @return The number of flies consumed.
+	 */
+	public int getFlysConsumed() {
+		return flysConsumed;
+	}
+
+	/**
+	 * Returns how many times the player died in a lane of a cause since the
+	 * last restart.
+	 * 
+	 * @param lane
+	 *            The lane.
+	 * @param cause
+	 *            The cause of death, DEATH_VEHICLE, DEATH_WATER or
+	 *            DEATH_WIN_ZONE.
+	 * @return The number of deaths.
+	 */
+	public int getDeaths(int lane, int cause) {
+		return deaths[lane * DEATH_CAUSES + cause];
+	}
+
+	/**
+	 * Returns if the game is over and the player has lost the game.
+	 * 
+	 * @return true if player has lost the game.
+	 */
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	/**
+	 * Returns whether the player has won the game.
+	 * 
+	 * @return true if the player has won the game.
+	 */
+	public boolean isGameWon() {
+		return gameWon;
+	}
+
+	/**
+	 * A frog in the world and its own part of the game state.
+	 */
+	private static class Frog {
+
+		/**
+		 * The frog's sprite.
+		 */
+		final Player player;
+
+		/**
+		 * The keys the frog's player is pressing, if it is not the first.
+		 */
+		final Input input = new Input();
+
+		/**
+		 * Whether the frog is in the world.
+		 */
+		boolean active = true;
+
+		/**
+		 * The frog's score.
+		 */
+		int score;
+
+		/**
+		 * The next YPos the frog must reach to gain NEW_LANE_POINTS.
+		 */
+		int nextPointsPosition = 600;
+
+		/**
+		 * How many flies the frog has consumed.
+		 */
+		int flysConsumed;
+
+		/**
+		 * Creates a frog.
+		 * 
+		 * @param player
+		 *            The frog's sprite.
+		 */
+		Frog(Player player) {
+			this.player = player;
+		}
+
+		/**
+		 * Resets the frog's score for a new game.
+		 */
+		void reset() {
+			score = 0;
+			nextPointsPosition = 600;
+			flysConsumed = 0;
+		}
+	}
+
+}
@@ -0,0 +1,597 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records how long each phase of a tick and of a frame takes, how long key
+ * events wait for a tick, how many entities there are, and how often things
+ * are spawned, removed and heard.
+ * <p>
+ * Recording is meant for the game loop: it takes no locks and allocates
+ * nothing, only updating atomic arrays. A phase is timed with
+ * <code>long t = metrics.begin(); ...; t = metrics.end(PHASE, t);</code>,
+ * where end returns the current time so consecutive phases need a single
+ * clock read each. Each phase keeps a count, a total, a maximum and a
+ * histogram with power of two buckets. Reading (JMX, the Prometheus
+ * endpoint) can happen at any time from any thread.
+ *
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public class FrameMetrics implements FrameMetricsMBean {
+
+	/**
+	 * A whole World tick.
+	 */
+	public static final int TICK = 0;
+
+	/**
+	 * World.addPlatformsToLanes.
+	 */
+	public static final int ADD_PLATFORMS_TO_LANES = 1;
+
+	/**
+	 * World.addVehiclesToLanes.
+	 */
+	public static final int ADD_VEHICLES_TO_LANES = 2;
+
+	/**
+	 * World.processPlatforms.
+	 */
+	public static final int PROCESS_PLATFORMS = 3;
+
+	/**
+	 * World.processPlayer.
+	 */
+	public static final int PROCESS_PLAYER = 4;
+
+	/**
+	 * World.processVehicles.
+	 */
+	public static final int PROCESS_VEHICLES = 5;
+
+	/**
+	 * World.processGameplay.
+	 */
+	public static final int PROCESS_GAMEPLAY = 6;
+
+	/**
+	 * World.removeUnusedSpritesFromLists.
+	 */
+	public static final int REMOVE_UNUSED_SPRITES_FROM_LISTS = 7;
+
+	/**
+	 * A whole rendered frame.
+	 */
+	public static final int RENDER = 8;
+
+	/**
+	 * Drawing the lanes and win zone (the background layer).
+	 */
+	public static final int PROCESS_LANES = 9;
+
+	/**
+	 * Drawing the platforms.
+	 */
+	public static final int DRAW_PLATFORMS = 10;
+
+	/**
+	 * Drawing the player.
+	 */
+	public static final int DRAW_PLAYER = 11;
+
+	/**
+	 * Drawing the vehicles.
+	 */
+	public static final int DRAW_VEHICLES = 12;
+
+	/**
+	 * Drawing the remaining lives.
+	 */
+	public static final int PROCESS_PLAYER_LIVES = 13;
+
+	/**
+	 * Drawing the score and game state.
+	 */
+	public static final int DRAW_GAMEPLAY = 14;
+
+	/**
+	 * BufferStrategy.show.
+	 */
+	public static final int SHOW = 15;
+
+	/**
+	 * Time a key event waited between being pressed or released and being
+	 * read by the tick.
+	 */
+	public static final int INPUT_QUEUE = 16;
+
+	/**
+	 * Names of the phases, as exported.
+	 */
+	private static final String[] PHASE_NAMES = { "tick",
+			"add_platforms_to_lanes", "add_vehicles_to_lanes",
+			"process_platforms", "process_player", "process_vehicles",
+			"process_gameplay", "remove_unused_sprites_from_lists", "render",
+			"process_lanes", "draw_platforms", "draw_player", "draw_vehicles",
+			"process_player_lives", "draw_gameplay", "show", "input_queue" };
+
+	/**
+	 * Vehicles and platforms spawned.
+	 */
+	public static final int SPAWNS = 0;
+
+	/**
+	 * Vehicles and platforms removed.
+	 */
+	public static final int REMOVALS = 1;
+
+	/**
+	 * Sound effects played.
+	 */
+	public static final int SOUND_PLAYS = 2;
+
+	/**
+	 * Frogs killed.
+	 */
+	public static final int DEATHS = 3;
+
+	/**
+	 * New lanes entered by frogs.
+	 */
+	public static final int LANES_ENTERED = 4;
+
+	/**
+	 * Names of the counters, as exported.
+	 */
+	private static final String[] COUNTER_NAMES = { "spawns", "removals",
+			"sound_plays", "deaths", "lanes_entered" };
+
+	/**
+	 * Number of vehicles.
+	 */
+	public static final int VEHICLES = 0;
+
+	/**
+	 * Number of platforms.
+	 */
+	public static final int PLATFORMS = 1;
+
+	/**
+	 * Number of flies.
+	 */
+	public static final int FLIES = 2;
+
+	/**
+	 * Names of the entity gauges, as exported.
+	 */
+	private static final String[] GAUGE_NAMES = { "vehicle", "platform", "fly" };
+
+	/**
+	 * Number of histogram buckets per phase. Bucket i holds times below
+	 * 2^(i + 10) nanoseconds (about 1 microsecond to 34 milliseconds), the
+	 * last bucket everything longer.
+	 */
+	public static final int BUCKETS = 16;
+
+	/**
+	 * Shift of the smallest bucket bound: 2^10 ns.
+	 */
+	private static final int BUCKET_SHIFT = 10;
+
+	/**
+	 * Name the MBean is registered under.
+	 */
+	public static final String OBJECT_NAME = "froggr:type=FrameMetrics";
+
+	/**
+	 * Metrics that record nothing, for worlds nobody observes.
+	 */
+	public static final FrameMetrics DISABLED = new FrameMetrics(false);
+
+	/**
+	 * Whether anything is recorded.
+	 */
+	private final boolean enabled;
+
+	/**
+	 * Number of runs of each phase.
+	 */
+	private final AtomicLongArray phaseCounts = new AtomicLongArray(
+			PHASE_NAMES.length);
+
+	/**
+	 * Total nanoseconds of each phase.
+	 */
+	private final AtomicLongArray phaseNanos = new AtomicLongArray(
+			PHASE_NAMES.length);
+
+	/**
+	 * Longest run of each phase in nanoseconds.
+	 */
+	private final AtomicLongArray phaseMaxNanos = new AtomicLongArray(
+			PHASE_NAMES.length);
+
+	/**
+	 * Histogram of each phase, BUCKETS entries per phase.
+	 */
+	private final AtomicLongArray histograms = new AtomicLongArray(
+			PHASE_NAMES.length * BUCKETS);
+
+	/**
+	 * The counters.
+	 */
+	private final AtomicLongArray counters = new AtomicLongArray(
+			COUNTER_NAMES.length);
+
+	/**
+	 * The entity gauges.
+	 */
+	private final AtomicIntegerArray gauges = new AtomicIntegerArray(
+			GAUGE_NAMES.length);
+
+	/**
+	 * Counter values when the rates were last sampled.
+	 */
+	private final long[] sampledCounters = new long[COUNTER_NAMES.length];
+
+	/**
+	 * Counter rates per second at the last sample.
+	 */
+	private final double[] rates = new double[COUNTER_NAMES.length];
+
+	/**
+	 * Time of the last rate sample, 0 before the first.
+	 */
+	private long sampledAt;
+
+	/**
+	 * Creates a registry.
+	 * @param enabled Whether anything is recorded.
+	 */
+	public FrameMetrics(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns whether anything is recorded.
+	 * @return True if enabled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts timing a phase.
+	 * @return The start time to pass to {@link #end}, 0 if disabled.
+	 */
+	public long begin() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Ends timing a phase.
+	 * @param phase The phase.
+	 * @param start The time returned by {@link #begin} or the previous end.
+	 * @return The current time, to start the next phase with.
+	 */
+	public long end(int phase, long start) {
+		if (!enabled) {
+			return 0;
+		}
+		long now = System.nanoTime();
+		record(phase, now - start);
+		return now;
+	}
+
+	/**
+	 * Records one run of a phase.
+	 * @param phase The phase.
+	 * @param nanos How long it took.
+	 */
+	public void record(int phase, long nanos) {
+		if (!enabled) {
+			return;
+		}
+		phaseCounts.incrementAndGet(phase);
+		phaseNanos.addAndGet(phase, nanos);
+		long max = phaseMaxNanos.get(phase);
+		while (nanos > max && !phaseMaxNanos.compareAndSet(phase, max, nanos)) {
+			max = phaseMaxNanos.get(phase);
+		}
+		int bucket = 64 - Long.numberOfLeadingZeros(Math.max(0, nanos) >> BUCKET_SHIFT);
+		histograms.incrementAndGet(phase * BUCKETS + Math.min(bucket, BUCKETS - 1));
+	}
+
+	/**
+	 * Adds to a counter.
+	 * @param counter SPAWNS, REMOVALS, SOUND_PLAYS, DEATHS or
+	 *            LANES_ENTERED.
+	 * @param amount The amount to add.
+	 */
+	public void count(int counter, int amount) {
+		if (enabled && amount != 0) {
+			counters.addAndGet(counter, amount);
+		}
+	}
+
+	/**
+	 * Sets an entity gauge.
+	 * @param gauge VEHICLES, PLATFORMS or FLIES.
+	 * @param value The number of entities.
+	 */
+	public void setGauge(int gauge, int value) {
+		if (enabled) {
+			gauges.set(gauge, value);
+		}
+	}
+
+	/**
+	 * Returns the number of phases.
+	 * @return The phase count.
+	 */
+	public static int getPhaseCount() {
+		return PHASE_NAMES.length;
+	}
+
+	/**
+	 * Returns the exported name of a phase.
+	 * @param phase The phase.
+	 * @return The name.
+	 */
+	public static String getPhaseName(int phase) {
+		return PHASE_NAMES[phase];
+	}
+
+	/**
+	 * Returns the number of counters.
+	 * @return The counter count.
+	 */
+	public static int getCounterCount() {
+		return COUNTER_NAMES.length;
+	}
+
+	/**
+	 * Returns the exported name of a counter.
+	 * @param counter The counter.
+	 * @return The name.
+	 */
+	public static String getCounterName(int counter) {
+		return COUNTER_NAMES[counter];
+	}
+
+	/**
+	 * Returns the number of entity gauges.
+	 * @return The gauge count.
+	 */
+	public static int getGaugeCount() {
+		return GAUGE_NAMES.length;
+	}
+
+	/**
+	 * Returns the exported name of an entity gauge.
+	 * @param gauge The gauge.
+	 * @return The name.
+	 */
+	public static String getGaugeName(int gauge) {
+		return GAUGE_NAMES[gauge];
+	}
+
+	/**
+	 * Returns the upper bound of a histogram bucket.
+	 * @param bucket The bucket, below BUCKETS - 1.
+	 * @return The bound in nanoseconds.
+	 */
+	public static long getBucketBound(int bucket) {
+		return 1L << (bucket + BUCKET_SHIFT);
+	}
+
+	/**
+	 * Returns how many times a phase ran.
+	 * @param phase The phase.
+	 * @return The count.
+	 */
+	public long getCount(int phase) {
+		return phaseCounts.get(phase);
+	}
+
+	/**
+	 * Returns the total time spent in a phase.
+	 * @param phase The phase.
+	 * @return The time in nanoseconds.
+	 */
+	public long getNanos(int phase) {
+		return phaseNanos.get(phase);
+	}
+
+	/**
+	 * Returns the longest run of a phase.
+	 * @param phase The phase.
+	 * @return The time in nanoseconds.
+	 */
+	public long getMaxNanos(int phase) {
+		return phaseMaxNanos.get(phase);
+	}
+
+	/**
+	 * Returns the number of runs of a phase that fell in a histogram bucket.
+	 * @param phase The phase.
+	 * @param bucket The bucket.
+	 * @return The count.
+	 */
+	public long getBucket(int phase, int bucket) {
+		return histograms.get(phase * BUCKETS + bucket);
+	}
+
+	/**
+	 * Returns the value of a counter.
+	 * @param counter The counter.
+	 * @return The value.
+	 */
+	public long getCounter(int counter) {
+		return counters.get(counter);
+	}
+
+	/**
+	 * Returns the value of an entity gauge.
+	 * @param gauge The gauge.
+	 * @return The value.
+	 */
+	public int getGauge(int gauge) {
+		return gauges.get(gauge);
+	}
+
+	/**
+	 * Returns the recent rate of a counter, sampling the counters again if
+	 * the last sample is more than a second old.
+	 * @param counter The counter.
+	 * @return The rate per second.
+	 */
+	public synchronized double getRate(int counter) {
+		long now = System.nanoTime();
+		if (sampledAt == 0 || now - sampledAt >= 1000000000L) {
+			double seconds = (now - sampledAt) / 1e9;
+			for (int i = 0; i < COUNTER_NAMES.length; i++) {
+				long value = counters.get(i);
+				rates[i] = sampledAt == 0 ? 0 : (value - sampledCounters[i])
+						/ seconds;
+				sampledCounters[i] = value;
+			}
+			sampledAt = now;
+		}
+		return rates[counter];
+	}
+
+	/**
+	 * Registers the MBean with the platform MBean server, replacing any
+	 * registry registered before.
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			try {
+				server.registerMBean(this, name);
+			} catch (InstanceAlreadyExistsException e) {
+				server.unregisterMBean(name);
+				server.registerMBean(this, name);
+			}
+		} catch (JMException e) {
+			System.err.println("Could not register metrics: " + e);
+		}
+	}
+
+	@Override
+	public String[] getPhaseNames() {
+		return PHASE_NAMES.clone();
+	}
+
+	@Override
+	public long[] getPhaseCounts() {
+		long[] counts = new long[PHASE_NAMES.length];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = getCount(i);
+		}
+		return counts;
+	}
+
+	@Override
+	public double[] getPhaseMeanMicros() {
+		double[] means = new double[PHASE_NAMES.length];
+		for (int i = 0; i < means.length; i++) {
+			long count = getCount(i);
+			means[i] = count == 0 ? 0 : getNanos(i) / 1000.0 / count;
+		}
+		return means;
+	}
+
+	@Override
+	public double[] getPhaseMaxMicros() {
+		double[] maxima = new double[PHASE_NAMES.length];
+		for (int i = 0; i < maxima.length; i++) {
+			maxima[i] = getMaxNanos(i) / 1000.0;
+		}
+		return maxima;
+	}
+
+	@Override
+	public int getVehicles() {
+		return getGauge(VEHICLES);
+	}
+
+	@Override
+	public int getPlatforms() {
+		return getGauge(PLATFORMS);
+	}
+
+	@Override
+	public int getFlies() {
+		return getGauge(FLIES);
+	}
+
+	@Override
+	public long getSpawns() {
+		return getCounter(SPAWNS);
+	}
+
+	@Override
+	public long getRemovals() {
+		return getCounter(REMOVALS);
+	}
+
+	@Override
+	public long getSoundPlays() {
+		return getCounter(SOUND_PLAYS);
+	}
+
+	@Override
+	public long getDeaths() {
+		return getCounter(DEATHS);
+	}
+
+	@Override
+	public long getLanesEntered() {
+		return getCounter(LANES_ENTERED);
+	}
+
+	@Override
+	public double getSpawnsPerSecond() {
+		return getRate(SPAWNS);
+	}
+
+	@Override
+	public double getRemovalsPerSecond() {
+		return getRate(REMOVALS);
+	}
+
+	@Override
+	public double getSoundPlaysPerSecond() {
+		return getRate(SOUND_PLAYS);
+	}
+
+	@Override
+	public synchronized void reset() {
+		for (int i = 0; i < PHASE_NAMES.length; i++) {
+			phaseCounts.set(i, 0);
+			phaseNanos.set(i, 0);
+			phaseMaxNanos.set(i, 0);
+		}
+		for (int i = 0; i < histograms.length(); i++) {
+			histograms.set(i, 0);
+		}
+		for (int i = 0; i < COUNTER_NAMES.length; i++) {
+			counters.set(i, 0);
+			sampledCounters[i] = 0;
+			rates[i] = 0;
+		}
+		sampledAt = 0;
+	}
+}
@@ -0,0 +1,108 @@
+package metrics;
+
+/**
+ * Management interface of {@link FrameMetrics}, as seen in JConsole or any
+ * other JMX client under <code>froggr:type=FrameMetrics</code>.
+ *
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public interface FrameMetricsMBean {
+
+	/**
+	 * Returns the names of the timed phases, in the order of the other
+	 * phase arrays.
+	 * @return The phase names.
+	 */
+	String[] getPhaseNames();
+
+	/**
+	 * Returns how many times each phase ran.
+	 * @return The counts.
+	 */
+	long[] getPhaseCounts();
+
+	/**
+	 * Returns the average time of each phase.
+	 * @return The mean times in microseconds.
+	 */
+	double[] getPhaseMeanMicros();
+
+	/**
+	 * Returns the longest time of each phase.
+	 * @return The maximum times in microseconds.
+	 */
+	double[] getPhaseMaxMicros();
+
+	/**
+	 * Returns the number of vehicles in the world.
+	 * @return The vehicle count.
+	 */
+	int getVehicles();
+
+	/**
+	 * Returns the number of platforms in the world.
+	 * @return The platform count.
+	 */
+	int getPlatforms();
+
+	/**
+	 * Returns the number of flies in the world.
+	 * @return The fly count.
+	 */
+	int getFlies();
+
+	/**
+	 * Returns the number of vehicles and platforms spawned.
+	 * @return The spawn count.
+	 */
+	long getSpawns();
+
+	/**
+	 * Returns the number of vehicles and platforms removed.
+	 * @return The removal count.
+	 */
+	long getRemovals();
+
+	/**
+	 * Returns the number of sound effects played.
+	 * @return The sound play count.
+	 */
+	long getSoundPlays();
+
+	/**
+	 * Returns the number of frogs killed.
+	 * @return The death count.
+	 */
+	long getDeaths();
+
+	/**
+	 * Returns the number of new lanes entered by frogs.
+	 * @return The lane count.
+	 */
+	long getLanesEntered();
+
+	/**
+	 * Returns the recent number of spawns per second.
+	 * @return The spawn rate.
+	 */
+	double getSpawnsPerSecond();
+
+	/**
+	 * Returns the recent number of removals per second.
+	 * @return The removal rate.
+	 */
+	double getRemovalsPerSecond();
+
+	/**
+	 * Returns the recent number of sound plays per second.
+	 * @return The sound play rate.
+	 */
+	double getSoundPlaysPerSecond();
+
+	/**
+	 * Sets every timing and counter back to zero.
+	 */
+	void reset();
+}
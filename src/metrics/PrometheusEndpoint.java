@@ -0,0 +1,179 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a {@link FrameMetrics} registry at <code>/metrics</code> in the
+ * Prometheus text format, so a Prometheus server can scrape it. The server
+ * only listens on the loopback address; a scraper on another machine needs
+ * a local agent or tunnel.
+ *
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public class PrometheusEndpoint {
+
+	/**
+	 * Content type of the Prometheus text format.
+	 */
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	/**
+	 * The metrics served.
+	 */
+	private final FrameMetrics metrics;
+
+	/**
+	 * The HTTP server.
+	 */
+	private final HttpServer server;
+
+	/**
+	 * The thread answering requests.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Starts serving metrics on a loopback port.
+	 * @param metrics The metrics to serve.
+	 * @param port The port, or 0 for any free port.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public PrometheusEndpoint(FrameMetrics metrics, int port) throws IOException {
+		this.metrics = metrics;
+		server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "froggr-metrics");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Answers one scrape.
+	 * @param exchange The request.
+	 * @throws IOException If the response cannot be sent.
+	 */
+	private void serve(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			byte[] body = format(metrics).getBytes(Charset.forName("UTF-8"));
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Returns the port the endpoint listens on.
+	 * @return The port.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops serving.
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	/**
+	 * Formats metrics in the Prometheus text format.
+	 * @param metrics The metrics.
+	 * @return The text.
+	 */
+	public static String format(FrameMetrics metrics) {
+		StringBuilder out = new StringBuilder(8192);
+
+		out.append("# HELP froggr_phase_seconds Time spent in each tick and frame phase.\n");
+		out.append("# TYPE froggr_phase_seconds histogram\n");
+		for (int phase = 0; phase < FrameMetrics.getPhaseCount(); phase++) {
+			String name = FrameMetrics.getPhaseName(phase);
+			long cumulative = 0;
+			for (int b = 0; b < FrameMetrics.BUCKETS - 1; b++) {
+				cumulative += metrics.getBucket(phase, b);
+				out.append("froggr_phase_seconds_bucket{phase=\"").append(name)
+						.append("\",le=\"")
+						.append(seconds(FrameMetrics.getBucketBound(b)))
+						.append("\"} ").append(cumulative).append('\n');
+			}
+			out.append("froggr_phase_seconds_bucket{phase=\"").append(name)
+					.append("\",le=\"+Inf\"} ").append(metrics.getCount(phase))
+					.append('\n');
+			out.append("froggr_phase_seconds_sum{phase=\"").append(name)
+					.append("\"} ").append(seconds(metrics.getNanos(phase)))
+					.append('\n');
+			out.append("froggr_phase_seconds_count{phase=\"").append(name)
+					.append("\"} ").append(metrics.getCount(phase)).append('\n');
+		}
+
+		out.append("# HELP froggr_phase_max_seconds Longest run of each phase.\n");
+		out.append("# TYPE froggr_phase_max_seconds gauge\n");
+		for (int phase = 0; phase < FrameMetrics.getPhaseCount(); phase++) {
+			out.append("froggr_phase_max_seconds{phase=\"")
+					.append(FrameMetrics.getPhaseName(phase)).append("\"} ")
+					.append(seconds(metrics.getMaxNanos(phase))).append('\n');
+		}
+
+		out.append("# HELP froggr_entities Entities in the world.\n");
+		out.append("# TYPE froggr_entities gauge\n");
+		for (int gauge = 0; gauge < FrameMetrics.getGaugeCount(); gauge++) {
+			out.append("froggr_entities{kind=\"")
+					.append(FrameMetrics.getGaugeName(gauge)).append("\"} ")
+					.append(metrics.getGauge(gauge)).append('\n');
+		}
+
+		for (int counter = 0; counter < FrameMetrics.getCounterCount(); counter++) {
+			String name = "froggr_" + FrameMetrics.getCounterName(counter)
+					+ "_total";
+			out.append("# TYPE ").append(name).append(" counter\n");
+			out.append(name).append(' ').append(metrics.getCounter(counter))
+					.append('\n');
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Formats nanoseconds as seconds.
+	 * @param nanos The nanoseconds.
+	 * @return The seconds.
+	 */
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+	}
+}
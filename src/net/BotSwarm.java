@@ -0,0 +1,401 @@
+package net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+
+import game.Input;
+
+/**
+ * Headless bot clients for a {@link GameServer}, for load testing it over
+ * loopback: every bot joins a session and hops about at random, mostly up,
+ * while reading every state frame. All bots share one thread and selector,
+ * like the server. Spectator bots watch the first session and decode its
+ * delta feed.
+ * <p>
+ * Usage:
+ * <code>java net.BotSwarm [host] [port] [bots] [seconds] [spectators]</code>,
+ * default localhost 4711 100 10 0. Prints how many frames the bots received
+ * and exits with status 1 if a bot never got into a session or a spectator
+ * was disconnected.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class BotSwarm {
+
+	/**
+	 * The chance that a bot presses a button when it gets a state frame.
+	 */
+	private static final double PRESS_CHANCE = 1.0 / 20;
+
+	/**
+	 * Size of each bot's receive buffer.
+	 */
+	private static final int RECEIVE_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The selector of all bots.
+	 */
+	private final Selector selector;
+
+	/**
+	 * The bots.
+	 */
+	private final Bot[] bots;
+
+	/**
+	 * The spectator bots.
+	 */
+	private Bot[] spectators = new Bot[0];
+
+	/**
+	 * Source of the bots' button presses.
+	 */
+	private final Random random = new Random();
+
+	/**
+	 * Connects the bots and asks them to join any session.
+	 * @param address The server.
+	 * @param count The number of bots.
+	 * @throws IOException If a bot cannot connect.
+	 */
+	public BotSwarm(InetSocketAddress address, int count) throws IOException {
+		selector = Selector.open();
+		bots = new Bot[count];
+		for (int i = 0; i < count; i++) {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channel.configureBlocking(false);
+			bots[i] = new Bot(channel);
+			channel.register(selector, SelectionKey.OP_READ, bots[i]);
+			Protocol.writeJoin(bots[i].out, Protocol.ANY_SESSION);
+			bots[i].flush();
+		}
+	}
+
+	/**
+	 * Connects spectator bots to a session, which must have started.
+	 * @param address The server.
+	 * @param count The number of spectators.
+	 * @param session The session to watch.
+	 * @throws IOException If a spectator cannot connect.
+	 */
+	public void watch(InetSocketAddress address, int count, int session)
+			throws IOException {
+		spectators = new Bot[count];
+		for (int i = 0; i < count; i++) {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channel.configureBlocking(false);
+			spectators[i] = new Bot(channel);
+			spectators[i].decoder = new DeltaDecoder();
+			channel.register(selector, SelectionKey.OP_READ, spectators[i]);
+			Protocol.writeSpectate(spectators[i].out, session);
+			spectators[i].flush();
+		}
+	}
+
+	/**
+	 * Runs the bots for a while.
+	 * @param nanos How long, in nanoseconds.
+	 * @throws IOException If the selector fails.
+	 */
+	public void run(long nanos) throws IOException {
+		long end = System.nanoTime() + nanos;
+		long left;
+		while ((left = end - System.nanoTime()) > 0) {
+			selector.select(Math.max(1, left / 1000000));
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				if (key.isValid() && key.isReadable()) {
+					((Bot) key.attachment()).read();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Disconnects every bot.
+	 */
+	public void close() {
+		for (int i = 0; i < bots.length + spectators.length; i++) {
+			Bot bot = i < bots.length ? bots[i] : spectators[i - bots.length];
+			try {
+				bot.channel.close();
+			} catch (IOException e) {
+				// Already gone.
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns the number of bots that joined a session.
+	 * @return The count.
+	 */
+	public int getJoined() {
+		int joined = 0;
+		for (int i = 0; i < bots.length; i++) {
+			if (bots[i].session >= 0) {
+				joined++;
+			}
+		}
+		return joined;
+	}
+
+	/**
+	 * Returns the number of state frames all bots received.
+	 * @return The count.
+	 */
+	public long getStates() {
+		long states = 0;
+		for (int i = 0; i < bots.length; i++) {
+			states += bots[i].states;
+		}
+		return states;
+	}
+
+	/**
+	 * Returns the number of bytes all bots received.
+	 * @return The count.
+	 */
+	public long getBytes() {
+		long bytes = 0;
+		for (int i = 0; i < bots.length; i++) {
+			bytes += bots[i].bytes;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of bots the server disconnected.
+	 * @return The count.
+	 */
+	public int getDisconnected() {
+		int disconnected = 0;
+		for (int i = 0; i < bots.length; i++) {
+			if (!bots[i].channel.isOpen()) {
+				disconnected++;
+			}
+		}
+		return disconnected;
+	}
+
+	/**
+	 * Returns the number of feed frames all spectators received and
+	 * decoded.
+	 * @return The count.
+	 */
+	public long getFeedFrames() {
+		long frames = 0;
+		for (int i = 0; i < spectators.length; i++) {
+			frames += spectators[i].states;
+		}
+		return frames;
+	}
+
+	/**
+	 * Returns the number of bytes all spectators received.
+	 * @return The count.
+	 */
+	public long getFeedBytes() {
+		long bytes = 0;
+		for (int i = 0; i < spectators.length; i++) {
+			bytes += spectators[i].bytes;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of spectators the server disconnected.
+	 * @return The count.
+	 */
+	public int getSpectatorsDisconnected() {
+		int disconnected = 0;
+		for (int i = 0; i < spectators.length; i++) {
+			if (!spectators[i].channel.isOpen()) {
+				disconnected++;
+			}
+		}
+		return disconnected;
+	}
+
+	/**
+	 * Returns the number of frogs the first spectator sees.
+	 * @return The count, or -1 without spectators.
+	 */
+	public int getFrogsSeen() {
+		return spectators.length > 0 ? spectators[0].decoder.getFrogCount()
+				: -1;
+	}
+
+	/**
+	 * A bot.
+	 */
+	private class Bot {
+
+		/**
+		 * The socket.
+		 */
+		final SocketChannel channel;
+
+		/**
+		 * Bytes received and not handled yet.
+		 */
+		final ByteBuffer in = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+
+		/**
+		 * Bytes to send.
+		 */
+		final ByteBuffer out = ByteBuffer.allocate(64);
+
+		/**
+		 * The session joined, -1 before the WELCOME.
+		 */
+		int session = -1;
+
+		/**
+		 * The decoder of a spectator's feed, null for a player.
+		 */
+		DeltaDecoder decoder;
+
+		/**
+		 * Number of state or feed frames received.
+		 */
+		long states;
+
+		/**
+		 * Number of bytes received.
+		 */
+		long bytes;
+
+		/**
+		 * Creates a bot.
+		 * @param channel Its socket.
+		 */
+		Bot(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Reads and handles the frames the server sent.
+		 * @throws IOException If the socket fails.
+		 */
+		void read() throws IOException {
+			int read = channel.read(in);
+			if (read < 0) {
+				channel.close();
+				return;
+			}
+			bytes += read;
+			in.flip();
+			int size;
+			while ((size = Protocol.frameSize(in)) > 0) {
+				int start = in.position();
+				int type = in.get(start + Protocol.LENGTH_SIZE);
+				if (type == Protocol.WELCOME) {
+					session = in.getInt(start + Protocol.LENGTH_SIZE + 1);
+				} else if (type == Protocol.STATE) {
+					states++;
+					if (random.nextDouble() < PRESS_CHANCE) {
+						press();
+					}
+				} else if (type == Protocol.KEYFRAME
+						|| type == Protocol.DELTA) {
+					states++;
+					decoder.apply(in);
+				} else if (type == Protocol.FULL) {
+					channel.close();
+					return;
+				}
+				in.position(start + size);
+			}
+			if (size == 0) {
+				channel.close();
+				return;
+			}
+			in.compact();
+		}
+
+		/**
+		 * Presses a random button: up half of the time.
+		 * @throws IOException If the socket fails.
+		 */
+		void press() throws IOException {
+			int roll = random.nextInt(10);
+			int button = roll < 5 ? Input.UP : roll < 7 ? Input.LEFT
+					: roll < 9 ? Input.RIGHT : Input.DOWN;
+			Protocol.writeInput(out, 1 << button);
+			flush();
+		}
+
+		/**
+		 * Sends what is in the send buffer. The bots send so little that the
+		 * socket always takes it.
+		 * @throws IOException If the socket fails.
+		 */
+		void flush() throws IOException {
+			out.flip();
+			channel.write(out);
+			out.compact();
+		}
+	}
+
+	/**
+	 * Runs bots against a server.
+	 * @param args Host, port, number of bots, seconds and number of
+	 *            spectators, all optional.
+	 * @throws IOException If the bots cannot connect.
+	 */
+	public static void main(String[] args) throws IOException {
+		String host = args.length > 0 ? args[0] : "localhost";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 4711;
+		int count = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+		int watching = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		BotSwarm swarm = new BotSwarm(address, count);
+		if (watching > 0) {
+			// Give the bots a second to start the first session.
+			swarm.run(1000000000L);
+			swarm.watch(address, watching, 0);
+			swarm.run((seconds - 1) * 1000000000L);
+		} else {
+			swarm.run(seconds * 1000000000L);
+		}
+		System.out.println(swarm.getJoined() + " of " + count
+				+ " bots joined, " + swarm.getDisconnected()
+				+ " disconnected by the server");
+		System.out.println(swarm.getStates() + " state frames, "
+				+ swarm.getBytes() + " bytes, "
+				+ String.format("%.0f", (double) swarm.getStates() / seconds)
+				+ " frames/s");
+		if (watching > 0) {
+			System.out.println(watching + " spectators, "
+					+ swarm.getSpectatorsDisconnected() + " disconnected, "
+					+ swarm.getFeedFrames() + " feed frames, "
+					+ swarm.getFeedBytes() + " bytes, "
+					+ String.format("%.1f", (double) swarm.getFeedBytes()
+							/ Math.max(1, swarm.getFeedFrames()))
+					+ " bytes/frame, " + swarm.getFrogsSeen() + " frogs seen");
+		}
+		swarm.close();
+		if (swarm.getJoined() < count || swarm.getSpectatorsDisconnected() > 0) {
+			System.exit(1);
+		}
+	}
+}
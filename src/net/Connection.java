@@ -0,0 +1,82 @@
+package net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A client of a {@link GameServer} and its bounded buffers.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+class Connection {
+
+	/**
+	 * The socket.
+	 */
+	final SocketChannel channel;
+
+	/**
+	 * The socket's registration with the server's selector.
+	 */
+	final SelectionKey key;
+
+	/**
+	 * Bytes received and not yet handled, ready to be written to.
+	 */
+	final ByteBuffer in;
+
+	/**
+	 * Bytes waiting to be sent, ready to be written to.
+	 */
+	final ByteBuffer out;
+
+	/**
+	 * The session joined, or null.
+	 */
+	Session session;
+
+	/**
+	 * The index of the client's frog, or -1.
+	 */
+	int frog = -1;
+
+	/**
+	 * Spectator feed frames waiting to be sent, after the send buffer; null
+	 * unless the client is a spectator. They are duplicates of the frames
+	 * shared by every spectator of the session.
+	 */
+	ArrayDeque<ByteBuffer> feed;
+
+	/**
+	 * Whether the spectator needs a keyframe before it can use deltas.
+	 */
+	boolean needsKeyframe;
+
+	/**
+	 * State frames dropped in a row because the send buffer was full.
+	 */
+	int droppedInRow;
+
+	/**
+	 * Whether to close the connection once the send buffer is empty.
+	 */
+	boolean closeWhenSent;
+
+	/**
+	 * Creates a connection.
+	 * @param channel The socket.
+	 * @param key Its registration.
+	 * @param receiveBufferSize Size of the receive buffer.
+	 * @param sendBufferSize Size of the send buffer.
+	 */
+	Connection(SocketChannel channel, SelectionKey key, int receiveBufferSize,
+			int sendBufferSize) {
+		this.channel = channel;
+		this.key = key;
+		in = ByteBuffer.allocate(receiveBufferSize);
+		out = ByteBuffer.allocate(sendBufferSize);
+	}
+}
@@ -0,0 +1,424 @@
+package net;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import game.World;
+
+/**
+ * Rebuilds the state of a watched session from the spectator feed of
+ * {@link DeltaEncoder}: apply every KEYFRAME and DELTA frame in order and
+ * read the state with the getters.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class DeltaDecoder {
+
+	/**
+	 * The vehicles, for getCount, getX and getAttributes.
+	 */
+	public static final int VEHICLES = 0;
+
+	/**
+	 * The platforms, for getCount, getX and getAttributes.
+	 */
+	public static final int PLATFORMS = 1;
+
+	/**
+	 * Whether a keyframe was applied.
+	 */
+	private boolean synced;
+
+	/**
+	 * The session's tick.
+	 */
+	private long tick;
+
+	/**
+	 * The Protocol.FLAG_* bits.
+	 */
+	private int flags;
+
+	/**
+	 * The consumed flies, one bit each.
+	 */
+	private int flies;
+
+	/**
+	 * The frogs in the world, one bit each.
+	 */
+	private long frogSet;
+
+	/**
+	 * Frog x positions.
+	 */
+	private final int[] frogX = new int[DeltaEncoder.MAX_FROGS];
+
+	/**
+	 * Frog y positions.
+	 */
+	private final int[] frogY = new int[DeltaEncoder.MAX_FROGS];
+
+	/**
+	 * Frog lives.
+	 */
+	private final int[] frogLives = new int[DeltaEncoder.MAX_FROGS];
+
+	/**
+	 * Whether each frog is alive.
+	 */
+	private final boolean[] frogAlive = new boolean[DeltaEncoder.MAX_FROGS];
+
+	/**
+	 * Frog scores.
+	 */
+	private final int[] frogScore = new int[DeltaEncoder.MAX_FROGS];
+
+	/**
+	 * The x positions of the vehicles and platforms, by kind and lane.
+	 */
+	private final int[][][] xs = new int[2][World.NUMBER_OF_LANES][8];
+
+	/**
+	 * Their attributes.
+	 */
+	private final int[][][] attributes = new int[2][World.NUMBER_OF_LANES][8];
+
+	/**
+	 * How many there are, by kind and lane.
+	 */
+	private final int[][] counts = new int[2][World.NUMBER_OF_LANES];
+
+	/**
+	 * Applies a frame.
+	 * @param in The buffer, positioned at the start of a complete KEYFRAME or
+	 *            DELTA frame. Its position is moved past the frame.
+	 * @throws IllegalArgumentException If it is another kind of frame.
+	 * @throws IllegalStateException If it is a delta and no keyframe was
+	 *             applied.
+	 */
+	public void apply(ByteBuffer in) {
+		int end = in.position() + Protocol.LENGTH_SIZE
+				+ (in.getShort() & 0xffff);
+		int type = in.get();
+		if (type == Protocol.KEYFRAME) {
+			applyKeyframe(in);
+		} else if (type == Protocol.DELTA) {
+			if (!synced) {
+				throw new IllegalStateException("Delta before a keyframe");
+			}
+			applyDelta(in);
+		} else {
+			throw new IllegalArgumentException("Not a spectator frame: " + type);
+		}
+		if (in.position() != end) {
+			throw new IllegalArgumentException("Frame of " + type
+					+ " ends at " + in.position() + ", expected " + end);
+		}
+	}
+
+	/**
+	 * Reads a keyframe.
+	 * @param in The buffer, after the frame type.
+	 */
+	private void applyKeyframe(ByteBuffer in) {
+		tick = Protocol.getVarint(in);
+		flags = in.get() & 0xff;
+		flies = in.get() & 0xff;
+		frogSet = Protocol.getVarint(in);
+		for (int i = 0; i < DeltaEncoder.MAX_FROGS; i++) {
+			if ((frogSet & (1L << i)) == 0) {
+				clearFrog(i);
+				continue;
+			}
+			frogX[i] = Protocol.getSignedVarint(in);
+			frogY[i] = Protocol.getSignedVarint(in);
+			frogLives[i] = (int) Protocol.getVarint(in);
+			frogAlive[i] = in.get() != 0;
+			frogScore[i] = Protocol.getSignedVarint(in);
+		}
+		for (int kind = VEHICLES; kind <= PLATFORMS; kind++) {
+			for (int lane = 0; lane < World.NUMBER_OF_LANES; lane++) {
+				int count = (int) Protocol.getVarint(in);
+				counts[kind][lane] = 0;
+				for (int i = 0; i < count; i++) {
+					add(kind, lane, Protocol.getSignedVarint(in), in.get() & 0xff);
+				}
+			}
+		}
+		synced = true;
+	}
+
+	/**
+	 * Reads a delta.
+	 * @param in The buffer, after the frame type.
+	 */
+	private void applyDelta(ByteBuffer in) {
+		tick++;
+		int changes = in.get();
+		if ((changes & DeltaEncoder.CHANGED_GAME) != 0) {
+			flags = in.get() & 0xff;
+			flies = in.get() & 0xff;
+		}
+		if ((changes & DeltaEncoder.CHANGED_FROG_SET) != 0) {
+			long newFrogSet = Protocol.getVarint(in);
+			for (int i = 0; i < DeltaEncoder.MAX_FROGS; i++) {
+				if ((frogSet & ~newFrogSet & (1L << i)) != 0) {
+					clearFrog(i);
+				}
+			}
+			frogSet = newFrogSet;
+		}
+		if ((changes & DeltaEncoder.CHANGED_FROGS) != 0) {
+			long changed = Protocol.getVarint(in);
+			for (int i = 0; i < DeltaEncoder.MAX_FROGS; i++) {
+				if ((changed & (1L << i)) == 0) {
+					continue;
+				}
+				int bits = in.get();
+				if ((bits & DeltaEncoder.FROG_X) != 0) {
+					frogX[i] += Protocol.getSignedVarint(in);
+				}
+				if ((bits & DeltaEncoder.FROG_Y) != 0) {
+					frogY[i] += Protocol.getSignedVarint(in);
+				}
+				if ((bits & DeltaEncoder.FROG_LIVES) != 0) {
+					frogLives[i] = (int) Protocol.getVarint(in);
+				}
+				if ((bits & DeltaEncoder.FROG_ALIVE) != 0) {
+					frogAlive[i] = !frogAlive[i];
+				}
+				if ((bits & DeltaEncoder.FROG_SCORE) != 0) {
+					frogScore[i] += Protocol.getSignedVarint(in);
+				}
+			}
+		}
+		applyLanes(in, VEHICLES, changes, DeltaEncoder.CHANGED_VEHICLES);
+		applyLanes(in, PLATFORMS, changes, DeltaEncoder.CHANGED_PLATFORMS);
+	}
+
+	/**
+	 * Reads the lane changes of the vehicles or platforms, if any.
+	 * @param in The buffer.
+	 * @param kind VEHICLES or PLATFORMS.
+	 * @param changes The CHANGED_* bits of the delta.
+	 * @param changed The bit of this kind.
+	 */
+	private void applyLanes(ByteBuffer in, int kind, int changes, int changed) {
+		if ((changes & changed) == 0) {
+			return;
+		}
+		int mask = in.getShort() & 0xffff;
+		for (int lane = 0; lane < World.NUMBER_OF_LANES; lane++) {
+			if ((mask & (1 << lane)) == 0) {
+				continue;
+			}
+			int bits = in.get();
+			int[] x = xs[kind][lane];
+			int[] attr = attributes[kind][lane];
+			int count = counts[kind][lane];
+			if ((bits & DeltaEncoder.LANE_REMOVED) != 0) {
+				int kept = 0;
+				int b = 0;
+				for (int i = 0; i < count; i++) {
+					if ((i & 7) == 0) {
+						b = in.get();
+					}
+					if ((b & (1 << (i & 7))) == 0) {
+						x[kept] = x[i];
+						attr[kept] = attr[i];
+						kept++;
+					}
+				}
+				count = kept;
+				counts[kind][lane] = count;
+			}
+			if ((bits & DeltaEncoder.LANE_SHIFTED) != 0) {
+				int dx = Protocol.getSignedVarint(in);
+				for (int i = 0; i < count; i++) {
+					x[i] += dx;
+				}
+			} else if ((bits & DeltaEncoder.LANE_MOVED) != 0) {
+				for (int i = 0; i < count; i++) {
+					x[i] += Protocol.getSignedVarint(in);
+				}
+			} else {
+				for (int i = 0; i < count; i++) {
+					x[i] += DeltaEncoder.stepOf(attr[i]);
+				}
+			}
+			if ((bits & DeltaEncoder.LANE_ADDED) != 0) {
+				int added = (int) Protocol.getVarint(in);
+				for (int i = 0; i < added; i++) {
+					add(kind, lane, Protocol.getSignedVarint(in), in.get() & 0xff);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Appends a vehicle or platform to a lane.
+	 * @param kind VEHICLES or PLATFORMS.
+	 * @param lane The lane.
+	 * @param x Its x position.
+	 * @param attr Its attributes.
+	 */
+	private void add(int kind, int lane, int x, int attr) {
+		int n = counts[kind][lane];
+		if (n == xs[kind][lane].length) {
+			xs[kind][lane] = Arrays.copyOf(xs[kind][lane], n * 2);
+			attributes[kind][lane] = Arrays.copyOf(attributes[kind][lane],
+					n * 2);
+		}
+		xs[kind][lane][n] = x;
+		attributes[kind][lane][n] = attr;
+		counts[kind][lane] = n + 1;
+	}
+
+	/**
+	 * Zeroes a frog that is not in the world.
+	 * @param frog The frog's index.
+	 */
+	private void clearFrog(int frog) {
+		frogX[frog] = 0;
+		frogY[frog] = 0;
+		frogLives[frog] = 0;
+		frogAlive[frog] = false;
+		frogScore[frog] = 0;
+	}
+
+	/**
+	 * Returns whether a keyframe was applied, so the state is known.
+	 * @return True once synced.
+	 */
+	public boolean isSynced() {
+		return synced;
+	}
+
+	/**
+	 * Returns the session's tick.
+	 * @return The tick.
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * Returns whether every frog is out of lives.
+	 * @return True if the game is over.
+	 */
+	public boolean isGameOver() {
+		return (flags & Protocol.FLAG_GAME_OVER) != 0;
+	}
+
+	/**
+	 * Returns whether every fly was consumed.
+	 * @return True if the game is won.
+	 */
+	public boolean isGameWon() {
+		return (flags & Protocol.FLAG_GAME_WON) != 0;
+	}
+
+	/**
+	 * Returns the consumed flies.
+	 * @return One bit per fly.
+	 */
+	public int getConsumedFlies() {
+		return flies;
+	}
+
+	/**
+	 * Returns whether a frog is in the world.
+	 * @param frog The frog's index.
+	 * @return True if it is.
+	 */
+	public boolean hasFrog(int frog) {
+		return frog < DeltaEncoder.MAX_FROGS && (frogSet & (1L << frog)) != 0;
+	}
+
+	/**
+	 * Returns the number of frogs in the world.
+	 * @return The count.
+	 */
+	public int getFrogCount() {
+		return Long.bitCount(frogSet);
+	}
+
+	/**
+	 * Returns a frog's x position.
+	 * @param frog The frog's index.
+	 * @return The x coordinate.
+	 */
+	public int getFrogX(int frog) {
+		return frogX[frog];
+	}
+
+	/**
+	 * Returns a frog's y position.
+	 * @param frog The frog's index.
+	 * @return The y coordinate.
+	 */
+	public int getFrogY(int frog) {
+		return frogY[frog];
+	}
+
+	/**
+	 * Returns a frog's lives.
+	 * @param frog The frog's index.
+	 * @return The lives left.
+	 */
+	public int getFrogLives(int frog) {
+		return frogLives[frog];
+	}
+
+	/**
+	 * Returns whether a frog is alive.
+	 * @param frog The frog's index.
+	 * @return True if alive.
+	 */
+	public boolean isFrogAlive(int frog) {
+		return frogAlive[frog];
+	}
+
+	/**
+	 * Returns a frog's score.
+	 * @param frog The frog's index.
+	 * @return The score.
+	 */
+	public int getFrogScore(int frog) {
+		return frogScore[frog];
+	}
+
+	/**
+	 * Returns the number of vehicles or platforms in a lane.
+	 * @param kind VEHICLES or PLATFORMS.
+	 * @param lane The lane.
+	 * @return The count.
+	 */
+	public int getCount(int kind, int lane) {
+		return counts[kind][lane];
+	}
+
+	/**
+	 * Returns the x position of a vehicle or platform.
+	 * @param kind VEHICLES or PLATFORMS.
+	 * @param lane The lane.
+	 * @param index Its index in the lane.
+	 * @return The x coordinate.
+	 */
+	public int getX(int kind, int lane, int index) {
+		return xs[kind][lane][index];
+	}
+
+	/**
+	 * Returns the attributes of a vehicle or platform.
+	 * @param kind VEHICLES or PLATFORMS.
+	 * @param lane The lane.
+	 * @param index Its index in the lane.
+	 * @return The attribute byte of Protocol.writeState.
+	 */
+	public int getAttributes(int kind, int lane, int index) {
+		return attributes[kind][lane][index];
+	}
+}
@@ -0,0 +1,734 @@
+package net;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import game.World;
+import sprites.Fly;
+import sprites.MovingObject;
+import sprites.Platform;
+import sprites.Player;
+import sprites.Vehicle;
+
+/**
+ * Encodes a world as the spectator feed: a {@link Protocol#KEYFRAME} with
+ * the whole state, then a {@link Protocol#DELTA} with only what changed in
+ * every tick after it. Each frame is encoded once and shared by every
+ * spectator of the session; {@link DeltaDecoder} rebuilds the state.
+ * <p>
+ * Numbers are varints, signed ones zigzag encoded (see
+ * {@link Protocol#putVarint}). Vehicles and platforms are kept in a list per
+ * lane in a fixed order: the ones still there from the previous frame in
+ * their old order, then the new ones. Their attributes are the byte of
+ * {@link Protocol#writeState}.
+ * <p>
+ * KEYFRAME: varint tick, byte flags, byte consumed flies, varint mask of the
+ * frogs in the world; per frog in it: signed x, signed y, varint lives, byte
+ * alive, signed score; then for the vehicles and then the platforms, per
+ * lane: varint count and per object signed x and byte attributes.
+ * <p>
+ * DELTA, for the tick after the previous frame: byte of CHANGED_* bits, then
+ * only the parts whose bit is set:
+ * <ul>
+ * <li>CHANGED_GAME: byte flags, byte consumed flies.</li>
+ * <li>CHANGED_FROG_SET: varint mask of the frogs in the world. A frog that
+ * leaves the mask is zeroed, one that enters it starts from zero.</li>
+ * <li>CHANGED_FROGS: varint mask of the frogs that changed; per frog in it a
+ * byte of FROG_* bits, then signed x change, signed y change, varint lives,
+ * signed score change, only those whose bit is set. FROG_ALIVE toggles
+ * alive.</li>
+ * <li>CHANGED_VEHICLES, CHANGED_PLATFORMS: short mask of the lanes that
+ * changed; per lane in it a byte of LANE_* bits, then
+ * <ul>
+ * <li>LANE_REMOVED: one bit per object of the previous frame, in bytes,
+ * set for those that are gone;</li>
+ * <li>LANE_SHIFTED: signed x change of every object left, or LANE_MOVED:
+ * signed x change of each of them. With neither, each moved one pixel its
+ * way;</li>
+ * <li>LANE_ADDED: varint count, and per new object signed x and byte
+ * attributes.</li>
+ * </ul>
+ * </li>
+ * </ul>
+ * A lane in which everything moved one pixel its way, which is most lanes
+ * in most ticks, costs one byte.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class DeltaEncoder {
+
+	/**
+	 * DELTA bit: the game flags or consumed flies changed.
+	 */
+	public static final int CHANGED_GAME = 1;
+
+	/**
+	 * DELTA bit: frogs were added or removed.
+	 */
+	public static final int CHANGED_FROG_SET = 2;
+
+	/**
+	 * DELTA bit: frogs moved, died or scored.
+	 */
+	public static final int CHANGED_FROGS = 4;
+
+	/**
+	 * DELTA bit: vehicles moved, came or went.
+	 */
+	public static final int CHANGED_VEHICLES = 8;
+
+	/**
+	 * DELTA bit: platforms moved, came or went.
+	 */
+	public static final int CHANGED_PLATFORMS = 16;
+
+	/**
+	 * Frog bit: x changed.
+	 */
+	public static final int FROG_X = 1;
+
+	/**
+	 * Frog bit: y changed.
+	 */
+	public static final int FROG_Y = 2;
+
+	/**
+	 * Frog bit: lives changed.
+	 */
+	public static final int FROG_LIVES = 4;
+
+	/**
+	 * Frog bit: alive toggled.
+	 */
+	public static final int FROG_ALIVE = 8;
+
+	/**
+	 * Frog bit: score changed.
+	 */
+	public static final int FROG_SCORE = 16;
+
+	/**
+	 * Lane bit: objects are gone.
+	 */
+	public static final int LANE_REMOVED = 1;
+
+	/**
+	 * Lane bit: objects were added.
+	 */
+	public static final int LANE_ADDED = 2;
+
+	/**
+	 * Lane bit: every object left moved by the same amount, given once.
+	 */
+	public static final int LANE_SHIFTED = 4;
+
+	/**
+	 * Lane bit: the objects left moved by different amounts, given each.
+	 */
+	public static final int LANE_MOVED = 8;
+
+	/**
+	 * Most frogs in a world the feed can carry.
+	 */
+	public static final int MAX_FROGS = 64;
+
+	/**
+	 * The vehicles of the previous frame.
+	 */
+	private final Lanes vehicles = new Lanes();
+
+	/**
+	 * The platforms of the previous frame.
+	 */
+	private final Lanes platforms = new Lanes();
+
+	/**
+	 * Frogs in the previous frame, one bit each.
+	 */
+	private long frogSet;
+
+	/**
+	 * Frog x positions in the previous frame.
+	 */
+	private final int[] frogX = new int[MAX_FROGS];
+
+	/**
+	 * Frog y positions in the previous frame.
+	 */
+	private final int[] frogY = new int[MAX_FROGS];
+
+	/**
+	 * Frog lives in the previous frame.
+	 */
+	private final int[] frogLives = new int[MAX_FROGS];
+
+	/**
+	 * Whether each frog was alive in the previous frame.
+	 */
+	private final boolean[] frogAlive = new boolean[MAX_FROGS];
+
+	/**
+	 * Frog scores in the previous frame.
+	 */
+	private final int[] frogScore = new int[MAX_FROGS];
+
+	/**
+	 * Game flags in the previous frame.
+	 */
+	private int flags;
+
+	/**
+	 * Consumed flies in the previous frame.
+	 */
+	private int flies;
+
+	/**
+	 * Tick of the previous frame, or -1 before the first keyframe.
+	 */
+	private long tick = -1;
+
+	/**
+	 * Where frames are encoded before they are copied into their own buffer.
+	 */
+	private final ByteBuffer scratch = ByteBuffer.allocate(Protocol.MAX_FRAME);
+
+	/**
+	 * Encodes the whole world and makes it the base of the next delta.
+	 * @param world The world.
+	 * @param tick Its tick.
+	 * @return A new read-only buffer holding the frame.
+	 */
+	public ByteBuffer encodeKeyframe(World world, long tick) {
+		scratch.clear();
+		int start = Protocol.beginFrame(scratch, Protocol.KEYFRAME);
+		Protocol.putVarint(scratch, tick);
+		flags = flagsOf(world);
+		flies = fliesOf(world);
+		scratch.put((byte) flags);
+		scratch.put((byte) flies);
+
+		frogSet = frogSetOf(world);
+		Protocol.putVarint(scratch, frogSet);
+		for (int i = 0; i < MAX_FROGS; i++) {
+			if ((frogSet & (1L << i)) == 0) {
+				clearFrog(i);
+				continue;
+			}
+			Player p = world.getPlayer(i);
+			frogX[i] = p.getXPos();
+			frogY[i] = p.getYPos();
+			frogLives[i] = p.getLives();
+			frogAlive[i] = p.isAlive();
+			frogScore[i] = world.getScore(i);
+			Protocol.putSignedVarint(scratch, frogX[i]);
+			Protocol.putSignedVarint(scratch, frogY[i]);
+			Protocol.putVarint(scratch, frogLives[i]);
+			scratch.put((byte) (frogAlive[i] ? 1 : 0));
+			Protocol.putSignedVarint(scratch, frogScore[i]);
+		}
+
+		vehicles.sort(world.getVehicles());
+		vehicles.encodeAll(scratch);
+		platforms.sort(world.getPlatforms());
+		platforms.encodeAll(scratch);
+		this.tick = tick;
+		return finish(start);
+	}
+
+	/**
+	 * Encodes what changed since the previous frame, which must be of the
+	 * previous tick.
+	 * @param world The world.
+	 * @param tick Its tick.
+	 * @return A new read-only buffer holding the frame.
+	 * @throws IllegalStateException If the previous frame is not of the
+	 *             previous tick.
+	 */
+	public ByteBuffer encodeDelta(World world, long tick) {
+		if (this.tick < 0 || tick != this.tick + 1) {
+			throw new IllegalStateException("Delta for tick " + tick
+					+ " after a frame for tick " + this.tick);
+		}
+		scratch.clear();
+		int start = Protocol.beginFrame(scratch, Protocol.DELTA);
+		int changesAt = scratch.position();
+		int changes = 0;
+		scratch.put((byte) 0);
+
+		int newFlags = flagsOf(world);
+		int newFlies = fliesOf(world);
+		if (newFlags != flags || newFlies != flies) {
+			changes |= CHANGED_GAME;
+			flags = newFlags;
+			flies = newFlies;
+			scratch.put((byte) flags);
+			scratch.put((byte) flies);
+		}
+
+		long newFrogSet = frogSetOf(world);
+		if (newFrogSet != frogSet) {
+			changes |= CHANGED_FROG_SET;
+			Protocol.putVarint(scratch, newFrogSet);
+			for (int i = 0; i < MAX_FROGS; i++) {
+				if ((frogSet & ~newFrogSet & (1L << i)) != 0) {
+					clearFrog(i);
+				}
+			}
+			frogSet = newFrogSet;
+		}
+		if (encodeFrogs(world)) {
+			changes |= CHANGED_FROGS;
+		}
+
+		vehicles.sort(world.getVehicles());
+		if (vehicles.encodeChanges(scratch)) {
+			changes |= CHANGED_VEHICLES;
+		}
+		platforms.sort(world.getPlatforms());
+		if (platforms.encodeChanges(scratch)) {
+			changes |= CHANGED_PLATFORMS;
+		}
+		scratch.put(changesAt, (byte) changes);
+		this.tick = tick;
+		return finish(start);
+	}
+
+	/**
+	 * Writes the changes of the frogs, if any.
+	 * @param world The world.
+	 * @return Whether any frog changed.
+	 */
+	private boolean encodeFrogs(World world) {
+		long changed = 0;
+		for (int i = 0; i < MAX_FROGS; i++) {
+			if ((frogSet & (1L << i)) != 0 && frogBits(world, i) != 0) {
+				changed |= 1L << i;
+			}
+		}
+		if (changed == 0) {
+			return false;
+		}
+		Protocol.putVarint(scratch, changed);
+		for (int i = 0; i < MAX_FROGS; i++) {
+			if ((changed & (1L << i)) == 0) {
+				continue;
+			}
+			Player p = world.getPlayer(i);
+			int bits = frogBits(world, i);
+			scratch.put((byte) bits);
+			if ((bits & FROG_X) != 0) {
+				Protocol.putSignedVarint(scratch, p.getXPos() - frogX[i]);
+			}
+			if ((bits & FROG_Y) != 0) {
+				Protocol.putSignedVarint(scratch, p.getYPos() - frogY[i]);
+			}
+			if ((bits & FROG_LIVES) != 0) {
+				Protocol.putVarint(scratch, p.getLives());
+			}
+			if ((bits & FROG_SCORE) != 0) {
+				Protocol.putSignedVarint(scratch, world.getScore(i)
+						- frogScore[i]);
+			}
+			frogX[i] = p.getXPos();
+			frogY[i] = p.getYPos();
+			frogLives[i] = p.getLives();
+			frogAlive[i] = p.isAlive();
+			frogScore[i] = world.getScore(i);
+		}
+		return true;
+	}
+
+	/**
+	 * Zeroes a frog that is not in the world.
+	 * @param frog The frog's index.
+	 */
+	private void clearFrog(int frog) {
+		frogX[frog] = 0;
+		frogY[frog] = 0;
+		frogLives[frog] = 0;
+		frogAlive[frog] = false;
+		frogScore[frog] = 0;
+	}
+
+	/**
+	 * Returns what changed about a frog since the previous frame.
+	 * @param world The world.
+	 * @param frog The frog's index.
+	 * @return The FROG_* bits.
+	 */
+	private int frogBits(World world, int frog) {
+		Player p = world.getPlayer(frog);
+		return (p.getXPos() != frogX[frog] ? FROG_X : 0)
+				| (p.getYPos() != frogY[frog] ? FROG_Y : 0)
+				| (p.getLives() != frogLives[frog] ? FROG_LIVES : 0)
+				| (p.isAlive() != frogAlive[frog] ? FROG_ALIVE : 0)
+				| (world.getScore(frog) != frogScore[frog] ? FROG_SCORE : 0);
+	}
+
+	/**
+	 * Ends the frame in the scratch buffer and copies it into its own.
+	 * @param start Where the frame starts.
+	 * @return The frame, read-only.
+	 */
+	private ByteBuffer finish(int start) {
+		Protocol.endFrame(scratch, start);
+		scratch.flip();
+		ByteBuffer frame = ByteBuffer.allocate(scratch.remaining());
+		frame.put(scratch);
+		frame.flip();
+		return frame.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns the game flags of a world.
+	 * @param world The world.
+	 * @return The Protocol.FLAG_* bits.
+	 */
+	private static int flagsOf(World world) {
+		return (world.isGameOver() ? Protocol.FLAG_GAME_OVER : 0)
+				| (world.isGameWon() ? Protocol.FLAG_GAME_WON : 0);
+	}
+
+	/**
+	 * Returns the consumed flies of a world.
+	 * @param world The world.
+	 * @return One bit per consumed fly.
+	 */
+	private static int fliesOf(World world) {
+		int consumed = 0;
+		for (int i = 0; i < world.getFlys().size(); i++) {
+			Fly fly = world.getFlys().get(i);
+			if (fly.isConsumed()) {
+				consumed |= 1 << i;
+			}
+		}
+		return consumed;
+	}
+
+	/**
+	 * Returns the frogs in a world.
+	 * @param world The world.
+	 * @return One bit per frog.
+	 * @throws IllegalStateException If the world has more than MAX_FROGS.
+	 */
+	private static long frogSetOf(World world) {
+		long set = 0;
+		for (int i = 0; i < world.getPlayerCount(); i++) {
+			if (world.isPlayerActive(i)) {
+				if (i >= MAX_FROGS) {
+					throw new IllegalStateException("More than " + MAX_FROGS
+							+ " frogs");
+				}
+				set |= 1L << i;
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Returns the attribute byte of a vehicle or platform.
+	 * @param object The vehicle or platform.
+	 * @return Its attributes, as in Protocol.writeState.
+	 */
+	static int attributesOf(MovingObject object) {
+		if (object instanceof Vehicle) {
+			Vehicle v = (Vehicle) object;
+			return v.getLength() | v.getDirection() << 2 | v.vehicleType() << 3
+					| v.getColor() << 4;
+		}
+		Platform p = (Platform) object;
+		return p.getLength() | p.getDirection() << 2 | p.getPlatformType() << 3;
+	}
+
+	/**
+	 * Returns how far an object moves in a tick.
+	 * @param attributes Its attribute byte.
+	 * @return 1 if it moves right, -1 if it moves left.
+	 */
+	static int stepOf(int attributes) {
+		return (attributes >> 2 & 1) == MovingObject.DIRECTION_RIGHT ? 1 : -1;
+	}
+
+	/**
+	 * The vehicles or platforms of the previous frame by lane, and the ones
+	 * of the world being encoded.
+	 */
+	private static final class Lanes {
+
+		/**
+		 * The objects of the previous frame, per lane.
+		 */
+		MovingObject[][] objects = new MovingObject[World.NUMBER_OF_LANES][8];
+
+		/**
+		 * Their x positions.
+		 */
+		int[][] xs = new int[World.NUMBER_OF_LANES][8];
+
+		/**
+		 * Their attributes.
+		 */
+		int[][] attributes = new int[World.NUMBER_OF_LANES][8];
+
+		/**
+		 * How many there are in each lane.
+		 */
+		int[] counts = new int[World.NUMBER_OF_LANES];
+
+		/**
+		 * The objects of the world being encoded, per lane; null once matched
+		 * to one of the previous frame.
+		 */
+		MovingObject[][] current = new MovingObject[World.NUMBER_OF_LANES][8];
+
+		/**
+		 * How many there are in each lane.
+		 */
+		final int[] currentCounts = new int[World.NUMBER_OF_LANES];
+
+		/**
+		 * The next frame's lists, swapped with the previous frame's.
+		 */
+		MovingObject[][] nextObjects = new MovingObject[World.NUMBER_OF_LANES][8];
+
+		/**
+		 * The next frame's x positions.
+		 */
+		int[][] nextXs = new int[World.NUMBER_OF_LANES][8];
+
+		/**
+		 * The next frame's attributes.
+		 */
+		int[][] nextAttributes = new int[World.NUMBER_OF_LANES][8];
+
+		/**
+		 * The next frame's counts.
+		 */
+		int[] nextCounts = new int[World.NUMBER_OF_LANES];
+
+		/**
+		 * Where each object of the previous frame is in current, or -1 if it
+		 * is gone.
+		 */
+		int[] matches = new int[8];
+
+		/**
+		 * Sorts the world's objects into current by lane.
+		 * @param list The world's vehicles or platforms.
+		 */
+		void sort(List<? extends MovingObject> list) {
+			for (int lane = 0; lane < World.NUMBER_OF_LANES; lane++) {
+				currentCounts[lane] = 0;
+			}
+			for (int i = 0; i < list.size(); i++) {
+				MovingObject object = list.get(i);
+				if (object.isRemoved()) {
+					continue;
+				}
+				int lane = object.getYPos() / World.LANE_HEIGHT;
+				if (currentCounts[lane] == current[lane].length) {
+					current[lane] = grow(current[lane]);
+				}
+				current[lane][currentCounts[lane]++] = object;
+			}
+		}
+
+		/**
+		 * Writes every object in current, per lane, and makes them the
+		 * previous frame.
+		 * @param out The buffer.
+		 */
+		void encodeAll(ByteBuffer out) {
+			for (int lane = 0; lane < World.NUMBER_OF_LANES; lane++) {
+				int count = currentCounts[lane];
+				nextCounts[lane] = 0;
+				Protocol.putVarint(out, count);
+				for (int i = 0; i < count; i++) {
+					MovingObject object = current[lane][i];
+					int attr = attributesOf(object);
+					Protocol.putSignedVarint(out, object.getXPos());
+					out.put((byte) attr);
+					addNext(lane, object, attr);
+				}
+			}
+			swap();
+		}
+
+		/**
+		 * Writes the changes from the previous frame to current, if any, and
+		 * makes current the previous frame.
+		 * @param out The buffer.
+		 * @return Whether any lane changed.
+		 */
+		boolean encodeChanges(ByteBuffer out) {
+			int maskAt = out.position();
+			int mask = 0;
+			out.putShort((short) 0);
+			for (int lane = 0; lane < World.NUMBER_OF_LANES; lane++) {
+				if (encodeLane(out, lane)) {
+					mask |= 1 << lane;
+				}
+			}
+			swap();
+			if (mask == 0) {
+				out.position(maskAt);
+				return false;
+			}
+			out.putShort(maskAt, (short) mask);
+			return true;
+		}
+
+		/**
+		 * Writes the changes of one lane, if any, and fills its next list.
+		 * @param out The buffer.
+		 * @param lane The lane.
+		 * @return Whether the lane changed.
+		 */
+		private boolean encodeLane(ByteBuffer out, int lane) {
+			int count = counts[lane];
+			MovingObject[] previous = objects[lane];
+			MovingObject[] now = current[lane];
+			int nowCount = currentCounts[lane];
+			if (matches.length < count) {
+				matches = new int[Math.max(count, matches.length * 2)];
+			}
+
+			int survivors = 0;
+			boolean removed = false;
+			boolean moved = false;
+			boolean expected = true;
+			boolean uniform = true;
+			int firstDx = 0;
+			for (int i = 0; i < count; i++) {
+				matches[i] = -1;
+				for (int j = 0; j < nowCount; j++) {
+					/*
+					 * A pooled object that was reset with other attributes
+					 * counts as a new one.
+					 */
+					if (now[j] == previous[i]
+							&& attributesOf(now[j]) == attributes[lane][i]) {
+						matches[i] = j;
+						break;
+					}
+				}
+				if (matches[i] < 0) {
+					removed = true;
+					continue;
+				}
+				int dx = now[matches[i]].getXPos() - xs[lane][i];
+				moved |= dx != 0;
+				expected &= dx == stepOf(attributes[lane][i]);
+				if (survivors == 0) {
+					firstDx = dx;
+				} else {
+					uniform &= dx == firstDx;
+				}
+				survivors++;
+			}
+			int added = nowCount - survivors;
+
+			nextCounts[lane] = 0;
+			for (int i = 0; i < count; i++) {
+				if (matches[i] >= 0) {
+					MovingObject object = now[matches[i]];
+					now[matches[i]] = null;
+					addNext(lane, object, attributes[lane][i]);
+				}
+			}
+			if (!removed && added == 0 && !moved) {
+				return false;
+			}
+
+			int bits = (removed ? LANE_REMOVED : 0) | (added > 0 ? LANE_ADDED : 0);
+			if (survivors > 0 && !expected) {
+				bits |= uniform ? LANE_SHIFTED : LANE_MOVED;
+			}
+			out.put((byte) bits);
+			if (removed) {
+				for (int i = 0; i < count; i += 8) {
+					int b = 0;
+					for (int k = 0; k < 8 && i + k < count; k++) {
+						if (matches[i + k] < 0) {
+							b |= 1 << k;
+						}
+					}
+					out.put((byte) b);
+				}
+			}
+			if ((bits & LANE_SHIFTED) != 0) {
+				Protocol.putSignedVarint(out, firstDx);
+			} else if ((bits & LANE_MOVED) != 0) {
+				int next = 0;
+				for (int i = 0; i < count; i++) {
+					if (matches[i] >= 0) {
+						Protocol.putSignedVarint(out, nextXs[lane][next++]
+								- xs[lane][i]);
+					}
+				}
+			}
+			if (added > 0) {
+				Protocol.putVarint(out, added);
+				for (int j = 0; j < nowCount; j++) {
+					MovingObject object = now[j];
+					if (object != null) {
+						int attr = attributesOf(object);
+						Protocol.putSignedVarint(out, object.getXPos());
+						out.put((byte) attr);
+						addNext(lane, object, attr);
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Appends an object to a lane's next list.
+		 * @param lane The lane.
+		 * @param object The object.
+		 * @param attr Its attributes.
+		 */
+		private void addNext(int lane, MovingObject object, int attr) {
+			int n = nextCounts[lane];
+			if (n == nextObjects[lane].length) {
+				nextObjects[lane] = grow(nextObjects[lane]);
+				nextXs[lane] = Arrays.copyOf(nextXs[lane], n * 2);
+				nextAttributes[lane] = Arrays.copyOf(
+						nextAttributes[lane], n * 2);
+			}
+			nextObjects[lane][n] = object;
+			nextXs[lane][n] = object.getXPos();
+			nextAttributes[lane][n] = attr;
+			nextCounts[lane] = n + 1;
+		}
+
+		/**
+		 * Makes the next lists the previous frame.
+		 */
+		private void swap() {
+			MovingObject[][] o = objects;
+			objects = nextObjects;
+			nextObjects = o;
+			int[][] x = xs;
+			xs = nextXs;
+			nextXs = x;
+			int[][] a = attributes;
+			attributes = nextAttributes;
+			nextAttributes = a;
+			int[] c = counts;
+			counts = nextCounts;
+			nextCounts = c;
+		}
+
+		/**
+		 * Doubles an array of objects.
+		 * @param array The array.
+		 * @return A copy twice as long.
+		 */
+		private static MovingObject[] grow(MovingObject[] array) {
+			return Arrays.copyOf(array, array.length * 2);
+		}
+	}
+}
@@ -0,0 +1,715 @@
+package net;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import game.Input;
+
+/**
+ * An authoritative multiplayer server: it owns the worlds, steps them at a
+ * fixed tick rate and sends every client the state of its session after
+ * every tick. Clients only send the buttons they press. See
+ * {@link Protocol} for the messages.
+ * <p>
+ * Everything runs on one thread around a selector, so the worlds need no
+ * locking. Every client has a fixed size send buffer; when a client reads
+ * too slowly for it to take another state frame, the frame is dropped or the
+ * client disconnected, depending on {@link ServerConfig#backpressure}, so a
+ * slow client can neither stall the others nor make the server use more
+ * memory.
+ * <p>
+ * Spectators get the delta feed of {@link DeltaEncoder} instead: every tick
+ * a session with spectators encodes one frame, and every spectator gets a
+ * duplicate of the same read-only buffer, so a thousand spectators cost one
+ * encode and no copies. A spectator that falls spectatorQueue frames behind
+ * skips to the next keyframe.
+ * <p>
+ * Usage: <code>java net.GameServer</code>, configured with the
+ * froggr.server.* system properties. {@link BotSwarm} connects headless
+ * clients to it.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class GameServer implements Runnable {
+
+	/**
+	 * Most ticks run at once to catch up after a stall; older ones are
+	 * skipped.
+	 */
+	private static final int MAX_CATCH_UP = 5;
+
+	/**
+	 * Nanoseconds between status lines, when they are printed.
+	 */
+	private static final long STATUS_INTERVAL = 10000000000L;
+
+	/**
+	 * The settings.
+	 */
+	private final ServerConfig config;
+
+	/**
+	 * The selector all sockets are registered with.
+	 */
+	private final Selector selector;
+
+	/**
+	 * The listening socket.
+	 */
+	private final ServerSocketChannel server;
+
+	/**
+	 * The sessions, null where there is none.
+	 */
+	private final Session[] sessions;
+
+	/**
+	 * The state frame of the session being broadcast.
+	 */
+	private final ByteBuffer frame = ByteBuffer.allocate(Protocol.MAX_FRAME);
+
+	/**
+	 * A small frame being sent, e.g. WELCOME.
+	 */
+	private final ByteBuffer reply = ByteBuffer.allocate(64);
+
+	/**
+	 * Whether the server loop should keep running.
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * Whether to print a status line every STATUS_INTERVAL.
+	 */
+	private boolean printStatus;
+
+	/**
+	 * Number of connected clients.
+	 */
+	private int clients;
+
+	/**
+	 * Number of ticks run, in all sessions together.
+	 */
+	private long ticks;
+
+	/**
+	 * Number of ticks skipped because the server fell behind.
+	 */
+	private long skippedTicks;
+
+	/**
+	 * Number of state frames sent.
+	 */
+	private long framesSent;
+
+	/**
+	 * Number of state frames dropped for slow clients.
+	 */
+	private long framesDropped;
+
+	/**
+	 * Number of clients disconnected for being too slow.
+	 */
+	private long slowDisconnects;
+
+	/**
+	 * Number of spectator feed frames encoded.
+	 */
+	private long feedFramesEncoded;
+
+	/**
+	 * Number of spectator feed frames queued, summed over the spectators.
+	 */
+	private long feedFramesSent;
+
+	/**
+	 * Number of times a spectator fell behind and skipped to a keyframe.
+	 */
+	private long feedResyncs;
+
+	/**
+	 * Opens the listening socket.
+	 * @param config The settings.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public GameServer(ServerConfig config) throws IOException {
+		this.config = config;
+		sessions = new Session[config.maxSessions];
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.configureBlocking(false);
+		InetSocketAddress address = config.loopbackOnly ? new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), config.port)
+				: new InetSocketAddress(config.port);
+		server.bind(address, 128);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 * @return The port.
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Runs the server until stop() is called.
+	 */
+	@Override
+	public void run() {
+		long tickNanos = 1000000000L / config.tickRate;
+		long nextTick = System.nanoTime();
+		long nextStatus = nextTick + STATUS_INTERVAL;
+		try {
+			while (running) {
+				long delay = nextTick - System.nanoTime();
+				if (delay >= 1000000) {
+					selector.select(delay / 1000000);
+				} else {
+					selector.selectNow();
+				}
+				handleSelectedKeys();
+
+				long now = System.nanoTime();
+				int caughtUp = 0;
+				while (now - nextTick >= 0 && caughtUp < MAX_CATCH_UP) {
+					tick();
+					nextTick += tickNanos;
+					caughtUp++;
+				}
+				if (now - nextTick >= 0) {
+					long behind = (now - nextTick) / tickNanos + 1;
+					skippedTicks += behind;
+					nextTick += behind * tickNanos;
+				}
+				if (printStatus && now - nextStatus >= 0) {
+					System.err.println(getStatus());
+					nextStatus = now + STATUS_INTERVAL;
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			closeAll();
+		}
+	}
+
+	/**
+	 * Stops the server loop and closes every socket. Can be called from any
+	 * thread.
+	 */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Handles the sockets that are ready.
+	 * @throws IOException If a new connection cannot be accepted.
+	 */
+	private void handleSelectedKeys() throws IOException {
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			if (!key.isValid()) {
+				continue;
+			}
+			if (key.isAcceptable()) {
+				accept();
+				continue;
+			}
+			Connection connection = (Connection) key.attachment();
+			try {
+				if (key.isReadable()) {
+					read(connection);
+				}
+				if (key.isValid() && key.isWritable()) {
+					flush(connection);
+				}
+			} catch (RuntimeException e) {
+				// A client the server cannot handle must not stop the
+				// others.
+				e.printStackTrace();
+				close(connection);
+			}
+		}
+	}
+
+	/**
+	 * Accepts the waiting connections.
+	 * @throws IOException If the listening socket fails.
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			if (clients >= config.maxClients) {
+				channel.close();
+				continue;
+			}
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+			key.attach(new Connection(channel, key, config.receiveBufferSize,
+					config.sendBufferSize));
+			clients++;
+		}
+	}
+
+	/**
+	 * Reads and handles the frames a client sent.
+	 * @param connection The client.
+	 */
+	private void read(Connection connection) {
+		ByteBuffer in = connection.in;
+		try {
+			if (connection.channel.read(in) < 0) {
+				close(connection);
+				return;
+			}
+		} catch (IOException e) {
+			close(connection);
+			return;
+		}
+		in.flip();
+		int size;
+		while ((size = Protocol.frameSize(in)) > 0) {
+			int start = in.position();
+			if (!handle(connection, in, in.get(start + Protocol.LENGTH_SIZE),
+					start + Protocol.LENGTH_SIZE + 1, size)) {
+				close(connection);
+				return;
+			}
+			in.position(start + size);
+		}
+		if (size == 0) {
+			close(connection);
+			return;
+		}
+		in.compact();
+		if (!in.hasRemaining()) {
+			// A frame that does not fit in the receive buffer.
+			close(connection);
+		}
+	}
+
+	/**
+	 * Handles a frame from a client.
+	 * @param connection The client.
+	 * @param in The buffer holding the frame.
+	 * @param type The message type.
+	 * @param payload Where the payload starts.
+	 * @param size The size of the frame.
+	 * @return False if the client broke the protocol.
+	 */
+	private boolean handle(Connection connection, ByteBuffer in, int type,
+			int payload, int size) {
+		int payloadSize = size - Protocol.LENGTH_SIZE - 1;
+		if (type == Protocol.JOIN && payloadSize == 4) {
+			if (connection.session == null && !connection.closeWhenSent) {
+				join(connection, in.getInt(payload));
+			}
+			return true;
+		} else if (type == Protocol.SPECTATE && payloadSize == 4) {
+			if (connection.session == null && !connection.closeWhenSent) {
+				spectate(connection, in.getInt(payload));
+			}
+			return true;
+		} else if (type == Protocol.INPUT && payloadSize == 1) {
+			if (connection.frog >= 0) {
+				int buttons = in.get(payload);
+				Input input = connection.session.world
+						.getInput(connection.frog);
+				for (int i = 0; i < input.buttons.length; i++) {
+					if ((buttons & (1 << i)) != 0) {
+						input.buttons[i] = true;
+					}
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Puts a client in a session and welcomes it, or tells it there is no
+	 * room.
+	 * @param connection The client.
+	 * @param wanted The session asked for, or Protocol.ANY_SESSION.
+	 */
+	private void join(Connection connection, int wanted) {
+		Session session = null;
+		if (wanted == Protocol.ANY_SESSION) {
+			for (int i = 0; i < sessions.length && session == null; i++) {
+				if (sessions[i] != null && sessions[i].hasRoom()) {
+					session = sessions[i];
+				}
+			}
+			for (int i = 0; i < sessions.length && session == null; i++) {
+				if (sessions[i] == null) {
+					session = sessions[i] = new Session(i, config.seed + i,
+							config.playersPerSession);
+				}
+			}
+		} else if (wanted >= 0 && wanted < sessions.length) {
+			if (sessions[wanted] == null) {
+				sessions[wanted] = new Session(wanted, config.seed + wanted,
+						config.playersPerSession);
+			}
+			if (sessions[wanted].hasRoom()) {
+				session = sessions[wanted];
+			}
+		}
+
+		reply.clear();
+		if (session == null) {
+			int start = Protocol.beginFrame(reply, Protocol.FULL);
+			Protocol.endFrame(reply, start);
+			connection.closeWhenSent = true;
+		} else {
+			connection.session = session;
+			connection.frog = session.join(connection);
+			int start = Protocol.beginFrame(reply, Protocol.WELCOME);
+			reply.putInt(session.id);
+			reply.put((byte) connection.frog);
+			reply.putShort((short) config.tickRate);
+			Protocol.endFrame(reply, start);
+		}
+		sendReply(connection);
+	}
+
+	/**
+	 * Makes a client a spectator of a session and welcomes it, or tells it
+	 * there is no such session.
+	 * @param connection The client.
+	 * @param wanted The session asked for.
+	 */
+	private void spectate(Connection connection, int wanted) {
+		reply.clear();
+		if (wanted < 0 || wanted >= sessions.length || sessions[wanted] == null) {
+			int start = Protocol.beginFrame(reply, Protocol.FULL);
+			Protocol.endFrame(reply, start);
+			connection.closeWhenSent = true;
+		} else {
+			Session session = sessions[wanted];
+			connection.session = session;
+			session.watch(connection);
+			int start = Protocol.beginFrame(reply, Protocol.WELCOME);
+			reply.putInt(session.id);
+			reply.put((byte) Protocol.NO_FROG);
+			reply.putShort((short) config.tickRate);
+			Protocol.endFrame(reply, start);
+		}
+		sendReply(connection);
+	}
+
+	/**
+	 * Sends the reply frame to a client, or disconnects it if it has no room
+	 * for it.
+	 * @param connection The client.
+	 */
+	private void sendReply(Connection connection) {
+		reply.flip();
+		if (reply.remaining() <= connection.out.remaining()) {
+			connection.out.put(reply);
+			flush(connection);
+		} else {
+			close(connection);
+		}
+	}
+
+	/**
+	 * Steps every session one tick and sends its state to its clients and
+	 * spectators.
+	 */
+	private void tick() {
+		for (int i = 0; i < sessions.length; i++) {
+			Session session = sessions[i];
+			if (session == null) {
+				continue;
+			}
+			session.tick(config.restartDelay);
+			ticks++;
+
+			frame.clear();
+			Protocol.writeState(frame, session.world, session.tick);
+			frame.flip();
+			Connection[] connections = session.connections;
+			for (int j = 0; j < connections.length; j++) {
+				if (connections[j] != null) {
+					send(connections[j]);
+				}
+			}
+			if (!session.spectators.isEmpty()) {
+				publish(session);
+			}
+		}
+	}
+
+	/**
+	 * Encodes the spectator feed frame of a session's tick and queues it for
+	 * its spectators: a delta for those that are in sync, a keyframe for the
+	 * rest. Each is encoded at most once.
+	 * @param session The session.
+	 */
+	private void publish(Session session) {
+		ArrayList<Connection> spectators = session.spectators;
+		boolean deltas = false;
+		boolean keyframes = false;
+		for (int i = 0; i < spectators.size(); i++) {
+			if (spectators.get(i).needsKeyframe) {
+				keyframes = true;
+			} else {
+				deltas = true;
+			}
+		}
+		// The delta goes first: a keyframe becomes the base of the next one.
+		ByteBuffer delta = null;
+		if (deltas) {
+			delta = session.encoder.encodeDelta(session.world, session.tick);
+			feedFramesEncoded++;
+		}
+		ByteBuffer keyframe = null;
+		if (keyframes) {
+			keyframe = session.encoder.encodeKeyframe(session.world,
+					session.tick);
+			feedFramesEncoded++;
+		}
+		// Iterated backwards because a spectator whose socket fails is removed.
+		for (int i = spectators.size() - 1; i >= 0; i--) {
+			Connection connection = spectators.get(i);
+			if (connection.needsKeyframe) {
+				connection.needsKeyframe = false;
+				enqueue(connection, keyframe);
+			} else {
+				enqueue(connection, delta);
+			}
+		}
+	}
+
+	/**
+	 * Queues a feed frame for a spectator, or makes it skip to the next
+	 * keyframe if it is too far behind.
+	 * @param connection The spectator.
+	 * @param shared The frame, shared with the other spectators.
+	 */
+	private void enqueue(Connection connection, ByteBuffer shared) {
+		ArrayDeque<ByteBuffer> feed = connection.feed;
+		if (feed.size() >= config.spectatorQueue) {
+			// Keep the frame being sent, so the stream stays whole.
+			ByteBuffer sending = feed.peekFirst();
+			feed.clear();
+			if (sending.position() > 0) {
+				feed.add(sending);
+			}
+			connection.needsKeyframe = true;
+			feedResyncs++;
+			return;
+		}
+		feed.add(shared.duplicate());
+		feedFramesSent++;
+		flush(connection);
+	}
+
+	/**
+	 * Sends the current state frame to a client, or handles a full send
+	 * buffer.
+	 * @param connection The client.
+	 */
+	private void send(Connection connection) {
+		if (connection.out.remaining() < frame.remaining()) {
+			framesDropped++;
+			if (config.backpressure == ServerConfig.DISCONNECT
+					|| ++connection.droppedInRow > config.maxDroppedFrames) {
+				slowDisconnects++;
+				close(connection);
+			}
+			return;
+		}
+		connection.droppedInRow = 0;
+		connection.out.put(frame);
+		frame.rewind();
+		framesSent++;
+		flush(connection);
+	}
+
+	/**
+	 * Writes as much of a client's send buffer as the socket takes, and
+	 * waits for the socket to be writable if some is left.
+	 * @param connection The client.
+	 */
+	private void flush(Connection connection) {
+		ByteBuffer out = connection.out;
+		ArrayDeque<ByteBuffer> feed = connection.feed;
+		out.flip();
+		try {
+			connection.channel.write(out);
+			while (!out.hasRemaining() && feed != null && !feed.isEmpty()) {
+				ByteBuffer next = feed.peekFirst();
+				connection.channel.write(next);
+				if (next.hasRemaining()) {
+					break;
+				}
+				feed.pollFirst();
+			}
+		} catch (IOException e) {
+			out.compact();
+			close(connection);
+			return;
+		}
+		out.compact();
+		if (out.position() > 0 || feed != null && !feed.isEmpty()) {
+			connection.key.interestOps(SelectionKey.OP_READ
+					| SelectionKey.OP_WRITE);
+		} else if (connection.closeWhenSent) {
+			close(connection);
+		} else {
+			connection.key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+
+	/**
+	 * Disconnects a client and removes its frog. Does nothing if already
+	 * closed.
+	 * @param connection The client.
+	 */
+	private void close(Connection connection) {
+		if (!connection.channel.isOpen()) {
+			return;
+		}
+		Session session = connection.session;
+		if (session != null) {
+			if (connection.frog >= 0) {
+				session.leave(connection.frog);
+			} else {
+				session.unwatch(connection);
+			}
+			connection.session = null;
+			connection.frog = -1;
+			if (session.isAbandoned()) {
+				sessions[session.id] = null;
+			}
+		}
+		connection.key.cancel();
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			// Nothing more to do with it.
+		}
+		clients--;
+	}
+
+	/**
+	 * Closes every client, the listening socket and the selector.
+	 */
+	private void closeAll() {
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof Connection) {
+				close((Connection) key.attachment());
+			}
+		}
+		try {
+			server.close();
+			selector.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns a one line summary of the server's counters. Only call it on
+	 * the server thread, or after the server stopped.
+	 * @return The summary.
+	 */
+	public String getStatus() {
+		int active = 0;
+		for (int i = 0; i < sessions.length; i++) {
+			if (sessions[i] != null) {
+				active++;
+			}
+		}
+		return "clients " + clients + ", sessions " + active + ", ticks "
+				+ ticks + ", skipped ticks " + skippedTicks
+				+ ", frames sent " + framesSent + ", dropped " + framesDropped
+				+ ", slow clients disconnected " + slowDisconnects
+				+ ", feed frames encoded " + feedFramesEncoded + ", sent "
+				+ feedFramesSent + ", spectator resyncs " + feedResyncs;
+	}
+
+	/**
+	 * Returns the number of state frames sent.
+	 * @return The count.
+	 */
+	public long getFramesSent() {
+		return framesSent;
+	}
+
+	/**
+	 * Returns the number of state frames dropped for slow clients.
+	 * @return The count.
+	 */
+	public long getFramesDropped() {
+		return framesDropped;
+	}
+
+	/**
+	 * Returns the number of clients disconnected for being too slow.
+	 * @return The count.
+	 */
+	public long getSlowDisconnects() {
+		return slowDisconnects;
+	}
+
+	/**
+	 * Returns the number of spectator feed frames encoded.
+	 * @return The count.
+	 */
+	public long getFeedFramesEncoded() {
+		return feedFramesEncoded;
+	}
+
+	/**
+	 * Returns the number of spectator feed frames queued, summed over the
+	 * spectators.
+	 * @return The count.
+	 */
+	public long getFeedFramesSent() {
+		return feedFramesSent;
+	}
+
+	/**
+	 * Returns the number of times a spectator fell behind and skipped to a
+	 * keyframe.
+	 * @return The count.
+	 */
+	public long getFeedResyncs() {
+		return feedResyncs;
+	}
+
+	/**
+	 * Starts a server configured with the froggr.server.* system properties
+	 * and runs it until the process is killed.
+	 * @param args Not used.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public static void main(String[] args) throws IOException {
+		System.setProperty("java.awt.headless", "true");
+		GameServer server = new GameServer(ServerConfig.fromSystemProperties());
+		server.printStatus = true;
+		System.err.println("Froggr server listening on port " + server.getPort());
+		server.run();
+	}
+}
@@ -0,0 +1,317 @@
+package net;
+
+import java.nio.ByteBuffer;
+
+import game.World;
+import sprites.Fly;
+import sprites.Platform;
+import sprites.Player;
+import sprites.Vehicle;
+
+/**
+ * The messages between a {@link GameServer} and its clients. Every message
+ * is a frame: its length as an unsigned short, not counting the length
+ * itself, then a type byte and the payload, all big-endian.
+ * <p>
+ * Client to server:
+ * <ul>
+ * <li>{@link #JOIN}: int session, -1 for any session with room.</li>
+ * <li>{@link #INPUT}: byte of buttons pressed, one bit per Input button.
+ * A press stays until the frog has moved that way, like a key press.</li>
+ * <li>{@link #SPECTATE}: int session, to watch it without a frog.</li>
+ * </ul>
+ * Server to client:
+ * <ul>
+ * <li>{@link #WELCOME}: int session, byte frog index, short tick rate.</li>
+ * <li>{@link #FULL}: no session has room; the server closes the
+ * connection.</li>
+ * <li>{@link #STATE}: the whole session every tick, see
+ * {@link #writeState}.</li>
+ * <li>{@link #KEYFRAME} and {@link #DELTA}: the spectator feed, a keyframe
+ * followed by the changes of every tick, see {@link DeltaEncoder}.</li>
+ * </ul>
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public final class Protocol {
+
+	/**
+	 * Client message: join a session.
+	 */
+	public static final int JOIN = 1;
+
+	/**
+	 * Client message: buttons pressed.
+	 */
+	public static final int INPUT = 2;
+
+	/**
+	 * Client message: watch a session.
+	 */
+	public static final int SPECTATE = 3;
+
+	/**
+	 * Server message: joined a session.
+	 */
+	public static final int WELCOME = 0x10;
+
+	/**
+	 * Server message: the state of the session.
+	 */
+	public static final int STATE = 0x11;
+
+	/**
+	 * Server message: no session has room.
+	 */
+	public static final int FULL = 0x12;
+
+	/**
+	 * Server message: the whole state of a watched session.
+	 */
+	public static final int KEYFRAME = 0x13;
+
+	/**
+	 * Server message: the changes to a watched session in one tick.
+	 */
+	public static final int DELTA = 0x14;
+
+	/**
+	 * Frog index in WELCOME for a spectator.
+	 */
+	public static final int NO_FROG = 0xff;
+
+	/**
+	 * Session number in JOIN for any session with room.
+	 */
+	public static final int ANY_SESSION = -1;
+
+	/**
+	 * Size of the length before every frame.
+	 */
+	public static final int LENGTH_SIZE = 2;
+
+	/**
+	 * Largest frame, including its length.
+	 */
+	public static final int MAX_FRAME = LENGTH_SIZE + 0xffff;
+
+	/**
+	 * STATE flag: every frog is out of lives.
+	 */
+	public static final int FLAG_GAME_OVER = 1;
+
+	/**
+	 * STATE flag: every fly was consumed.
+	 */
+	public static final int FLAG_GAME_WON = 2;
+
+	/**
+	 * Not instantiated.
+	 */
+	private Protocol() {
+	}
+
+	/**
+	 * Returns the size of the complete frame at the start of a buffer.
+	 * @param in The buffer, ready to read.
+	 * @return The size including the length, -1 if the frame is not
+	 *         complete yet, or 0 if its length is too short to hold its type,
+	 *         a broken frame after which the stream cannot be read.
+	 */
+	public static int frameSize(ByteBuffer in) {
+		if (in.remaining() < LENGTH_SIZE) {
+			return -1;
+		}
+		int length = in.getShort(in.position()) & 0xffff;
+		if (length < 1) {
+			return 0;
+		}
+		int size = LENGTH_SIZE + length;
+		return in.remaining() >= size ? size : -1;
+	}
+
+	/**
+	 * Starts a frame: reserves its length and writes its type. Finish it with
+	 * endFrame.
+	 * @param out The buffer.
+	 * @param type The message type.
+	 * @return Where the frame starts, for endFrame.
+	 */
+	public static int beginFrame(ByteBuffer out, int type) {
+		int start = out.position();
+		out.putShort((short) 0);
+		out.put((byte) type);
+		return start;
+	}
+
+	/**
+	 * Finishes a frame by writing its length.
+	 * @param out The buffer.
+	 * @param start Where the frame starts, from beginFrame.
+	 */
+	public static void endFrame(ByteBuffer out, int start) {
+		out.putShort(start, (short) (out.position() - start - LENGTH_SIZE));
+	}
+
+	/**
+	 * Writes a JOIN frame.
+	 * @param out The buffer.
+	 * @param session The session, or ANY_SESSION.
+	 */
+	public static void writeJoin(ByteBuffer out, int session) {
+		int start = beginFrame(out, JOIN);
+		out.putInt(session);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes a SPECTATE frame.
+	 * @param out The buffer.
+	 * @param session The session.
+	 */
+	public static void writeSpectate(ByteBuffer out, int session) {
+		int start = beginFrame(out, SPECTATE);
+		out.putInt(session);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes an INPUT frame.
+	 * @param out The buffer.
+	 * @param buttons The buttons pressed, one bit per Input button.
+	 */
+	public static void writeInput(ByteBuffer out, int buttons) {
+		int start = beginFrame(out, INPUT);
+		out.put((byte) buttons);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes a STATE frame: int tick, byte flags, byte consumed flies (one
+	 * bit each), then
+	 * <ul>
+	 * <li>byte frog count, and per frog in the world: byte index, short x,
+	 * short y, byte lives, byte alive, int score;</li>
+	 * <li>short vehicle count, and per vehicle: short x, byte lane, byte
+	 * length (bits 0-1), direction (bit 2), type (bit 3) and color (bit 4);</li>
+	 * <li>short platform count, and per platform: short x, byte lane, byte
+	 * length (bits 0-1), direction (bit 2) and type (bits 3-4).</li>
+	 * </ul>
+	 * @param out The buffer, with room for the frame.
+	 * @param world The world.
+	 * @param tick The session's tick.
+	 */
+	public static void writeState(ByteBuffer out, World world, int tick) {
+		int start = beginFrame(out, STATE);
+		out.putInt(tick);
+		out.put((byte) ((world.isGameOver() ? FLAG_GAME_OVER : 0)
+				| (world.isGameWon() ? FLAG_GAME_WON : 0)));
+		int consumed = 0;
+		for (int i = 0; i < world.getFlys().size(); i++) {
+			Fly fly = world.getFlys().get(i);
+			if (fly.isConsumed()) {
+				consumed |= 1 << i;
+			}
+		}
+		out.put((byte) consumed);
+
+		int countAt = out.position();
+		int count = 0;
+		out.put((byte) 0);
+		for (int i = 0; i < world.getPlayerCount(); i++) {
+			if (world.isPlayerActive(i)) {
+				Player p = world.getPlayer(i);
+				out.put((byte) i);
+				out.putShort((short) p.getXPos());
+				out.putShort((short) p.getYPos());
+				out.put((byte) p.getLives());
+				out.put((byte) (p.isAlive() ? 1 : 0));
+				out.putInt(world.getScore(i));
+				count++;
+			}
+		}
+		out.put(countAt, (byte) count);
+
+		countAt = out.position();
+		count = 0;
+		out.putShort((short) 0);
+		for (int i = 0; i < world.getVehicles().size(); i++) {
+			Vehicle v = world.getVehicles().get(i);
+			if (!v.isRemoved()) {
+				out.putShort((short) v.getXPos());
+				out.put((byte) (v.getYPos() / World.LANE_HEIGHT));
+				out.put((byte) (v.getLength() | v.getDirection() << 2
+						| v.vehicleType() << 3 | v.getColor() << 4));
+				count++;
+			}
+		}
+		out.putShort(countAt, (short) count);
+
+		countAt = out.position();
+		count = 0;
+		out.putShort((short) 0);
+		for (int i = 0; i < world.getPlatforms().size(); i++) {
+			Platform p = world.getPlatforms().get(i);
+			if (!p.isRemoved()) {
+				out.putShort((short) p.getXPos());
+				out.put((byte) (p.getYPos() / World.LANE_HEIGHT));
+				out.put((byte) (p.getLength() | p.getDirection() << 2
+						| p.getPlatformType() << 3));
+				count++;
+			}
+		}
+		out.putShort(countAt, (short) count);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes an unsigned variable length integer, 7 bits per byte.
+	 * @param out The buffer.
+	 * @param value The value, not negative.
+	 */
+	public static void putVarint(ByteBuffer out, long value) {
+		while ((value & ~0x7fL) != 0) {
+			out.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 * @param in The buffer.
+	 * @return The value.
+	 */
+	public static long getVarint(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.get();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	/**
+	 * Writes a signed variable length integer, zigzag encoded so small
+	 * negative values are short too.
+	 * @param out The buffer.
+	 * @param value The value.
+	 */
+	public static void putSignedVarint(ByteBuffer out, int value) {
+		putVarint(out, ((value << 1) ^ (value >> 31)) & 0xffffffffL);
+	}
+
+	/**
+	 * Reads a signed variable length integer.
+	 * @param in The buffer.
+	 * @return The value.
+	 */
+	public static int getSignedVarint(ByteBuffer in) {
+		int zigzag = (int) getVarint(in);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+}
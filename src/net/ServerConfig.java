@@ -0,0 +1,136 @@
+package net;
+
+/**
+ * Settings of a {@link GameServer}. The defaults can be overridden with
+ * system properties, see {@link #fromSystemProperties()}.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class ServerConfig {
+
+	/**
+	 * Backpressure policy: skip state frames for a client whose send buffer
+	 * is full, and disconnect it after maxDroppedFrames in a row.
+	 */
+	public static final int DROP = 0;
+
+	/**
+	 * Backpressure policy: disconnect a client as soon as its send buffer is
+	 * full.
+	 */
+	public static final int DISCONNECT = 1;
+
+	/**
+	 * The TCP port, 0 for any free port.
+	 */
+	public int port = 4711;
+
+	/**
+	 * Whether to listen only on the loopback address.
+	 */
+	public boolean loopbackOnly = false;
+
+	/**
+	 * Ticks per second of every session.
+	 */
+	public int tickRate = 60;
+
+	/**
+	 * Most sessions (worlds) at once.
+	 */
+	public int maxSessions = 64;
+
+	/**
+	 * Most frogs per session.
+	 */
+	public int playersPerSession = 8;
+
+	/**
+	 * Most connected clients.
+	 */
+	public int maxClients = 1024;
+
+	/**
+	 * Size of each client's send buffer in bytes. A client that does not
+	 * read its state frames fast enough fills it.
+	 */
+	public int sendBufferSize = 32 * 1024;
+
+	/**
+	 * Size of each client's receive buffer in bytes.
+	 */
+	public int receiveBufferSize = 256;
+
+	/**
+	 * What to do with a client whose send buffer is full, DROP or
+	 * DISCONNECT.
+	 */
+	public int backpressure = DROP;
+
+	/**
+	 * State frames in a row a client may miss under the DROP policy before
+	 * it is disconnected.
+	 */
+	public int maxDroppedFrames = 120;
+
+	/**
+	 * Spectator feed frames that may wait for a spectator. One that falls
+	 * further behind skips to the next keyframe.
+	 */
+	public int spectatorQueue = 240;
+
+	/**
+	 * Ticks a finished game is shown before its session restarts.
+	 */
+	public int restartDelay = 180;
+
+	/**
+	 * Seed of the first session; session n uses seed + n.
+	 */
+	public long seed = System.nanoTime();
+
+	/**
+	 * Returns the defaults, overridden by the system properties
+	 * froggr.server.port, .loopbackOnly, .tickRate, .sessions,
+	 * .playersPerSession, .maxClients, .sendBuffer, .receiveBuffer,
+	 * .backpressure (drop or disconnect), .maxDroppedFrames, .spectatorQueue,
+	 * .restartDelay and .seed.
+	 * @return The settings.
+	 */
+	public static ServerConfig fromSystemProperties() {
+		ServerConfig config = new ServerConfig();
+		config.port = Integer.getInteger("froggr.server.port", config.port);
+		config.loopbackOnly = Boolean.getBoolean("froggr.server.loopbackOnly");
+		config.tickRate = Integer.getInteger("froggr.server.tickRate",
+				config.tickRate);
+		config.maxSessions = Integer.getInteger("froggr.server.sessions",
+				config.maxSessions);
+		config.playersPerSession = Integer.getInteger(
+				"froggr.server.playersPerSession", config.playersPerSession);
+		config.maxClients = Integer.getInteger("froggr.server.maxClients",
+				config.maxClients);
+		config.sendBufferSize = Integer.getInteger("froggr.server.sendBuffer",
+				config.sendBufferSize);
+		config.receiveBufferSize = Integer.getInteger(
+				"froggr.server.receiveBuffer", config.receiveBufferSize);
+		String backpressure = System.getProperty("froggr.server.backpressure",
+				"drop");
+		if (backpressure.equals("drop")) {
+			config.backpressure = DROP;
+		} else if (backpressure.equals("disconnect")) {
+			config.backpressure = DISCONNECT;
+		} else {
+			throw new IllegalArgumentException(
+					"froggr.server.backpressure must be drop or disconnect");
+		}
+		config.maxDroppedFrames = Integer.getInteger(
+				"froggr.server.maxDroppedFrames", config.maxDroppedFrames);
+		config.spectatorQueue = Integer.getInteger(
+				"froggr.server.spectatorQueue", config.spectatorQueue);
+		config.restartDelay = Integer.getInteger("froggr.server.restartDelay",
+				config.restartDelay);
+		config.seed = Long.getLong("froggr.server.seed", config.seed);
+		return config;
+	}
+}
@@ -0,0 +1,145 @@
+package net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import game.World;
+
+/**
+ * A game hosted by a {@link GameServer}: one World shared by the frogs of
+ * the clients that joined it. A finished game is shown for a while and then
+ * restarted with the same frogs. Spectators watch it through the delta
+ * feed.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+class Session {
+
+	/**
+	 * The session number.
+	 */
+	final int id;
+
+	/**
+	 * The world. Its first frog is removed until a client takes its place.
+	 */
+	final World world;
+
+	/**
+	 * The connection of each frog, by frog index.
+	 */
+	final Connection[] connections;
+
+	/**
+	 * Number of frogs in the session.
+	 */
+	int players;
+
+	/**
+	 * The clients watching the session.
+	 */
+	final ArrayList<Connection> spectators = new ArrayList<Connection>();
+
+	/**
+	 * Encodes the spectator feed.
+	 */
+	final DeltaEncoder encoder = new DeltaEncoder();
+
+	/**
+	 * Ticks since the session started.
+	 */
+	int tick;
+
+	/**
+	 * Ticks since the game finished.
+	 */
+	private int finishedTicks;
+
+	/**
+	 * Creates an empty session.
+	 * @param id The session number.
+	 * @param seed The seed of the world.
+	 * @param maxPlayers The most frogs in the session.
+	 */
+	Session(int id, long seed, int maxPlayers) {
+		this.id = id;
+		world = new World(seed);
+		world.removePlayer(0);
+		connections = new Connection[maxPlayers];
+	}
+
+	/**
+	 * Returns whether another frog can join.
+	 * @return True if the session is not full.
+	 */
+	boolean hasRoom() {
+		return players < connections.length;
+	}
+
+	/**
+	 * Adds a frog for a client.
+	 * @param connection The client.
+	 * @return The index of its frog.
+	 */
+	int join(Connection connection) {
+		int frog = world.addPlayer();
+		connections[frog] = connection;
+		players++;
+		return frog;
+	}
+
+	/**
+	 * Removes a client's frog.
+	 * @param frog The index of the frog.
+	 */
+	void leave(int frog) {
+		world.removePlayer(frog);
+		connections[frog] = null;
+		players--;
+	}
+
+	/**
+	 * Adds a spectator. It gets a keyframe after the next tick.
+	 * @param connection The client.
+	 */
+	void watch(Connection connection) {
+		connection.feed = new ArrayDeque<ByteBuffer>();
+		connection.needsKeyframe = true;
+		spectators.add(connection);
+	}
+
+	/**
+	 * Removes a spectator.
+	 * @param connection The client.
+	 */
+	void unwatch(Connection connection) {
+		spectators.remove(connection);
+		connection.feed = null;
+	}
+
+	/**
+	 * Returns whether nobody plays or watches the session any more.
+	 * @return True if it can be closed.
+	 */
+	boolean isAbandoned() {
+		return players == 0 && spectators.isEmpty();
+	}
+
+	/**
+	 * Advances the game one tick, restarting it if it has been over for
+	 * long enough.
+	 * @param restartDelay Ticks a finished game is shown.
+	 */
+	void tick(int restartDelay) {
+		if (world.isGameOver() || world.isGameWon()) {
+			if (++finishedTicks >= restartDelay) {
+				world.restart();
+				finishedTicks = 0;
+			}
+		}
+		world.step(world.getInput(0));
+		tick++;
+	}
+}
@@ -0,0 +1,280 @@
+package render;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.image.ImageObserver;
+import java.awt.image.VolatileImage;
+import java.util.List;
+
+import sprites.Fly;
+import sprites.Lane;
+
+/**
+ * The static part of the game screen: the lanes and the flies in the win
+ * zone. They are drawn once into an accelerated offscreen image, which is
+ * then copied to the screen with a single drawImage per frame. The image is
+ * only redrawn when the lanes change, when the video memory it lives in is
+ * lost, or (just the fly's own area) when a fly is consumed.
+ * 
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public class BackgroundLayer {
+
+	/**
+	 * Width of the layer in pixels.
+	 */
+	private final int width;
+
+	/**
+	 * Height of the layer in pixels.
+	 */
+	private final int height;
+
+	/**
+	 * Color of the area not covered by lanes.
+	 */
+	private final Color background;
+
+	/**
+	 * The pre-rendered layer.
+	 */
+	private VolatileImage image;
+
+	/**
+	 * Lane images the layer was rendered with.
+	 */
+	private Image[] laneImages = new Image[0];
+
+	/**
+	 * Fly images the layer was rendered with.
+	 */
+	private Image[] flyImages = new Image[0];
+
+	/**
+	 * Whether the lanes must be redrawn.
+	 */
+	private boolean lanesDirty = true;
+
+	/**
+	 * Number of times the whole layer was rendered.
+	 */
+	private long fullRenders;
+
+	/**
+	 * Creates a layer.
+	 * @param width The width in pixels.
+	 * @param height The height in pixels.
+	 * @param background The color of the area not covered by lanes.
+	 */
+	public BackgroundLayer(int width, int height, Color background) {
+		this.width = width;
+		this.height = height;
+		this.background = background;
+	}
+
+	/**
+	 * Forces the whole layer to be redrawn on the next frame.
+	 */
+	public void invalidate() {
+		lanesDirty = true;
+	}
+
+	/**
+	 * Draws the layer, rendering it first if it is out of date.
+	 * @param g The Graphics to draw on.
+	 * @param gc The configuration of the screen being drawn to.
+	 * @param lanes The lanes.
+	 * @param flys The flies.
+	 * @param observer The observer passed to drawImage.
+	 */
+	public void draw(Graphics g, GraphicsConfiguration gc, List<Lane> lanes,
+			List<Fly> flys, ImageObserver observer) {
+		do {
+			update(gc, lanes, flys);
+			draw(g, observer);
+		} while (contentsLost());
+	}
+
+	/**
+	 * Brings the layer up to date, rendering whatever changed. Must be called
+	 * before drawing the layer.
+	 * @param gc The configuration of the screen being drawn to.
+	 * @param lanes The lanes.
+	 * @param flys The flies.
+	 * @return True if any part of the layer was rendered again.
+	 */
+	public boolean update(GraphicsConfiguration gc, List<Lane> lanes,
+			List<Fly> flys) {
+		if (lanesChanged(lanes)) {
+			lanesDirty = true;
+		}
+		boolean changed = false;
+		do {
+			int status = image == null ? VolatileImage.IMAGE_INCOMPATIBLE
+					: image.validate(gc);
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+				if (image != null) {
+					image.flush();
+				}
+				image = gc.createCompatibleVolatileImage(width, height);
+				status = VolatileImage.IMAGE_RESTORED;
+			}
+			if (status == VolatileImage.IMAGE_RESTORED || lanesDirty) {
+				renderAll(lanes, flys);
+				changed = true;
+			} else if (renderChangedFlys(lanes, flys)) {
+				changed = true;
+			}
+		} while (image.contentsLost());
+		return changed;
+	}
+
+	/**
+	 * Draws the whole layer as last updated.
+	 * @param g The Graphics to draw on.
+	 * @param observer The observer passed to drawImage.
+	 */
+	public void draw(Graphics g, ImageObserver observer) {
+		g.drawImage(image, 0, 0, observer);
+	}
+
+	/**
+	 * Draws one area of the layer as last updated, at the same position.
+	 * @param g The Graphics to draw on.
+	 * @param x The left edge of the area.
+	 * @param y The top edge of the area.
+	 * @param w The width of the area.
+	 * @param h The height of the area.
+	 * @param observer The observer passed to drawImage.
+	 */
+	public void draw(Graphics g, int x, int y, int w, int h,
+			ImageObserver observer) {
+		g.drawImage(image, x, y, x + w, y + h, x, y, x + w, y + h, observer);
+	}
+
+	/**
+	 * Returns whether the layer was lost since it was last updated, in which
+	 * case whatever was drawn from it must be drawn again.
+	 * @return True if the contents were lost.
+	 */
+	public boolean contentsLost() {
+		return image == null || image.contentsLost();
+	}
+
+	/**
+	 * Checks whether the lanes differ from the ones the layer was rendered
+	 * with.
+	 * @param lanes The lanes.
+	 * @return True if they changed.
+	 */
+	private boolean lanesChanged(List<Lane> lanes) {
+		if (lanes.size() != laneImages.length) {
+			return true;
+		}
+		for (int i = 0; i < laneImages.length; i++) {
+			if (lanes.get(i).getImage() != laneImages[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Renders the lanes and flies into the layer.
+	 * @param lanes The lanes.
+	 * @param flys The flies.
+	 */
+	private void renderAll(List<Lane> lanes, List<Fly> flys) {
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setColor(background);
+			g.fillRect(0, 0, width, height);
+			laneImages = new Image[lanes.size()];
+			for (int i = 0; i < laneImages.length; i++) {
+				Lane l = lanes.get(i);
+				laneImages[i] = l.getImage();
+				l.draw(g, l.getXPos(), l.getYPos(), null);
+			}
+			flyImages = new Image[flys.size()];
+			for (int i = 0; i < flyImages.length; i++) {
+				Fly f = flys.get(i);
+				flyImages[i] = f.getImage();
+				f.draw(g, f.getXPos(), f.getYPos(), null);
+			}
+		} finally {
+			g.dispose();
+		}
+		lanesDirty = false;
+		fullRenders++;
+	}
+
+	/**
+	 * Redraws the area of every fly whose image changed since it was last
+	 * rendered: the lanes below it, then the fly.
+	 * @param lanes The lanes.
+	 * @param flys The flies.
+	 * @return True if anything was redrawn.
+	 */
+	private boolean renderChangedFlys(List<Lane> lanes, List<Fly> flys) {
+		if (flys.size() != flyImages.length) {
+			renderAll(lanes, flys);
+			return true;
+		}
+		boolean changed = false;
+		for (int i = 0; i < flyImages.length; i++) {
+			Fly f = flys.get(i);
+			if (f.getImage() == flyImages[i]) {
+				continue;
+			}
+			Graphics2D g = image.createGraphics();
+			try {
+				int w = Math.max(widthOf(flyImages[i]), widthOf(f.getImage()));
+				int h = Math.max(heightOf(flyImages[i]), heightOf(f.getImage()));
+				g.clipRect(f.getXPos(), f.getYPos(), w, h);
+				g.setColor(background);
+				g.fillRect(f.getXPos(), f.getYPos(), w, h);
+				for (int j = 0; j < lanes.size(); j++) {
+					Lane l = lanes.get(j);
+					l.draw(g, l.getXPos(), l.getYPos(), null);
+				}
+				f.draw(g, f.getXPos(), f.getYPos(), null);
+			} finally {
+				g.dispose();
+			}
+			flyImages[i] = f.getImage();
+			changed = true;
+		}
+		return changed;
+	}
+
+	/**
+	 * Width of an image, 0 if there is none.
+	 * @param img The image.
+	 * @return The width in pixels.
+	 */
+	private static int widthOf(Image img) {
+		return img == null ? 0 : Math.max(0, img.getWidth(null));
+	}
+
+	/**
+	 * Height of an image, 0 if there is none.
+	 * @param img The image.
+	 * @return The height in pixels.
+	 */
+	private static int heightOf(Image img) {
+		return img == null ? 0 : Math.max(0, img.getHeight(null));
+	}
+
+	/**
+	 * Returns how many times the whole layer was rendered.
+	 * @return The number of full renders.
+	 */
+	public long getFullRenders() {
+		return fullRenders;
+	}
+}
@@ -0,0 +1,385 @@
+package render;
+
+import java.util.Arrays;
+
+/**
+ * Works out which parts of the screen changed since the last frame, so a
+ * renderer can restore the background and redraw sprites only there.
+ * <p>
+ * Each frame the renderer reports where things are drawn: moving objects
+ * with {@link #addSpan} (a horizontal span of a strip, e.g. of a lane),
+ * single objects that may or may not move with {@link #track}, and areas
+ * whose content changed in place with {@link #add}. {@link #finish()} then
+ * produces the dirty rectangles: for every strip the spans of this frame and
+ * last frame, merged only where they overlap or touch, so an object that
+ * moved a pixel costs about its own width plus a pixel; for every tracked
+ * object that moved its old and new bounds; plus the added areas.
+ * When they cover too much of the screen, or after {@link #invalidate()},
+ * it asks for a full repaint instead. Nothing is allocated per frame.
+ *
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public class DirtyRegions {
+
+	/**
+	 * Fraction of the screen above which a full repaint is cheaper.
+	 */
+	public static final double DEFAULT_FULL_REPAINT_COVERAGE = 0.5;
+
+	/**
+	 * Spans a strip has room for at first, per frame.
+	 */
+	private static final int INITIAL_SPANS = 16;
+
+	/**
+	 * Width of the screen in pixels.
+	 */
+	private final int width;
+
+	/**
+	 * Height of the screen in pixels.
+	 */
+	private final int height;
+
+	/**
+	 * Height of a strip in pixels.
+	 */
+	private final int stripHeight;
+
+	/**
+	 * Coverage above which {@link #finish()} asks for a full repaint.
+	 */
+	private final double fullRepaintCoverage;
+
+	/**
+	 * Spans of each strip this frame: left edge and right edge (exclusive)
+	 * of each.
+	 */
+	private int[][] spans;
+
+	/**
+	 * Number of spans of each strip this frame.
+	 */
+	private int[] spanCounts;
+
+	/**
+	 * Spans of each strip last frame.
+	 */
+	private int[][] lastSpans;
+
+	/**
+	 * Number of spans of each strip last frame.
+	 */
+	private int[] lastSpanCounts;
+
+	/**
+	 * This frame's and last frame's spans of the strip being merged, sorted
+	 * by left edge.
+	 */
+	private int[] merged = new int[4 * INITIAL_SPANS];
+
+	/**
+	 * Bounds of each tracked object this frame: x, y, width, height.
+	 */
+	private final int[] tracked;
+
+	/**
+	 * Bounds of each tracked object last frame.
+	 */
+	private final int[] lastTracked;
+
+	/**
+	 * The dirty rectangles: x, y, width, height.
+	 */
+	private int[] rects = new int[4 * 32];
+
+	/**
+	 * Number of dirty rectangles.
+	 */
+	private int count;
+
+	/**
+	 * Total area of the dirty rectangles.
+	 */
+	private long area;
+
+	/**
+	 * Whether the next frame must be a full repaint.
+	 */
+	private boolean invalid = true;
+
+	/**
+	 * Number of frames that were repainted in full.
+	 */
+	private long fullRepaints;
+
+	/**
+	 * Number of frames that were repainted in parts.
+	 */
+	private long partialRepaints;
+
+	/**
+	 * Creates a tracker.
+	 * @param width The width of the screen in pixels.
+	 * @param height The height of the screen in pixels.
+	 * @param stripHeight The height of a strip in pixels.
+	 * @param trackedObjects The number of objects passed to {@link #track}.
+	 * @param fullRepaintCoverage The fraction of the screen above which a
+	 *            full repaint is done instead.
+	 */
+	public DirtyRegions(int width, int height, int stripHeight,
+			int trackedObjects, double fullRepaintCoverage) {
+		this.width = width;
+		this.height = height;
+		this.stripHeight = stripHeight;
+		this.fullRepaintCoverage = fullRepaintCoverage;
+		int strips = (height + stripHeight - 1) / stripHeight;
+		spans = new int[strips][2 * INITIAL_SPANS];
+		spanCounts = new int[strips];
+		lastSpans = new int[strips][2 * INITIAL_SPANS];
+		lastSpanCounts = new int[strips];
+		tracked = new int[4 * trackedObjects];
+		lastTracked = new int[4 * trackedObjects];
+	}
+
+	/**
+	 * Forces the next frame to be a full repaint, e.g. when the background
+	 * changed or the buffer being drawn on was lost.
+	 */
+	public void invalidate() {
+		invalid = true;
+	}
+
+	/**
+	 * Reports a moving object drawn this frame.
+	 * @param x The x coordinate it is drawn at.
+	 * @param y The y coordinate it is drawn at.
+	 * @param w Its width in pixels.
+	 */
+	public void addSpan(int x, int y, int w) {
+		int strip = y / stripHeight;
+		if (y < 0 || strip >= spans.length || w <= 0) {
+			return;
+		}
+		int i = spanCounts[strip] * 2;
+		if (i == spans[strip].length) {
+			spans[strip] = Arrays.copyOf(spans[strip], i * 2);
+		}
+		spans[strip][i] = x;
+		spans[strip][i + 1] = x + w;
+		spanCounts[strip]++;
+	}
+
+	/**
+	 * Reports where a tracked object is drawn this frame. The object is
+	 * dirty if its bounds differ from last frame's.
+	 * @param slot The number of the object, below the trackedObjects passed
+	 *            to the constructor.
+	 * @param x The x coordinate it is drawn at.
+	 * @param y The y coordinate it is drawn at.
+	 * @param w Its width in pixels.
+	 * @param h Its height in pixels.
+	 */
+	public void track(int slot, int x, int y, int w, int h) {
+		int i = slot * 4;
+		tracked[i] = x;
+		tracked[i + 1] = y;
+		tracked[i + 2] = w;
+		tracked[i + 3] = h;
+	}
+
+	/**
+	 * Marks an area as changed this frame.
+	 * @param x The left edge.
+	 * @param y The top edge.
+	 * @param w The width.
+	 * @param h The height.
+	 */
+	public void add(int x, int y, int w, int h) {
+		int x0 = Math.max(0, x);
+		int y0 = Math.max(0, y);
+		int x1 = Math.min(width, x + w);
+		int y1 = Math.min(height, y + h);
+		if (x1 <= x0 || y1 <= y0) {
+			return;
+		}
+		if (count * 4 == rects.length) {
+			int[] grown = new int[rects.length * 2];
+			System.arraycopy(rects, 0, grown, 0, rects.length);
+			rects = grown;
+		}
+		int i = count * 4;
+		rects[i] = x0;
+		rects[i + 1] = y0;
+		rects[i + 2] = x1 - x0;
+		rects[i + 3] = y1 - y0;
+		count++;
+		area += (long) (x1 - x0) * (y1 - y0);
+	}
+
+	/**
+	 * Turns what was reported this frame into dirty rectangles and starts
+	 * the next frame.
+	 * @return True if the frame must be repainted in full, false if only the
+	 *         dirty rectangles need to be.
+	 */
+	public boolean finish() {
+		for (int strip = 0; strip < spans.length; strip++) {
+			mergeSpans(strip);
+			int[] last = lastSpans[strip];
+			lastSpans[strip] = spans[strip];
+			lastSpanCounts[strip] = spanCounts[strip];
+			spans[strip] = last;
+			spanCounts[strip] = 0;
+		}
+		for (int i = 0; i < tracked.length; i += 4) {
+			if (tracked[i] != lastTracked[i]
+					|| tracked[i + 1] != lastTracked[i + 1]
+					|| tracked[i + 2] != lastTracked[i + 2]
+					|| tracked[i + 3] != lastTracked[i + 3]) {
+				add(lastTracked[i], lastTracked[i + 1], lastTracked[i + 2],
+						lastTracked[i + 3]);
+				add(tracked[i], tracked[i + 1], tracked[i + 2], tracked[i + 3]);
+			}
+			System.arraycopy(tracked, i, lastTracked, i, 4);
+		}
+		boolean full = invalid
+				|| area > fullRepaintCoverage * ((long) width * height);
+		invalid = false;
+		if (full) {
+			fullRepaints++;
+		} else {
+			partialRepaints++;
+		}
+		return full;
+	}
+
+	/**
+	 * Adds the spans of a strip this frame and last frame as dirty
+	 * rectangles, merging the ones that overlap or touch.
+	 * @param strip The strip.
+	 */
+	private void mergeSpans(int strip) {
+		int n = spanCounts[strip] + lastSpanCounts[strip];
+		if (n == 0) {
+			return;
+		}
+		if (merged.length < n * 2) {
+			merged = new int[n * 4];
+		}
+		System.arraycopy(spans[strip], 0, merged, 0, spanCounts[strip] * 2);
+		System.arraycopy(lastSpans[strip], 0, merged, spanCounts[strip] * 2,
+				lastSpanCounts[strip] * 2);
+		// Insertion sort: the objects of a lane are mostly reported in order.
+		for (int i = 2; i < n * 2; i += 2) {
+			int min = merged[i];
+			int max = merged[i + 1];
+			int j = i - 2;
+			while (j >= 0 && merged[j] > min) {
+				merged[j + 2] = merged[j];
+				merged[j + 3] = merged[j + 1];
+				j -= 2;
+			}
+			merged[j + 2] = min;
+			merged[j + 3] = max;
+		}
+		int y = strip * stripHeight;
+		int min = merged[0];
+		int max = merged[1];
+		for (int i = 2; i < n * 2; i += 2) {
+			if (merged[i] > max) {
+				add(min, y, max - min, stripHeight);
+				min = merged[i];
+				max = merged[i + 1];
+			} else {
+				max = Math.max(max, merged[i + 1]);
+			}
+		}
+		add(min, y, max - min, stripHeight);
+	}
+
+	/**
+	 * Forgets the dirty rectangles of the frame. Call after drawing them.
+	 */
+	public void clear() {
+		count = 0;
+		area = 0;
+	}
+
+	/**
+	 * Returns the number of dirty rectangles.
+	 * @return The number of rectangles.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns the left edge of a dirty rectangle.
+	 * @param i The index of the rectangle.
+	 * @return The x coordinate.
+	 */
+	public int getX(int i) {
+		return rects[i * 4];
+	}
+
+	/**
+	 * Returns the top edge of a dirty rectangle.
+	 * @param i The index of the rectangle.
+	 * @return The y coordinate.
+	 */
+	public int getY(int i) {
+		return rects[i * 4 + 1];
+	}
+
+	/**
+	 * Returns the width of a dirty rectangle.
+	 * @param i The index of the rectangle.
+	 * @return The width in pixels.
+	 */
+	public int getWidth(int i) {
+		return rects[i * 4 + 2];
+	}
+
+	/**
+	 * Returns the height of a dirty rectangle.
+	 * @param i The index of the rectangle.
+	 * @return The height in pixels.
+	 */
+	public int getHeight(int i) {
+		return rects[i * 4 + 3];
+	}
+
+	/**
+	 * Checks whether an area overlaps a dirty rectangle.
+	 * @param i The index of the rectangle.
+	 * @param x The left edge of the area.
+	 * @param y The top edge of the area.
+	 * @param w The width of the area.
+	 * @param h The height of the area.
+	 * @return True if they overlap.
+	 */
+	public boolean intersects(int i, int x, int y, int w, int h) {
+		int j = i * 4;
+		return x < rects[j] + rects[j + 2] && rects[j] < x + w
+				&& y < rects[j + 1] + rects[j + 3] && rects[j + 1] < y + h;
+	}
+
+	/**
+	 * Returns the number of frames repainted in full.
+	 * @return The count.
+	 */
+	public long getFullRepaints() {
+		return fullRepaints;
+	}
+
+	/**
+	 * Returns the number of frames repainted in parts.
+	 * @return The count.
+	 */
+	public long getPartialRepaints() {
+		return partialRepaints;
+	}
+}
@@ -0,0 +1,242 @@
+package render;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import util.ImageCache;
+
+/**
+ * Converts the decoded images to the pixel format of the screen. ImageIO
+ * returns indexed GIFs and PNGs of whatever type the file had; Java2D can
+ * rarely copy those to the screen directly and converts every pixel on every
+ * draw. A copy made with GraphicsConfiguration.createCompatibleImage has the
+ * screen's format and the right transparency mode, and stays "managed": Java2D
+ * caches it in video memory and draws it with the accelerated pipeline.
+ * <p>
+ * The decoded originals are kept so {@link #blitReport} can time drawing
+ * each image before and after conversion on the pipeline in use (e.g. run
+ * once with <code>-Dsun.java2d.xrender=true</code> and once with
+ * <code>false</code>).
+ *
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public final class ImagePreparer {
+
+	/**
+	 * Resource path prefix of all images.
+	 */
+	public static final String IMAGE_PREFIX = "res/";
+
+	/**
+	 * Width and height of the surface blits are timed on.
+	 */
+	private static final int TARGET_SIZE = 512;
+
+	/**
+	 * The decoded images that were replaced by converted copies.
+	 */
+	private static final Map<ImageCache.Key, Image> originals = new ConcurrentHashMap<ImageCache.Key, Image>();
+
+	/**
+	 * The atlas pages before conversion.
+	 */
+	private static volatile Image[] originalPages = new Image[0];
+
+	/**
+	 * Not instantiable.
+	 */
+	private ImagePreparer() {
+	}
+
+	/**
+	 * Converts every loaded image in the ImageCache and every page of the
+	 * SpriteAtlas for the specified screen. Images that already have its
+	 * format are left alone.
+	 * @param gc The configuration of the screen the images are drawn to.
+	 * @return The number of images converted.
+	 */
+	public static synchronized int prepareAll(GraphicsConfiguration gc) {
+		int converted = 0;
+		for (ImageCache.Key key : ImageCache.keys(IMAGE_PREFIX)) {
+			Image image = ImageCache.peek(key);
+			if (image == null) {
+				continue;
+			}
+			Image compatible = toCompatible(image, transparencyOf(image), gc);
+			if (compatible != image) {
+				if (!originals.containsKey(key)) {
+					originals.put(key, image);
+				}
+				ImageCache.replace(key, compatible);
+				converted++;
+			}
+		}
+
+		Image[] before = new Image[SpriteAtlas.getPageCount()];
+		for (int i = 0; i < before.length; i++) {
+			Image page = SpriteAtlas.getPage(i);
+			before[i] = i < originalPages.length ? originalPages[i] : page;
+			Image compatible = toCompatible(page,
+					SpriteAtlas.getPageTransparency(), gc);
+			if (compatible != page) {
+				SpriteAtlas.replacePage(i, compatible);
+				converted++;
+			}
+		}
+		originalPages = before;
+		return converted;
+	}
+
+	/**
+	 * Returns a copy of an image in the format of the screen, or the image
+	 * itself if it already has that format.
+	 * @param image The image.
+	 * @param transparency Transparency.OPAQUE, BITMASK or TRANSLUCENT.
+	 * @param gc The configuration of the screen.
+	 * @return The compatible image.
+	 */
+	public static Image toCompatible(Image image, int transparency,
+			GraphicsConfiguration gc) {
+		if (image instanceof BufferedImage
+				&& ((BufferedImage) image).getColorModel().equals(
+						gc.getColorModel(transparency))) {
+			return image;
+		}
+		int width = image.getWidth(null);
+		int height = image.getHeight(null);
+		if (width <= 0 || height <= 0) {
+			return image;
+		}
+		BufferedImage compatible = gc.createCompatibleImage(width, height,
+				transparency);
+		Graphics2D g = compatible.createGraphics();
+		try {
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(image, 0, 0, null);
+		} finally {
+			g.dispose();
+		}
+		compatible.setAccelerationPriority(1.0f);
+		return compatible;
+	}
+
+	/**
+	 * Returns the transparency mode of an image.
+	 * @param image The image.
+	 * @return Transparency.OPAQUE, BITMASK or TRANSLUCENT.
+	 */
+	private static int transparencyOf(Image image) {
+		return image instanceof Transparency ? ((Transparency) image)
+				.getTransparency() : Transparency.TRANSLUCENT;
+	}
+
+	/**
+	 * Times drawing an image onto an accelerated surface of the screen.
+	 * @param image The image.
+	 * @param gc The configuration of the screen.
+	 * @param iterations The number of draws to time.
+	 * @return The average time of one draw in nanoseconds.
+	 */
+	public static long timeBlit(Image image, GraphicsConfiguration gc,
+			int iterations) {
+		int width = Math.max(1, image.getWidth(null));
+		int height = Math.max(1, image.getHeight(null));
+		VolatileImage target = gc.createCompatibleVolatileImage(
+				Math.max(TARGET_SIZE, width), Math.max(TARGET_SIZE, height));
+		Toolkit toolkit = Toolkit.getDefaultToolkit();
+		try {
+			target.validate(gc);
+			Graphics2D g = target.createGraphics();
+			try {
+				// Let Java2D notice the image is drawn often and cache it.
+				blit(g, image, target, width, height, iterations / 10 + 1);
+				toolkit.sync();
+				long start = System.nanoTime();
+				blit(g, image, target, width, height, iterations);
+				toolkit.sync();
+				return (System.nanoTime() - start) / Math.max(1, iterations);
+			} finally {
+				g.dispose();
+			}
+		} finally {
+			target.flush();
+		}
+	}
+
+	/**
+	 * Draws an image repeatedly, moving it around the target.
+	 * @param g The Graphics of the target.
+	 * @param image The image.
+	 * @param target The target surface.
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @param count The number of draws.
+	 */
+	private static void blit(Graphics2D g, Image image, VolatileImage target,
+			int width, int height, int count) {
+		int xRange = target.getWidth() - width + 1;
+		int yRange = target.getHeight() - height + 1;
+		for (int i = 0; i < count; i++) {
+			g.drawImage(image, (i * 7) % xRange, (i * 13) % yRange, null);
+		}
+	}
+
+	/**
+	 * Times drawing every converted image, both as decoded and as converted,
+	 * and formats the results as a table with one line per image.
+	 * @param gc The configuration of the screen.
+	 * @param iterations The number of draws to time per image.
+	 * @return The report.
+	 */
+	public static String blitReport(GraphicsConfiguration gc, int iterations) {
+		List<String> lines = new ArrayList<String>();
+		for (Map.Entry<ImageCache.Key, Image> e : originals.entrySet()) {
+			Image prepared = ImageCache.peek(e.getKey());
+			lines.add(reportLine(e.getKey().getLocation(), e.getValue(),
+					prepared, gc, iterations));
+		}
+		Collections.sort(lines);
+		Image[] before = originalPages;
+		for (int i = 0; i < before.length; i++) {
+			lines.add(reportLine("atlas page " + i, before[i],
+					SpriteAtlas.getPage(i), gc, iterations));
+		}
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-45s %12s %12s%n", "image",
+				"decoded ns", "prepared ns"));
+		for (String line : lines) {
+			report.append(line);
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Formats one line of the blit report.
+	 * @param name The name of the image.
+	 * @param decoded The image as decoded.
+	 * @param prepared The converted image.
+	 * @param gc The configuration of the screen.
+	 * @param iterations The number of draws to time.
+	 * @return The line.
+	 */
+	private static String reportLine(String name, Image decoded,
+			Image prepared, GraphicsConfiguration gc, int iterations) {
+		return String.format("%-45s %12d %12d%n", name,
+				timeBlit(decoded, gc, iterations),
+				timeBlit(prepared, gc, iterations));
+	}
+}
@@ -0,0 +1,362 @@
+package render;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import sprites.Fly;
+import sprites.Platform;
+import sprites.Player;
+import sprites.Vehicle;
+import util.ImageCache;
+
+/**
+ * Packs the sprite images into a few large pages so that drawing the sprites
+ * reads from the same image surface over and over, instead of switching to a
+ * different small surface on almost every draw. Each packed image becomes a
+ * {@link Region} of a page; Sprites look up their Region by image key and
+ * draw that part of the page.
+ * <p>
+ * Images are placed on shelves: sorted by height, tallest first, and laid
+ * out left to right in rows. Images that have not been packed are drawn
+ * from the ImageCache as before.
+ *
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public final class SpriteAtlas {
+
+	/**
+	 * A rectangle of an atlas page holding one image.
+	 */
+	public static final class Region {
+
+		/**
+		 * The index of the page in the atlas.
+		 */
+		private final int pageIndex;
+
+		/**
+		 * The left edge on the page.
+		 */
+		private final int x;
+
+		/**
+		 * The top edge on the page.
+		 */
+		private final int y;
+
+		/**
+		 * The width in pixels.
+		 */
+		private final int width;
+
+		/**
+		 * The height in pixels.
+		 */
+		private final int height;
+
+		/**
+		 * Creates a Region.
+		 * @param pageIndex The index of the page.
+		 * @param x The left edge on the page.
+		 * @param y The top edge on the page.
+		 * @param width The width in pixels.
+		 * @param height The height in pixels.
+		 */
+		private Region(int pageIndex, int x, int y, int width, int height) {
+			this.pageIndex = pageIndex;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * Draws the region.
+		 * @param g The Graphics to draw on.
+		 * @param dx The x coordinate to draw at.
+		 * @param dy The y coordinate to draw at.
+		 * @param observer The observer passed to drawImage.
+		 */
+		public void draw(Graphics g, int dx, int dy, ImageObserver observer) {
+			g.drawImage(pages[pageIndex], dx, dy, dx + width, dy + height, x,
+					y, x + width, y + height, observer);
+		}
+
+		/**
+		 * Returns the index of the page the region is on.
+		 * @return The page index.
+		 */
+		public int getPageIndex() {
+			return pageIndex;
+		}
+
+		/**
+		 * Returns the left edge on the page.
+		 * @return The x coordinate.
+		 */
+		public int getX() {
+			return x;
+		}
+
+		/**
+		 * Returns the top edge on the page.
+		 * @return The y coordinate.
+		 */
+		public int getY() {
+			return y;
+		}
+
+		/**
+		 * Returns the width of the region.
+		 * @return The width in pixels.
+		 */
+		public int getWidth() {
+			return width;
+		}
+
+		/**
+		 * Returns the height of the region.
+		 * @return The height in pixels.
+		 */
+		public int getHeight() {
+			return height;
+		}
+	}
+
+	/**
+	 * Resource path prefix of the sprite images.
+	 */
+	public static final String SPRITE_PREFIX = "res/sprites/";
+
+	/**
+	 * Default width and maximum height of a page.
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 1024;
+
+	/**
+	 * Empty pixels left between images, so scaled or filtered draws never
+	 * pick up a neighbour's edge.
+	 */
+	private static final int PADDING = 1;
+
+	/**
+	 * The pages.
+	 */
+	private static volatile Image[] pages = new Image[0];
+
+	/**
+	 * The transparency the pages need: the highest of the packed images.
+	 */
+	private static volatile int pageTransparency = Transparency.OPAQUE;
+
+	/**
+	 * The region of every packed image.
+	 */
+	private static volatile Map<ImageCache.Key, Region> regions = new HashMap<ImageCache.Key, Region>();
+
+	/**
+	 * Not instantiable.
+	 */
+	private SpriteAtlas() {
+	}
+
+	/**
+	 * Packs every sprite image used by the game into the atlas.
+	 */
+	public static void packSprites() {
+		// Loading the sprite classes interns all their image keys.
+		Player.IMAGE_IDLE.getLocation();
+		Vehicle.getImageKey(Vehicle.CAR, 0, 0, 1);
+		Platform.getImageKey(Platform.LOG, 0, 1);
+		Fly.getImageKey(false);
+		pack(ImageCache.keys(SPRITE_PREFIX), DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Packs images into the atlas, replacing whatever it held before. Keys
+	 * without a resource (combinations no sprite uses) and images that
+	 * cannot be loaded are left out.
+	 * @param keys The keys of the images.
+	 * @param pageSize The width and maximum height of a page; wider images
+	 *            get a page as wide as they are.
+	 */
+	public static synchronized void pack(List<ImageCache.Key> keys, int pageSize) {
+		List<ImageCache.Key> sorted = new ArrayList<ImageCache.Key>();
+		ClassLoader loader = SpriteAtlas.class.getClassLoader();
+		for (ImageCache.Key key : keys) {
+			if (loader.getResource(key.getLocation()) != null
+					&& ImageCache.get(key) != null) {
+				sorted.add(key);
+			}
+		}
+		Collections.sort(sorted, new Comparator<ImageCache.Key>() {
+			@Override
+			public int compare(ImageCache.Key a, ImageCache.Key b) {
+				int byHeight = heightOf(b) - heightOf(a);
+				if (byHeight != 0) {
+					return byHeight;
+				}
+				int byWidth = widthOf(b) - widthOf(a);
+				if (byWidth != 0) {
+					return byWidth;
+				}
+				return a.getLocation().compareTo(b.getLocation());
+			}
+		});
+
+		int pageWidth = pageSize;
+		for (ImageCache.Key key : sorted) {
+			pageWidth = Math.max(pageWidth, widthOf(key) + PADDING);
+		}
+
+		// Lay out the shelves, starting a new page when one is full.
+		Map<ImageCache.Key, Region> packed = new HashMap<ImageCache.Key, Region>();
+		List<Integer> pageHeights = new ArrayList<Integer>();
+		int page = 0;
+		int x = 0;
+		int y = 0;
+		int shelfHeight = 0;
+		for (ImageCache.Key key : sorted) {
+			int w = widthOf(key);
+			int h = heightOf(key);
+			if (x + w > pageWidth) {
+				x = 0;
+				y += shelfHeight + PADDING;
+				shelfHeight = 0;
+			}
+			if (y > 0 && y + h > pageSize) {
+				pageHeights.add(y);
+				page++;
+				x = 0;
+				y = 0;
+				shelfHeight = 0;
+			}
+			packed.put(key, new Region(page, x, y, w, h));
+			x += w + PADDING;
+			shelfHeight = Math.max(shelfHeight, h);
+		}
+		if (!sorted.isEmpty()) {
+			pageHeights.add(y + shelfHeight);
+		}
+
+		int transparency = Transparency.OPAQUE;
+		for (ImageCache.Key key : sorted) {
+			Image image = ImageCache.get(key);
+			transparency = Math.max(transparency,
+					image instanceof Transparency ? ((Transparency) image)
+							.getTransparency() : Transparency.TRANSLUCENT);
+		}
+
+		// Copy the images onto the pages.
+		BufferedImage[] drawn = new BufferedImage[pageHeights.size()];
+		for (int i = 0; i < drawn.length; i++) {
+			drawn[i] = new BufferedImage(pageWidth, pageHeights.get(i),
+					BufferedImage.TYPE_INT_ARGB);
+		}
+		for (ImageCache.Key key : sorted) {
+			Region r = packed.get(key);
+			Graphics2D g = drawn[r.pageIndex].createGraphics();
+			try {
+				g.drawImage(ImageCache.get(key), r.x, r.y, null);
+			} finally {
+				g.dispose();
+			}
+		}
+		pages = drawn;
+		pageTransparency = transparency;
+		regions = packed;
+	}
+
+	/**
+	 * Removes every image from the atlas.
+	 */
+	public static synchronized void clear() {
+		pages = new Image[0];
+		regions = new HashMap<ImageCache.Key, Region>();
+	}
+
+	/**
+	 * Returns the region of an image.
+	 * @param key The key of the image.
+	 * @return The Region, or null if the image is not packed.
+	 */
+	public static Region region(ImageCache.Key key) {
+		return key == null ? null : regions.get(key);
+	}
+
+	/**
+	 * Returns the number of pages.
+	 * @return The page count.
+	 */
+	public static int getPageCount() {
+		return pages.length;
+	}
+
+	/**
+	 * Returns a page.
+	 * @param index The index of the page.
+	 * @return The page image.
+	 */
+	public static Image getPage(int index) {
+		return pages[index];
+	}
+
+	/**
+	 * Replaces a page, e.g. with a copy converted for the screen. The new page
+	 * must have the same size and content.
+	 * @param index The index of the page.
+	 * @param page The new page image.
+	 */
+	public static synchronized void replacePage(int index, Image page) {
+		Image[] replaced = pages.clone();
+		replaced[index] = page;
+		pages = replaced;
+	}
+
+	/**
+	 * Returns the transparency the pages need: Transparency.OPAQUE, BITMASK
+	 * or TRANSLUCENT, whichever is the highest of the packed images.
+	 * @return The transparency.
+	 */
+	public static int getPageTransparency() {
+		return pageTransparency;
+	}
+
+	/**
+	 * Returns the number of packed images.
+	 * @return The number of regions.
+	 */
+	public static int size() {
+		return regions.size();
+	}
+
+	/**
+	 * Width of a cached image.
+	 * @param key The key of the image.
+	 * @return The width in pixels.
+	 */
+	private static int widthOf(ImageCache.Key key) {
+		return ImageCache.get(key).getWidth(null);
+	}
+
+	/**
+	 * Height of a cached image.
+	 * @param key The key of the image.
+	 * @return The height in pixels.
+	 */
+	private static int heightOf(ImageCache.Key key) {
+		return ImageCache.get(key).getHeight(null);
+	}
+}
@@ -0,0 +1,212 @@
+package scores;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a {@link HighScores} table as JSON: <code>/scores?n=10</code> gives
+ * the best n entries and the number of scores, <code>/rank?score=120</code>
+ * the rank a score has or would have. The server only listens on the
+ * loopback address, and never waits for the table's writers.
+ *
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public class HighScoreEndpoint {
+
+	/**
+	 * Content type of the answers.
+	 */
+	private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+	/**
+	 * Entries given when n is missing.
+	 */
+	private static final int DEFAULT_TOP = 10;
+
+	/**
+	 * Most entries given, whatever n is.
+	 */
+	private static final int MAX_TOP = 1000;
+
+	/**
+	 * The table served.
+	 */
+	private final HighScores scores;
+
+	/**
+	 * The HTTP server.
+	 */
+	private final HttpServer server;
+
+	/**
+	 * The thread answering requests.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Starts serving a table on a loopback port.
+	 * @param scores The table to serve.
+	 * @param port The port, or 0 for any free port.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public HighScoreEndpoint(HighScores scores, int port) throws IOException {
+		this.scores = scores;
+		server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/scores", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange, false);
+			}
+		});
+		server.createContext("/rank", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange, true);
+			}
+		});
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "froggr-scores");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Answers one request.
+	 * @param exchange The request.
+	 * @param rank Whether it asks for a rank rather than the top entries.
+	 * @throws IOException If the response cannot be sent.
+	 */
+	private void serve(HttpExchange exchange, boolean rank) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			String query = exchange.getRequestURI().getRawQuery();
+			String body;
+			try {
+				if (rank) {
+					int score = parameter(query, "score", -1);
+					if (score < 0) {
+						exchange.sendResponseHeaders(400, -1);
+						return;
+					}
+					body = "{\"score\":" + score + ",\"rank\":"
+							+ scores.rank(score) + ",\"count\":" + scores.size()
+							+ "}\n";
+				} else {
+					int n = parameter(query, "n", DEFAULT_TOP);
+					body = formatTop(scores.top(Math.max(0, Math.min(n, MAX_TOP))),
+							scores.size());
+				}
+			} catch (NumberFormatException e) {
+				exchange.sendResponseHeaders(400, -1);
+				return;
+			}
+			byte[] bytes = body.getBytes(Charset.forName("UTF-8"));
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Returns the port the endpoint listens on.
+	 * @return The port.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops serving.
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	/**
+	 * Reads a number from a query string.
+	 * @param query The query, or null.
+	 * @param name The parameter.
+	 * @param missing The value if it is not there.
+	 * @return The value.
+	 * @throws NumberFormatException If it is not a number.
+	 */
+	private static int parameter(String query, String name, int missing) {
+		if (query == null) {
+			return missing;
+		}
+		for (String pair : query.split("&")) {
+			if (pair.startsWith(name + "=")) {
+				return Integer.parseInt(pair.substring(name.length() + 1));
+			}
+		}
+		return missing;
+	}
+
+	/**
+	 * Formats the top entries as JSON.
+	 * @param top The entries, best first.
+	 * @param count The number of scores.
+	 * @return The text.
+	 */
+	public static String formatTop(List<HighScores.Entry> top, long count) {
+		StringBuilder out = new StringBuilder(64 + top.size() * 64);
+		out.append("{\"count\":").append(count).append(",\"top\":[");
+		for (int i = 0; i < top.size(); i++) {
+			HighScores.Entry entry = top.get(i);
+			if (i > 0) {
+				out.append(',');
+			}
+			out.append("{\"rank\":").append(i + 1).append(",\"name\":\"");
+			escape(out, entry.getName());
+			out.append("\",\"score\":").append(entry.getScore())
+					.append(",\"time\":").append(entry.getTime()).append('}');
+		}
+		return out.append("]}\n").toString();
+	}
+
+	/**
+	 * Appends a string escaped for JSON.
+	 * @param out Where to.
+	 * @param s The string.
+	 */
+	private static void escape(StringBuilder out, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.append('\\').append(c);
+			} else if (c < 0x20) {
+				out.append(String.format("\\u%04x", (int) c));
+			} else {
+				out.append(c);
+			}
+		}
+	}
+}
@@ -0,0 +1,729 @@
+package scores;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32;
+
+/**
+ * A high-score table kept in an append-only log file, with an index in
+ * memory that answers queries without reading the file or scanning the
+ * scores.
+ * <p>
+ * Every score is a fixed size record with a CRC, appended with one write and
+ * forced to the disk, so a score that was added survives a crash, and a
+ * record cut short by one is dropped when the log is opened again. Adding
+ * many scores at once, e.g. from a batch simulation, costs one write and one
+ * force.
+ * <p>
+ * The index has two parts: a count of the scores at every value, kept in a
+ * Fenwick tree, which gives the rank of any score in a few steps; and a
+ * sorted set of the best entries with their names, at most keep of them,
+ * which gives the top of the table. Both are read without locks, so the
+ * menu and the HTTP endpoint never wait for a writer; writers take turns.
+ * <p>
+ * compact() rewrites the log as the best entries plus a count record per
+ * score value for the rest, and swaps it in atomically. It runs by itself
+ * when the log is opened or written and holds more than COMPACT_FACTOR times
+ * the records a compaction can leave, so the log and the time to open it
+ * stay bounded however many scores a batch simulation adds.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class HighScores implements Closeable {
+
+	/**
+	 * Default number of entries kept with their names.
+	 */
+	public static final int DEFAULT_KEEP = 10000;
+
+	/**
+	 * Longest name, in UTF-8 bytes; longer names are cut.
+	 */
+	public static final int MAX_NAME_BYTES = 12;
+
+	/**
+	 * Scores from 0 up to this one, exclusive, are counted in the Fenwick
+	 * tree; higher ones, which the game does not reach, in a map.
+	 */
+	private static final int TREE_SCORES = 1 << 16;
+
+	/**
+	 * Size of a record: byte type, byte name length, short unused, int score,
+	 * long time or count, the name, int CRC of the rest.
+	 */
+	private static final int RECORD_SIZE = 32;
+
+	/**
+	 * Record type: one score, with its time in milliseconds.
+	 */
+	private static final byte TYPE_ENTRY = 1;
+
+	/**
+	 * Record type: a number of nameless scores of one value, from a
+	 * compaction.
+	 */
+	private static final byte TYPE_COUNT = 2;
+
+	/**
+	 * Records written at once when adding many scores.
+	 */
+	private static final int BATCH_RECORDS = 2048;
+
+	/**
+	 * The log is compacted when it holds more than this many times the
+	 * records a compaction can leave: keep entries plus a count per score
+	 * value.
+	 */
+	private static final int COMPACT_FACTOR = 4;
+
+	/**
+	 * The encoding of names.
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Orders entries from best to worst: higher score first, then the one
+	 * that got it first.
+	 */
+	private static final Comparator<Entry> BEST_FIRST = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			if (a.score != b.score) {
+				return a.score > b.score ? -1 : 1;
+			}
+			return a.sequence < b.sequence ? -1
+					: a.sequence > b.sequence ? 1 : 0;
+		}
+	};
+
+	/**
+	 * The log.
+	 */
+	private final Path path;
+
+	/**
+	 * Most entries kept with their names.
+	 */
+	private final int keep;
+
+	/**
+	 * Whether every add is forced to the disk.
+	 */
+	private final boolean sync;
+
+	/**
+	 * The log, open for appending. Only used by writers.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Number of scores at each value below TREE_SCORES, as a Fenwick tree
+	 * indexed from 1.
+	 */
+	private final AtomicLongArray tree = new AtomicLongArray(TREE_SCORES + 1);
+
+	/**
+	 * Number of scores at each value from TREE_SCORES up.
+	 */
+	private final ConcurrentSkipListMap<Integer, AtomicLong> highScores = new ConcurrentSkipListMap<Integer, AtomicLong>();
+
+	/**
+	 * Number of scores from TREE_SCORES up.
+	 */
+	private final AtomicLong highCount = new AtomicLong();
+
+	/**
+	 * Number of scores.
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * The best entries, at most keep.
+	 */
+	private final ConcurrentSkipListSet<Entry> best = new ConcurrentSkipListSet<Entry>(
+			BEST_FIRST);
+
+	/**
+	 * Number of entries in best; the set's own size() counts them one by
+	 * one. Only used by writers.
+	 */
+	private int bestSize;
+
+	/**
+	 * Number of records in the log. Only used by writers and while opening.
+	 */
+	private long records;
+
+	/**
+	 * Number of score values with at least one score. Only used by writers
+	 * and while opening.
+	 */
+	private long scoreValues;
+
+	/**
+	 * Size of the log in records below which no compaction is tried again
+	 * after one failed. Only used by writers.
+	 */
+	private long retryCompactionAt;
+
+	/**
+	 * Sequence number of the next entry. Only used by writers.
+	 */
+	private long nextSequence;
+
+	/**
+	 * A record being written. Only used by writers.
+	 */
+	private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE
+			* BATCH_RECORDS);
+
+	/**
+	 * Sums records. Only used by writers and while opening.
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * Opens a high-score log, creating it if it does not exist, with the
+	 * default number of named entries, forcing every add to the disk.
+	 * @param path The log.
+	 * @throws IOException If it cannot be read.
+	 */
+	public HighScores(Path path) throws IOException {
+		this(path, DEFAULT_KEEP, true);
+	}
+
+	/**
+	 * Opens a high-score log, creating it if it does not exist.
+	 * @param path The log.
+	 * @param keep Most entries kept with their names, the largest top() that
+	 *            can be asked for. Compacting drops the names of the rest.
+	 * @param sync Whether every add is forced to the disk before it returns.
+	 *            Without it an add survives a crash of the program but not of
+	 *            the machine.
+	 * @throws IOException If it cannot be read.
+	 */
+	public HighScores(Path path, int keep, boolean sync) throws IOException {
+		if (keep < 1) {
+			throw new IllegalArgumentException("keep must be positive");
+		}
+		this.path = path;
+		this.keep = keep;
+		this.sync = sync;
+		channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			load();
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		compactIfLarge();
+	}
+
+	/**
+	 * Reads the log into the index. Drops a record cut short at the end,
+	 * and skips records whose CRC does not match.
+	 * @throws IOException If the log cannot be read.
+	 */
+	private void load() throws IOException {
+		ByteBuffer in = ByteBuffer.allocate(RECORD_SIZE * BATCH_RECORDS);
+		long position = 0;
+		while (channel.read(in, position + in.position()) > 0
+				|| in.position() > 0) {
+			in.flip();
+			int records = in.remaining() / RECORD_SIZE;
+			if (records == 0) {
+				break;
+			}
+			for (int i = 0; i < records; i++) {
+				readRecord(in, i * RECORD_SIZE);
+			}
+			position += records * RECORD_SIZE;
+			in.position(records * RECORD_SIZE);
+			in.compact();
+		}
+		if (channel.size() != position) {
+			channel.truncate(position);
+		}
+		channel.position(position);
+		records = position / RECORD_SIZE;
+	}
+
+	/**
+	 * Adds a record of the log to the index, if its CRC matches.
+	 * @param in The buffer.
+	 * @param at Where the record is.
+	 */
+	private void readRecord(ByteBuffer in, int at) {
+		crc.reset();
+		ByteBuffer covered = in.duplicate();
+		covered.limit(at + RECORD_SIZE - 4);
+		covered.position(at);
+		crc.update(covered);
+		if ((int) crc.getValue() != in.getInt(at + RECORD_SIZE - 4)) {
+			return;
+		}
+		byte type = in.get(at);
+		int score = in.getInt(at + 4);
+		long value = in.getLong(at + 8);
+		if (type == TYPE_ENTRY) {
+			int length = Math.min(in.get(at + 1), MAX_NAME_BYTES);
+			byte[] name = new byte[length];
+			for (int i = 0; i < length; i++) {
+				name[i] = in.get(at + 16 + i);
+			}
+			index(new String(name, UTF8), score, value);
+		} else if (type == TYPE_COUNT) {
+			countScore(score, value);
+		}
+	}
+
+	/**
+	 * Adds a score and forces it to the disk.
+	 * @param name Who got it; cut to MAX_NAME_BYTES.
+	 * @param score The score, not negative.
+	 * @return The entry.
+	 * @throws IOException If it cannot be written.
+	 */
+	public synchronized Entry add(String name, int score) throws IOException {
+		checkScore(score);
+		long time = System.currentTimeMillis();
+		record.clear();
+		writeRecord(record, TYPE_ENTRY, name, score, time);
+		write();
+		Entry entry = index(name, score, time);
+		compactIfLarge();
+		return entry;
+	}
+
+	/**
+	 * Adds many scores under one name with one write and one force.
+	 * @param name Who got them; cut to MAX_NAME_BYTES.
+	 * @param scores The scores, not negative.
+	 * @throws IOException If they cannot be written.
+	 */
+	public synchronized void addAll(String name, int[] scores)
+			throws IOException {
+		for (int i = 0; i < scores.length; i++) {
+			checkScore(scores[i]);
+		}
+		long time = System.currentTimeMillis();
+		record.clear();
+		for (int i = 0; i < scores.length; i++) {
+			if (!record.hasRemaining()) {
+				flushBatch();
+			}
+			writeRecord(record, TYPE_ENTRY, name, scores[i], time);
+		}
+		write();
+		for (int i = 0; i < scores.length; i++) {
+			index(name, scores[i], time);
+		}
+		compactIfLarge();
+	}
+
+	/**
+	 * Writes the records in the buffer without forcing them, and empties
+	 * it.
+	 * @throws IOException If they cannot be written.
+	 */
+	private void flushBatch() throws IOException {
+		record.flip();
+		records += record.remaining() / RECORD_SIZE;
+		while (record.hasRemaining()) {
+			channel.write(record);
+		}
+		record.clear();
+	}
+
+	/**
+	 * Writes the records in the buffer and forces them, if sync is on.
+	 * @throws IOException If they cannot be written.
+	 */
+	private void write() throws IOException {
+		flushBatch();
+		if (sync) {
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Writes a record.
+	 * @param out The buffer.
+	 * @param type TYPE_ENTRY or TYPE_COUNT.
+	 * @param name The name, or null.
+	 * @param score The score.
+	 * @param value The time of an entry or the number of a count.
+	 */
+	private void writeRecord(ByteBuffer out, byte type, String name,
+			int score, long value) {
+		int start = out.position();
+		byte[] bytes = name == null ? new byte[0] : name.getBytes(UTF8);
+		int length = Math.min(bytes.length, MAX_NAME_BYTES);
+		out.put(type);
+		out.put((byte) length);
+		out.putShort((short) 0);
+		out.putInt(score);
+		out.putLong(value);
+		for (int i = 0; i < MAX_NAME_BYTES; i++) {
+			out.put(i < length ? bytes[i] : 0);
+		}
+		crc.reset();
+		ByteBuffer covered = out.duplicate();
+		covered.limit(out.position());
+		covered.position(start);
+		crc.update(covered);
+		out.putInt((int) crc.getValue());
+	}
+
+	/**
+	 * Rejects a negative score.
+	 * @param score The score.
+	 */
+	private static void checkScore(int score) {
+		if (score < 0) {
+			throw new IllegalArgumentException("Negative score " + score);
+		}
+	}
+
+	/**
+	 * Adds an entry to the index.
+	 * @param name Who got it.
+	 * @param score The score.
+	 * @param time When, in milliseconds.
+	 * @return The entry.
+	 */
+	private Entry index(String name, int score, long time) {
+		Entry entry = new Entry(cut(name), score, time, nextSequence++);
+		if (bestSize < keep || BEST_FIRST.compare(entry, best.last()) < 0) {
+			best.add(entry);
+			if (++bestSize > keep) {
+				best.pollLast();
+				bestSize--;
+			}
+		}
+		countScore(score, 1);
+		return entry;
+	}
+
+	/**
+	 * Adds scores to the counts.
+	 * @param score The score.
+	 * @param n How many.
+	 */
+	private void countScore(int score, long n) {
+		if (score < TREE_SCORES) {
+			if (countUpTo(score) == (score == 0 ? 0 : countUpTo(score - 1))) {
+				scoreValues++;
+			}
+			for (int i = score + 1; i <= TREE_SCORES; i += i & -i) {
+				tree.addAndGet(i, n);
+			}
+		} else {
+			AtomicLong counter = highScores.get(score);
+			if (counter == null) {
+				counter = new AtomicLong();
+				highScores.put(score, counter);
+				scoreValues++;
+			}
+			counter.addAndGet(n);
+			highCount.addAndGet(n);
+		}
+		count.addAndGet(n);
+	}
+
+	/**
+	 * Returns the number of scores at or below a value in the tree.
+	 * @param score The value, below TREE_SCORES.
+	 * @return The count.
+	 */
+	private long countUpTo(int score) {
+		long sum = 0;
+		for (int i = score + 1; i > 0; i -= i & -i) {
+			sum += tree.get(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the rank a score has or would have: one more than the number
+	 * of higher scores. Does not lock; a score being added at the same time
+	 * may or may not be counted.
+	 * @param score The score.
+	 * @return The rank, 1 for the best.
+	 */
+	public long rank(int score) {
+		if (score < 0) {
+			return count.get() + 1;
+		}
+		long higher = 0;
+		if (score < TREE_SCORES) {
+			long inTree = count.get() - highCount.get();
+			higher = inTree - countUpTo(score) + highCount.get();
+		} else {
+			for (AtomicLong n : highScores.tailMap(score, false).values()) {
+				higher += n.get();
+			}
+		}
+		return higher + 1;
+	}
+
+	/**
+	 * Returns the best entries, best first. Does not lock.
+	 * @param n How many, at most keep.
+	 * @return A new list of up to n entries.
+	 */
+	public List<Entry> top(int n) {
+		List<Entry> top = new ArrayList<Entry>(Math.min(n, keep));
+		Iterator<Entry> it = best.iterator();
+		while (top.size() < n && it.hasNext()) {
+			top.add(it.next());
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the number of scores. Does not lock.
+	 * @return The count.
+	 */
+	public long size() {
+		return count.get();
+	}
+
+	/**
+	 * Rewrites the log as the entries kept with their names plus one count
+	 * record per score value for the rest, then replaces the old log with it
+	 * atomically, so a crash leaves either the old log or the new one.
+	 * Readers are not blocked.
+	 * @throws IOException If the new log cannot be written.
+	 */
+	public synchronized void compact() throws IOException {
+		Path temp = path.resolveSibling(path.getFileName() + ".compact");
+		FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			// Counts of the scores that are not among the named entries.
+			long[] named = new long[TREE_SCORES];
+			HashMap<Integer, Long> namedHigh = new HashMap<Integer, Long>();
+			for (Entry entry : best) {
+				if (entry.score < TREE_SCORES) {
+					named[entry.score]++;
+				} else {
+					Long n = namedHigh.get(entry.score);
+					namedHigh.put(entry.score, n == null ? 1 : n + 1);
+				}
+			}
+			record.clear();
+			long below = 0;
+			for (int score = 0; score < TREE_SCORES; score++) {
+				long upTo = countUpTo(score);
+				long rest = upTo - below - named[score];
+				below = upTo;
+				if (rest > 0) {
+					appendTo(out, TYPE_COUNT, null, score, rest);
+				}
+			}
+			for (Map.Entry<Integer, AtomicLong> high : highScores.entrySet()) {
+				Long n = namedHigh.get(high.getKey());
+				long rest = high.getValue().get() - (n == null ? 0 : n);
+				if (rest > 0) {
+					appendTo(out, TYPE_COUNT, null, high.getKey(), rest);
+				}
+			}
+			// Oldest first, so the order of equal scores survives reopening.
+			Entry[] entries = best.toArray(new Entry[0]);
+			Arrays.sort(entries, new Comparator<Entry>() {
+				@Override
+				public int compare(Entry a, Entry b) {
+					return a.sequence < b.sequence ? -1
+							: a.sequence > b.sequence ? 1 : 0;
+				}
+			});
+			for (int i = 0; i < entries.length; i++) {
+				appendTo(out, TYPE_ENTRY, entries[i].name, entries[i].score,
+						entries[i].time);
+			}
+			record.flip();
+			while (record.hasRemaining()) {
+				out.write(record);
+			}
+			record.clear();
+			out.force(true);
+		} finally {
+			out.close();
+		}
+		channel.close();
+		try {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			// The old log if the move failed, so adding still works.
+			channel = FileChannel.open(path, StandardOpenOption.WRITE);
+			channel.position(channel.size());
+			records = channel.size() / RECORD_SIZE;
+		}
+	}
+
+	/**
+	 * Compacts the log if it holds more than COMPACT_FACTOR times the
+	 * records a compaction can leave. A compaction that fails leaves the log
+	 * as it was and is not tried again until the log has doubled, so the
+	 * score that was just added is still kept.
+	 */
+	private synchronized void compactIfLarge() {
+		if (records <= COMPACT_FACTOR * (keep + scoreValues)
+				|| records < retryCompactionAt) {
+			return;
+		}
+		try {
+			compact();
+		} catch (IOException e) {
+			System.err.println("Could not compact high scores: " + e);
+			retryCompactionAt = records * 2;
+		}
+	}
+
+	/**
+	 * Adds a record to the batch of a compaction, writing the batch when it
+	 * is full.
+	 * @param out The new log.
+	 * @param type TYPE_ENTRY or TYPE_COUNT.
+	 * @param name The name, or null.
+	 * @param score The score.
+	 * @param value The time of an entry or the number of a count.
+	 * @throws IOException If the batch cannot be written.
+	 */
+	private void appendTo(FileChannel out, byte type, String name, int score,
+			long value) throws IOException {
+		if (!record.hasRemaining()) {
+			record.flip();
+			while (record.hasRemaining()) {
+				out.write(record);
+			}
+			record.clear();
+		}
+		writeRecord(record, type, name, score, value);
+	}
+
+	/**
+	 * Returns the size of the log.
+	 * @return The size in bytes.
+	 * @throws IOException If it cannot be read.
+	 */
+	public synchronized long getLogSize() throws IOException {
+		return channel.size();
+	}
+
+	/**
+	 * Closes the log. Queries keep working on the index.
+	 * @throws IOException If it cannot be closed.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Cuts a name to MAX_NAME_BYTES, the way the log stores it.
+	 * @param name The name, or null.
+	 * @return The name as it will be read back.
+	 */
+	private static String cut(String name) {
+		if (name == null) {
+			return "";
+		}
+		byte[] bytes = name.getBytes(UTF8);
+		if (bytes.length <= MAX_NAME_BYTES) {
+			return name;
+		}
+		return new String(bytes, 0, MAX_NAME_BYTES, UTF8);
+	}
+
+	/**
+	 * A score in the table. Immutable.
+	 */
+	public static final class Entry {
+
+		/**
+		 * Who got it.
+		 */
+		private final String name;
+
+		/**
+		 * The score.
+		 */
+		private final int score;
+
+		/**
+		 * When, in milliseconds since 1970.
+		 */
+		private final long time;
+
+		/**
+		 * The order it was added in, which breaks ties.
+		 */
+		private final long sequence;
+
+		/**
+		 * Creates an entry.
+		 * @param name Who got it.
+		 * @param score The score.
+		 * @param time When.
+		 * @param sequence The order it was added in.
+		 */
+		Entry(String name, int score, long time, long sequence) {
+			this.name = name;
+			this.score = score;
+			this.time = time;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * Returns who got the score.
+		 * @return The name.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the score.
+		 * @return The score.
+		 */
+		public int getScore() {
+			return score;
+		}
+
+		/**
+		 * Returns when the score was got.
+		 * @return Milliseconds since 1970.
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		@Override
+		public String toString() {
+			return name + " " + score;
+		}
+	}
+}
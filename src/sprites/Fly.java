@@ -1,6 +1,7 @@
 package sprites;
 
 import game.Input;
+import util.ImageCache;
 
 /**
  * A fly is the Froggr's lunch. (Win Sprite).
@@ -10,6 +11,18 @@ import game.Input;
  */
 public class Fly extends Sprite{
 
+	/**
+	 * Image of a fly waiting to be eaten.
+	 */
+	private static final ImageCache.Key IMAGE_FLY = ImageCache
+			.key("res/sprites/lane/fly.png");
+
+	/**
+	 * Image of a consumed fly.
+	 */
+	private static final ImageCache.Key IMAGE_CONSUMED = ImageCache
+			.key("res/sprites/lane/fly-consumed.png");
+
 	/**
 	 * Whether the fly has been eaten or not.
 	 */
@@ -23,7 +36,7 @@ public class Fly extends Sprite{
 	 */
 	public Fly(int xPos, int yPos) {
 		super(xPos, yPos);
-		setImage("res/sprites/lane/fly.png");
+		setImage(IMAGE_FLY);
 		this.consumed = false;
 	}
 
@@ -47,12 +60,16 @@ public class Fly extends Sprite{
 	 */
 	public void setConsumed(boolean consumed) {
 		this.consumed = consumed;
-		if (consumed) {
-			setImage("res/sprites/lane/fly-consumed.png");
-		} else {
-			setImage("res/sprites/lane/fly.png");
-		}
-		
+		setImage(getImageKey(consumed));
+	}
+
+	/**
+	 * Returns the image of a fly.
+	 * @param consumed Whether the fly has been consumed.
+	 * @return The key of the image.
+	 */
+	public static ImageCache.Key getImageKey(boolean consumed) {
+		return consumed ? IMAGE_CONSUMED : IMAGE_FLY;
 	}
 	
 	/**
@@ -18,6 +18,11 @@ public class MovingObject extends Sprite {
 	 */
 	private int direction;
 
+	/**
+	 * The x coordinate before the last tick, used for interpolation.
+	 */
+	private int previousXPos;
+
 	/**
 	 * Value for moving left.
 	 */
@@ -41,6 +46,22 @@ public class MovingObject extends Sprite {
 		setLength(length);
 		setHeight(1);
 		this.direction = direction;
+		this.previousXPos = xPos;
+	}
+
+	/**
+	 * Reinitializes a removed moving object so it can be reused.
+	 * @param xPos The x coordinate.
+	 * @param yPos The y coordinate.
+	 * @param length The length of the Sprite.
+	 * @param direction The direction of the Sprite.
+	 */
+	public void reset(int xPos, int yPos, int length, int direction) {
+		reset(xPos, yPos);
+		setLength(length);
+		setHeight(1);
+		this.direction = direction;
+		this.previousXPos = xPos;
 	}
 
 	/**
@@ -65,6 +86,7 @@ public class MovingObject extends Sprite {
 	 */
 	@Override
 	public void tick(Input input) {
+		previousXPos = getXPos();
 		if (getDirection() == DIRECTION_LEFT) {
 			setXPos(getXPos() - 1);
 		} else if (getDirection() == DIRECTION_RIGHT) {
@@ -76,6 +98,16 @@ public class MovingObject extends Sprite {
 		}
 	}
 	
+	/**
+	 * Returns the x position between the previous tick and the current one.
+	 * @param alpha How far between the ticks, from 0 (previous) to 1
+	 *            (current).
+	 * @return The interpolated x coordinate.
+	 */
+	public int getInterpolatedXPos(double alpha) {
+		return previousXPos + (int) Math.round((getXPos() - previousXPos) * alpha);
+	}
+
 	/**
 	 * Returns the off screen position of the moving object.
 	 * @return offScreenPosition The x coordinate of an offscreen Sprite.
@@ -1,5 +1,7 @@
 package sprites;
 
+import util.ImageCache;
+
 /**
  * 
  * @author Raj Ramsaroop
@@ -30,6 +32,22 @@ public class Platform extends MovingObject {
 	 */
 	public static final int TURTLE = 2;
 
+	/**
+	 * Log image.
+	 */
+	private static final ImageCache.Key LOG_IMAGE = ImageCache
+			.key("res/sprites/platform/log.gif");
+
+	/**
+	 * Lily images indexed by direction and length.
+	 */
+	private static final ImageCache.Key[][] LILY_IMAGES = createImageKeys("lily");
+
+	/**
+	 * Turtle images indexed by direction and length.
+	 */
+	private static final ImageCache.Key[][] TURTLE_IMAGES = createImageKeys("turtle");
+
 	/**
 	 * Constructs a new Platform at the specified coordinate with
 	 * a specified length and direction.
@@ -42,6 +60,20 @@ public class Platform extends MovingObject {
 		super(xPos, yPos, length, direction);
 	}
 
+	/**
+	 * Reinitializes a removed platform so it can be reused.
+	 * @param xPos The x coordinate.
+	 * @param yPos The y coordinate.
+	 * @param length The length.
+	 * @param direction The direction value.
+	 * @param platformType The type of platform.
+	 */
+	public void reset(int xPos, int yPos, int length, int direction,
+			int platformType) {
+		reset(xPos, yPos, length, direction);
+		setPlatformType(platformType);
+	}
+
 	/**
 	 * The type of platform.
 	 * @return The type of platform value.
@@ -57,15 +89,46 @@ public class Platform extends MovingObject {
 	 */
 	public void setPlatformType(int platformType) {
 		this.platformType = platformType;
+		ImageCache.Key image = getImageKey(platformType, getDirection(), getLength());
+		if (image != null) {
+			setImage(image);
+		}
+	}
+
+	/**
+	 * Returns the image of a platform.
+	 * @param platformType The type of platform.
+	 * @param direction The direction the platform moves in.
+	 * @param length The length.
+	 * @return The key of the image, or null for an unknown type.
+	 */
+	public static ImageCache.Key getImageKey(int platformType, int direction,
+			int length) {
 		if (platformType == LOG) {
-			setImage("res/sprites/platform/log.gif");
+			return LOG_IMAGE;
 		} else if (platformType == LILY) {
-			setImage("res/sprites/platform/lily-" + getDirection() + "-"
-					+ getLength() + ".gif");
+			return LILY_IMAGES[direction][length];
 		} else if (platformType == TURTLE) {
-			setImage("res/sprites/platform/turtle-" + getDirection() + "-"
-					+ getLength() + ".gif");
+			return TURTLE_IMAGES[direction][length];
+		}
+		return null;
+	}
+
+	/**
+	 * Creates the image keys for a platform whose image depends on its
+	 * direction and length.
+	 * @param name The platform name used in the image file names.
+	 * @return The keys indexed by direction and length.
+	 */
+	private static ImageCache.Key[][] createImageKeys(String name) {
+		ImageCache.Key[][] keys = new ImageCache.Key[2][4];
+		for (int direction = DIRECTION_LEFT; direction <= DIRECTION_RIGHT; direction++) {
+			for (int length = 1; length <= 3; length++) {
+				keys[direction][length] = ImageCache.key("res/sprites/platform/"
+						+ name + "-" + direction + "-" + length + ".gif");
+			}
 		}
+		return keys;
 	}
 	
 	/**
@@ -1,9 +1,9 @@
 package sprites;
 
-import game.FroggrGame;
 import game.Input;
+import game.World;
 
-import util.SoundEffect;
+import util.ImageCache;
 
 /**
  * 
@@ -13,6 +13,42 @@ import util.SoundEffect;
  */
 public class Player extends Sprite {
 
+	/**
+	 * Image of the idle player.
+	 */
+	public static final ImageCache.Key IMAGE_IDLE = ImageCache
+			.key("res/sprites/player/player-idle.gif");
+
+	/**
+	 * Image of the player moving left.
+	 */
+	private static final ImageCache.Key IMAGE_LEFT = ImageCache
+			.key("res/sprites/player/player-left.gif");
+
+	/**
+	 * Image of the player moving right.
+	 */
+	private static final ImageCache.Key IMAGE_RIGHT = ImageCache
+			.key("res/sprites/player/player-right.gif");
+
+	/**
+	 * Image of the player moving forward.
+	 */
+	private static final ImageCache.Key IMAGE_FORWARD = ImageCache
+			.key("res/sprites/player/player-forward.gif");
+
+	/**
+	 * Image of the player moving back.
+	 */
+	private static final ImageCache.Key IMAGE_BACK = ImageCache
+			.key("res/sprites/player/player-back.gif");
+
+	/**
+	 * Image of the dead player.
+	 */
+	private static final ImageCache.Key IMAGE_DEATH = ImageCache
+			.key("res/sprites/player/player-death.gif");
+
 	/**
 	 * The current number of lives.
 	 */
@@ -33,56 +69,123 @@ public class Player extends Sprite {
 	public Player(int x, int y, int lives) {
 		super(x, y);
 		this.lives = lives;
-		setImage("res/sprites/player/player-idle.gif");
+		setImage(IMAGE_IDLE);
 		this.setAlive(true);
 		setLength(1);
 		setHeight(1);
 	}
 
 	/**
-	 * Processes the movement and actions of the player.
+	 * Puts the player back at the specified location, alive and idle, so
+	 * the same Sprite can be used after it died.
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @param lives The number of lives.
+	 */
+	public void reset(int x, int y, int lives) {
+		reset(x, y);
+		this.lives = lives;
+		setImage(IMAGE_IDLE);
+		setAlive(true);
+	}
+
+	/**
+	 * Puts the player in a saved state, e.g. when a saved game is resumed. A
+	 * dead player is removed, and shown dead if out of lives.
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @param lives The number of lives.
+	 * @param alive Whether the player is alive.
+	 */
+	public void restore(int x, int y, int lives, boolean alive) {
+		reset(x, y, lives);
+		if (!alive) {
+			remove();
+			setAlive(false);
+			if (lives == 0) {
+				setImage(IMAGE_DEATH);
+			}
+		}
+	}
+
+	/**
+	 * Processes the movement of the player. The World decides whether the
+	 * player may move at all, e.g. not after the game is over.
 	 */
 	@Override
 	public void tick(Input input) {
-		if (isAlive() && !FroggrGame.isGameOver() && !FroggrGame.isGameWon()) {
-			int horizontalMovementAmount = 25;
+		if (isAlive()) {
 			int verticalMovementAmount = 50;
-			if (input.buttons[Input.LEFT]) {
-				if (getXPos() - horizontalMovementAmount != -horizontalMovementAmount) {
-					setXPos(getXPos() - horizontalMovementAmount);
-					input.buttons[Input.LEFT] = false;
-					setImage("res/sprites/player/player-left.gif");
-					SoundEffect.play(SoundEffect.MOVE);
-				}
-			}
-			if (input.buttons[Input.RIGHT]) {
-				if (getXPos() + horizontalMovementAmount*2 != FroggrGame.GAME_WIDTH) {
-					setXPos(getXPos() + horizontalMovementAmount);
-					input.buttons[Input.RIGHT] = false;
-					setImage("res/sprites/player/player-right.gif");
-					SoundEffect.play(SoundEffect.MOVE);
-				}
-			}
+			moveSideways(input);
 			if (input.buttons[Input.UP]) {
 				if (getYPos() - verticalMovementAmount != -verticalMovementAmount) {
 					setYPos(getYPos() - verticalMovementAmount);
 					input.buttons[Input.UP] = false;
-					setImage("res/sprites/player/player-forward.gif");
-					SoundEffect.play(SoundEffect.MOVE);
+					setImage(IMAGE_FORWARD);
 				}
 			}
 			if (input.buttons[Input.DOWN]) {
-				if (getYPos() + verticalMovementAmount != FroggrGame.GAME_HEIGHT - verticalMovementAmount) {
+				if (getYPos() + verticalMovementAmount != World.GAME_HEIGHT - verticalMovementAmount) {
 					setYPos(getYPos() + verticalMovementAmount);
 					input.buttons[Input.DOWN] = false;
-					setImage("res/sprites/player/player-back.gif");
-					SoundEffect.play(SoundEffect.MOVE);
+					setImage(IMAGE_BACK);
 				}
 			}
 		}
 
 	}
 
+	/**
+	 * Moves the player by the keys pressed, for worlds where a lane is not a
+	 * fixed place on the screen. Left and right move the player as tick
+	 * does. Forward and back only turn the player and report the hop; the
+	 * y coordinate is left alone, so it can stay relative to the lane.
+	 * @param input The keys pressed. The keys acted on are released.
+	 * @param canHopBack Whether the player may hop back a lane.
+	 * @return The lanes hopped: 1 forward, -1 back or 0.
+	 */
+	public int hop(Input input, boolean canHopBack) {
+		if (!isAlive()) {
+			return 0;
+		}
+		moveSideways(input);
+		int lanes = 0;
+		if (input.buttons[Input.UP]) {
+			lanes++;
+			input.buttons[Input.UP] = false;
+			setImage(IMAGE_FORWARD);
+		}
+		if (input.buttons[Input.DOWN] && canHopBack) {
+			lanes--;
+			input.buttons[Input.DOWN] = false;
+			setImage(IMAGE_BACK);
+		}
+		return lanes;
+	}
+
+	/**
+	 * Moves the player left or right by the keys pressed, unless that would
+	 * take him off the screen. Used by both tick and hop.
+	 * @param input The keys pressed. The keys acted on are released.
+	 */
+	private void moveSideways(Input input) {
+		int horizontalMovementAmount = 25;
+		if (input.buttons[Input.LEFT]) {
+			if (getXPos() - horizontalMovementAmount != -horizontalMovementAmount) {
+				setXPos(getXPos() - horizontalMovementAmount);
+				input.buttons[Input.LEFT] = false;
+				setImage(IMAGE_LEFT);
+			}
+		}
+		if (input.buttons[Input.RIGHT]) {
+			if (getXPos() + horizontalMovementAmount*2 != World.GAME_WIDTH) {
+				setXPos(getXPos() + horizontalMovementAmount);
+				input.buttons[Input.RIGHT] = false;
+				setImage(IMAGE_RIGHT);
+			}
+		}
+	}
+
 	/**
 	 * Returns the number of lives the player has remaining.
 	 * @return The number of lives remaining.
@@ -125,7 +228,7 @@ public class Player extends Sprite {
 		if (isAlive()) {
 			remove();
 			if (getLives() == 1) {
-				setImage("res/sprites/player/player-death.gif");
+				setImage(IMAGE_DEATH);
 			}
 			setLives(getLives() - 1);
 			setAlive(false);
@@ -1,13 +1,13 @@
 package sprites;
 
 import java.awt.Canvas;
+import java.awt.Graphics;
 import java.awt.Image;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-
-import javax.imageio.ImageIO;
+import java.awt.image.ImageObserver;
 
 import game.Input;
+import render.SpriteAtlas;
+import util.ImageCache;
 
 /**
  * A Sprite is an object that needs to be tracked in the game. Sprites
@@ -42,6 +42,11 @@ public abstract class Sprite {
 	 * Relative location of the image file.
 	 */
 	private String imageLocation;
+
+	/**
+	 * Key of the Sprite's image.
+	 */
+	private ImageCache.Key imageKey;
 	
 	/**
 	 * Unit length of the Sprite.
@@ -129,6 +134,18 @@ public abstract class Sprite {
 		removed = true;
 	}
 
+	/**
+	 * Puts a removed Sprite back in play at the specified coordinates, so it
+	 * can be reused instead of creating a new one.
+	 * @param xPos The x coordinate.
+	 * @param yPos The y coordinate.
+	 */
+	protected void reset(int xPos, int yPos) {
+		this.xPos = xPos;
+		this.yPos = yPos;
+		removed = false;
+	}
+
 	/**
 	 * Checks if another sprite has collided with this sprite
 	 * Will override as needed.
@@ -148,27 +165,75 @@ public abstract class Sprite {
 	public abstract void tick(Input input);
 
 	/**
-	 * Sets the image of the sprite.
+	 * Sets the image of the sprite. The image is decoded once and shared
+	 * through the {@link ImageCache}.
 	 * @param imageLocation The relative location of the image.
 	 */
 	public void setImage(String imageLocation) {
-		try {
-			image = (BufferedImage) ImageIO.read(Sprite.class.getClassLoader()
-					.getResource(imageLocation));
-			this.imageLocation = imageLocation;
-		} catch (IOException e) {
-			System.err.println("Could not load " + imageLocation);
+		setImage(ImageCache.key(imageLocation));
+	}
+
+	/**
+	 * Sets the image of the sprite from an interned image key. Prefer this
+	 * over {@link #setImage(String)} in code that runs every tick.
+	 * @param imageKey The key of the image.
+	 */
+	public void setImage(ImageCache.Key imageKey) {
+		Image loaded = ImageCache.get(imageKey);
+		if (loaded != null) {
+			image = loaded;
+			this.imageKey = imageKey;
+			this.imageLocation = imageKey.getLocation();
 		}
 	}
 
 	/**
-	 * Returns the image of the sprite.
+	 * Returns the image of the sprite. Follows the ImageCache, so an image
+	 * replaced there (e.g. converted for the screen) is picked up at once.
 	 * @return The Image object.
 	 */
 	public Image getImage() {
+		if (imageKey != null) {
+			Image current = ImageCache.peek(imageKey);
+			if (current != null) {
+				return current;
+			}
+		}
 		return image;
 	}
 
+	/**
+	 * Returns the key of the Sprite's image.
+	 * @return The image key, or null if no image is set.
+	 */
+	public ImageCache.Key getImageKey() {
+		return imageKey;
+	}
+
+	/**
+	 * Returns the part of the sprite atlas holding the Sprite's image.
+	 * @return The Region, or null if the image is not in the atlas.
+	 */
+	public SpriteAtlas.Region getRegion() {
+		return SpriteAtlas.region(getImageKey());
+	}
+
+	/**
+	 * Draws the Sprite's image, from the sprite atlas if it is packed there.
+	 * @param g The Graphics to draw on.
+	 * @param x The x coordinate to draw at.
+	 * @param y The y coordinate to draw at.
+	 * @param observer The observer passed to drawImage.
+	 */
+	public void draw(Graphics g, int x, int y, ImageObserver observer) {
+		SpriteAtlas.Region region = getRegion();
+		if (region != null) {
+			region.draw(g, x, y, observer);
+		} else {
+			g.drawImage(getImage(), x, y, observer);
+		}
+	}
+
 	/**
 	 * Returns the unit length of the Sprite.
 	 * @return The length.
@@ -1,6 +1,6 @@
 package sprites;
 
-import java.util.Random;
+import util.ImageCache;
 
 /**
  * 
@@ -17,6 +17,11 @@ public class Vehicle extends MovingObject {
 	 */
 	private int vehicleType;
 
+	/**
+	 * The car color, 0 for red and 1 for blue. Not used by trucks.
+	 */
+	private int color;
+
 	/**
 	 * Value for car sprites.
 	 */
@@ -27,6 +32,34 @@ public class Vehicle extends MovingObject {
 	 */
 	public static final int TRUCK = 1;
 
+	/**
+	 * Car colors, as used in the image file names.
+	 */
+	private static final String[] CAR_COLORS = { "red", "blue" };
+
+	/**
+	 * Car images indexed by color, direction and length.
+	 */
+	private static final ImageCache.Key[][][] CAR_IMAGES = new ImageCache.Key[2][2][4];
+
+	/**
+	 * Truck image.
+	 */
+	private static final ImageCache.Key TRUCK_IMAGE = ImageCache
+			.key("res/sprites/vehicle/truck-0-2.gif");
+
+	static {
+		for (int color = 0; color < CAR_COLORS.length; color++) {
+			for (int direction = DIRECTION_LEFT; direction <= DIRECTION_RIGHT; direction++) {
+				for (int length = 1; length <= 3; length++) {
+					CAR_IMAGES[color][direction][length] = ImageCache
+							.key("res/sprites/vehicle/car-" + CAR_COLORS[color]
+									+ "-" + direction + "-" + length + ".gif");
+				}
+			}
+		}
+	}
+
 	/**
 	 * Constructs a new Vehicle at the specified location with the specified
 	 * length and direction.
@@ -40,27 +73,75 @@ public class Vehicle extends MovingObject {
 	}
 
 	/**
-	 * Sets the vehicle type.
+	 * Reinitializes a removed vehicle so it can be reused.
+	 * @param xPos The x coordinate.
+	 * @param yPos The y coordinate.
+	 * @param length The unit length.
+	 * @param direction The direction the sprites move in.
+	 * @param vehicleType The value for the vehicle type.
+	 * @param color The car color, 0 for red and 1 for blue.
+	 */
+	public void reset(int xPos, int yPos, int length, int direction,
+			int vehicleType, int color) {
+		reset(xPos, yPos, length, direction);
+		setVehicleType(vehicleType, color);
+	}
+
+	/**
+	 * Sets the vehicle type, keeping the color.
 	 * @param vehicleType The value for the vehicle type.
 	 */
 	public void setVehicleType(int vehicleType) {
+		setVehicleType(vehicleType, color);
+	}
+
+	/**
+	 * Sets the vehicle type and the car color. The color is picked by the
+	 * caller (the World, from its seeded Random) so that a game can be
+	 * played again exactly.
+	 * @param vehicleType The value for the vehicle type.
+	 * @param color The car color, 0 for red and 1 for blue.
+	 */
+	public void setVehicleType(int vehicleType, int color) {
 		this.vehicleType = vehicleType;
+		this.color = color;
 		setImageURLForVehicle();
 	}
 
+	/**
+	 * Returns the car color.
+	 * @return 0 for red, 1 for blue.
+	 */
+	public int getColor() {
+		return color;
+	}
+
 	/**
 	 * Determines the location of the file based on the length and
 	 * direction.
 	 */
 	private void setImageURLForVehicle() {
 		if (vehicleType == CAR) {
-			Random r = new Random();
-			String color = (r.nextInt() % 2 == 0) ? "red" : "blue";
-			setImage("res/sprites/vehicle/car-" + color + "-" + getDirection()
-					+ "-" + getLength() + ".gif");
+			setImage(getImageKey(CAR, color, getDirection(), getLength()));
 		} else if (vehicleType == TRUCK) {
-			setImage("res/sprites/vehicle/truck-0-2.gif");
+			setImage(getImageKey(TRUCK, 0, getDirection(), getLength()));
+		}
+	}
+
+	/**
+	 * Returns the image of a vehicle.
+	 * @param vehicleType The type of vehicle.
+	 * @param color The car color (0 for red, 1 for blue), ignored for trucks.
+	 * @param direction The direction the vehicle moves in.
+	 * @param length The unit length.
+	 * @return The key of the image.
+	 */
+	public static ImageCache.Key getImageKey(int vehicleType, int color,
+			int direction, int length) {
+		if (vehicleType == TRUCK) {
+			return TRUCK_IMAGE;
 		}
+		return CAR_IMAGES[color][direction][length];
 	}
 
 	/**
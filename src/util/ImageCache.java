@@ -0,0 +1,263 @@
+package util;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A process-wide cache of decoded images keyed by their resource path. Every
+ * image is decoded at most once and then shared by all the Sprites that use
+ * it. Hot paths should hold on to a {@link Key} (see {@link #key(String)})
+ * instead of building a resource path String every time they change image.
+ *
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ */
+public final class ImageCache {
+
+	/**
+	 * An interned handle for an image resource. There is exactly one Key per
+	 * resource path, so Keys can be compared by reference and kept in static
+	 * fields.
+	 */
+	public static final class Key {
+
+		/**
+		 * Relative location of the image file.
+		 */
+		private final String location;
+
+		/**
+		 * The decoded image, null until the first lookup.
+		 */
+		private volatile Image image;
+
+		/**
+		 * Whether decoding has already been attempted (successfully or not).
+		 */
+		private volatile boolean loaded;
+
+		/**
+		 * Creates a Key for the specified resource path.
+		 * @param location The relative location of the image.
+		 */
+		private Key(String location) {
+			this.location = location;
+		}
+
+		/**
+		 * The relative location of the image file.
+		 * @return The image location.
+		 */
+		public String getLocation() {
+			return location;
+		}
+
+		@Override
+		public String toString() {
+			return location;
+		}
+	}
+
+	/**
+	 * Interned keys by resource path.
+	 */
+	private static final ConcurrentHashMap<String, Key> keys = new ConcurrentHashMap<String, Key>();
+
+	/**
+	 * Number of lookups that were served from the cache.
+	 */
+	private static final LongAdder hits = new LongAdder();
+
+	/**
+	 * Number of lookups that had to decode the image.
+	 */
+	private static final LongAdder misses = new LongAdder();
+
+	/**
+	 * Approximate number of bytes held by decoded images.
+	 */
+	private static final AtomicLong bytesResident = new AtomicLong();
+
+	/**
+	 * Not instantiable.
+	 */
+	private ImageCache() {
+	}
+
+	/**
+	 * Returns the interned Key for the specified resource path. The image is
+	 * not decoded until it is first requested.
+	 * @param location The relative location of the image.
+	 * @return The Key for the location.
+	 */
+	public static Key key(String location) {
+		Key key = keys.get(location);
+		if (key == null) {
+			Key created = new Key(location);
+			key = keys.putIfAbsent(location, created);
+			if (key == null) {
+				key = created;
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Returns every interned Key whose resource path starts with the
+	 * specified prefix.
+	 * @param prefix The start of the relative location, e.g. "res/sprites/".
+	 * @return The matching Keys.
+	 */
+	public static List<Key> keys(String prefix) {
+		List<Key> matching = new ArrayList<Key>();
+		for (Key key : keys.values()) {
+			if (key.location.startsWith(prefix)) {
+				matching.add(key);
+			}
+		}
+		return matching;
+	}
+
+	/**
+	 * Returns the decoded image for the specified resource path.
+	 * @param location The relative location of the image.
+	 * @return The Image, or null if it could not be loaded.
+	 */
+	public static Image get(String location) {
+		return get(key(location));
+	}
+
+	/**
+	 * Returns the decoded image for the specified Key, decoding it on first
+	 * use.
+	 * @param key The Key of the image.
+	 * @return The Image, or null if it could not be loaded.
+	 */
+	public static Image get(Key key) {
+		if (key.loaded) {
+			hits.increment();
+			return key.image;
+		}
+		return load(key);
+	}
+
+	/**
+	 * Decodes the image for the Key. Only the first caller decodes, any
+	 * callers racing with it wait and count as hits.
+	 * @param key The Key of the image.
+	 * @return The Image, or null if it could not be loaded.
+	 */
+	private static Image load(Key key) {
+		synchronized (key) {
+			if (key.loaded) {
+				hits.increment();
+				return key.image;
+			}
+			misses.increment();
+			URL url = ImageCache.class.getClassLoader().getResource(key.location);
+			try {
+				if (url == null) {
+					throw new IOException("Resource not found");
+				}
+				BufferedImage image = ImageIO.read(url);
+				key.image = image;
+				bytesResident.addAndGet(sizeOf(image));
+			} catch (IOException e) {
+				System.err.println("Could not load " + key.location);
+			}
+			key.loaded = true;
+			return key.image;
+		}
+	}
+
+	/**
+	 * Returns the cached image for a Key without decoding it.
+	 * @param key The Key of the image.
+	 * @return The Image, or null if it is not loaded (or could not be).
+	 */
+	public static Image peek(Key key) {
+		return key.loaded ? key.image : null;
+	}
+
+	/**
+	 * Replaces the cached image for a Key, e.g. with a converted copy of the
+	 * decoded one. Sprites pick up the new image on their next draw.
+	 * @param key The Key of the image.
+	 * @param image The Image to store.
+	 */
+	public static void replace(Key key, Image image) {
+		synchronized (key) {
+			bytesResident.addAndGet(sizeOf(image) - sizeOf(key.image));
+			key.image = image;
+			key.loaded = true;
+		}
+	}
+
+	/**
+	 * Estimates the number of bytes used by an image's pixel data. Only the
+	 * color model is consulted: touching the raster's data would stop Java2D
+	 * from caching the image in video memory.
+	 * @param image The image.
+	 * @return The size in bytes, or 0 if unknown.
+	 */
+	private static long sizeOf(Image image) {
+		if (!(image instanceof BufferedImage)) {
+			return 0;
+		}
+		BufferedImage buffered = (BufferedImage) image;
+		long bits = (long) buffered.getWidth() * buffered.getHeight()
+				* buffered.getColorModel().getPixelSize();
+		return bits / 8;
+	}
+
+	/**
+	 * Returns the number of lookups served without decoding.
+	 * @return The hit count.
+	 */
+	public static long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that decoded an image.
+	 * @return The miss count.
+	 */
+	public static long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the approximate number of bytes held by decoded images.
+	 * @return The resident size in bytes.
+	 */
+	public static long getBytesResident() {
+		return bytesResident.get();
+	}
+
+	/**
+	 * Returns the number of distinct image keys.
+	 * @return The number of keys.
+	 */
+	public static int size() {
+		return keys.size();
+	}
+
+	/**
+	 * Summary of the cache statistics, for logging.
+	 * @return The statistics.
+	 */
+	public static String stats() {
+		return "images=" + size() + " hits=" + getHits() + " misses="
+				+ getMisses() + " bytes=" + getBytesResident();
+	}
+}
@@ -0,0 +1,72 @@
+package util;
+
+/**
+ * A stack of objects that are no longer in use and can be handed out again
+ * instead of allocating new ones. Not thread safe.
+ * 
+ * @author Raj Ramsaroop
+ * 		   Greg Westerfield, Jr.
+ *
+ * @param <T> The type of object pooled.
+ */
+public class ObjectPool<T> {
+
+	/**
+	 * The free objects.
+	 */
+	private Object[] free = new Object[16];
+
+	/**
+	 * Number of free objects.
+	 */
+	private int size;
+
+	/**
+	 * Total number of objects handed out again.
+	 */
+	private long reused;
+
+	/**
+	 * Takes a free object from the pool.
+	 * @return A free object, or null if the pool is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public T acquire() {
+		if (size == 0) {
+			return null;
+		}
+		T object = (T) free[--size];
+		free[size] = null;
+		reused++;
+		return object;
+	}
+
+	/**
+	 * Returns an object to the pool. The caller must not use it afterwards.
+	 * @param object The object to return.
+	 */
+	public void release(T object) {
+		if (size == free.length) {
+			Object[] grown = new Object[size * 2];
+			System.arraycopy(free, 0, grown, 0, size);
+			free = grown;
+		}
+		free[size++] = object;
+	}
+
+	/**
+	 * Returns the number of free objects in the pool.
+	 * @return The number of free objects.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns how many times an object was handed out again.
+	 * @return The number of reuses.
+	 */
+	public long getReused() {
+		return reused;
+	}
+}
@@ -1,58 +1,146 @@
 package util;
 
+import java.io.IOException;
 import java.net.URL;
 
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineUnavailableException;
+
+import audio.AudioMixer;
+import audio.AudioOutput;
+import audio.LineOutput;
+import audio.LoopbackOutput;
 
 /**
- * This class plays the sound effects used in the game.
- * @author Raj Ramsaroop 
+ * This class plays the sound effects used in the game. The sounds are
+ * decoded once and played through a shared {@link AudioMixer}, so playing a
+ * sound never blocks the game thread.
+ * <p>
+ * Set the system property <code>froggr.audio</code> to <code>null</code> to
+ * mix into a {@link LoopbackOutput} instead of the sound card, and
+ * <code>froggr.audio.voices</code> to change the number of voices.
+ * @author Raj Ramsaroop
  * Greg Westerfield, Jr.
- * 
+ *
  */
 public class SoundEffect {
 
 	/**
 	 * Sound for player movement.
 	 */
-	public static final URL MOVE = SoundEffect.class.getClassLoader().getResource("res/sounds/player-movement.wav");
+	public static final int MOVE = 0;
 
 	/**
 	 * Sound for sprite collision.
 	 */
-	public static final URL COLLISION = SoundEffect.class.getClassLoader().getResource(
-			"res/sounds/sprite-collision.wav");
+	public static final int COLLISION = 1;
 
 	/**
 	 * Sound for sprite splash.
 	 */
-	public static final URL SPLASH = SoundEffect.class.getClassLoader().getResource("res/sounds/splash.wav");
+	public static final int SPLASH = 2;
 
 	/**
 	 * Sound for victory.
 	 */
-	public static final URL VICTORY = SoundEffect.class.getClassLoader().getResource("res/sounds/victory.wav");
+	public static final int VICTORY = 3;
+
+	/**
+	 * Sound file locations, by sound id.
+	 */
+	private static final String[] LOCATIONS = { "res/sounds/player-movement.wav",
+			"res/sounds/sprite-collision.wav", "res/sounds/splash.wav",
+			"res/sounds/victory.wav" };
+
+	/**
+	 * Voice stealing priorities, by sound id. Movement is the least important
+	 * and the victory jingle the most.
+	 */
+	private static final int[] PRIORITIES = { 0, 1, 1, 2 };
+
+	/**
+	 * Default number of sounds that can play at once.
+	 */
+	private static final int DEFAULT_VOICES = 6;
+
+	/**
+	 * The shared mixer, created on first use.
+	 */
+	private static volatile AudioMixer mixer;
 
 	/**
 	 * Plays the sound effect.
-	 * 
-	 * @param fileName
-	 *            The URL of the file to play.
-	 */
-	public static void play(URL fileName) {
-		try {
-			AudioInputStream audioIn = AudioSystem.getAudioInputStream(fileName);
-			Clip clip = AudioSystem.getClip();
-			clip.open(audioIn);
-			if (clip.isRunning()) {
-				clip.stop();
-				clip.loop(0);
+	 *
+	 * @param sound
+	 *            The id of the sound to play.
+	 */
+	public static void play(int sound) {
+		AudioMixer m = mixer;
+		if (m == null) {
+			m = getMixer();
+		}
+		m.play(sound);
+	}
+
+	/**
+	 * Returns the shared mixer, starting it if needed. Falls back to a
+	 * loopback output when no sound device is available.
+	 * @return The mixer.
+	 */
+	public static synchronized AudioMixer getMixer() {
+		if (mixer == null) {
+			int voices = Integer.getInteger("froggr.audio.voices", DEFAULT_VOICES);
+			AudioOutput output = "null".equals(System.getProperty("froggr.audio")) ? new LoopbackOutput(
+					true) : new LineOutput();
+			AudioMixer m = createMixer(output, voices);
+			try {
+				m.start();
+			} catch (LineUnavailableException e) {
+				System.err.println("No audio device available, sound is disabled.");
+				m = createMixer(new LoopbackOutput(true), voices);
+				try {
+					m.start();
+				} catch (LineUnavailableException ignored) {
+					// The loopback output cannot fail to open.
+				}
+			}
+			mixer = m;
+		}
+		return mixer;
+	}
+
+	/**
+	 * Replaces the shared mixer, e.g. with one writing to a loopback output.
+	 * The previous mixer is stopped.
+	 * @param m The mixer to use from now on. It must already be started.
+	 */
+	public static synchronized void setMixer(AudioMixer m) {
+		AudioMixer previous = mixer;
+		mixer = m;
+		if (previous != null && previous != m) {
+			previous.stop();
+		}
+	}
+
+	/**
+	 * Creates a mixer with all the game sounds loaded.
+	 * @param output Where the mixer writes to.
+	 * @param voices The maximum number of sounds playing at once.
+	 * @return The mixer, not yet started.
+	 */
+	public static AudioMixer createMixer(AudioOutput output, int voices) {
+		AudioMixer m = new AudioMixer(output, LOCATIONS.length, voices,
+				AudioMixer.VoiceStealing.LOWEST_PRIORITY);
+		for (int i = 0; i < LOCATIONS.length; i++) {
+			URL url = SoundEffect.class.getClassLoader().getResource(LOCATIONS[i]);
+			try {
+				if (url == null) {
+					throw new IOException("Resource not found");
+				}
+				m.load(i, url, PRIORITIES[i]);
+			} catch (IOException e) {
+				System.err.println("Could not load " + LOCATIONS[i]);
 			}
-			clip.start();
-		} catch (Exception exc) {
-			exc.printStackTrace(System.out);
 		}
+		return m;
 	}
 }
@@ -0,0 +1,86 @@
+package util;
+
+import java.util.Random;
+
+/**
+ * A Random whose state can be read and set, so a game in progress can be
+ * saved and resumed with the same random numbers still to come. It uses the
+ * same generator as java.util.Random, so it gives the same numbers for the
+ * same seed.
+ *
+ * @author Raj Ramsaroop, Greg Westerfield, Jr.
+ *
+ */
+public class StatefulRandom extends Random {
+
+	/**
+	 * Serialization version.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The multiplier of java.util.Random's generator.
+	 */
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+
+	/**
+	 * The addend of java.util.Random's generator.
+	 */
+	private static final long ADDEND = 0xBL;
+
+	/**
+	 * The generator keeps 48 bits.
+	 */
+	private static final long MASK = (1L << 48) - 1;
+
+	/**
+	 * The generator's state. Not initialized here because the superclass
+	 * constructor sets it through setSeed before the fields would be.
+	 */
+	private long state;
+
+	/**
+	 * Creates a generator.
+	 * @param seed The seed.
+	 */
+	public StatefulRandom(long seed) {
+		super(seed);
+	}
+
+	/**
+	 * Sets the seed, the same way java.util.Random does.
+	 * @param seed The seed.
+	 */
+	@Override
+	public synchronized void setSeed(long seed) {
+		super.setSeed(seed);
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	/**
+	 * Generates the next bits, the same way java.util.Random does.
+	 * @param bits How many random bits, at most 32.
+	 * @return The bits.
+	 */
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+
+	/**
+	 * Returns the generator's state.
+	 * @return The 48 bits of state.
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Sets the generator's state, e.g. to one returned by getState.
+	 * @param state The 48 bits of state.
+	 */
+	public void setState(long state) {
+		this.state = state & MASK;
+	}
+}